@@ -0,0 +1,105 @@
+package ma.emsi.controle.benchmarks;
+import ma.emsi.controle.ControleApplication;
+import ma.emsi.controle.service.IndexCampagnes;
+import ma.emsi.controle.service.ObjectifsCampagnes;
+import ma.emsi.controle.service.ServiceCampagne;
+import ma.emsi.controle.service.TotauxCampagnes;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Contexte Spring partagé par les benchmarks qui traversent la couche de persistance.
+ * L'application démarre sans serveur web sur une base H2 embarquée en fichier, alimentée par {@link JeuDeDonnees}
+ * à l'échelle demandée. La base est conservée entre deux forks : seul le premier paie l'alimentation.
+ * <p>
+ * L'échelle se règle avec les paramètres JMH, par exemple {@code -p campagnes=1000 -p dons=100000} ;
+ * elle figure ainsi dans les résultats JSON.
+ */
+@State(Scope.Benchmark)
+public class ContexteApplication {
+
+        /**
+         * Nombre de campagnes de la base
+         */
+        @Param("10000")
+        public int campagnes;
+
+        /**
+         * Nombre de dons de la base
+         */
+        @Param("10000000")
+        public int dons;
+
+        /**
+         * Contexte Spring de l'application
+         */
+        private ConfigurableApplicationContext contexte;
+
+        /**
+         * Identifiants des campagnes actives, tirés au hasard par les benchmarks
+         */
+        private long[] campagnesActives;
+
+        /**
+         * Démarre l'application et alimente la base si elle n'est pas déjà à l'échelle demandée.
+         */
+        @Setup(Level.Trial)
+        public void demarrer() {
+            String repertoire = System.getProperty("bench.base", "target/bench-h2");
+            contexte = new SpringApplicationBuilder(ControleApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run("--spring.datasource.url=jdbc:h2:file:./" + repertoire + "/dons-" + campagnes + "-" + dons,
+                            "--spring.main.banner-mode=off",
+                            "--spring.jpa.show-sql=false",
+                            "--spring.h2.console.enabled=false",
+                            "--logging.level.root=WARN");
+
+            JdbcTemplate jdbcTemplate = contexte.getBean(JdbcTemplate.class);
+            new JeuDeDonnees(jdbcTemplate).alimenter(campagnes, dons);
+
+            // Les index et caches ont été construits au démarrage, avant l'alimentation ; de même pour le montant
+            // collecté et le statut des campagnes, insérés sans ces colonnes
+            contexte.getBean(ObjectifsCampagnes.class).initialiser();
+            contexte.getBean(IndexCampagnes.class).reconstruire();
+            contexte.getBean(TotauxCampagnes.class).reconstruire();
+            contexte.getBean(ServiceCampagne.class).invalider();
+
+            List<Long> actives = jdbcTemplate.queryForList(
+                    "SELECT id FROM campagne WHERE date_debut <= CURRENT_DATE AND date_fin >= CURRENT_DATE AND statut = 'OUVERTE'", Long.class);
+            campagnesActives = actives.stream().mapToLong(Long::longValue).toArray();
+        }
+
+        /**
+         * Arrête l'application.
+         */
+        @TearDown(Level.Trial)
+        public void arreter() {
+            contexte.close();
+        }
+
+        /**
+         * @param type Type du bean recherché
+         * @return Le bean Spring correspondant
+         */
+        public <T> T bean(Class<T> type) {
+            return contexte.getBean(type);
+        }
+
+        /**
+         * @param alea Valeur aléatoire positive
+         * @return L'identifiant d'une campagne active
+         */
+        public long campagneActive(int alea) {
+            return campagnesActives[alea % campagnesActives.length];
+        }
+}
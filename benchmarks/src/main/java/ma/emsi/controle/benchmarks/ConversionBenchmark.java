@@ -0,0 +1,140 @@
+package ma.emsi.controle.benchmarks;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ma.emsi.controle.DTOs.CampagneActiveDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.config.JsonConfig;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.service.ServiceDon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemins de conversion sans base de données : mapping entité vers DTO et sérialisation Jackson des réponses.
+ * L'ObjectMapper est construit comme celui de Spring Boot (Jackson2ObjectMapperBuilder). Les résumés de campagne
+ * de référence sont des projections proxy sur l'interface ResumeProxy, comme celles que renvoyait Spring Data
+ * avant les projections par constructeur.
+ * <p>
+ * Les méthodes *Generique mesurent la sérialisation générique des beans (sans JsonConfig), les autres
+ * les sérialiseurs écrits à la main de JsonConfig. L'allocation par réponse s'obtient avec le profileur GC :
+ * {@code -Djmh.args="ConversionBenchmark -prof gc"} (gc.alloc.rate.norm, en octets par opération).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConversionBenchmark {
+
+        /**
+         * Nombre de campagnes de la liste sérialisée
+         */
+        @Param({"10", "1000"})
+        public int tailleListe;
+
+        private ServiceDon serviceDon;
+        private ObjectMapper objectMapper;
+        private ObjectMapper objectMapperGenerique;
+        private ObjectWriter writerCampagnesActives;
+        private Donation donation;
+        private DonDTO donDTO;
+        private List<ResumeProxy> campagnes;
+        private List<CampagneActiveDTO> campagnesActives;
+
+        @Setup
+        public void preparer() {
+            // convertToDTO n'utilise aucune dépendance du service
+            serviceDon = new ServiceDon(null, null, null, null, null);
+            // Comme Spring Boot, dates au format ISO plutôt qu'en tableaux
+            objectMapper = Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .modulesToInstall(JsonConfig.module(), JsonConfig.moduleMontant()).build();
+            objectMapperGenerique = Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).modulesToInstall(JsonConfig.moduleMontant()).build();
+            writerCampagnesActives = objectMapper.writerFor(
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, CampagneActiveDTO.class));
+
+            Campagne campagne = new Campagne();
+            campagne.setId(1L);
+            campagne.setNom("Aide aux victimes de catastrophes naturelles");
+            donation = new Donation();
+            donation.setId(123_456L);
+            donation.setCampagne(campagne);
+            donation.setNomDonateur("Marie Dupont");
+            donation.setMontant(Montant.parse("500.00"));
+            donation.setDate(LocalDateTime.of(2025, 4, 1, 10, 30));
+            donDTO = serviceDon.convertToDTO(donation);
+
+            SpelAwareProxyProjectionFactory fabrique = new SpelAwareProxyProjectionFactory();
+            campagnes = new ArrayList<>(tailleListe);
+            campagnesActives = new ArrayList<>(tailleListe);
+            for (long i = 1; i <= tailleListe; i++) {
+                campagnes.add(fabrique.createProjection(ResumeProxy.class,
+                        Map.of("id", i, "nom", "Campagne " + i, "objectifMontant", BigDecimal.valueOf(50_000 + i, 2))));
+                campagnesActives.add(new CampagneActiveDTO(i, "Campagne " + i, Montant.deCentimes(50_000 + i),
+                        Montant.deCentimes(12_345 + i), i, LocalDateTime.of(2025, 4, 1, 10, 30)));
+            }
+        }
+
+        @Benchmark
+        public DonDTO convertToDTO() {
+            return serviceDon.convertToDTO(donation);
+        }
+
+        @Benchmark
+        public byte[] serialiserDonGenerique() throws JsonProcessingException {
+            return objectMapperGenerique.writeValueAsBytes(donDTO);
+        }
+
+        @Benchmark
+        public byte[] serialiserDon() throws JsonProcessingException {
+            return objectMapper.writeValueAsBytes(donDTO);
+        }
+
+        /**
+         * Liste de projections proxy, sérialisée comme avant CampagneActiveDTO et les projections records.
+         */
+        @Benchmark
+        public byte[] serialiserCampagnesResumeGenerique() throws JsonProcessingException {
+            return objectMapperGenerique.writeValueAsBytes(campagnes);
+        }
+
+        @Benchmark
+        public byte[] serialiserCampagnesActives() throws JsonProcessingException {
+            return writerCampagnesActives.writeValueAsBytes(campagnesActives);
+        }
+
+        /**
+         * Projection par interface, telle que CampagneResume avant son passage en record
+         */
+        public interface ResumeProxy {
+            Long getId();
+
+            String getNom();
+
+            BigDecimal getObjectifMontant();
+        }
+}
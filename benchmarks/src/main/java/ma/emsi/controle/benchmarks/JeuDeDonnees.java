@@ -0,0 +1,102 @@
+package ma.emsi.controle.benchmarks;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Alimente la base des benchmarks en JDBC, par lots, sans passer par JPA.
+ * Les données sont déterministes (graine fixe) pour que deux versions soient mesurées sur la même base :
+ * 80 % des campagnes sont actives, les autres sont terminées, et les dons sont répartis uniformément
+ * sur les campagnes et les 30 derniers jours. Les objectifs sont assez élevés pour que les campagnes restent ouvertes
+ * pendant les mesures d'enregistrement de dons.
+ */
+public class JeuDeDonnees {
+
+        private static final int TAILLE_LOT = 10_000;
+
+        private final JdbcTemplate jdbcTemplate;
+
+        private final SplittableRandom alea = new SplittableRandom(42);
+
+        /**
+         * @param jdbcTemplate Accès JDBC à la base des benchmarks
+         */
+        public JeuDeDonnees(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        /**
+         * Complète la base jusqu'au nombre de campagnes et de dons demandé.
+         *
+         * @param campagnes Nombre de campagnes visé
+         * @param dons Nombre de dons visé
+         */
+        public void alimenter(int campagnes, int dons) {
+            long campagnesExistantes = compter("campagne");
+            if (campagnesExistantes < campagnes) {
+                insererCampagnes((int) (campagnes - campagnesExistantes));
+            }
+            long donsExistants = compter("donation");
+            if (donsExistants < dons) {
+                insererDons((int) (dons - donsExistants));
+            }
+        }
+
+        private void insererCampagnes(int nombre) {
+            LocalDate aujourdhui = LocalDate.now();
+            List<Object[]> lot = new ArrayList<>(TAILLE_LOT);
+            for (int i = 0; i < nombre; i++) {
+                boolean active = alea.nextInt(10) < 8;
+                LocalDate fin = active ? aujourdhui.plusDays(alea.nextInt(1, 90)) : aujourdhui.minusDays(alea.nextInt(1, 30));
+                LocalDate debut = (active ? aujourdhui : fin).minusDays(alea.nextInt(0, 60));
+                lot.add(new Object[]{"Campagne " + i, BigDecimal.valueOf(alea.nextInt(1_000_000, 100_000_000), 0),
+                        Date.valueOf(debut), Date.valueOf(fin)});
+                if (lot.size() == TAILLE_LOT) {
+                    jdbcTemplate.batchUpdate("INSERT INTO campagne (nom, objectif_montant, date_debut, date_fin) VALUES (?, ?, ?, ?)", lot);
+                    lot.clear();
+                }
+            }
+            if (!lot.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO campagne (nom, objectif_montant, date_debut, date_fin) VALUES (?, ?, ?, ?)", lot);
+            }
+        }
+
+        private void insererDons(int nombre) {
+            long[] campagnes = jdbcTemplate.queryForList("SELECT id FROM campagne", Long.class)
+                    .stream().mapToLong(Long::longValue).toArray();
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM donation", Long.class);
+            long id = maxId == null ? 1 : maxId + 1;
+            LocalDateTime maintenant = LocalDateTime.now();
+            List<Object[]> lot = new ArrayList<>(TAILLE_LOT);
+            for (int i = 0; i < nombre; i++) {
+                lot.add(new Object[]{id++, campagnes[alea.nextInt(campagnes.length)], "Donateur " + alea.nextInt(1_000_000),
+                        BigDecimal.valueOf(alea.nextInt(100, 100_000), 2),
+                        Timestamp.valueOf(maintenant.minusSeconds(alea.nextInt(30 * 24 * 3600)))});
+                if (lot.size() == TAILLE_LOT) {
+                    insererLotDons(lot);
+                }
+            }
+            insererLotDons(lot);
+            // La séquence pooled (allocationSize 50) renvoie la borne haute du bloc alloué : elle doit dépasser
+            // le dernier identifiant inséré d'au moins 50 pour que Hibernate ne réutilise aucun identifiant
+            jdbcTemplate.execute("ALTER SEQUENCE donation_seq RESTART WITH " + (id + 50));
+        }
+
+        private void insererLotDons(List<Object[]> lot) {
+            if (!lot.isEmpty()) {
+                jdbcTemplate.batchUpdate("INSERT INTO donation (id, campagne_id, nom_donateur, montant, date) VALUES (?, ?, ?, ?, ?)", lot);
+                lot.clear();
+            }
+        }
+
+        private long compter(String table) {
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+        }
+}
@@ -0,0 +1,90 @@
+package ma.emsi.controle.benchmarks;
+import ma.emsi.controle.DTOs.CampagneActiveDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ServiceCampagne;
+import ma.emsi.controle.service.ServiceDon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chemins traversant la couche de persistance : enregistrement d'un don et lecture des campagnes actives,
+ * mesurés sur la base alimentée par {@link ContexteApplication}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistanceBenchmark {
+
+        /**
+         * État propre à chaque thread de mesure
+         */
+        @State(Scope.Thread)
+        public static class EtatThread {
+
+            private final SplittableRandom alea = new SplittableRandom();
+
+            private ServiceDon serviceDon;
+            private ServiceCampagne serviceCampagne;
+            private CampagneRepository campagneRepository;
+
+            @Setup
+            public void preparer(ContexteApplication contexte) {
+                serviceDon = contexte.bean(ServiceDon.class);
+                serviceCampagne = contexte.bean(ServiceCampagne.class);
+                campagneRepository = contexte.bean(CampagneRepository.class);
+            }
+        }
+
+        /**
+         * Enregistrement unitaire d'un don sur une campagne active tirée au hasard (transaction complète).
+         */
+        @Benchmark
+        public DonDTO enregistrerDon(ContexteApplication contexte, EtatThread etat) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur benchmark");
+            don.setMontant(Montant.deCentimes(etat.alea.nextInt(100, 100_000)));
+            return etat.serviceDon.enregistrerDon(contexte.campagneActive(etat.alea.nextInt(Integer.MAX_VALUE)), don);
+        }
+
+        /**
+         * Requête des campagnes actives, sans le cache de ServiceCampagne.
+         */
+        @Benchmark
+        public List<CampagneResume> findActiveCampagnesAsResume(EtatThread etat) {
+            return etat.campagneRepository.findActiveCampagnesAsResume(LocalDate.now());
+        }
+
+        /**
+         * Campagnes actives avec leur progression (avec le cache de l'instantané, sans la sérialisation).
+         */
+        @Benchmark
+        public List<CampagneActiveDTO> campagnesActivesAvecProgression(EtatThread etat) {
+            return etat.serviceCampagne.getCampagnesActivesAvecProgression();
+        }
+
+        /**
+         * Réponse JSON de GET /api/campagnes/actives, servie depuis la réponse sérialisée tant qu'aucun don n'arrive.
+         */
+        @Benchmark
+        public byte[] campagnesActivesJson(EtatThread etat) {
+            return etat.serviceCampagne.getCampagnesActivesJson();
+        }
+}
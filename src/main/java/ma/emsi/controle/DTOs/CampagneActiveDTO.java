@@ -0,0 +1,18 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+
+import java.time.LocalDateTime;
+
+/**
+ * Campagne active accompagnée de la progression de sa collecte, telle que renvoyée par GET /api/campagnes/actives.
+ *
+ * @param id Identifiant de la campagne
+ * @param nom Nom de la campagne
+ * @param objectifMontant Montant objectif de la campagne
+ * @param montantCollecte Montant total collecté par la campagne
+ * @param nombreDons Nombre de dons reçus par la campagne
+ * @param dernierDon Date du dernier don reçu, ou null si aucun don
+ */
+public record CampagneActiveDTO(Long id, String nom, Montant objectifMontant, Montant montantCollecte,
+                                long nombreDons, LocalDateTime dernierDon) {
+}
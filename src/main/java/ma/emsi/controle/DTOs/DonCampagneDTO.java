@@ -0,0 +1,23 @@
+package ma.emsi.controle.DTOs;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * DTO d'un don destiné à une campagne précisée dans le corps de la requête.
+ * Utilisé par l'ingestion multi-campagnes, où un même lot mélange des dons de plusieurs campagnes.
+ */
+public class DonCampagneDTO extends DonDTO {
+        /**
+         * Identifiant de la campagne destinataire du don
+         */
+        @NotNull(message = "L'identifiant de la campagne est obligatoire")
+        private Long campagneId;
+
+        // Getters and Setters
+        public Long getCampagneId() {
+            return campagneId;
+        }
+
+        public void setCampagneId(Long campagneId) {
+            this.campagneId = campagneId;
+        }
+}
@@ -1,9 +1,9 @@
 package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -32,13 +32,46 @@ public class DonDTO {
          */
         @NotNull(message = "Le montant est obligatoire")
         @Positive(message = "Le montant doit être positif")
-        private BigDecimal montant;
+        private Montant montant;
 
         /**
          * Date et heure du don
          */
         private LocalDateTime date;
 
+        public DonDTO() {
+        }
+
+        /**
+         * Constructeur utilisé par les requêtes JPQL à expression constructeur (sans nom de campagne,
+         * renseigné ensuite par l'appelant pour éviter une jointure).
+         *
+         * @param id Identifiant du don
+         * @param nomDonateur Nom du donateur
+         * @param montant Montant du don
+         * @param date Date et heure du don
+         */
+        public DonDTO(Long id, String nomDonateur, Montant montant, LocalDateTime date) {
+            this.id = id;
+            this.nomDonateur = nomDonateur;
+            this.montant = montant;
+            this.date = date;
+        }
+
+        /**
+         * Constructeur utilisé par les requêtes JPQL à expression constructeur qui lisent aussi le nom de la campagne.
+         *
+         * @param id Identifiant du don
+         * @param nomCampagne Nom de la campagne du don
+         * @param nomDonateur Nom du donateur
+         * @param montant Montant du don
+         * @param date Date et heure du don
+         */
+        public DonDTO(Long id, String nomCampagne, String nomDonateur, Montant montant, LocalDateTime date) {
+            this(id, nomDonateur, montant, date);
+            this.nomCampagne = nomCampagne;
+        }
+
         // Getters and Setters
         public Long getId() {
             return id;
@@ -64,11 +97,11 @@ public class DonDTO {
             this.nomDonateur = nomDonateur;
         }
 
-        public BigDecimal getMontant() {
+        public Montant getMontant() {
             return montant;
         }
 
-        public void setMontant(BigDecimal montant) {
+        public void setMontant(Montant montant) {
             this.montant = montant;
         }
 
@@ -0,0 +1,56 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+
+/**
+ * Donateur d'une campagne dans le classement des meilleurs donateurs.
+ */
+public class DonateurClassementDTO {
+        /**
+         * Rang du donateur, à partir de 1
+         */
+        private final int rang;
+
+        /**
+         * Nom du donateur
+         */
+        private final String nomDonateur;
+
+        /**
+         * Somme des dons du donateur à la campagne
+         */
+        private final Montant montantTotal;
+
+        /**
+         * Nombre de dons du donateur à la campagne
+         */
+        private final long nombreDons;
+
+        /**
+         * @param rang Rang du donateur
+         * @param nomDonateur Nom du donateur
+         * @param montantTotal Somme des dons
+         * @param nombreDons Nombre de dons
+         */
+        public DonateurClassementDTO(int rang, String nomDonateur, Montant montantTotal, long nombreDons) {
+            this.rang = rang;
+            this.nomDonateur = nomDonateur;
+            this.montantTotal = montantTotal;
+            this.nombreDons = nombreDons;
+        }
+
+        public int getRang() {
+            return rang;
+        }
+
+        public String getNomDonateur() {
+            return nomDonateur;
+        }
+
+        public Montant getMontantTotal() {
+            return montantTotal;
+        }
+
+        public long getNombreDons() {
+            return nombreDons;
+        }
+}
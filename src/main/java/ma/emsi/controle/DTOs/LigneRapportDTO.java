@@ -0,0 +1,45 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+
+/**
+ * Ligne d'un rapport sur les dons : nombre et montant des dons d'un groupe (campagne, jour ou tranche de montant).
+ */
+public class LigneRapportDTO {
+        /**
+         * Clé du groupe : identifiant de la campagne, jour (ISO) ou tranche de montant
+         */
+        private final String cle;
+
+        /**
+         * Nombre de dons du groupe
+         */
+        private final long nombreDons;
+
+        /**
+         * Somme des montants des dons du groupe
+         */
+        private final Montant montantTotal;
+
+        /**
+         * @param cle Clé du groupe
+         * @param nombreDons Nombre de dons
+         * @param montantTotal Somme des montants
+         */
+        public LigneRapportDTO(String cle, long nombreDons, Montant montantTotal) {
+            this.cle = cle;
+            this.nombreDons = nombreDons;
+            this.montantTotal = montantTotal;
+        }
+
+        public String getCle() {
+            return cle;
+        }
+
+        public long getNombreDons() {
+            return nombreDons;
+        }
+
+        public Montant getMontantTotal() {
+            return montantTotal;
+        }
+}
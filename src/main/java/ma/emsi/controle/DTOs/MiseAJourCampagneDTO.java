@@ -0,0 +1,83 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Mise à jour d'une campagne diffusée en direct : totaux à jour et dons reçus depuis la mise à jour précédente.
+ * Les totaux étant complets, un client qui a manqué des mises à jour reste exact dès la suivante.
+ */
+public class MiseAJourCampagneDTO {
+        /**
+         * Identifiant de la campagne
+         */
+        private final Long campagneId;
+
+        /**
+         * Nombre total de dons reçus par la campagne
+         */
+        private final long nombreDons;
+
+        /**
+         * Montant total collecté par la campagne
+         */
+        private final Montant montantCollecte;
+
+        /**
+         * Date du dernier don reçu, ou null
+         */
+        private final LocalDateTime dernierDon;
+
+        /**
+         * Nombre de dons reçus depuis la mise à jour précédente
+         */
+        private final int nouveauxDons;
+
+        /**
+         * Derniers dons reçus depuis la mise à jour précédente, du plus ancien au plus récent (au plus nouveauxDons)
+         */
+        private final List<DonDTO> dons;
+
+        /**
+         * @param campagneId Identifiant de la campagne
+         * @param nombreDons Nombre total de dons
+         * @param montantCollecte Montant total collecté
+         * @param dernierDon Date du dernier don
+         * @param nouveauxDons Nombre de dons reçus depuis la mise à jour précédente
+         * @param dons Derniers dons reçus depuis la mise à jour précédente
+         */
+        public MiseAJourCampagneDTO(Long campagneId, long nombreDons, Montant montantCollecte, LocalDateTime dernierDon,
+                                    int nouveauxDons, List<DonDTO> dons) {
+            this.campagneId = campagneId;
+            this.nombreDons = nombreDons;
+            this.montantCollecte = montantCollecte;
+            this.dernierDon = dernierDon;
+            this.nouveauxDons = nouveauxDons;
+            this.dons = dons;
+        }
+
+        public Long getCampagneId() {
+            return campagneId;
+        }
+
+        public long getNombreDons() {
+            return nombreDons;
+        }
+
+        public Montant getMontantCollecte() {
+            return montantCollecte;
+        }
+
+        public LocalDateTime getDernierDon() {
+            return dernierDon;
+        }
+
+        public int getNouveauxDons() {
+            return nouveauxDons;
+        }
+
+        public List<DonDTO> getDons() {
+            return dons;
+        }
+}
@@ -0,0 +1,35 @@
+package ma.emsi.controle.DTOs;
+import java.util.List;
+
+/**
+ * Page de dons d'une campagne, paginée par curseur.
+ * Le curseur est opaque pour le client : il suffit de le renvoyer pour obtenir la page suivante.
+ */
+public class PageDonsDTO {
+        /**
+         * Dons de la page, dans l'ordre chronologique
+         */
+        private final List<DonDTO> dons;
+
+        /**
+         * Curseur de la page suivante, null s'il n'y a plus de dons
+         */
+        private final String curseurSuivant;
+
+        /**
+         * @param dons Dons de la page
+         * @param curseurSuivant Curseur de la page suivante, ou null
+         */
+        public PageDonsDTO(List<DonDTO> dons, String curseurSuivant) {
+            this.dons = dons;
+            this.curseurSuivant = curseurSuivant;
+        }
+
+        public List<DonDTO> getDons() {
+            return dons;
+        }
+
+        public String getCurseurSuivant() {
+            return curseurSuivant;
+        }
+}
@@ -0,0 +1,77 @@
+package ma.emsi.controle.DTOs;
+import java.util.Map;
+
+/**
+ * Résultat de l'enregistrement d'un don au sein d'un lot.
+ * Chaque élément du lot reçoit son propre résultat, un don rejeté n'empêchant pas l'enregistrement des autres.
+ */
+public class ResultatDonDTO {
+        /**
+         * Statut possible d'un élément du lot
+         */
+        public enum Statut {
+            ENREGISTRE,
+            REJETE
+        }
+
+        /**
+         * Position du don dans le lot reçu
+         */
+        private final int index;
+
+        /**
+         * Statut de l'élément
+         */
+        private final Statut statut;
+
+        /**
+         * Don enregistré, renseigné uniquement si le statut est ENREGISTRE
+         */
+        private final DonDTO don;
+
+        /**
+         * Erreurs par champ, renseignées uniquement si le statut est REJETE
+         */
+        private final Map<String, String> erreurs;
+
+        private ResultatDonDTO(int index, Statut statut, DonDTO don, Map<String, String> erreurs) {
+            this.index = index;
+            this.statut = statut;
+            this.don = don;
+            this.erreurs = erreurs;
+        }
+
+        /**
+         * @param index Position du don dans le lot
+         * @param don Don enregistré
+         * @return Un résultat de don enregistré
+         */
+        public static ResultatDonDTO enregistre(int index, DonDTO don) {
+            return new ResultatDonDTO(index, Statut.ENREGISTRE, don, null);
+        }
+
+        /**
+         * @param index Position du don dans le lot
+         * @param erreurs Erreurs par champ
+         * @return Un résultat de don rejeté
+         */
+        public static ResultatDonDTO rejete(int index, Map<String, String> erreurs) {
+            return new ResultatDonDTO(index, Statut.REJETE, null, erreurs);
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public Statut getStatut() {
+            return statut;
+        }
+
+        public DonDTO getDon() {
+            return don;
+        }
+
+        public Map<String, String> getErreurs() {
+            return erreurs;
+        }
+}
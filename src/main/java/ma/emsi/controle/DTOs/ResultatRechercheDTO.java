@@ -0,0 +1,91 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+
+/**
+ * Campagne trouvée par une recherche, avec les informations utilisées pour son classement.
+ */
+public class ResultatRechercheDTO {
+        /**
+         * Identifiant de la campagne
+         */
+        private final Long id;
+
+        /**
+         * Nom de la campagne
+         */
+        private final String nom;
+
+        /**
+         * Montant objectif de la campagne
+         */
+        private final Montant objectifMontant;
+
+        /**
+         * Montant collecté par la campagne
+         */
+        private final Montant montantCollecte;
+
+        /**
+         * Part de l'objectif atteinte (1.0 lorsque l'objectif est atteint)
+         */
+        private final double progression;
+
+        /**
+         * true si la campagne accepte des dons aujourd'hui (active et non financée)
+         */
+        private final boolean active;
+
+        /**
+         * Statut de collecte de la campagne
+         */
+        private final StatutCampagne statut;
+
+        /**
+         * @param id Identifiant de la campagne
+         * @param nom Nom de la campagne
+         * @param objectifMontant Montant objectif
+         * @param montantCollecte Montant collecté
+         * @param progression Part de l'objectif atteinte
+         * @param active true si la campagne accepte des dons aujourd'hui
+         * @param statut Statut de collecte
+         */
+        public ResultatRechercheDTO(Long id, String nom, Montant objectifMontant, Montant montantCollecte,
+                                    double progression, boolean active, StatutCampagne statut) {
+            this.id = id;
+            this.nom = nom;
+            this.objectifMontant = objectifMontant;
+            this.montantCollecte = montantCollecte;
+            this.progression = progression;
+            this.active = active;
+            this.statut = statut;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public String getNom() {
+            return nom;
+        }
+
+        public Montant getObjectifMontant() {
+            return objectifMontant;
+        }
+
+        public Montant getMontantCollecte() {
+            return montantCollecte;
+        }
+
+        public double getProgression() {
+            return progression;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public StatutCampagne getStatut() {
+            return statut;
+        }
+}
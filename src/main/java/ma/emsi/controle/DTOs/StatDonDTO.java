@@ -0,0 +1,47 @@
+package ma.emsi.controle.DTOs;
+import ma.emsi.controle.entities.Montant;
+
+import java.time.LocalDateTime;
+
+/**
+ * Statistiques des dons d'une campagne sur un intervalle de temps.
+ */
+public class StatDonDTO {
+        /**
+         * Début de l'intervalle
+         */
+        private final LocalDateTime debut;
+
+        /**
+         * Nombre de dons reçus sur l'intervalle
+         */
+        private final long nombreDons;
+
+        /**
+         * Somme des montants reçus sur l'intervalle
+         */
+        private final Montant montantTotal;
+
+        /**
+         * @param debut Début de l'intervalle
+         * @param nombreDons Nombre de dons
+         * @param montantTotal Somme des montants
+         */
+        public StatDonDTO(LocalDateTime debut, long nombreDons, Montant montantTotal) {
+            this.debut = debut;
+            this.nombreDons = nombreDons;
+            this.montantTotal = montantTotal;
+        }
+
+        public LocalDateTime getDebut() {
+            return debut;
+        }
+
+        public long getNombreDons() {
+            return nombreDons;
+        }
+
+        public Montant getMontantTotal() {
+            return montantTotal;
+        }
+}
@@ -0,0 +1,59 @@
+package ma.emsi.controle.DTOs;
+import java.util.Map;
+
+/**
+ * État d'un don soumis en écriture différée, identifié par son numéro de suivi.
+ */
+public class SuiviDonDTO {
+        /**
+         * Statut possible d'un don différé
+         */
+        public enum Statut {
+            EN_ATTENTE,
+            ENREGISTRE,
+            REJETE
+        }
+
+        /**
+         * Numéro de suivi attribué à la soumission
+         */
+        private final String suivi;
+
+        /**
+         * Statut du don
+         */
+        private final Statut statut;
+
+        /**
+         * Don enregistré, renseigné uniquement si le statut est ENREGISTRE
+         */
+        private final DonDTO don;
+
+        /**
+         * Erreurs par champ, renseignées uniquement si le statut est REJETE
+         */
+        private final Map<String, String> erreurs;
+
+        public SuiviDonDTO(String suivi, Statut statut, DonDTO don, Map<String, String> erreurs) {
+            this.suivi = suivi;
+            this.statut = statut;
+            this.don = don;
+            this.erreurs = erreurs;
+        }
+
+        public String getSuivi() {
+            return suivi;
+        }
+
+        public Statut getStatut() {
+            return statut;
+        }
+
+        public DonDTO getDon() {
+            return don;
+        }
+
+        public Map<String, String> getErreurs() {
+            return erreurs;
+        }
+}
@@ -0,0 +1,102 @@
+package ma.emsi.controle.config;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.MissingCacheStrategy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Cache de second niveau d'Hibernate : entités Campagne et résultats de la requête des campagnes actives,
+ * conservés dans des caches Caffeine locaux (JCache) bornés en nombre d'entrées et en durée de vie.
+ * <p>
+ * Chaque région est déclarée ici ; Hibernate refuse de démarrer si une région qu'il utilise n'y figure pas.
+ * Les statistiques des régions (succès, échecs, évictions) sont publiées par MetriquesConfig.
+ */
+@Configuration
+public class CacheConfig {
+
+        /**
+         * Région des entités Campagne
+         */
+        public static final String REGION_CAMPAGNES = "campagne";
+
+        /**
+         * Région des résultats de la requête des campagnes actives
+         */
+        public static final String REGION_CAMPAGNES_ACTIVES = "campagnes-actives";
+
+        /**
+         * Région par défaut des résultats de requêtes, créée par Hibernate avec le cache de requêtes
+         */
+        private static final String REGION_REQUETES = "default-query-results-region";
+
+        /**
+         * Dates de dernière écriture de chaque table, qui invalident les résultats de requêtes en cache
+         */
+        private static final String REGION_HORODATAGES = "default-update-timestamps-region";
+
+        /**
+         * Régions dont les statistiques sont publiées
+         */
+        public static final List<String> REGIONS = List.of(REGION_CAMPAGNES, REGION_CAMPAGNES_ACTIVES);
+
+        /**
+         * Crée les caches des régions Hibernate.
+         *
+         * @param campagnesMax Nombre maximal de campagnes en cache
+         * @param requetesMax Nombre maximal de résultats de requêtes en cache
+         * @param duree Durée de vie d'une entrée après son écriture
+         * @return Le gestionnaire des caches, fermé avec le contexte Spring
+         */
+        @Bean(destroyMethod = "close")
+        public CacheManager cacheManagerHibernate(@Value("${campagnes.cache.campagnes-max:10000}") long campagnesMax,
+                                                  @Value("${campagnes.cache.requetes-max:100}") long requetesMax,
+                                                  @Value("${campagnes.cache.duree:PT10M}") Duration duree) {
+            // URI propre à ce contexte : le fournisseur partage un gestionnaire par URI dans toute la JVM
+            CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                    .getCacheManager(URI.create("hibernate-" + UUID.randomUUID()), CacheConfig.class.getClassLoader());
+            cacheManager.createCache(REGION_CAMPAGNES, configuration(OptionalLong.of(campagnesMax), duree));
+            cacheManager.createCache(REGION_CAMPAGNES_ACTIVES, configuration(OptionalLong.of(requetesMax), duree));
+            cacheManager.createCache(REGION_REQUETES, configuration(OptionalLong.of(requetesMax), duree));
+            // Un horodatage évincé ou expiré rendrait valides des résultats périmés : cette région n'est pas bornée
+            cacheManager.createCache(REGION_HORODATAGES, configuration(OptionalLong.empty(), null));
+            return cacheManager;
+        }
+
+        /**
+         * Fournit le gestionnaire des caches à Hibernate.
+         */
+        @Bean
+        public HibernatePropertiesCustomizer cacheHibernate(CacheManager cacheManagerHibernate) {
+            return proprietes -> {
+                proprietes.put(ConfigSettings.CACHE_MANAGER, cacheManagerHibernate);
+                proprietes.put(ConfigSettings.MISSING_CACHE_STRATEGY, MissingCacheStrategy.FAIL.getExternalRepresentation());
+            };
+        }
+
+        /**
+         * Les entrées sont conservées par référence : Hibernate met en cache des états désassemblés qu'il ne modifie pas,
+         * une copie à chaque lecture et écriture serait inutile.
+         */
+        private static CaffeineConfiguration<Object, Object> configuration(OptionalLong tailleMax, Duration duree) {
+            CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+            configuration.setStoreByValue(false);
+            configuration.setStatisticsEnabled(true);
+            configuration.setMaximumSize(tailleMax);
+            if (duree != null) {
+                configuration.setExpireAfterWrite(OptionalLong.of(duree.toNanos()));
+            }
+            return configuration;
+        }
+}
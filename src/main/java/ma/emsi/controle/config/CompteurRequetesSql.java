@@ -0,0 +1,66 @@
+package ma.emsi.controle.config;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * Compte les requêtes SQL émises par Hibernate pendant le traitement d'une requête HTTP
+ * et publie leur nombre par endpoint (résumé http.server.requests.sql, étiquettes method et uri).
+ * <p>
+ * Le compteur est propre au thread de la requête : les requêtes SQL émises par un autre thread
+ * (écrivains de l'écriture différée, exports en flux, tâches planifiées) ne sont pas attribuées à un endpoint.
+ */
+public class CompteurRequetesSql implements StatementInspector, HandlerInterceptor {
+
+        /**
+         * Nombre de requêtes SQL de la requête HTTP en cours, null en dehors d'une requête HTTP
+         */
+        private static final ThreadLocal<int[]> COMPTEUR = new ThreadLocal<>();
+
+        /**
+         * Registre des métriques
+         */
+        private final MeterRegistry meterRegistry;
+
+        /**
+         * @param meterRegistry Registre des métriques
+         */
+        public CompteurRequetesSql(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            int[] compteur = COMPTEUR.get();
+            if (compteur != null) {
+                compteur[0]++;
+            }
+            return sql;
+        }
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            COMPTEUR.set(new int[1]);
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+            int[] compteur = COMPTEUR.get();
+            COMPTEUR.remove();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (compteur == null || uri == null) {
+                return;
+            }
+            DistributionSummary.builder("http.server.requests.sql")
+                    .description("Requêtes SQL émises par requête HTTP")
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri.toString())
+                    .register(meterRegistry)
+                    .record(compteur[0]);
+        }
+}
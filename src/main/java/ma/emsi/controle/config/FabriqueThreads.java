@@ -0,0 +1,58 @@
+package ma.emsi.controle.config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Fabrique des threads des exécuteurs propres à l'application (écriture différée des dons...).
+ * Suit le même interrupteur que Tomcat et les exécuteurs Spring : avec spring.threads.virtual.enabled=true
+ * sur Java 21 ou plus, les threads créés sont des threads virtuels ; sinon des threads de plateforme.
+ */
+@Component
+public class FabriqueThreads {
+
+        private static final Logger log = LoggerFactory.getLogger(FabriqueThreads.class);
+
+        /**
+         * true si les threads virtuels sont activés et disponibles
+         */
+        private final boolean virtuels;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param environment Environnement Spring, pour lire spring.threads.virtual.enabled
+         */
+        @Autowired
+        public FabriqueThreads(Environment environment) {
+            this.virtuels = Threading.VIRTUAL.isActive(environment);
+            log.info("Mode d'exécution : threads {}", virtuels ? "virtuels" : "de plateforme");
+        }
+
+        /**
+         * Crée une fabrique de threads nommés avec le préfixe donné.
+         *
+         * @param prefixe Préfixe des noms de threads
+         * @return Une fabrique de threads virtuels ou de plateforme selon la configuration
+         */
+        public ThreadFactory creer(String prefixe) {
+            if (virtuels) {
+                return new VirtualThreadTaskExecutor(prefixe).getVirtualThreadFactory();
+            }
+            return new CustomizableThreadFactory(prefixe);
+        }
+
+        /**
+         * @return true si les threads virtuels sont utilisés
+         */
+        public boolean isVirtuels() {
+            return virtuels;
+        }
+}
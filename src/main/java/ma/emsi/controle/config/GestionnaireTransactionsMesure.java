@@ -0,0 +1,80 @@
+package ma.emsi.controle.config;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gestionnaire de transactions JPA qui mesure la durée de chaque transaction physique, de son ouverture
+ * à sa libération (timer transactions, étiquettes lecture_seule et issue).
+ * Les transactions imbriquées dans une transaction existante ne sont pas mesurées séparément.
+ */
+public class GestionnaireTransactionsMesure extends JpaTransactionManager {
+
+        /**
+         * Registre des métriques
+         */
+        private final MeterRegistry meterRegistry;
+
+        /**
+         * Mesures en cours, par objet de transaction
+         */
+        private final Map<Object, Mesure> enCours = new ConcurrentHashMap<>();
+
+        /**
+         * @param meterRegistry Registre des métriques
+         */
+        public GestionnaireTransactionsMesure(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            super.doBegin(transaction, definition);
+            enCours.put(transaction, new Mesure(Timer.start(meterRegistry), definition.isReadOnly()));
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            super.doCommit(status);
+            Mesure mesure = enCours.get(status.getTransaction());
+            if (mesure != null) {
+                mesure.issue = "commit";
+            }
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            try {
+                super.doCleanupAfterCompletion(transaction);
+            } finally {
+                Mesure mesure = enCours.remove(transaction);
+                if (mesure != null) {
+                    mesure.echantillon.stop(Timer.builder("transactions")
+                            .description("Durée des transactions JPA")
+                            .tag("lecture_seule", Boolean.toString(mesure.lectureSeule))
+                            .tag("issue", mesure.issue)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry));
+                }
+            }
+        }
+
+        /**
+         * Mesure d'une transaction en cours.
+         */
+        private static final class Mesure {
+            private final Timer.Sample echantillon;
+            private final boolean lectureSeule;
+            private volatile String issue = "rollback";
+
+            private Mesure(Timer.Sample echantillon, boolean lectureSeule) {
+                this.echantillon = echantillon;
+                this.lectureSeule = lectureSeule;
+            }
+        }
+}
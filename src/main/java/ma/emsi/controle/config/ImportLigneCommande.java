@@ -0,0 +1,73 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.service.ImportDonnees;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Import en masse lancé en ligne de commande :
+ * <pre>
+ * java -jar Controle.jar --import.fichier=dons.csv [--import.type=dons|campagnes] [--import.format=csv|ndjson] [--import.quitter=false]
+ * </pre>
+ * Le format est déduit de l'extension du fichier (.ndjson ou .jsonl pour NDJSON) s'il n'est pas précisé.
+ * L'import s'exécute une fois l'application prête, les index et totaux en mémoire étant alors chargés ; l'application
+ * s'arrête ensuite, sauf avec --import.quitter=false, avec le code 0 si toutes les lignes ont été importées,
+ * 2 si des lignes ont été rejetées et 1 si l'import a échoué.
+ */
+@Component
+public class ImportLigneCommande {
+
+        private static final Logger log = LoggerFactory.getLogger(ImportLigneCommande.class);
+
+        private final ApplicationArguments arguments;
+        private final ImportDonnees importDonnees;
+        private final ConfigurableApplicationContext contexte;
+
+        @Autowired
+        public ImportLigneCommande(ApplicationArguments arguments, ImportDonnees importDonnees,
+                                   ConfigurableApplicationContext contexte) {
+            this.arguments = arguments;
+            this.importDonnees = importDonnees;
+            this.contexte = contexte;
+        }
+
+        @EventListener
+        public void onDisponibilite(AvailabilityChangeEvent<ReadinessState> event) {
+            if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC || !arguments.containsOption("import.fichier")) {
+                return;
+            }
+            int code;
+            try {
+                Path fichier = Path.of(option("import.fichier", ""));
+                ImportDonnees.Type type = ImportDonnees.Type.lire(option("import.type", "dons"));
+                String nom = fichier.getFileName().toString().toLowerCase(Locale.ROOT);
+                ImportDonnees.Format format = ImportDonnees.Format.lire(option("import.format",
+                        nom.endsWith(".ndjson") || nom.endsWith(".jsonl") ? "ndjson" : "csv"));
+                ImportDonnees.Progression progression = importDonnees.importer(fichier, type, format);
+                code = progression.statut() != ImportDonnees.Statut.TERMINE ? 1 : progression.rejetees() > 0 ? 2 : 0;
+            } catch (RuntimeException e) {
+                log.error("Import impossible : {}", e.getMessage());
+                code = 1;
+            }
+            if (Boolean.parseBoolean(option("import.quitter", "true"))) {
+                int codeSortie = code;
+                System.exit(SpringApplication.exit(contexte, () -> codeSortie));
+            }
+        }
+
+        private String option(String nom, String defaut) {
+            List<String> valeurs = arguments.getOptionValues(nom);
+            return valeurs == null || valeurs.isEmpty() ? defaut : valeurs.get(valeurs.size() - 1);
+        }
+}
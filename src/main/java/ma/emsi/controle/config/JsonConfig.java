@@ -0,0 +1,253 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.DTOs.CampagneActiveDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Montant;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Sérialisation JSON des réponses les plus fréquentes.
+ * <p>
+ * DonDTO et CampagneActiveDTO sont écrits champ par champ sur le JsonGenerator, sans l'introspection
+ * des accesseurs ni les appels réflexifs de la sérialisation générique des beans. Le JSON produit est
+ * identique à celui de la sérialisation générique de Spring Boot : mêmes noms et ordre des champs,
+ * valeurs nulles écrites, dates au format ISO. Le module est enregistré dans l'ObjectMapper de Spring Boot.
+ * <p>
+ * Les montants (Montant) sont écrits comme des nombres à 2 décimales ("montant":12.50) et lus depuis un nombre
+ * ou une chaîne sans arrondi : un montant à plus de 2 décimales significatives est refusé (réponse 400).
+ */
+@Configuration
+public class JsonConfig {
+
+        /**
+         * Module déclarant les sérialiseurs écrits à la main.
+         */
+        @Bean
+        public SimpleModule moduleSerialiseurs() {
+            return module();
+        }
+
+        /**
+         * Module déclarant la lecture et l'écriture des montants.
+         */
+        @Bean
+        public SimpleModule moduleMontants() {
+            return moduleMontant();
+        }
+
+        /**
+         * Crée le module des sérialiseurs écrits à la main, pour un ObjectMapper construit hors de Spring.
+         *
+         * @return Le module
+         */
+        public static SimpleModule module() {
+            SimpleModule module = new SimpleModule("serialiseurs-dons");
+            module.addSerializer(DonDTO.class, new SerialiseurDon());
+            module.addSerializer(CampagneActiveDTO.class, new SerialiseurCampagneActive());
+            return module;
+        }
+
+        /**
+         * Crée le module des montants, pour un ObjectMapper construit hors de Spring.
+         *
+         * @return Le module
+         */
+        public static SimpleModule moduleMontant() {
+            SimpleModule module = new SimpleModule("montants");
+            module.addSerializer(Montant.class, new SerialiseurMontant());
+            module.addDeserializer(Montant.class, new DeserialiseurMontant());
+            return module;
+        }
+
+        /**
+         * Écrit une date comme le LocalDateTimeSerializer de Jackson (ISO_LOCAL_DATE_TIME par défaut).
+         * Les années de 0 à 9999 sont formatées directement dans un tableau de caractères,
+         * sans les objets intermédiaires de DateTimeFormatter.
+         */
+        private static void ecrireDate(JsonGenerator generateur, LocalDateTime date, SerializerProvider provider) throws IOException {
+            if (date == null) {
+                generateur.writeNull();
+            } else if (provider.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)) {
+                provider.defaultSerializeValue(date, generateur);
+            } else if (date.getYear() < 0 || date.getYear() > 9999) {
+                generateur.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(date));
+            } else {
+                char[] texte = new char[29];
+                ecrireChiffres(texte, 0, date.getYear(), 4);
+                texte[4] = '-';
+                ecrireChiffres(texte, 5, date.getMonthValue(), 2);
+                texte[7] = '-';
+                ecrireChiffres(texte, 8, date.getDayOfMonth(), 2);
+                texte[10] = 'T';
+                ecrireChiffres(texte, 11, date.getHour(), 2);
+                texte[13] = ':';
+                ecrireChiffres(texte, 14, date.getMinute(), 2);
+                texte[16] = ':';
+                ecrireChiffres(texte, 17, date.getSecond(), 2);
+                int longueur = 19;
+                int nanos = date.getNano();
+                if (nanos != 0) {
+                    // Fraction de seconde sans ses zéros finaux, comme ISO_LOCAL_TIME
+                    texte[19] = '.';
+                    ecrireChiffres(texte, 20, nanos, 9);
+                    longueur = 29;
+                    while (texte[longueur - 1] == '0') {
+                        longueur--;
+                    }
+                }
+                generateur.writeString(texte, 0, longueur);
+            }
+        }
+
+        private static void ecrireChiffres(char[] texte, int position, int valeur, int chiffres) {
+            for (int i = position + chiffres - 1; i >= position; i--) {
+                texte[i] = (char) ('0' + valeur % 10);
+                valeur /= 10;
+            }
+        }
+
+        /**
+         * Écrit un montant comme un nombre à 2 décimales, formaté directement dans un tableau de caractères.
+         */
+        private static void ecrireMontant(JsonGenerator generateur, Montant montant) throws IOException {
+            if (montant == null) {
+                generateur.writeNull();
+                return;
+            }
+            long centimes = montant.centimes();
+            if (centimes == Long.MIN_VALUE) {
+                generateur.writeNumber(montant.toBigDecimal());
+                return;
+            }
+            char[] texte = new char[21];
+            long absolu = Math.abs(centimes);
+            int position = texte.length;
+            texte[--position] = (char) ('0' + absolu % 10);
+            texte[--position] = (char) ('0' + absolu / 10 % 10);
+            texte[--position] = '.';
+            long euros = absolu / 100;
+            do {
+                texte[--position] = (char) ('0' + euros % 10);
+                euros /= 10;
+            } while (euros != 0);
+            if (centimes < 0) {
+                texte[--position] = '-';
+            }
+            generateur.writeNumber(texte, position, texte.length - position);
+        }
+
+        private static void ecrireLong(JsonGenerator generateur, Long valeur) throws IOException {
+            if (valeur == null) {
+                generateur.writeNull();
+            } else {
+                generateur.writeNumber(valeur);
+            }
+        }
+
+        /**
+         * Sérialiseur de DonDTO.
+         */
+        static final class SerialiseurDon extends StdSerializer<DonDTO> {
+
+            SerialiseurDon() {
+                super(DonDTO.class);
+            }
+
+            @Override
+            public void serialize(DonDTO don, JsonGenerator generateur, SerializerProvider provider) throws IOException {
+                generateur.writeStartObject(don);
+                generateur.writeFieldName("id");
+                ecrireLong(generateur, don.getId());
+                generateur.writeStringField("nomCampagne", don.getNomCampagne());
+                generateur.writeStringField("nomDonateur", don.getNomDonateur());
+                generateur.writeFieldName("montant");
+                ecrireMontant(generateur, don.getMontant());
+                generateur.writeFieldName("date");
+                ecrireDate(generateur, don.getDate(), provider);
+                generateur.writeEndObject();
+            }
+        }
+
+        /**
+         * Sérialiseur de CampagneActiveDTO.
+         */
+        static final class SerialiseurCampagneActive extends StdSerializer<CampagneActiveDTO> {
+
+            SerialiseurCampagneActive() {
+                super(CampagneActiveDTO.class);
+            }
+
+            @Override
+            public void serialize(CampagneActiveDTO campagne, JsonGenerator generateur, SerializerProvider provider) throws IOException {
+                generateur.writeStartObject(campagne);
+                generateur.writeFieldName("id");
+                ecrireLong(generateur, campagne.id());
+                generateur.writeStringField("nom", campagne.nom());
+                generateur.writeFieldName("objectifMontant");
+                ecrireMontant(generateur, campagne.objectifMontant());
+                generateur.writeFieldName("montantCollecte");
+                ecrireMontant(generateur, campagne.montantCollecte());
+                generateur.writeNumberField("nombreDons", campagne.nombreDons());
+                generateur.writeFieldName("dernierDon");
+                ecrireDate(generateur, campagne.dernierDon(), provider);
+                generateur.writeEndObject();
+            }
+        }
+
+        /**
+         * Sérialiseur de Montant.
+         */
+        static final class SerialiseurMontant extends StdSerializer<Montant> {
+
+            SerialiseurMontant() {
+                super(Montant.class);
+            }
+
+            @Override
+            public void serialize(Montant montant, JsonGenerator generateur, SerializerProvider provider) throws IOException {
+                ecrireMontant(generateur, montant);
+            }
+        }
+
+        /**
+         * Désérialiseur de Montant : accepte un nombre ou une chaîne, sans arrondi.
+         */
+        static final class DeserialiseurMontant extends StdDeserializer<Montant> {
+
+            DeserialiseurMontant() {
+                super(Montant.class);
+            }
+
+            @Override
+            public Montant deserialize(JsonParser parseur, DeserializationContext contexte) throws IOException {
+                JsonToken jeton = parseur.currentToken();
+                if (jeton != JsonToken.VALUE_NUMBER_INT && jeton != JsonToken.VALUE_NUMBER_FLOAT && jeton != JsonToken.VALUE_STRING) {
+                    return (Montant) contexte.handleUnexpectedToken(Montant.class, parseur);
+                }
+                String texte = parseur.getText().trim();
+                try {
+                    if (jeton == JsonToken.VALUE_NUMBER_INT && parseur.getNumberType() != JsonParser.NumberType.BIG_INTEGER) {
+                        return Montant.deCentimes(Math.multiplyExact(parseur.getLongValue(), 100L));
+                    }
+                    return Montant.parse(texte);
+                } catch (ArithmeticException | NumberFormatException e) {
+                    throw InvalidFormatException.from(parseur,
+                            "Montant invalide (au plus 2 décimales) : " + texte, texte, Montant.class);
+                }
+            }
+        }
+}
@@ -0,0 +1,174 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.service.DiffusionDons;
+import ma.emsi.controle.service.IndexCampagnes;
+import ma.emsi.controle.service.ServiceCampagne;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.cache.CacheManager;
+import java.util.function.ToLongFunction;
+
+/**
+ * Configuration des métriques applicatives, exposées au format Prometheus sur /actuator/prometheus.
+ * <p>
+ * S'ajoutent aux métriques fournies par Spring Boot (latence http.server.requests par endpoint,
+ * attente de connexion hikaricp.connections.acquire) : les timers @Timed des services, la durée des transactions,
+ * le nombre de requêtes SQL par requête HTTP, l'état du cache et de l'index des campagnes
+ * et les statistiques des régions du cache de second niveau d'Hibernate.
+ */
+@Configuration
+public class MetriquesConfig {
+
+        /**
+         * Active l'annotation @Timed sur les méthodes des services.
+         */
+        @Bean
+        public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+            return new TimedAspect(meterRegistry);
+        }
+
+        /**
+         * Compteur de requêtes SQL par requête HTTP.
+         */
+        @Bean
+        public CompteurRequetesSql compteurRequetesSql(MeterRegistry meterRegistry) {
+            return new CompteurRequetesSql(meterRegistry);
+        }
+
+        /**
+         * Branche le compteur de requêtes SQL sur Hibernate.
+         */
+        @Bean
+        public HibernatePropertiesCustomizer compteurRequetesSqlHibernate(CompteurRequetesSql compteurRequetesSql) {
+            return proprietes -> proprietes.put(AvailableSettings.STATEMENT_INSPECTOR, compteurRequetesSql);
+        }
+
+        /**
+         * Branche le compteur de requêtes SQL sur les requêtes HTTP.
+         */
+        @Bean
+        public WebMvcConfigurer compteurRequetesSqlWeb(CompteurRequetesSql compteurRequetesSql) {
+            return new WebMvcConfigurer() {
+                @Override
+                public void addInterceptors(InterceptorRegistry registry) {
+                    registry.addInterceptor(compteurRequetesSql);
+                }
+            };
+        }
+
+        /**
+         * Gestionnaire de transactions JPA mesurant la durée des transactions ; remplace celui de Spring Boot.
+         */
+        @Bean
+        public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory, MeterRegistry meterRegistry,
+                                                             ObjectProvider<TransactionManagerCustomizers> customizers) {
+            GestionnaireTransactionsMesure transactionManager = new GestionnaireTransactionsMesure(meterRegistry);
+            transactionManager.setEntityManagerFactory(entityManagerFactory);
+            customizers.ifAvailable(c -> c.customize(transactionManager));
+            return transactionManager;
+        }
+
+        /**
+         * Borne le nombre de campagnes distinguées par les métriques de dons : au-delà, les nouvelles campagnes
+         * ne sont plus publiées, pour ne pas saturer la base de séries temporelles.
+         */
+        @Bean
+        public static MeterFilter limiteCampagnesMetriquesDons(@Value("${dons.metriques.campagnes-max:1000}") int campagnesMax) {
+            return MeterFilter.maximumAllowableTags("dons", "campagne", campagnesMax, MeterFilter.deny());
+        }
+
+        /**
+         * Publie les statistiques du cache des campagnes actives et de l'index des campagnes.
+         */
+        @Bean
+        public MeterBinder metriquesCampagnes(ServiceCampagne serviceCampagne, IndexCampagnes indexCampagnes) {
+            return registry -> {
+                FunctionCounter.builder("campagnes.actives.cache.succes", serviceCampagne, s -> s.getStatistiquesCache().succes())
+                        .register(registry);
+                FunctionCounter.builder("campagnes.actives.cache.echecs", serviceCampagne, s -> s.getStatistiquesCache().echecs())
+                        .register(registry);
+                FunctionCounter.builder("campagnes.actives.cache.rechargements", serviceCampagne, s -> s.getStatistiquesCache().rechargements())
+                        .register(registry);
+                Gauge.builder("campagnes.actives.cache.taille", serviceCampagne, s -> s.getStatistiquesCache().taille())
+                        .register(registry);
+                Gauge.builder("campagnes.index.taille", indexCampagnes, i -> i.getStatistiques().taille())
+                        .register(registry);
+                FunctionCounter.builder("campagnes.index.chargements", indexCampagnes, i -> i.getStatistiques().chargements())
+                        .register(registry);
+            };
+        }
+
+        /**
+         * Publie les statistiques de la diffusion en direct des dons.
+         */
+        @Bean
+        public MeterBinder metriquesDiffusion(DiffusionDons diffusionDons) {
+            return registry -> {
+                Gauge.builder("campagnes.live.abonnes", diffusionDons, d -> d.getStatistiques().abonnes())
+                        .register(registry);
+                FunctionCounter.builder("campagnes.live.messages", diffusionDons, d -> d.getStatistiques().messagesEnvoyes())
+                        .register(registry);
+                FunctionCounter.builder("campagnes.live.consommateurs.lents", diffusionDons, d -> d.getStatistiques().consommateursLents())
+                        .register(registry);
+            };
+        }
+
+        /**
+         * Publie, pour chaque région du cache de second niveau, les succès, échecs et taux de succès vus par Hibernate
+         * (un résultat de requête invalidé par une écriture sur sa table est un échec) et les évictions de Caffeine
+         * (cache.evictions, étiquette cache).
+         */
+        @Bean
+        public MeterBinder metriquesCacheHibernate(EntityManagerFactory entityManagerFactory, CacheManager cacheManagerHibernate) {
+            Statistics statistiques = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+            return registry -> {
+                for (String region : CacheConfig.REGIONS) {
+                    ToLongFunction<Statistics> succes = s -> compter(s, region, CacheRegionStatistics::getHitCount);
+                    ToLongFunction<Statistics> echecs = s -> compter(s, region, CacheRegionStatistics::getMissCount);
+                    FunctionCounter.builder("hibernate.cache.succes", statistiques, succes::applyAsLong)
+                            .tag("region", region)
+                            .register(registry);
+                    FunctionCounter.builder("hibernate.cache.echecs", statistiques, echecs::applyAsLong)
+                            .tag("region", region)
+                            .register(registry);
+                    Gauge.builder("hibernate.cache.ratio", statistiques, s -> {
+                                long lectures = succes.applyAsLong(s) + echecs.applyAsLong(s);
+                                return lectures == 0 ? Double.NaN : (double) succes.applyAsLong(s) / lectures;
+                            })
+                            .tag("region", region)
+                            .register(registry);
+                    new JCacheMetrics<>(cacheManagerHibernate.getCache(region), Tags.empty()).bindTo(registry);
+                }
+            };
+        }
+
+        /**
+         * Les statistiques d'une région de requêtes n'existent qu'après la première exécution d'une requête qui l'utilise.
+         */
+        private static long compter(Statistics statistiques, String region, ToLongFunction<CacheRegionStatistics> compteur) {
+            CacheRegionStatistics statistiquesRegion = CacheConfig.REGION_CAMPAGNES.equals(region)
+                    ? statistiques.getDomainDataRegionStatistics(region)
+                    : statistiques.getQueryRegionStatistics(region);
+            return statistiquesRegion == null ? 0 : compteur.applyAsLong(statistiquesRegion);
+        }
+}
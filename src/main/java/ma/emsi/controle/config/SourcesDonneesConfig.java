@@ -0,0 +1,66 @@
+package ma.emsi.controle.config;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Sources de données : les transactions en lecture seule (@Transactional(readOnly = true), dont les méthodes
+ * de lecture des repositories) sont servies par le pool de la réplique, les autres par celui de la base principale.
+ * Les deux pools sont dimensionnés séparément : un pic de lectures ne prive plus l'enregistrement des dons de connexions.
+ * <p>
+ * Sans URL propre (base.replique.jdbc-url), la réplique est la base principale, lue par son propre pool.
+ * Une réplique asynchrone peut être en retard sur la base principale : les lectures qui doivent voir les dernières
+ * écritures (reconstruction des index en mémoire, relecture d'un don rejoué) s'exécutent dans une transaction
+ * en écriture, servie par la base principale.
+ */
+@Configuration
+public class SourcesDonneesConfig {
+
+        /**
+         * Pool de la base principale, configuré par spring.datasource.* et spring.datasource.hikari.*
+         *
+         * @param proprietes Propriétés spring.datasource.*
+         * @return Le pool de la base principale
+         */
+        @Bean
+        @ConfigurationProperties("spring.datasource.hikari")
+        public HikariDataSource sourcePrincipale(DataSourceProperties proprietes) {
+            return proprietes.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        }
+
+        /**
+         * Pool de la réplique, configuré par base.replique.* (propriétés de HikariCP : jdbc-url, maximum-pool-size...).
+         * L'URL et les identifiants de la base principale s'appliquent par défaut.
+         *
+         * @param proprietes Propriétés spring.datasource.*
+         * @return Le pool de la réplique
+         */
+        @Bean
+        @ConfigurationProperties("base.replique")
+        public HikariDataSource sourceReplique(DataSourceProperties proprietes) {
+            return proprietes.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        }
+
+        /**
+         * Source de données de l'application (JPA, Flyway, JdbcTemplate).
+         * La connexion physique n'est obtenue qu'à la première instruction, une fois connu le caractère
+         * lecture seule de la transaction, puis prise dans le pool correspondant.
+         *
+         * @param sourcePrincipale Pool de la base principale
+         * @param sourceReplique Pool de la réplique
+         * @return La source de données routée
+         */
+        @Bean
+        @Primary
+        public DataSource dataSource(DataSource sourcePrincipale, DataSource sourceReplique) {
+            LazyConnectionDataSourceProxy source = new LazyConnectionDataSourceProxy(sourcePrincipale);
+            source.setReadOnlyDataSource(sourceReplique);
+            return source;
+        }
+}
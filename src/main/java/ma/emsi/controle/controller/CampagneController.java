@@ -1,15 +1,38 @@
 package ma.emsi.controle.controller;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
 import ma.emsi.controle.DTOs.DonDTO;
-import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.DTOs.DonateurClassementDTO;
+import ma.emsi.controle.DTOs.PageDonsDTO;
+import ma.emsi.controle.DTOs.ResultatRechercheDTO;
+import ma.emsi.controle.DTOs.ResultatDonDTO;
+import ma.emsi.controle.DTOs.StatDonDTO;
+import ma.emsi.controle.entities.Granularite;
+import ma.emsi.controle.service.ClassementsDonateurs;
+import ma.emsi.controle.service.DiffusionDons;
+import ma.emsi.controle.service.ExportDons;
+import ma.emsi.controle.service.RechercheCampagnes;
 import ma.emsi.controle.service.ServiceCampagne;
+import ma.emsi.controle.service.ServiceConsultationDons;
 import ma.emsi.controle.service.ServiceDon;
+import ma.emsi.controle.service.ServiceDonIdempotent;
+import ma.emsi.controle.service.ServiceLotDons;
+import ma.emsi.controle.service.ServiceStatistiquesDons;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Contrôleur REST qui expose les endpoints liés aux campagnes et aux dons.
@@ -28,40 +51,282 @@ public class CampagneController {
          */
         private final ServiceDon serviceDon;
 
+        /**
+         * Service d'enregistrement idempotent des dons
+         */
+        private final ServiceDonIdempotent serviceDonIdempotent;
+
+        /**
+         * Service gérant l'ingestion de dons par lots
+         */
+        private final ServiceLotDons serviceLotDons;
+
+        /**
+         * Service de consultation des dons
+         */
+        private final ServiceConsultationDons serviceConsultationDons;
+
+        /**
+         * Service d'export des dons
+         */
+        private final ExportDons exportDons;
+
+        /**
+         * Service des statistiques de dons pré-agrégées
+         */
+        private final ServiceStatistiquesDons serviceStatistiquesDons;
+
+        /**
+         * Recherche plein texte des campagnes
+         */
+        private final RechercheCampagnes rechercheCampagnes;
+
+        /**
+         * Classements des meilleurs donateurs par campagne
+         */
+        private final ClassementsDonateurs classementsDonateurs;
+
+        /**
+         * Diffusion en direct des dons
+         */
+        private final DiffusionDons diffusionDons;
+
         /**
          * Constructeur avec injection de dépendances via Spring
          *
          * @param serviceCampagne Service des campagnes
          * @param serviceDon Service des dons
+         * @param serviceDonIdempotent Service d'enregistrement idempotent des dons
+         * @param serviceLotDons Service d'ingestion de dons par lots
+         * @param serviceConsultationDons Service de consultation des dons
+         * @param exportDons Service d'export des dons
+         * @param serviceStatistiquesDons Service des statistiques de dons
+         * @param rechercheCampagnes Recherche plein texte des campagnes
+         * @param classementsDonateurs Classements des meilleurs donateurs
+         * @param diffusionDons Diffusion en direct des dons
          */
         @Autowired
-        public CampagneController(ServiceCampagne serviceCampagne, ServiceDon serviceDon) {
+        public CampagneController(ServiceCampagne serviceCampagne, ServiceDon serviceDon,
+                                  ServiceDonIdempotent serviceDonIdempotent, ServiceLotDons serviceLotDons,
+                                  ServiceConsultationDons serviceConsultationDons, ExportDons exportDons,
+                                  ServiceStatistiquesDons serviceStatistiquesDons,
+                                  RechercheCampagnes rechercheCampagnes,
+                                  ClassementsDonateurs classementsDonateurs,
+                                  DiffusionDons diffusionDons) {
             this.serviceCampagne = serviceCampagne;
             this.serviceDon = serviceDon;
+            this.serviceDonIdempotent = serviceDonIdempotent;
+            this.serviceLotDons = serviceLotDons;
+            this.serviceConsultationDons = serviceConsultationDons;
+            this.exportDons = exportDons;
+            this.serviceStatistiquesDons = serviceStatistiquesDons;
+            this.rechercheCampagnes = rechercheCampagnes;
+            this.classementsDonateurs = classementsDonateurs;
+            this.diffusionDons = diffusionDons;
         }
 
         /**
          * Endpoint pour récupérer toutes les campagnes actives.
+         * Chaque résumé est accompagné du montant collecté, du nombre de dons et de la date du dernier don.
+         * La liste est renvoyée déjà sérialisée (tableau de CampagneActiveDTO), depuis le cache du service.
          *
          * @return ResponseEntity contenant la liste des résumés des campagnes actives
          */
-        @GetMapping("/actives")
-        public ResponseEntity<List<CampagneResume>> getCampagnesActives() {
-            List<CampagneResume> campagnes = serviceCampagne.getCampagnesActives();
-            return new ResponseEntity<>(campagnes, HttpStatus.OK);
+        @GetMapping(value = "/actives", produces = MediaType.APPLICATION_JSON_VALUE)
+        public ResponseEntity<byte[]> getCampagnesActives() {
+            byte[] campagnes = serviceCampagne.getCampagnesActivesJson();
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(campagnes);
+        }
+
+        /**
+         * Endpoint pour suivre en direct toutes les campagnes (Server-Sent Events).
+         * Un événement « campagnes » regroupe, à chaque intervalle, les campagnes ayant reçu des dons.
+         *
+         * @return Le flux d'événements
+         */
+        @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        public SseEmitter suivreCampagnes() {
+            return diffusionDons.abonnerToutes();
+        }
+
+        /**
+         * Endpoint pour suivre en direct une campagne (Server-Sent Events).
+         * Un premier événement « campagne » donne les totaux actuels, les suivants les nouveaux dons et les totaux à jour.
+         *
+         * @param id ID de la campagne
+         * @return Le flux d'événements
+         */
+        @GetMapping(value = "/{id}/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+        public SseEmitter suivreCampagne(@PathVariable Long id) {
+            return diffusionDons.abonnerCampagne(id);
+        }
+
+        /**
+         * Endpoint pour rechercher des campagnes par les mots de leur nom, sans tenir compte des accents ni des pluriels.
+         * Le dernier mot est complété tant qu'il n'est pas suivi d'une espace, pour les suggestions au fil de la frappe.
+         *
+         * @param q Texte recherché
+         * @param limite Nombre maximal de résultats
+         * @return ResponseEntity contenant les campagnes trouvées, les campagnes actives et les plus avancées en premier
+         */
+        @GetMapping("/search")
+        public ResponseEntity<List<ResultatRechercheDTO>> rechercher(@RequestParam String q,
+                                                                     @RequestParam(defaultValue = "20") int limite) {
+            List<ResultatRechercheDTO> resultats = rechercheCampagnes.rechercher(q, limite);
+            return new ResponseEntity<>(resultats, HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour lister les dons d'une campagne, page par page, dans l'ordre chronologique.
+         * La page suivante s'obtient en renvoyant le curseur reçu ; un curseur reste valide même si
+         * de nouveaux dons sont enregistrés entre deux pages.
+         *
+         * @param id ID de la campagne
+         * @param curseur Curseur de la page suivante, absent pour la première page
+         * @param taille Nombre maximal de dons de la page
+         * @return ResponseEntity contenant la page de dons et le curseur de la page suivante
+         */
+        @GetMapping("/{id}/dons")
+        public ResponseEntity<PageDonsDTO> listerDons(@PathVariable Long id,
+                                                      @RequestParam(required = false) String curseur,
+                                                      @RequestParam(defaultValue = "50") int taille) {
+            PageDonsDTO page = serviceConsultationDons.listerDons(id, curseur, taille);
+            return new ResponseEntity<>(page, HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour exporter tous les dons d'une campagne au format NDJSON (un don par ligne).
+         * La réponse est écrite au fil de la lecture en base, sans charger la campagne en mémoire.
+         *
+         * @param id ID de la campagne
+         * @return ResponseEntity dont le corps est écrit en flux
+         */
+        @GetMapping(value = "/{id}/dons", produces = MediaType.APPLICATION_NDJSON_VALUE)
+        public ResponseEntity<StreamingResponseBody> exporterDons(@PathVariable Long id) {
+            // Vérifie l'existence de la campagne avant que la réponse ne commence (404 plutôt qu'un flux vide)
+            serviceConsultationDons.nomCampagne(id);
+            StreamingResponseBody corps = sortie -> serviceConsultationDons.exporterDons(id, sortie);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(corps);
+        }
+
+        /**
+         * Endpoint pour exporter les dons d'une campagne sur une période, en CSV ou en NDJSON, éventuellement compressé.
+         * La réponse est écrite au fil de la lecture en base à travers un tampon de taille fixe : sa taille n'est pas
+         * limitée par la mémoire du serveur.
+         *
+         * @param id ID de la campagne
+         * @param from Début de la période (inclus), optionnel
+         * @param to Fin de la période (exclue), optionnelle
+         * @param format Format d'export (csv ou ndjson)
+         * @param gzip true pour compresser la réponse (Content-Encoding: gzip)
+         * @return ResponseEntity dont le corps est écrit en flux, en pièce jointe
+         */
+        @GetMapping("/{id}/dons/export")
+        public ResponseEntity<StreamingResponseBody> exporterDonsPeriode(
+                @PathVariable Long id,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+                @RequestParam(defaultValue = "csv") String format,
+                @RequestParam(defaultValue = "false") boolean gzip) {
+            ExportDons.Format formatExport = switch (format.toLowerCase(Locale.ROOT)) {
+                case "csv" -> ExportDons.Format.CSV;
+                case "ndjson" -> ExportDons.Format.NDJSON;
+                default -> throw new IllegalStateException("Format d'export inconnu : " + format + " (csv ou ndjson)");
+            };
+            // Vérifie la campagne et la période avant que la réponse ne commence (404 ou 400 plutôt qu'un flux vide)
+            ExportDons.Export export = exportDons.preparer(id, from, to, formatExport);
+            boolean csv = formatExport == ExportDons.Format.CSV;
+            ResponseEntity.BodyBuilder reponse = ResponseEntity.ok()
+                    .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_NDJSON)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename("dons-campagne-" + id + (csv ? ".csv" : ".ndjson")).build().toString());
+            if (gzip) {
+                reponse.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            StreamingResponseBody corps = sortie -> exportDons.exporter(export, gzip, sortie);
+            return reponse.body(corps);
+        }
+
+        /**
+         * Endpoint pour récupérer les meilleurs donateurs d'une campagne (somme des dons par nom de donateur).
+         * Le classement est tenu en mémoire et mis à jour à chaque don, sans agrégation SQL par consultation.
+         *
+         * @param id ID de la campagne
+         * @param limite Nombre maximal de donateurs
+         * @return ResponseEntity contenant les donateurs, du plus généreux au moins généreux
+         */
+        @GetMapping("/{id}/top-donateurs")
+        public ResponseEntity<List<DonateurClassementDTO>> getMeilleursDonateurs(@PathVariable Long id,
+                                                                                 @RequestParam(defaultValue = "10") int limite) {
+            List<DonateurClassementDTO> donateurs = classementsDonateurs.getMeilleursDonateurs(id, limite);
+            return new ResponseEntity<>(donateurs, HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour consulter les dons d'une campagne par intervalle de temps (nombre et montant par minute, heure ou jour).
+         * Les statistiques sont lues depuis les agrégats pré-calculés, sans parcourir les dons.
+         *
+         * @param id ID de la campagne
+         * @param granularite Granularité des intervalles (MINUTE, HEURE ou JOUR)
+         * @param debut Début de la période (inclus), optionnel
+         * @param fin Fin de la période (exclue), optionnelle
+         * @return ResponseEntity contenant les intervalles ayant reçu au moins un don
+         */
+        @GetMapping("/{id}/stats")
+        public ResponseEntity<List<StatDonDTO>> getStatistiquesDons(
+                @PathVariable Long id,
+                @RequestParam(name = "granularity", defaultValue = "JOUR") Granularite granularite,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+            List<StatDonDTO> stats = serviceStatistiquesDons.consulter(id, granularite, debut, fin);
+            return new ResponseEntity<>(stats, HttpStatus.OK);
         }
 
         /**
          * Endpoint pour enregistrer un nouveau don pour une campagne spécifique.
          * Le paramètre @Valid garantit que les données du don passent les validations définies dans DonDTO.
+         * Avec un en-tête Idempotency-Key, une requête rejouée renvoie le don d'origine au lieu d'en créer un second.
          *
          * @param id ID de la campagne
+         * @param cleIdempotence Clé d'idempotence choisie par le client, optionnelle
          * @param donDTO Données du don à enregistrer
          * @return ResponseEntity contenant le DTO du don enregistré
          */
         @PostMapping("/{id}/dons")
-        public ResponseEntity<DonDTO> enregistrerDon(@PathVariable Long id, @Valid @RequestBody DonDTO donDTO) {
-            DonDTO savedDon = serviceDon.enregistrerDon(id, donDTO);
+        public ResponseEntity<DonDTO> enregistrerDon(@PathVariable Long id,
+                                                     @RequestHeader(name = "Idempotency-Key", required = false) String cleIdempotence,
+                                                     @Valid @RequestBody DonDTO donDTO) {
+            DonDTO savedDon = cleIdempotence == null
+                    ? serviceDon.enregistrerDon(id, donDTO)
+                    : serviceDonIdempotent.enregistrerDon(cleIdempotence, id, donDTO);
             return new ResponseEntity<>(savedDon, HttpStatus.CREATED);
         }
+
+        /**
+         * Endpoint pour enregistrer un lot de dons pour une campagne spécifique.
+         * La campagne n'est chargée qu'une fois et chaque don est validé individuellement :
+         * la réponse contient un résultat par don (enregistré ou rejeté avec ses erreurs).
+         *
+         * @param id ID de la campagne
+         * @param dons Dons à enregistrer
+         * @return ResponseEntity contenant les résultats, dans l'ordre du lot
+         */
+        @PostMapping("/{id}/dons/batch")
+        public ResponseEntity<List<ResultatDonDTO>> enregistrerDons(@PathVariable Long id, @RequestBody List<DonDTO> dons) {
+            List<ResultatDonDTO> resultats = serviceLotDons.enregistrerDons(id, dons);
+            return new ResponseEntity<>(resultats, HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour enregistrer un lot de dons destinés à plusieurs campagnes.
+         * Chaque don porte l'identifiant de sa campagne ; les campagnes sont chargées en une seule requête.
+         *
+         * @param dons Dons à enregistrer
+         * @return ResponseEntity contenant les résultats, dans l'ordre du lot
+         */
+        @PostMapping("/dons/batch")
+        public ResponseEntity<List<ResultatDonDTO>> enregistrerDonsMultiCampagnes(@RequestBody List<DonCampagneDTO> dons) {
+            List<ResultatDonDTO> resultats = serviceLotDons.enregistrerDonsMultiCampagnes(dons);
+            return new ResponseEntity<>(resultats, HttpStatus.OK);
+        }
 }
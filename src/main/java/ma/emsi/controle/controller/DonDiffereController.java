@@ -0,0 +1,68 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.SuiviDonDTO;
+import ma.emsi.controle.service.PipelineDons;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+/**
+ * Contrôleur REST de l'écriture différée des dons.
+ * N'est exposé que si le mode est activé (dons.ecriture-differee.enabled=true).
+ */
+@RestController
+@RequestMapping("/api/campagnes")
+@ConditionalOnProperty(name = "dons.ecriture-differee.enabled", havingValue = "true")
+public class DonDiffereController {
+
+        /**
+         * Pipeline d'écriture différée des dons
+         */
+        private final PipelineDons pipelineDons;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param pipelineDons Pipeline d'écriture différée des dons
+         */
+        @Autowired
+        public DonDiffereController(PipelineDons pipelineDons) {
+            this.pipelineDons = pipelineDons;
+        }
+
+        /**
+         * Endpoint pour soumettre un don en écriture différée.
+         * Le don est validé et journalisé, puis la réponse 202 est renvoyée avec un numéro de suivi
+         * sans attendre son enregistrement en base. Renvoie 429 si la file d'attente est pleine.
+         *
+         * @param id ID de la campagne
+         * @param donDTO Données du don à enregistrer
+         * @return ResponseEntity contenant l'état initial du don, avec l'URL de suivi dans l'en-tête Location
+         */
+        @PostMapping("/{id}/dons/differes")
+        public ResponseEntity<SuiviDonDTO> soumettreDon(@PathVariable Long id, @Valid @RequestBody DonDTO donDTO) {
+            SuiviDonDTO suivi = pipelineDons.soumettre(id, donDTO);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .location(URI.create("/api/campagnes/dons/differes/" + suivi.getSuivi()))
+                    .body(suivi);
+        }
+
+        /**
+         * Endpoint pour consulter l'état d'un don soumis en écriture différée.
+         *
+         * @param suivi Numéro de suivi du don
+         * @return ResponseEntity contenant l'état du don (EN_ATTENTE, ENREGISTRE ou REJETE)
+         */
+        @GetMapping("/dons/differes/{suivi}")
+        public ResponseEntity<SuiviDonDTO> getSuivi(@PathVariable String suivi) {
+            SuiviDonDTO etat = pipelineDons.getSuivi(suivi)
+                    .orElseThrow(() -> new EntityNotFoundException("Aucun don en suivi avec le numéro: " + suivi));
+            return new ResponseEntity<>(etat, HttpStatus.OK);
+        }
+}
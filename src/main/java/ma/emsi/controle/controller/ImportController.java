@@ -0,0 +1,92 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.service.ImportDonnees;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * Contrôleur REST de l'import en masse de campagnes et de dons.
+ */
+@RestController
+@RequestMapping("/api/import")
+public class ImportController {
+
+        /**
+         * Service d'import en masse
+         */
+        private final ImportDonnees importDonnees;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param importDonnees Service d'import en masse
+         */
+        @Autowired
+        public ImportController(ImportDonnees importDonnees) {
+            this.importDonnees = importDonnees;
+        }
+
+        /**
+         * Endpoint pour importer, en tâche de fond, un fichier envoyé dans le corps de la requête (compressé en gzip
+         * si l'en-tête Content-Encoding vaut gzip). Le fichier est enregistré avant l'import, qui se poursuit après la réponse.
+         *
+         * @param type Type de données importées : campagnes ou dons
+         * @param format Format du fichier : csv ou ndjson
+         * @param encodage En-tête Content-Encoding de la requête
+         * @param corps Contenu du fichier
+         * @return ResponseEntity contenant la progression de l'import lancé (202),
+         * 400 si un import est déjà en cours ou si l'en-tête du CSV est incomplet
+         * @throws IOException Si le fichier ne peut pas être enregistré
+         */
+        @PostMapping
+        public ResponseEntity<ImportDonnees.Progression> importer(@RequestParam(defaultValue = "dons") String type,
+                                                                  @RequestParam(defaultValue = "csv") String format,
+                                                                  @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String encodage,
+                                                                  InputStream corps) throws IOException {
+            ImportDonnees.Progression progression = importDonnees.recevoir(corps, "gzip".equalsIgnoreCase(encodage),
+                    ImportDonnees.Type.lire(type), ImportDonnees.Format.lire(format));
+            return new ResponseEntity<>(progression, HttpStatus.ACCEPTED);
+        }
+
+        /**
+         * Endpoint pour consulter la progression de l'import en cours ou du dernier import.
+         *
+         * @return ResponseEntity contenant la progression, 404 si aucun import n'a été lancé
+         */
+        @GetMapping
+        public ResponseEntity<ImportDonnees.Progression> getProgression() {
+            return new ResponseEntity<>(importDonnees.getProgression(), HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour télécharger les lignes rejetées par l'import en cours ou le dernier import,
+         * avec leur numéro de ligne et leurs erreurs.
+         *
+         * @return ResponseEntity contenant le fichier CSV des rejets, 404 si aucune ligne n'a été rejetée
+         */
+        @GetMapping("/rejets")
+        public ResponseEntity<Resource> getRejets() {
+            Path fichier = importDonnees.getFichierRejets();
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(fichier.getFileName().toString()).build().toString())
+                    .body(new FileSystemResource(fichier));
+        }
+}
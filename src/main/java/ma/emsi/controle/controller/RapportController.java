@@ -0,0 +1,57 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.DTOs.LigneRapportDTO;
+import ma.emsi.controle.service.RapportsDons;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Contrôleur REST des rapports analytiques sur l'historique des dons.
+ */
+@RestController
+@RequestMapping("/api/rapports")
+public class RapportController {
+
+        /**
+         * Service des rapports sur les dons
+         */
+        private final RapportsDons rapportsDons;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param rapportsDons Service des rapports sur les dons
+         */
+        @Autowired
+        public RapportController(RapportsDons rapportsDons) {
+            this.rapportsDons = rapportsDons;
+        }
+
+        /**
+         * Endpoint pour calculer le nombre et le montant des dons par campagne, par jour ou par tranche de montant.
+         * Le rapport est calculé sur le stockage en colonnes des dons, sans requête SQL.
+         *
+         * @param regroupement Regroupement des dons (CAMPAGNE, JOUR ou TRANCHE)
+         * @param campagneId ID de la campagne, optionnel
+         * @param debut Début de la période (inclus), optionnel
+         * @param fin Fin de la période (exclue), optionnelle
+         * @return ResponseEntity contenant les groupes ayant reçu au moins un don
+         */
+        @GetMapping
+        public ResponseEntity<List<LigneRapportDTO>> getRapport(
+                @RequestParam(defaultValue = "CAMPAGNE") RapportsDons.Regroupement regroupement,
+                @RequestParam(required = false) Long campagneId,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime debut,
+                @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fin) {
+            List<LigneRapportDTO> lignes = rapportsDons.consulter(regroupement, campagneId, debut, fin);
+            return new ResponseEntity<>(lignes, HttpStatus.OK);
+        }
+}
@@ -0,0 +1,132 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.service.IndexCampagnes;
+import ma.emsi.controle.service.RapportsDons;
+import ma.emsi.controle.service.ReconciliationTotaux;
+import ma.emsi.controle.service.ServiceCampagne;
+import ma.emsi.controle.service.ServiceStatistiquesDons;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Contrôleur REST exposant l'état des caches et structures en mémoire de l'application.
+ */
+@RestController
+@RequestMapping("/api/supervision")
+public class SupervisionController {
+
+        /**
+         * Service gérant les campagnes
+         */
+        private final ServiceCampagne serviceCampagne;
+
+        /**
+         * Index en mémoire des campagnes
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Service des statistiques de dons pré-agrégées
+         */
+        private final ServiceStatistiquesDons serviceStatistiquesDons;
+
+        /**
+         * Service des rapports sur les dons
+         */
+        private final RapportsDons rapportsDons;
+
+        /**
+         * Contrôle des montants collectés
+         */
+        private final ReconciliationTotaux reconciliationTotaux;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param serviceCampagne Service des campagnes
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param serviceStatistiquesDons Service des statistiques de dons
+         * @param rapportsDons Service des rapports sur les dons
+         * @param reconciliationTotaux Contrôle des montants collectés
+         */
+        @Autowired
+        public SupervisionController(ServiceCampagne serviceCampagne, IndexCampagnes indexCampagnes,
+                                     ServiceStatistiquesDons serviceStatistiquesDons, RapportsDons rapportsDons,
+                                     ReconciliationTotaux reconciliationTotaux) {
+            this.serviceCampagne = serviceCampagne;
+            this.indexCampagnes = indexCampagnes;
+            this.serviceStatistiquesDons = serviceStatistiquesDons;
+            this.rapportsDons = rapportsDons;
+            this.reconciliationTotaux = reconciliationTotaux;
+        }
+
+        /**
+         * Endpoint pour consulter les statistiques de l'instantané des campagnes actives.
+         *
+         * @return ResponseEntity contenant les succès, échecs, rechargements et invalidations
+         */
+        @GetMapping("/cache-campagnes-actives")
+        public ResponseEntity<ServiceCampagne.StatistiquesCache> getStatistiquesCacheCampagnesActives() {
+            return new ResponseEntity<>(serviceCampagne.getStatistiquesCache(), HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour consulter la taille et le temps de reconstruction de l'index des campagnes.
+         *
+         * @return ResponseEntity contenant les statistiques de l'index
+         */
+        @GetMapping("/index-campagnes")
+        public ResponseEntity<IndexCampagnes.StatistiquesIndex> getStatistiquesIndexCampagnes() {
+            return new ResponseEntity<>(indexCampagnes.getStatistiques(), HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour lancer, en tâche de fond, la reconstruction des statistiques de dons des jours révolus
+         * à partir de la table des dons.
+         *
+         * @return ResponseEntity vide (202), la reconstruction se poursuivant après la réponse
+         */
+        @PostMapping("/stats-dons/reconstruction")
+        public ResponseEntity<Void> reconstruireStatistiquesDons() {
+            serviceStatistiquesDons.lancerReconstructionJoursRevolus();
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        }
+
+        /**
+         * Endpoint pour lancer, en tâche de fond, la reconstruction du stockage des rapports de dons
+         * à partir de la table des dons.
+         *
+         * @return ResponseEntity vide (202), la reconstruction se poursuivant après la réponse
+         */
+        @PostMapping("/rapports/reconstruction")
+        public ResponseEntity<Void> reconstruireRapports() {
+            rapportsDons.lancerReconstruction();
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        }
+
+        /**
+         * Endpoint pour consulter le dernier contrôle des montants collectés : écarts corrigés et durée de chaque partition.
+         *
+         * @return ResponseEntity contenant le rapport du dernier contrôle, 404 si aucun contrôle n'a été exécuté
+         */
+        @GetMapping("/reconciliation")
+        public ResponseEntity<ReconciliationTotaux.Rapport> getRapportReconciliation() {
+            return new ResponseEntity<>(reconciliationTotaux.getRapport(), HttpStatus.OK);
+        }
+
+        /**
+         * Endpoint pour lancer, en tâche de fond, le contrôle des montants collectés sans attendre l'exécution nocturne,
+         * ou reprendre un contrôle interrompu.
+         *
+         * @return ResponseEntity vide (202), le contrôle se poursuivant après la réponse
+         */
+        @PostMapping("/reconciliation")
+        public ResponseEntity<Void> lancerReconciliation() {
+            reconciliationTotaux.lancer();
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        }
+}
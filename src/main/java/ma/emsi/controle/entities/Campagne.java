@@ -3,16 +3,22 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 /**
  * Entité représentant une campagne de don.
  * Cette classe est mappée à une table dans la base de données via JPA.
+ * Les campagnes sont conservées dans le cache de second niveau d'Hibernate (région "campagne", voir CacheConfig).
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "campagne")
+@EntityListeners(CampagneListener.class)
 public class Campagne {
 
         /**
@@ -33,7 +39,7 @@ public class Campagne {
          */
         @NotNull(message = "L'objectif de montant est obligatoire")
         @Positive(message = "L'objectif de montant doit être positif")
-        private BigDecimal objectifMontant;
+        private Montant objectifMontant;
 
         /**
          * Date de début de la campagne, obligatoire.
@@ -47,6 +53,25 @@ public class Campagne {
         @NotNull(message = "La date de fin est obligatoire")
         private LocalDate dateFin;
 
+        /**
+         * Version de la campagne (verrouillage optimiste) : une écriture faite à partir d'une version périmée échoue
+         * au lieu d'écraser le montant collecté ou le statut fusionnés entre-temps.
+         */
+        @Version
+        private Long version;
+
+        /**
+         * Montant collecté à la dernière fusion des incréments de dons (voir IncrementCampagne).
+         */
+        private Montant montantCollecte = Montant.ZERO;
+
+        /**
+         * Statut de collecte ; la campagne passe à FINANCEE lorsque le montant collecté atteint l'objectif.
+         */
+        @Enumerated(EnumType.STRING)
+        @Column(length = 10)
+        private StatutCampagne statut = StatutCampagne.OUVERTE;
+
         /**
          * Liste des dons associés à cette campagne.
          * Relation OneToMany avec cascade pour propager les opérations à tous les dons associés.
@@ -54,6 +79,24 @@ public class Campagne {
         @OneToMany(mappedBy = "campagne", cascade = CascadeType.ALL)
         private List<Donation> donations = new ArrayList<>();
 
+        /**
+         * État de la campagne tel que publié aux caches et index en mémoire lors de sa lecture ou de sa dernière écriture
+         * (voir CampagneListener)
+         */
+        @Transient
+        private CampagneModifieeEvent etatPublie;
+
+        /**
+         * Indique si la campagne est active à la date donnée,
+         * c'est-à-dire si cette date est comprise entre sa date de début et sa date de fin (incluses).
+         *
+         * @param date La date à vérifier
+         * @return true si la campagne est active à cette date
+         */
+        public boolean estActiveLe(LocalDate date) {
+            return !date.isBefore(dateDebut) && !date.isAfter(dateFin);
+        }
+
         // Getters and Setters
         public Long getId() {
             return id;
@@ -71,11 +114,11 @@ public class Campagne {
             this.nom = nom;
         }
 
-        public BigDecimal getObjectifMontant() {
+        public Montant getObjectifMontant() {
             return objectifMontant;
         }
 
-        public void setObjectifMontant(BigDecimal objectifMontant) {
+        public void setObjectifMontant(Montant objectifMontant) {
             this.objectifMontant = objectifMontant;
         }
 
@@ -95,6 +138,30 @@ public class Campagne {
             this.dateFin = dateFin;
         }
 
+        public Long getVersion() {
+            return version;
+        }
+
+        public void setVersion(Long version) {
+            this.version = version;
+        }
+
+        public Montant getMontantCollecte() {
+            return montantCollecte;
+        }
+
+        public void setMontantCollecte(Montant montantCollecte) {
+            this.montantCollecte = montantCollecte;
+        }
+
+        public StatutCampagne getStatut() {
+            return statut;
+        }
+
+        public void setStatut(StatutCampagne statut) {
+            this.statut = statut;
+        }
+
         public List<Donation> getDonations() {
             return donations;
         }
@@ -102,4 +169,12 @@ public class Campagne {
         public void setDonations(List<Donation> donations) {
             this.donations = donations;
         }
+
+        CampagneModifieeEvent getEtatPublie() {
+            return etatPublie;
+        }
+
+        void setEtatPublie(CampagneModifieeEvent etatPublie) {
+            this.etatPublie = etatPublie;
+        }
 }
@@ -0,0 +1,60 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Écouteur JPA des écritures sur les campagnes.
+ * Instancié par Hibernate via le conteneur de beans Spring, il publie un CampagneModifieeEvent
+ * après chaque INSERT, UPDATE ou DELETE d'une campagne. Une mise à jour qui ne change aucun des champs publiés
+ * (fusion du montant collecté seul) ne publie rien. Les mises à jour en masse (requêtes JPQL UPDATE/DELETE)
+ * ne passent pas par cet écouteur.
+ */
+@Component
+public class CampagneListener {
+
+        /**
+         * Publicateur des événements de l'application
+         */
+        private final ApplicationEventPublisher eventPublisher;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param eventPublisher Publicateur des événements de l'application
+         */
+        @Autowired
+        public CampagneListener(ApplicationEventPublisher eventPublisher) {
+            this.eventPublisher = eventPublisher;
+        }
+
+        @PostLoad
+        public void apresLecture(Campagne campagne) {
+            campagne.setEtatPublie(creerEvent(campagne, false));
+        }
+
+        @PostPersist
+        @PostUpdate
+        public void apresEcriture(Campagne campagne) {
+            CampagneModifieeEvent event = creerEvent(campagne, false);
+            if (!event.equals(campagne.getEtatPublie())) {
+                eventPublisher.publishEvent(event);
+                campagne.setEtatPublie(event);
+            }
+        }
+
+        @PostRemove
+        public void apresSuppression(Campagne campagne) {
+            eventPublisher.publishEvent(creerEvent(campagne, true));
+        }
+
+        private static CampagneModifieeEvent creerEvent(Campagne campagne, boolean supprimee) {
+            return new CampagneModifieeEvent(campagne.getId(), campagne.getNom(), campagne.getObjectifMontant(),
+                    campagne.getDateDebut(), campagne.getDateFin(), campagne.getStatut(), supprimee);
+        }
+}
@@ -0,0 +1,91 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Clé d'idempotence d'une soumission de don (en-tête Idempotency-Key), enregistrée dans la même transaction que le don.
+ * Permet de renvoyer le don d'origine lorsqu'un client rejoue sa requête, y compris après un redémarrage
+ * ou lorsque la requête rejouée est traitée par une autre instance.
+ */
+@Entity
+@Table(name = "cle_idempotence", indexes = @Index(name = "idx_cle_idempotence_date", columnList = "dateCreation"))
+public class CleIdempotence implements Persistable<String> {
+
+        /**
+         * Clé fournie par le client
+         */
+        @Id
+        @Column(length = 100)
+        private String cle;
+
+        /**
+         * Empreinte (SHA-256) de la requête d'origine : campagne, donateur et montant
+         */
+        @Column(length = 64, nullable = false)
+        private String empreinte;
+
+        /**
+         * Identifiant du don enregistré par la requête d'origine
+         */
+        @Column(nullable = false)
+        private Long donId;
+
+        /**
+         * Date d'enregistrement de la clé, pour la purge des clés expirées
+         */
+        @Column(nullable = false)
+        private LocalDateTime dateCreation;
+
+        /**
+         * true tant que la clé n'a pas été insérée : save() fait alors un INSERT (persist) et non un merge,
+         * pour qu'une clé déjà enregistrée par une requête concurrente provoque une violation de clé primaire
+         */
+        @Transient
+        private boolean nouvelle = true;
+
+        protected CleIdempotence() {
+        }
+
+        /**
+         * @param cle Clé fournie par le client
+         * @param empreinte Empreinte de la requête
+         * @param donId Identifiant du don enregistré
+         * @param dateCreation Date d'enregistrement
+         */
+        public CleIdempotence(String cle, String empreinte, Long donId, LocalDateTime dateCreation) {
+            this.cle = cle;
+            this.empreinte = empreinte;
+            this.donId = donId;
+            this.dateCreation = dateCreation;
+        }
+
+        @PostLoad
+        @PostPersist
+        void marquerEnregistree() {
+            nouvelle = false;
+        }
+
+        @Override
+        public String getId() {
+            return cle;
+        }
+
+        @Override
+        public boolean isNew() {
+            return nouvelle;
+        }
+
+        public String getEmpreinte() {
+            return empreinte;
+        }
+
+        public Long getDonId() {
+            return donId;
+        }
+
+        public LocalDateTime getDateCreation() {
+            return dateCreation;
+        }
+}
@@ -4,20 +4,27 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
  * Entité représentant un don fait à une campagne.
  * Cette classe est mappée à une table dans la base de données via JPA.
+ * L'index (campagne_id, date, id) sert la pagination par curseur des dons d'une campagne.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_donation_campagne_date_id", columnList = "campagne_id, date, id"),
+        @Index(name = "idx_donation_suivi", columnList = "suivi", unique = true)
+})
 public class Donation {
         /**
          * Identifiant unique du don, généré automatiquement.
+         * Une séquence à allocation groupée (optimiseur pooled, 50 identifiants par appel) remplace IDENTITY :
+         * Hibernate connaît l'identifiant avant l'INSERT et peut donc regrouper les insertions en lots JDBC.
          */
         @Id
-        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "donation_seq")
+        @SequenceGenerator(name = "donation_seq", sequenceName = "donation_seq", allocationSize = 50)
         private Long id;
 
         /**
@@ -39,13 +46,19 @@ public class Donation {
          */
         @NotNull(message = "Le montant est obligatoire")
         @Positive(message = "Le montant doit être positif")
-        private BigDecimal montant;
+        private Montant montant;
 
         /**
          * Date et heure auxquelles le don a été effectué.
          */
         private LocalDateTime date;
 
+        /**
+         * Numéro de suivi du don reçu en écriture différée, null pour les autres dons.
+         */
+        @Column(length = 36)
+        private String suivi;
+
         // Getters and Setters
         public Long getId() {
             return id;
@@ -71,11 +84,11 @@ public class Donation {
             this.nomDonateur = nomDonateur;
         }
 
-        public BigDecimal getMontant() {
+        public Montant getMontant() {
             return montant;
         }
 
-        public void setMontant(BigDecimal montant) {
+        public void setMontant(Montant montant) {
             this.montant = montant;
         }
 
@@ -86,4 +99,12 @@ public class Donation {
         public void setDate(LocalDateTime date) {
             this.date = date;
         }
+
+        public String getSuivi() {
+            return suivi;
+        }
+
+        public void setSuivi(String suivi) {
+            this.suivi = suivi;
+        }
 }
@@ -0,0 +1,47 @@
+package ma.emsi.controle.entities;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Granularité des intervalles de temps des statistiques de dons.
+ */
+public enum Granularite {
+        MINUTE(ChronoUnit.MINUTES, 60),
+        HEURE(ChronoUnit.HOURS, 48),
+        JOUR(ChronoUnit.DAYS, 30);
+
+        /**
+         * Unité de troncature des dates
+         */
+        private final ChronoUnit unite;
+
+        /**
+         * Nombre d'intervalles retournés lorsque la période n'est pas précisée
+         */
+        private final int intervallesParDefaut;
+
+        Granularite(ChronoUnit unite, int intervallesParDefaut) {
+            this.unite = unite;
+            this.intervallesParDefaut = intervallesParDefaut;
+        }
+
+        /**
+         * @param date Une date
+         * @return Le début de l'intervalle contenant cette date
+         */
+        public LocalDateTime debut(LocalDateTime date) {
+            return date.truncatedTo(unite);
+        }
+
+        /**
+         * @return La durée d'un intervalle
+         */
+        public Duration duree() {
+            return unite.getDuration();
+        }
+
+        public int getIntervallesParDefaut() {
+            return intervallesParDefaut;
+        }
+}
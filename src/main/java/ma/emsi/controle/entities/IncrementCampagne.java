@@ -0,0 +1,74 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+
+/**
+ * Incrément du montant collecté d'une campagne, en attente de fusion dans la campagne.
+ * <p>
+ * Chaque transaction de don insère sa propre ligne au lieu de mettre à jour la ligne de la campagne :
+ * les donateurs d'une même campagne ne se disputent aucun verrou. Les incréments sont ensuite fusionnés
+ * périodiquement dans {@link Campagne#getMontantCollecte()} puis supprimés.
+ */
+@Entity
+@Table(name = "increment_campagne")
+public class IncrementCampagne {
+
+        /**
+         * Identifiant de l'incrément, tiré d'une séquence à allocation groupée pour rester dans les lots JDBC des dons
+         */
+        @Id
+        @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "increment_campagne_seq")
+        @SequenceGenerator(name = "increment_campagne_seq", sequenceName = "increment_campagne_seq", allocationSize = 50)
+        private Long id;
+
+        /**
+         * Identifiant de la campagne (sans clé étrangère, pour ne pas alourdir les écritures)
+         */
+        @Column(name = "campagne_id")
+        private Long campagneId;
+
+        /**
+         * Montant à ajouter au montant collecté
+         */
+        private Montant montant;
+
+        /**
+         * Nombre de dons représentés par l'incrément
+         */
+        private int nombreDons;
+
+        protected IncrementCampagne() {
+        }
+
+        /**
+         * @param campagneId Identifiant de la campagne
+         * @param montant Montant à ajouter au montant collecté
+         * @param nombreDons Nombre de dons représentés par l'incrément
+         */
+        public IncrementCampagne(Long campagneId, Montant montant, int nombreDons) {
+            this.campagneId = campagneId;
+            this.montant = montant;
+            this.nombreDons = nombreDons;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getCampagneId() {
+            return campagneId;
+        }
+
+        public Montant getMontant() {
+            return montant;
+        }
+
+        public int getNombreDons() {
+            return nombreDons;
+        }
+}
@@ -0,0 +1,163 @@
+package ma.emsi.controle.entities;
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * Montant en euros, représenté par un nombre entier de centimes (échelle fixe de 2 décimales).
+ * <p>
+ * Remplace BigDecimal dans les entités, les DTO et les événements : une somme, une comparaison ou un cumul
+ * n'alloue rien de plus que le résultat, et les agrégations en mémoire travaillent directement sur les centimes.
+ * La conversion depuis une valeur décimale est exacte : une valeur à plus de 2 décimales significatives est refusée
+ * au lieu d'être arrondie. Les colonnes restent en NUMERIC(38, 2) (voir MontantConverter).
+ *
+ * @param centimes Montant en centimes
+ */
+public record Montant(long centimes) implements Comparable<Montant>, Serializable {
+
+        /**
+         * Nombre de décimales des montants
+         */
+        public static final int ECHELLE = 2;
+
+        public static final Montant ZERO = new Montant(0);
+
+        /**
+         * Nombre maximal de chiffres d'un montant lu sans BigDecimal : au-delà, ses centimes pourraient déborder d'un long
+         */
+        private static final int CHIFFRES_MAX = 16;
+
+        /**
+         * Nombre maximal de chiffres de la partie entière d'un montant : 17 chiffres, soit 19 chiffres de centimes
+         */
+        private static final int CHIFFRES_ENTIERS_MAX = 17;
+
+        /**
+         * @param centimes Montant en centimes
+         * @return Le montant
+         */
+        public static Montant deCentimes(long centimes) {
+            return centimes == 0 ? ZERO : new Montant(centimes);
+        }
+
+        /**
+         * Convertit une valeur décimale, sans arrondi.
+         * Les bornes sont vérifiées avant le changement d'échelle, dont le coût croît avec l'exposant :
+         * "1E+100000000" ou "1E-100000000" sont refusés sans calcul.
+         *
+         * @param valeur Valeur décimale
+         * @return Le montant
+         * @throws ArithmeticException Si la valeur a plus de 2 décimales significatives ou dépasse la capacité d'un long
+         */
+        public static Montant of(BigDecimal valeur) {
+            if (valeur.signum() == 0) {
+                return ZERO;
+            }
+            // precision - scale : nombre de chiffres de la partie entière
+            if ((long) valeur.precision() - valeur.scale() > CHIFFRES_ENTIERS_MAX) {
+                throw new ArithmeticException("Montant hors capacité : " + valeur);
+            }
+            if (valeur.scale() > ECHELLE) {
+                valeur = valeur.stripTrailingZeros();
+                if (valeur.scale() > ECHELLE) {
+                    throw new ArithmeticException("Montant à plus de " + ECHELLE + " décimales : " + valeur);
+                }
+            }
+            return deCentimes(valeur.setScale(ECHELLE).unscaledValue().longValueExact());
+        }
+
+        /**
+         * Lit un montant écrit en décimal ("12", "12.5", "-0.25", "1E+3"), sans arrondi.
+         * Les écritures simples sont lues chiffre par chiffre, sans BigDecimal intermédiaire.
+         *
+         * @param texte Montant écrit en décimal
+         * @return Le montant
+         * @throws NumberFormatException Si le texte n'est pas un nombre décimal
+         * @throws ArithmeticException Si la valeur a plus de 2 décimales significatives ou dépasse la capacité d'un long
+         */
+        public static Montant parse(CharSequence texte) {
+            int longueur = texte.length();
+            int i = 0;
+            boolean negatif = false;
+            if (longueur > 0 && (texte.charAt(0) == '-' || texte.charAt(0) == '+')) {
+                negatif = texte.charAt(0) == '-';
+                i++;
+            }
+            long valeur = 0;
+            int chiffres = 0;
+            int decimales = -1;
+            for (; i < longueur; i++) {
+                char c = texte.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (decimales >= ECHELLE) {
+                        if (c != '0') {
+                            // Décimale significative, sauf si un exposant suit : lecture générale
+                            return of(new BigDecimal(texte.toString()));
+                        }
+                        continue;
+                    }
+                    valeur = valeur * 10 + (c - '0');
+                    chiffres++;
+                    if (decimales >= 0) {
+                        decimales++;
+                    }
+                } else if (c == '.' && decimales < 0) {
+                    decimales = 0;
+                } else {
+                    // Exposant ou caractère inattendu : lecture générale
+                    return of(new BigDecimal(texte.toString()));
+                }
+                if (chiffres > CHIFFRES_MAX) {
+                    return of(new BigDecimal(texte.toString()));
+                }
+            }
+            if (chiffres == 0) {
+                throw new NumberFormatException("Montant invalide : " + texte);
+            }
+            for (int d = Math.max(decimales, 0); d < ECHELLE; d++) {
+                valeur *= 10;
+            }
+            return deCentimes(negatif ? -valeur : valeur);
+        }
+
+        /**
+         * @return Le montant en valeur décimale, à 2 décimales
+         */
+        public BigDecimal toBigDecimal() {
+            return BigDecimal.valueOf(centimes, ECHELLE);
+        }
+
+        /**
+         * @param autre Montant à ajouter
+         * @return La somme des deux montants
+         * @throws ArithmeticException En cas de dépassement de capacité
+         */
+        public Montant plus(Montant autre) {
+            return deCentimes(Math.addExact(centimes, autre.centimes));
+        }
+
+        /**
+         * @return true si le montant est strictement positif
+         */
+        public boolean estPositif() {
+            return centimes > 0;
+        }
+
+        @Override
+        public int compareTo(Montant autre) {
+            return Long.compare(centimes, autre.centimes);
+        }
+
+        /**
+         * @return Le montant écrit avec 2 décimales, par exemple "12.50"
+         */
+        @Override
+        public String toString() {
+            if (centimes == Long.MIN_VALUE) {
+                return toBigDecimal().toPlainString();
+            }
+            long absolu = Math.abs(centimes);
+            String partieEntiere = Long.toString(absolu / 100);
+            int decimales = (int) (absolu % 100);
+            return (centimes < 0 ? "-" : "") + partieEntiere + '.' + (char) ('0' + decimales / 10) + (char) ('0' + decimales % 10);
+        }
+}
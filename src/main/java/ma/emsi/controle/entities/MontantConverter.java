@@ -0,0 +1,26 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+/**
+ * Conversion JPA des montants, appliquée à tous les attributs de type Montant : les colonnes restent
+ * en NUMERIC(38, 2), seul le passage par le pilote JDBC utilise BigDecimal.
+ */
+@Converter(autoApply = true)
+public class MontantConverter implements AttributeConverter<Montant, BigDecimal> {
+
+        @Override
+        public BigDecimal convertToDatabaseColumn(Montant montant) {
+            return montant == null ? null : montant.toBigDecimal();
+        }
+
+        /**
+         * @throws ArithmeticException Si la colonne contient plus de 2 décimales significatives
+         */
+        @Override
+        public Montant convertToEntityAttribute(BigDecimal valeur) {
+            return valeur == null ? null : Montant.of(valeur);
+        }
+}
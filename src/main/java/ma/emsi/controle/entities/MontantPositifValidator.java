@@ -0,0 +1,17 @@
+package ma.emsi.controle.entities;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.constraints.Positive;
+
+/**
+ * Validation de @Positive sur un Montant. Déclarée dans META-INF/services/jakarta.validation.ConstraintValidator,
+ * elle s'ajoute aux validations standard de Hibernate Validator : les attributs Montant gardent l'annotation
+ * et le message des anciens attributs BigDecimal.
+ */
+public class MontantPositifValidator implements ConstraintValidator<Positive, Montant> {
+
+        @Override
+        public boolean isValid(Montant montant, ConstraintValidatorContext context) {
+            return montant == null || montant.estPositif();
+        }
+}
@@ -0,0 +1,191 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Partition d'une exécution du contrôle des montants collectés : les campagnes d'identifiant compris
+ * entre campagneDebut (inclus) et campagneFin (exclu). Ses compteurs et sa durée sont enregistrés dans la transaction
+ * qui applique ses corrections, ce qui en fait le point de reprise de l'exécution.
+ */
+@Entity
+@Table(name = "partition_reconciliation",
+       indexes = @Index(name = "idx_partition_reconciliation", columnList = "reconciliation_id, numero"))
+public class PartitionReconciliation {
+
+        /**
+         * Identifiant de la partition
+         */
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        /**
+         * Identifiant de l'exécution
+         */
+        @Column(name = "reconciliation_id", nullable = false)
+        private Long reconciliationId;
+
+        /**
+         * Numéro de la partition dans l'exécution, à partir de 0
+         */
+        private int numero;
+
+        /**
+         * Premier identifiant de campagne de la partition (inclus)
+         */
+        private long campagneDebut;
+
+        /**
+         * Dernier identifiant de campagne de la partition (exclu)
+         */
+        private long campagneFin;
+
+        /**
+         * true une fois la partition contrôlée et ses corrections validées
+         */
+        private boolean terminee;
+
+        /**
+         * Nombre de campagnes contrôlées
+         */
+        private int campagnes;
+
+        /**
+         * Nombre de dons relus
+         */
+        private long dons;
+
+        /**
+         * Nombre de campagnes dont le montant collecté en base a été corrigé
+         */
+        private int ecartsCollecte;
+
+        /**
+         * Nombre de campagnes dont les totaux en mémoire ont été corrigés
+         */
+        private int ecartsMemoire;
+
+        /**
+         * Nombre de campagnes non contrôlées car modifiées pendant leur lecture, laissées au prochain contrôle
+         */
+        private int reportees;
+
+        /**
+         * Durée du contrôle de la partition, en millisecondes
+         */
+        private long dureeMs;
+
+        /**
+         * Part de la durée passée en attente du limiteur de débit, en millisecondes
+         */
+        private long attenteMs;
+
+        /**
+         * Date de fin du contrôle de la partition
+         */
+        private LocalDateTime fin;
+
+        protected PartitionReconciliation() {
+        }
+
+        /**
+         * @param reconciliationId Identifiant de l'exécution
+         * @param numero Numéro de la partition
+         * @param campagneDebut Premier identifiant de campagne (inclus)
+         * @param campagneFin Dernier identifiant de campagne (exclu)
+         */
+        public PartitionReconciliation(Long reconciliationId, int numero, long campagneDebut, long campagneFin) {
+            this.reconciliationId = reconciliationId;
+            this.numero = numero;
+            this.campagneDebut = campagneDebut;
+            this.campagneFin = campagneFin;
+        }
+
+        /**
+         * Enregistre le résultat du contrôle de la partition et la marque terminée.
+         *
+         * @param campagnes Nombre de campagnes contrôlées
+         * @param dons Nombre de dons relus
+         * @param ecartsCollecte Nombre de montants collectés corrigés
+         * @param ecartsMemoire Nombre de totaux en mémoire corrigés
+         * @param reportees Nombre de campagnes reportées
+         * @param dureeMs Durée du contrôle, en millisecondes
+         * @param attenteMs Attente du limiteur de débit, en millisecondes
+         * @param fin Date de fin
+         */
+        public void terminer(int campagnes, long dons, int ecartsCollecte, int ecartsMemoire, int reportees,
+                             long dureeMs, long attenteMs, LocalDateTime fin) {
+            this.campagnes = campagnes;
+            this.dons = dons;
+            this.ecartsCollecte = ecartsCollecte;
+            this.ecartsMemoire = ecartsMemoire;
+            this.reportees = reportees;
+            this.dureeMs = dureeMs;
+            this.attenteMs = attenteMs;
+            this.fin = fin;
+            this.terminee = true;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getReconciliationId() {
+            return reconciliationId;
+        }
+
+        public int getNumero() {
+            return numero;
+        }
+
+        public long getCampagneDebut() {
+            return campagneDebut;
+        }
+
+        public long getCampagneFin() {
+            return campagneFin;
+        }
+
+        public boolean isTerminee() {
+            return terminee;
+        }
+
+        public int getCampagnes() {
+            return campagnes;
+        }
+
+        public long getDons() {
+            return dons;
+        }
+
+        public int getEcartsCollecte() {
+            return ecartsCollecte;
+        }
+
+        public int getEcartsMemoire() {
+            return ecartsMemoire;
+        }
+
+        public int getReportees() {
+            return reportees;
+        }
+
+        public long getDureeMs() {
+            return dureeMs;
+        }
+
+        public long getAttenteMs() {
+            return attenteMs;
+        }
+
+        public LocalDateTime getFin() {
+            return fin;
+        }
+}
@@ -0,0 +1,98 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Exécution du contrôle des montants collectés des campagnes (voir ReconciliationTotaux).
+ * Les campagnes sont contrôlées par partitions d'identifiants (PartitionReconciliation), chacune enregistrée
+ * une fois terminée : une exécution interrompue reprend aux partitions restantes.
+ */
+@Entity
+@Table(name = "reconciliation")
+public class Reconciliation {
+
+        /**
+         * Identifiant de l'exécution
+         */
+        @Id
+        @GeneratedValue(strategy = GenerationType.IDENTITY)
+        private Long id;
+
+        /**
+         * Date de lancement
+         */
+        @Column(nullable = false)
+        private LocalDateTime debut;
+
+        /**
+         * Date de fin du contrôle de la dernière partition, null tant que l'exécution est en cours
+         */
+        private LocalDateTime fin;
+
+        /**
+         * Statut de l'exécution
+         */
+        @Enumerated(EnumType.STRING)
+        @Column(nullable = false)
+        private StatutReconciliation statut;
+
+        /**
+         * Nombre de partitions contrôlées en parallèle
+         */
+        private int parallelisme;
+
+        protected Reconciliation() {
+        }
+
+        /**
+         * @param debut Date de lancement
+         * @param parallelisme Nombre de partitions contrôlées en parallèle
+         */
+        public Reconciliation(LocalDateTime debut, int parallelisme) {
+            this.debut = debut;
+            this.parallelisme = parallelisme;
+            this.statut = StatutReconciliation.EN_COURS;
+        }
+
+        /**
+         * Marque l'exécution terminée.
+         *
+         * @param fin Date de fin
+         */
+        public void terminer(LocalDateTime fin) {
+            this.fin = fin;
+            this.statut = StatutReconciliation.TERMINEE;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public LocalDateTime getDebut() {
+            return debut;
+        }
+
+        public LocalDateTime getFin() {
+            return fin;
+        }
+
+        public StatutReconciliation getStatut() {
+            return statut;
+        }
+
+        public int getParallelisme() {
+            return parallelisme;
+        }
+
+        public void setParallelisme(int parallelisme) {
+            this.parallelisme = parallelisme;
+        }
+}
@@ -0,0 +1,63 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.*;
+
+/**
+ * Statistiques pré-agrégées des dons d'une campagne sur un intervalle de temps (minute, heure ou jour).
+ * Les lignes sont cumulées au fil des dons et lues telles quelles : une consultation ne parcourt jamais
+ * la table des dons. La clé primaire (campagne_id, granularite, debut) sert les lectures par période.
+ */
+@Entity
+@Table(name = "stat_don")
+public class StatDon {
+
+        /**
+         * Clé de l'intervalle
+         */
+        @EmbeddedId
+        private StatDonId id;
+
+        /**
+         * Nombre de dons reçus sur l'intervalle
+         */
+        private long nombreDons;
+
+        /**
+         * Somme des montants reçus sur l'intervalle
+         */
+        @Column(precision = 38, scale = 2)
+        private Montant montantTotal;
+
+        protected StatDon() {
+        }
+
+        /**
+         * @param id Clé de l'intervalle
+         */
+        public StatDon(StatDonId id) {
+            this.id = id;
+            this.montantTotal = Montant.ZERO;
+        }
+
+        /**
+         * Cumule des dons sur l'intervalle.
+         *
+         * @param nombre Nombre de dons
+         * @param montant Somme de leurs montants
+         */
+        public void ajouter(long nombre, Montant montant) {
+            nombreDons += nombre;
+            montantTotal = montantTotal.plus(montant);
+        }
+
+        public StatDonId getId() {
+            return id;
+        }
+
+        public long getNombreDons() {
+            return nombreDons;
+        }
+
+        public Montant getMontantTotal() {
+            return montantTotal;
+        }
+}
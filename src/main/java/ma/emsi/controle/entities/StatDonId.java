@@ -0,0 +1,77 @@
+package ma.emsi.controle.entities;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Clé d'un intervalle de statistiques : campagne, granularité et début de l'intervalle.
+ */
+@Embeddable
+public class StatDonId implements Serializable {
+
+        /**
+         * Identifiant de la campagne (sans clé étrangère, pour ne pas alourdir les écritures)
+         */
+        @Column(name = "campagne_id")
+        private Long campagneId;
+
+        /**
+         * Granularité de l'intervalle
+         */
+        @Enumerated(EnumType.STRING)
+        @Column(length = 10)
+        private Granularite granularite;
+
+        /**
+         * Début de l'intervalle
+         */
+        private LocalDateTime debut;
+
+        protected StatDonId() {
+        }
+
+        /**
+         * @param campagneId Identifiant de la campagne
+         * @param granularite Granularité de l'intervalle
+         * @param debut Début de l'intervalle
+         */
+        public StatDonId(Long campagneId, Granularite granularite, LocalDateTime debut) {
+            this.campagneId = campagneId;
+            this.granularite = granularite;
+            this.debut = debut;
+        }
+
+        public Long getCampagneId() {
+            return campagneId;
+        }
+
+        public Granularite getGranularite() {
+            return granularite;
+        }
+
+        public LocalDateTime getDebut() {
+            return debut;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StatDonId autre)) {
+                return false;
+            }
+            return Objects.equals(campagneId, autre.campagneId) && granularite == autre.granularite
+                    && Objects.equals(debut, autre.debut);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(campagneId, granularite, debut);
+        }
+}
@@ -0,0 +1,17 @@
+package ma.emsi.controle.entities;
+
+/**
+ * Statut de collecte d'une campagne.
+ */
+public enum StatutCampagne {
+
+        /**
+         * La campagne accepte des dons (tant qu'elle est active)
+         */
+        OUVERTE,
+
+        /**
+         * Le montant collecté a atteint l'objectif : la campagne est close et refuse les nouveaux dons
+         */
+        FINANCEE
+}
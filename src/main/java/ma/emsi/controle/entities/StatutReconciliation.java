@@ -0,0 +1,17 @@
+package ma.emsi.controle.entities;
+
+/**
+ * Statut d'une exécution du contrôle des montants collectés.
+ */
+public enum StatutReconciliation {
+
+        /**
+         * Des partitions restent à contrôler : l'exécution est reprise au prochain lancement ou au redémarrage
+         */
+        EN_COURS,
+
+        /**
+         * Toutes les partitions ont été contrôlées
+         */
+        TERMINEE
+}
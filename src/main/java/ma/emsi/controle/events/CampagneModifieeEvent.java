@@ -0,0 +1,23 @@
+package ma.emsi.controle.events;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+
+import java.time.LocalDate;
+
+/**
+ * Événement publié à chaque création, modification ou suppression d'une campagne.
+ * Il transporte l'état de la campagne après l'écriture pour que les caches et index en mémoire
+ * puissent se mettre à jour sans relire la base.
+ *
+ * @param campagneId Identifiant de la campagne
+ * @param nom Nom de la campagne
+ * @param objectifMontant Montant objectif de la campagne
+ * @param dateDebut Date de début de la campagne
+ * @param dateFin Date de fin de la campagne
+ * @param statut Statut de collecte de la campagne
+ * @param supprimee true si la campagne a été supprimée
+ */
+public record CampagneModifieeEvent(Long campagneId, String nom, Montant objectifMontant,
+                                    LocalDate dateDebut, LocalDate dateFin, StatutCampagne statut,
+                                    boolean supprimee) {
+}
@@ -0,0 +1,19 @@
+package ma.emsi.controle.events;
+import ma.emsi.controle.entities.Montant;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement publié par ServiceDon lorsqu'un don est enregistré.
+ * Les abonnés l'écoutent après le commit de la transaction (@TransactionalEventListener),
+ * ce qui garantit qu'ils ne voient jamais un don annulé par un rollback.
+ *
+ * @param donId Identifiant du don enregistré
+ * @param campagneId Identifiant de la campagne concernée
+ * @param nomDonateur Nom du donateur
+ * @param montant Montant du don
+ * @param date Date et heure du don
+ */
+public record DonEnregistreEvent(Long donId, Long campagneId, String nomDonateur,
+                                 Montant montant, LocalDateTime date) {
+}
@@ -0,0 +1,15 @@
+package ma.emsi.controle.exception;
+
+/**
+ * Exception levée lorsqu'une clé d'idempotence déjà utilisée est présentée avec une requête différente.
+ * Traduite en réponse 422 (Unprocessable Entity) : le client doit utiliser une nouvelle clé pour un nouveau don.
+ */
+public class CleIdempotenceReutiliseeException extends RuntimeException {
+
+        /**
+         * @param message Le message d'erreur
+         */
+        public CleIdempotenceReutiliseeException(String message) {
+            super(message);
+        }
+}
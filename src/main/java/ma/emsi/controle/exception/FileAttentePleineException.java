@@ -0,0 +1,16 @@
+package ma.emsi.controle.exception;
+
+/**
+ * Exception levée lorsque la file d'attente des dons différés est pleine,
+ * ou lorsque le nombre maximal d'abonnés au direct est atteint.
+ * Traduite en réponse 429 (Too Many Requests) pour que le client réessaie plus tard.
+ */
+public class FileAttentePleineException extends RuntimeException {
+
+        /**
+         * @param message Le message d'erreur
+         */
+        public FileAttentePleineException(String message) {
+            super(message);
+        }
+}
@@ -1,5 +1,8 @@
 package ma.emsi.controle.exception;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -18,6 +21,21 @@ import java.util.Map;
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
+        /**
+         * Registre des métriques, pour compter les erreurs par type d'exception
+         */
+        private final MeterRegistry meterRegistry;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param meterRegistry Registre des métriques
+         */
+        @Autowired
+        public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
         /**
          * Gère les exceptions EntityNotFoundException qui surviennent lorsqu'une entité n'est pas trouvée.
          *
@@ -26,6 +44,7 @@ public class GlobalExceptionHandler {
          */
         @ExceptionHandler(EntityNotFoundException.class)
         public ResponseEntity<ErrorResponse> handleEntityNotFoundException(EntityNotFoundException ex) {
+            compterErreur(ex, HttpStatus.NOT_FOUND);
             ErrorResponse error = new ErrorResponse(
                     HttpStatus.NOT_FOUND.value(),
                     ex.getMessage(),
@@ -43,6 +62,7 @@ public class GlobalExceptionHandler {
          */
         @ExceptionHandler(IllegalStateException.class)
         public ResponseEntity<ErrorResponse> handleIllegalStateException(IllegalStateException ex) {
+            compterErreur(ex, HttpStatus.BAD_REQUEST);
             ErrorResponse error = new ErrorResponse(
                     HttpStatus.BAD_REQUEST.value(),
                     ex.getMessage(),
@@ -51,6 +71,42 @@ public class GlobalExceptionHandler {
             return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
         }
 
+        /**
+         * Gère les exceptions FileAttentePleineException levées lorsque la file des dons différés
+         * ou le nombre d'abonnés au direct est saturé.
+         *
+         * @param ex L'exception levée
+         * @return ResponseEntity avec le statut 429 et un message d'erreur
+         */
+        @ExceptionHandler(FileAttentePleineException.class)
+        public ResponseEntity<ErrorResponse> handleFileAttentePleineException(FileAttentePleineException ex) {
+            compterErreur(ex, HttpStatus.TOO_MANY_REQUESTS);
+            ErrorResponse error = new ErrorResponse(
+                    HttpStatus.TOO_MANY_REQUESTS.value(),
+                    ex.getMessage(),
+                    LocalDateTime.now()
+            );
+            return new ResponseEntity<>(error, HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        /**
+         * Gère les exceptions CleIdempotenceReutiliseeException levées lorsqu'une clé d'idempotence
+         * est réutilisée pour une requête différente.
+         *
+         * @param ex L'exception levée
+         * @return ResponseEntity avec le statut 422 et un message d'erreur
+         */
+        @ExceptionHandler(CleIdempotenceReutiliseeException.class)
+        public ResponseEntity<ErrorResponse> handleCleIdempotenceReutiliseeException(CleIdempotenceReutiliseeException ex) {
+            compterErreur(ex, HttpStatus.UNPROCESSABLE_ENTITY);
+            ErrorResponse error = new ErrorResponse(
+                    HttpStatus.UNPROCESSABLE_ENTITY.value(),
+                    ex.getMessage(),
+                    LocalDateTime.now()
+            );
+            return new ResponseEntity<>(error, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+
         /**
          * Gère les exceptions de validation qui surviennent lorsque les données d'entrée
          * ne respectent pas les contraintes de validation spécifiées.
@@ -60,6 +116,7 @@ public class GlobalExceptionHandler {
          */
         @ExceptionHandler(MethodArgumentNotValidException.class)
         public ResponseEntity<Map<String, String>> handleValidationExceptions(MethodArgumentNotValidException ex) {
+            compterErreur(ex, HttpStatus.BAD_REQUEST);
             Map<String, String> errors = new HashMap<>();
             // Parcours de toutes les erreurs de validation pour les ajouter à la carte
             ex.getBindingResult().getAllErrors().forEach((error) -> {
@@ -70,6 +127,18 @@ public class GlobalExceptionHandler {
             return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
         }
 
+        /**
+         * Incrémente le compteur d'erreurs de l'API (api.erreurs, étiquettes exception et statut).
+         */
+        private void compterErreur(Exception ex, HttpStatus statut) {
+            Counter.builder("api.erreurs")
+                    .description("Erreurs renvoyées par l'API, par type d'exception")
+                    .tag("exception", ex.getClass().getSimpleName())
+                    .tag("statut", String.valueOf(statut.value()))
+                    .register(meterRegistry)
+                    .increment();
+        }
+
         /**
          * Classe interne pour représenter une réponse d'erreur standardisée.
          */
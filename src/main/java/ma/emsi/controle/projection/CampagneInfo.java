@@ -0,0 +1,34 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.StatutCampagne;
+
+import java.time.LocalDate;
+
+/**
+ * Informations immuables d'une campagne nécessaires au chemin d'écriture des dons :
+ * son nom (pour le DTO retourné), ses dates (pour vérifier qu'elle est active) et son statut de collecte.
+ *
+ * @param id Identifiant de la campagne
+ * @param nom Nom de la campagne
+ * @param dateDebut Date de début de la campagne
+ * @param dateFin Date de fin de la campagne
+ * @param statut Statut de collecte de la campagne (null pour une campagne antérieure au suivi des objectifs)
+ */
+public record CampagneInfo(Long id, String nom, LocalDate dateDebut, LocalDate dateFin, StatutCampagne statut) {
+
+        /**
+         * Indique si la campagne est active à la date donnée (bornes incluses).
+         *
+         * @param date La date à vérifier
+         * @return true si la campagne est active à cette date
+         */
+        public boolean estActiveLe(LocalDate date) {
+            return !date.isBefore(dateDebut) && !date.isAfter(dateFin);
+        }
+
+        /**
+         * @return true si la campagne a atteint son objectif et n'accepte plus de dons
+         */
+        public boolean estFinancee() {
+            return statut == StatutCampagne.FINANCEE;
+        }
+}
@@ -0,0 +1,20 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+
+import java.time.LocalDate;
+
+/**
+ * Informations d'une campagne indexées par la recherche : son nom pour les mots, ses dates, son statut
+ * et son objectif pour le classement des résultats.
+ *
+ * @param id Identifiant de la campagne
+ * @param nom Nom de la campagne
+ * @param objectifMontant Montant objectif de la campagne
+ * @param dateDebut Date de début de la campagne
+ * @param dateFin Date de fin de la campagne
+ * @param statut Statut de collecte de la campagne
+ */
+public record CampagneRecherche(Long id, String nom, Montant objectifMontant, LocalDate dateDebut,
+                                LocalDate dateFin, StatutCampagne statut) {
+}
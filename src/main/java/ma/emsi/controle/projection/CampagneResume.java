@@ -1,23 +1,13 @@
 package ma.emsi.controle.projection;
-import java.math.BigDecimal;
+import ma.emsi.controle.entities.Montant;
 
 /**
- * Interface de projection pour retourner un sous-ensemble des informations de campagne.
- * Utilisée pour optimiser les transferts de données en ne renvoyant que les champs nécessaires.
+ * Projection pour retourner un sous-ensemble des informations de campagne.
+ * Construite directement par la requête (SELECT new), sans entité gérée ni proxy de projection.
+ *
+ * @param id Identifiant de la campagne
+ * @param nom Nom de la campagne
+ * @param objectifMontant Montant objectif de la campagne
  */
-public interface CampagneResume {
-        /**
-         * @return L'identifiant de la campagne
-         */
-        Long getId();
-
-        /**
-         * @return Le nom de la campagne
-         */
-        String getNom();
-
-        /**
-         * @return Le montant objectif de la campagne
-         */
-        BigDecimal getObjectifMontant();
+public record CampagneResume(Long id, String nom, Montant objectifMontant) {
 }
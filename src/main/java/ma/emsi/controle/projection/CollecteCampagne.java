@@ -0,0 +1,23 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.Montant;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection du montant collecté d'une campagne et de ses incréments en attente de fusion, lus par une même requête.
+ * Utilisée uniquement par le contrôle des montants collectés : leur somme doit égaler la somme des dons de la campagne.
+ *
+ * @param campagneId Identifiant de la campagne
+ * @param montantCollecte Montant collecté à la dernière fusion, null si le suivi n'est pas encore initialisé
+ * @param enAttente Somme des incréments en attente de fusion
+ */
+public record CollecteCampagne(Long campagneId, Montant montantCollecte, Montant enAttente) {
+
+        /**
+         * Constructeur de l'agrégation SQL : SUM sur un montant renvoie la valeur décimale de la colonne,
+         * null en l'absence d'incrément.
+         */
+        public CollecteCampagne(Long campagneId, Montant montantCollecte, BigDecimal enAttente) {
+            this(campagneId, montantCollecte, enAttente == null ? Montant.ZERO : Montant.of(enAttente));
+        }
+}
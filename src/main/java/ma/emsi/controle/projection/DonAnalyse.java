@@ -0,0 +1,16 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.Montant;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection d'un don réduite aux colonnes des rapports analytiques.
+ * Utilisée uniquement pour alimenter le stockage en colonnes des dons.
+ *
+ * @param id Identifiant du don
+ * @param campagneId Identifiant de la campagne
+ * @param montant Montant du don
+ * @param date Date du don
+ */
+public record DonAnalyse(Long id, Long campagneId, Montant montant, LocalDateTime date) {
+}
@@ -0,0 +1,22 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.Montant;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection des totaux de dons d'un donateur pour une campagne, calculés par agrégation SQL.
+ * Utilisée pour charger le classement des donateurs d'une campagne.
+ *
+ * @param nomDonateur Nom du donateur
+ * @param nombreDons Nombre de dons du donateur
+ * @param montantTotal Somme des montants donnés
+ */
+public record TotalDonateur(String nomDonateur, Long nombreDons, Montant montantTotal) {
+
+        /**
+         * Constructeur de l'agrégation SQL : SUM sur un montant renvoie la valeur décimale de la colonne.
+         */
+        public TotalDonateur(String nomDonateur, Long nombreDons, BigDecimal montantTotal) {
+            this(nomDonateur, nombreDons, Montant.of(montantTotal));
+        }
+}
@@ -0,0 +1,24 @@
+package ma.emsi.controle.projection;
+import ma.emsi.controle.entities.Montant;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection des totaux de dons d'une campagne, calculés par agrégation SQL.
+ * Utilisée uniquement pour reconstruire les totaux en mémoire au démarrage.
+ *
+ * @param campagneId Identifiant de la campagne
+ * @param nombreDons Nombre de dons reçus
+ * @param montantTotal Somme des montants reçus
+ * @param dernierDon Date du dernier don reçu
+ */
+public record TotalDonsCampagne(Long campagneId, Long nombreDons, Montant montantTotal, LocalDateTime dernierDon) {
+
+        /**
+         * Constructeur de l'agrégation SQL : SUM sur un montant renvoie la valeur décimale de la colonne.
+         */
+        public TotalDonsCampagne(Long campagneId, Long nombreDons, BigDecimal montantTotal, LocalDateTime dernierDon) {
+            this(campagneId, nombreDons, Montant.of(montantTotal), dernierDon);
+        }
+}
@@ -1,27 +1,139 @@
 package ma.emsi.controle.repository;
 import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.projection.CampagneRecherche;
 import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.projection.CollecteCampagne;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository pour l'accès aux données des campagnes.
  * Hérite de JpaRepository pour bénéficier des méthodes standard de CRUD.
+ * Les lectures sont projetées en records (SELECT new) et s'exécutent dans une transaction en lecture seule,
+ * ou dans la transaction de l'appelant ; les mises à jour en masse déclarent leur propre transaction.
  */
 @Repository
+@Transactional(readOnly = true)
 public interface CampagneRepository extends JpaRepository<Campagne, Long> {
         /**
          * Recherche les campagnes actives à la date fournie.
          * Une campagne est active si la date actuelle est entre sa date de début et sa date de fin.
-         * Retourne les résultats sous forme de projection CampagneResume pour limiter les données transférées.
+         * Les campagnes ayant atteint leur objectif sont closes et ne sont pas retournées.
+         * Seuls les trois champs du résumé sont lus, sans instancier d'entités gérées. Le résultat est conservé
+         * dans le cache de requêtes d'Hibernate (région campagnes-actives), invalidé par toute écriture sur la table campagne.
          *
          * @param currentDate La date pour laquelle vérifier l'activité des campagnes
          * @return Liste des campagnes actives sous forme de résumés
          */
-        @Query("SELECT c FROM Campagne c WHERE c.dateDebut <= :currentDate AND c.dateFin >= :currentDate")
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "campagnes-actives")
+        })
+        @Query("SELECT new ma.emsi.controle.projection.CampagneResume(c.id, c.nom, c.objectifMontant) FROM Campagne c " +
+               "WHERE c.dateDebut <= :currentDate AND c.dateFin >= :currentDate " +
+               "AND (c.statut IS NULL OR c.statut <> ma.emsi.controle.entities.StatutCampagne.FINANCEE)")
         List<CampagneResume> findActiveCampagnesAsResume(LocalDate currentDate);
+
+        /**
+         * Recherche la plus proche date de fin parmi les campagnes actives à la date fournie.
+         * Le lendemain de cette date, au moins une campagne cesse d'être active.
+         *
+         * @param currentDate La date de référence
+         * @return La plus proche date de fin, ou null si aucune campagne n'est active
+         */
+        @Query("SELECT MIN(c.dateFin) FROM Campagne c WHERE c.dateDebut <= :currentDate AND c.dateFin >= :currentDate")
+        LocalDate findProchaineFinActive(LocalDate currentDate);
+
+        /**
+         * Recherche la plus proche date de début parmi les campagnes qui ne sont pas encore commencées.
+         *
+         * @param currentDate La date de référence
+         * @return La plus proche date de début future, ou null si aucune campagne n'est à venir
+         */
+        @Query("SELECT MIN(c.dateDebut) FROM Campagne c WHERE c.dateDebut > :currentDate")
+        LocalDate findProchainDebut(LocalDate currentDate);
+
+        /**
+         * Charge les informations de toutes les campagnes, sans instancier d'entités gérées.
+         *
+         * @return Les informations de toutes les campagnes
+         */
+        @Query("SELECT new ma.emsi.controle.projection.CampagneInfo(c.id, c.nom, c.dateDebut, c.dateFin, c.statut) FROM Campagne c")
+        List<CampagneInfo> findAllInfos();
+
+        /**
+         * Charge les informations d'une campagne, sans instancier d'entité gérée.
+         *
+         * @param id Identifiant de la campagne
+         * @return Les informations de la campagne, si elle existe
+         */
+        @Query("SELECT new ma.emsi.controle.projection.CampagneInfo(c.id, c.nom, c.dateDebut, c.dateFin, c.statut) FROM Campagne c WHERE c.id = :id")
+        Optional<CampagneInfo> findInfoById(Long id);
+
+        /**
+         * Charge les informations indexées par la recherche de toutes les campagnes, sans instancier d'entités gérées.
+         *
+         * @return Les informations de recherche de toutes les campagnes
+         */
+        @Query("SELECT new ma.emsi.controle.projection.CampagneRecherche(c.id, c.nom, c.objectifMontant, c.dateDebut, c.dateFin, c.statut) " +
+               "FROM Campagne c")
+        List<CampagneRecherche> findAllRecherche();
+
+        /**
+         * @return L'identifiant de la campagne la plus récente, null si aucune campagne n'existe
+         */
+        @Query("SELECT MAX(c.id) FROM Campagne c")
+        Long trouverDernierId();
+
+        /**
+         * Lit le montant collecté et la somme des incréments en attente des campagnes d'un intervalle d'identifiants.
+         * Une seule requête lit les deux, dans un même état de la base : une fusion validée pendant la lecture
+         * ne peut pas compter un incrément deux fois ou l'omettre. La table des incréments, vidée à chaque fusion,
+         * reste de petite taille.
+         *
+         * @param debut Premier identifiant (inclus)
+         * @param fin Dernier identifiant (exclu)
+         * @return Les campagnes de l'intervalle
+         */
+        @Query("SELECT new ma.emsi.controle.projection.CollecteCampagne(c.id, c.montantCollecte, SUM(i.montant)) " +
+               "FROM Campagne c LEFT JOIN IncrementCampagne i ON i.campagneId = c.id " +
+               "WHERE c.id >= :debut AND c.id < :fin GROUP BY c.id, c.montantCollecte")
+        List<CollecteCampagne> trouverCollectes(@Param("debut") long debut, @Param("fin") long fin);
+
+        /**
+         * Initialise le suivi des objectifs des campagnes créées avant son introduction :
+         * version, montant collecté recalculé à partir des dons et statut ouvert.
+         *
+         * @return Le nombre de campagnes initialisées
+         */
+        @Modifying
+        @Transactional
+        @Query("UPDATE Campagne c SET c.version = COALESCE(c.version, 0), " +
+               "c.montantCollecte = COALESCE(c.montantCollecte, (SELECT COALESCE(SUM(d.montant), 0) FROM Donation d WHERE d.campagne = c)), " +
+               "c.statut = COALESCE(c.statut, ma.emsi.controle.entities.StatutCampagne.OUVERTE) " +
+               "WHERE c.version IS NULL OR c.montantCollecte IS NULL OR c.statut IS NULL")
+        int initialiserSuiviObjectifs();
+
+        /**
+         * Clôt les campagnes ouvertes dont le montant collecté atteint l'objectif.
+         *
+         * @return Le nombre de campagnes closes
+         */
+        @Modifying
+        @Transactional
+        @Query("UPDATE Campagne c SET c.statut = ma.emsi.controle.entities.StatutCampagne.FINANCEE, c.version = c.version + 1 " +
+               "WHERE c.statut = ma.emsi.controle.entities.StatutCampagne.OUVERTE AND c.montantCollecte >= c.objectifMontant")
+        int cloreCampagnesFinancees();
 }
@@ -0,0 +1,28 @@
+package ma.emsi.controle.repository;
+import ma.emsi.controle.entities.CleIdempotence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Repository pour l'accès aux clés d'idempotence des soumissions de dons.
+ */
+@Repository
+public interface CleIdempotenceRepository extends JpaRepository<CleIdempotence, String> {
+
+        /**
+         * Supprime les clés enregistrées avant une date.
+         *
+         * @param limite Date avant laquelle les clés sont supprimées
+         * @return Le nombre de clés supprimées
+         */
+        @Transactional
+        @Modifying
+        @Query("DELETE FROM CleIdempotence c WHERE c.dateCreation < :limite")
+        int supprimerAvant(@Param("limite") LocalDateTime limite);
+}
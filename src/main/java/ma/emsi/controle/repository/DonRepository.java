@@ -1,15 +1,228 @@
 package ma.emsi.controle.repository;
+import ma.emsi.controle.DTOs.DonDTO;
 import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.projection.DonAnalyse;
+import ma.emsi.controle.projection.TotalDonateur;
+import ma.emsi.controle.projection.TotalDonsCampagne;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository pour l'accès aux données des dons.
  * Hérite de JpaRepository pour bénéficier des méthodes standard de CRUD.
+ * Les lectures sont projetées en DTO ou en records (SELECT new) et s'exécutent dans une transaction
+ * en lecture seule, ou dans la transaction de l'appelant.
  */
 @Repository
+@Transactional(readOnly = true)
 public interface DonRepository extends JpaRepository<Donation, Long> {
 
-        // Les méthodes de base du JpaRepository sont suffisantes pour le moment,
-        // donc aucune méthode personnalisée n'est ajoutée
+        /**
+         * Relit un don et le nom de sa campagne, projetés en DTO.
+         *
+         * @param id Identifiant du don
+         * @return Le don, s'il existe
+         */
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.campagne.nom, d.nomDonateur, d.montant, d.date) " +
+               "FROM Donation d WHERE d.id = :id")
+        Optional<DonDTO> trouverDon(@Param("id") Long id);
+
+        /**
+         * Calcule, pour chaque campagne ayant reçu au moins un don, le nombre de dons,
+         * la somme des montants et la date du dernier don.
+         *
+         * @return Les totaux par campagne
+         */
+        @Query("SELECT new ma.emsi.controle.projection.TotalDonsCampagne(d.campagne.id, COUNT(d), SUM(d.montant), MAX(d.date)) " +
+               "FROM Donation d GROUP BY d.campagne.id")
+        List<TotalDonsCampagne> calculerTotauxParCampagne();
+
+        /**
+         * Calcule, pour chaque donateur d'une campagne, le nombre et la somme de ses dons.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Les totaux par donateur
+         */
+        @Query("SELECT new ma.emsi.controle.projection.TotalDonateur(d.nomDonateur, COUNT(d), SUM(d.montant)) " +
+               "FROM Donation d WHERE d.campagne.id = :campagneId GROUP BY d.nomDonateur")
+        List<TotalDonateur> calculerTotauxParDonateur(@Param("campagneId") Long campagneId);
+
+        /**
+         * Meilleurs donateurs d'une campagne, calculés par agrégation SQL.
+         * Réservé aux campagnes dont le classement est trop volumineux pour être gardé en mémoire.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param limite Nombre maximal de donateurs retournés
+         * @return Les donateurs, par somme des dons décroissante puis par nom
+         */
+        @Query("SELECT new ma.emsi.controle.projection.TotalDonateur(d.nomDonateur, COUNT(d), SUM(d.montant)) " +
+               "FROM Donation d WHERE d.campagne.id = :campagneId GROUP BY d.nomDonateur " +
+               "ORDER BY SUM(d.montant) DESC, d.nomDonateur")
+        List<TotalDonateur> trouverMeilleursDonateurs(@Param("campagneId") Long campagneId, Limit limite);
+
+        /**
+         * Première page des dons d'une campagne, dans l'ordre chronologique (date puis identifiant).
+         * Les dons sont projetés directement en DTO, sans entité gérée ni jointure sur la campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param limite Nombre maximal de dons retournés
+         * @return Les premiers dons de la campagne
+         */
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.nomDonateur, d.montant, d.date) FROM Donation d " +
+               "WHERE d.campagne.id = :campagneId ORDER BY d.date, d.id")
+        List<DonDTO> trouverPremiersDons(@Param("campagneId") Long campagneId, Limit limite);
+
+        /**
+         * Page suivante des dons d'une campagne (pagination par clé) : les dons placés strictement après
+         * le dernier don de la page précédente. La requête parcourt l'index (campagne_id, date, id)
+         * à partir de la clé, son coût ne dépend donc pas de la profondeur de la page.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param date Date du dernier don de la page précédente
+         * @param id Identifiant du dernier don de la page précédente
+         * @param limite Nombre maximal de dons retournés
+         * @return Les dons suivants de la campagne
+         */
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.nomDonateur, d.montant, d.date) FROM Donation d " +
+               "WHERE d.campagne.id = :campagneId AND (d.date > :date OR (d.date = :date AND d.id > :id)) " +
+               "ORDER BY d.date, d.id")
+        List<DonDTO> trouverDonsApres(@Param("campagneId") Long campagneId, @Param("date") LocalDateTime date,
+                                      @Param("id") Long id, Limit limite);
+
+        /**
+         * Parcourt tous les dons d'une campagne dans l'ordre chronologique, ligne par ligne.
+         * Le flux doit être consommé puis fermé dans une transaction ; les lignes sont lues par paquets
+         * (fetch size) au lieu d'être chargées en une fois.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Le flux des dons de la campagne
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.nomDonateur, d.montant, d.date) FROM Donation d " +
+               "WHERE d.campagne.id = :campagneId ORDER BY d.date, d.id")
+        Stream<DonDTO> parcourirDons(@Param("campagneId") Long campagneId);
+
+        /**
+         * Parcourt les dons d'une campagne sur une période, dans l'ordre chronologique, ligne par ligne.
+         * La requête lit la plage (campagne_id, date) de l'index ; le flux doit être consommé puis fermé
+         * dans une transaction, les lignes étant lues par paquets.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param debut Début de la période (inclus)
+         * @param fin Fin de la période (exclue)
+         * @return Le flux des dons de la période
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.nomDonateur, d.montant, d.date) FROM Donation d " +
+               "WHERE d.campagne.id = :campagneId AND d.date >= :debut AND d.date < :fin ORDER BY d.date, d.id")
+        Stream<DonDTO> parcourirDonsPeriode(@Param("campagneId") Long campagneId, @Param("debut") LocalDateTime debut,
+                                            @Param("fin") LocalDateTime fin);
+
+        /**
+         * Retient, parmi des numéros de suivi de l'écriture différée, ceux des dons déjà enregistrés.
+         *
+         * @param suivis Numéros de suivi recherchés
+         * @return Les numéros de suivi présents en base
+         */
+        @Query("SELECT d.suivi FROM Donation d WHERE d.suivi IN :suivis")
+        List<String> trouverSuivis(@Param("suivis") Collection<String> suivis);
+
+        /**
+         * Relit le don enregistré sous un numéro de suivi de l'écriture différée.
+         *
+         * @param suivi Numéro de suivi du don
+         * @return Le don, s'il existe
+         */
+        @Query("SELECT new ma.emsi.controle.DTOs.DonDTO(d.id, d.campagne.nom, d.nomDonateur, d.montant, d.date) " +
+               "FROM Donation d WHERE d.suivi = :suivi")
+        Optional<DonDTO> trouverDonSuivi(@Param("suivi") String suivi);
+
+        /**
+         * @return L'identifiant du don le plus récent, null si aucun don n'existe
+         */
+        @Query("SELECT MAX(d.id) FROM Donation d")
+        Long trouverDernierId();
+
+        /**
+         * Retient, parmi des identifiants de dons, ceux des dons visibles par la transaction courante.
+         *
+         * @param ids Identifiants recherchés
+         * @return Les identifiants des dons existants
+         */
+        @Query("SELECT d.id FROM Donation d WHERE d.id IN :ids")
+        List<Long> trouverIdentifiants(@Param("ids") Collection<Long> ids);
+
+        /**
+         * Parcourt, par identifiant croissant, les dons dont l'identifiant est supérieur à une borne.
+         * Le flux doit être consommé puis fermé dans une transaction ; les lignes sont lues par paquets.
+         *
+         * @param id Borne (exclue), 0 pour tous les dons
+         * @return Le flux des dons
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new ma.emsi.controle.projection.DonAnalyse(d.id, d.campagne.id, d.montant, d.date) FROM Donation d " +
+               "WHERE d.id > :id ORDER BY d.id")
+        Stream<DonAnalyse> parcourirDonsApres(@Param("id") Long id);
+
+        /**
+         * Parcourt, par identifiant croissant, les identifiants des dons jusqu'à une borne, lus dans l'index
+         * de la clé primaire. Le flux doit être consommé puis fermé dans une transaction.
+         *
+         * @param id Borne (incluse)
+         * @return Le flux des identifiants
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT d.id FROM Donation d WHERE d.id <= :id ORDER BY d.id")
+        Stream<Long> parcourirIdentifiants(@Param("id") Long id);
+
+        /**
+         * Relit des dons par identifiant, projetés pour les rapports.
+         *
+         * @param ids Identifiants des dons
+         * @return Les dons existants
+         */
+        @Query("SELECT new ma.emsi.controle.projection.DonAnalyse(d.id, d.campagne.id, d.montant, d.date) FROM Donation d " +
+               "WHERE d.id IN :ids")
+        List<DonAnalyse> trouverDonsAnalyse(@Param("ids") Collection<Long> ids);
+
+        /**
+         * Parcourt les dons des campagnes d'un intervalle d'identifiants, dans l'ordre de l'index (campagne, date, id).
+         * Le flux doit être consommé puis fermé dans une transaction ; les lignes sont lues par paquets.
+         *
+         * @param debut Premier identifiant de campagne (inclus)
+         * @param fin Dernier identifiant de campagne (exclu)
+         * @return Le flux des dons
+         */
+        @QueryHints({
+                @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+        })
+        @Query("SELECT new ma.emsi.controle.projection.DonAnalyse(d.id, d.campagne.id, d.montant, d.date) FROM Donation d " +
+               "WHERE d.campagne.id >= :debut AND d.campagne.id < :fin")
+        Stream<DonAnalyse> parcourirDonsCampagnes(@Param("debut") long debut, @Param("fin") long fin);
 }
@@ -0,0 +1,37 @@
+package ma.emsi.controle.repository;
+import ma.emsi.controle.entities.IncrementCampagne;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository des incréments de montant collecté en attente de fusion.
+ */
+@Repository
+public interface IncrementCampagneRepository extends JpaRepository<IncrementCampagne, Long> {
+
+        /**
+         * Lit les plus anciens incréments en attente.
+         *
+         * @param limite Nombre maximal d'incréments lus
+         * @return Les incréments, par identifiant croissant
+         */
+        @Query("SELECT i FROM IncrementCampagne i ORDER BY i.id")
+        List<IncrementCampagne> trouverPremiers(Limit limite);
+
+        /**
+         * Supprime des incréments fusionnés.
+         *
+         * @param ids Identifiants des incréments
+         * @return Le nombre d'incréments supprimés, inférieur au nombre demandé si d'autres ont été fusionnés entre-temps
+         */
+        @Modifying
+        @Query("DELETE FROM IncrementCampagne i WHERE i.id IN :ids")
+        int supprimer(@Param("ids") Collection<Long> ids);
+}
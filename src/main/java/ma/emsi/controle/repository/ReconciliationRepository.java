@@ -0,0 +1,37 @@
+package ma.emsi.controle.repository;
+import ma.emsi.controle.entities.PartitionReconciliation;
+import ma.emsi.controle.entities.Reconciliation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Repository des exécutions du contrôle des montants collectés et de leurs partitions.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface ReconciliationRepository extends JpaRepository<Reconciliation, Long> {
+
+        /**
+         * Lit les exécutions les plus récentes.
+         *
+         * @param limite Nombre maximal d'exécutions lues
+         * @return Les exécutions, de la plus récente à la plus ancienne
+         */
+        @Query("SELECT r FROM Reconciliation r ORDER BY r.id DESC")
+        List<Reconciliation> trouverDernieres(Limit limite);
+
+        /**
+         * Lit les partitions d'une exécution.
+         *
+         * @param reconciliationId Identifiant de l'exécution
+         * @return Les partitions, par numéro croissant
+         */
+        @Query("SELECT p FROM PartitionReconciliation p WHERE p.reconciliationId = :reconciliationId ORDER BY p.numero")
+        List<PartitionReconciliation> trouverPartitions(@Param("reconciliationId") Long reconciliationId);
+}
@@ -0,0 +1,53 @@
+package ma.emsi.controle.repository;
+import ma.emsi.controle.DTOs.StatDonDTO;
+import ma.emsi.controle.entities.Granularite;
+import ma.emsi.controle.entities.StatDon;
+import ma.emsi.controle.entities.StatDonId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository pour l'accès aux statistiques pré-agrégées des dons.
+ * Les lectures s'exécutent dans une transaction en lecture seule, ou dans la transaction de l'appelant.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface StatDonRepository extends JpaRepository<StatDon, StatDonId> {
+
+        /**
+         * Lit les intervalles d'une campagne sur une période, par un parcours de la clé primaire.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param granularite Granularité des intervalles
+         * @param debut Début de la période (inclus)
+         * @param fin Fin de la période (exclue)
+         * @return Les intervalles ayant reçu au moins un don, dans l'ordre chronologique
+         */
+        @Query("SELECT new ma.emsi.controle.DTOs.StatDonDTO(s.id.debut, s.nombreDons, s.montantTotal) FROM StatDon s " +
+               "WHERE s.id.campagneId = :campagneId AND s.id.granularite = :granularite " +
+               "AND s.id.debut >= :debut AND s.id.debut < :fin ORDER BY s.id.debut")
+        List<StatDonDTO> trouverIntervalles(@Param("campagneId") Long campagneId, @Param("granularite") Granularite granularite,
+                                            @Param("debut") LocalDateTime debut, @Param("fin") LocalDateTime fin);
+
+        /**
+         * Supprime les intervalles d'une granularité commençant dans une plage de dates, avant leur reconstruction.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param granularite Granularité des intervalles
+         * @param debut Début de la plage (inclus)
+         * @param fin Fin de la plage (exclue)
+         */
+        @Modifying
+        @Transactional
+        @Query("DELETE FROM StatDon s WHERE s.id.campagneId = :campagneId AND s.id.granularite = :granularite " +
+               "AND s.id.debut >= :debut AND s.id.debut < :fin")
+        void supprimerEntre(@Param("campagneId") Long campagneId, @Param("granularite") Granularite granularite,
+                            @Param("debut") LocalDateTime debut, @Param("fin") LocalDateTime fin);
+}
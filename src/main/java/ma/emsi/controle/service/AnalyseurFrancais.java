@@ -0,0 +1,132 @@
+package ma.emsi.controle.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Analyse de texte français pour la recherche de campagnes : mise en minuscules, suppression des accents,
+ * découpage en mots, mots vides et racinisation légère.
+ * <p>
+ * La racinisation retire le pluriel puis le suffixe flexionnel ou dérivationnel le plus long parmi une liste courte,
+ * à la manière des raciniseurs « légers » : « étudiants » et « étudiant » donnent « etudi »,
+ * « recherches » et « recherche » donnent « recherch ». Elle privilégie la précision : des mots de même famille
+ * peuvent garder des racines différentes (« étude » donne « etud »).
+ */
+public final class AnalyseurFrancais {
+
+        /**
+         * Longueur minimale d'une racine : un suffixe n'est retiré que s'il laisse au moins ce nombre de lettres
+         */
+        private static final int LONGUEUR_MIN_RACINE = 3;
+
+        /**
+         * Suffixes retirés par la racinisation, du plus long au plus court
+         */
+        private static final String[] SUFFIXES = {
+                "issement", "atrice", "ateur", "ement", "ation", "ance", "ence", "ique", "isme", "iste", "able",
+                "elle", "euse", "tion", "ant", "ent", "eux", "ite", "ive", "ale", "el", "if", "er", "ee", "al"
+        };
+
+        /**
+         * Mots vides : trop fréquents pour être discriminants, ils sont ignorés à l'indexation et dans les requêtes
+         */
+        private static final Set<String> MOTS_VIDES = Set.of(
+                "a", "au", "aux", "avec", "ce", "ces", "d", "dans", "de", "des", "du", "en", "et", "l", "la", "le",
+                "les", "leur", "leurs", "ou", "par", "pour", "sa", "se", "ses", "son", "sur", "un", "une");
+
+        private AnalyseurFrancais() {
+        }
+
+        /**
+         * Met un texte en minuscules et retire ses accents et ligatures.
+         *
+         * @param texte Texte à normaliser
+         * @return Le texte normalisé
+         */
+        public static String normaliser(String texte) {
+            String decompose = Normalizer.normalize(texte.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+            StringBuilder normalise = new StringBuilder(decompose.length());
+            for (int i = 0; i < decompose.length(); i++) {
+                char c = decompose.charAt(i);
+                if (c == 'œ') {
+                    normalise.append("oe");
+                } else if (c == 'æ') {
+                    normalise.append("ae");
+                } else if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                    normalise.append(c);
+                }
+            }
+            return normalise.toString();
+        }
+
+        /**
+         * Découpe un texte normalisé en mots (suites de lettres et de chiffres), mots vides compris.
+         *
+         * @param normalise Texte normalisé
+         * @return Les mots, dans l'ordre du texte
+         */
+        public static List<String> decouper(String normalise) {
+            List<String> mots = new ArrayList<>();
+            int debut = -1;
+            for (int i = 0; i <= normalise.length(); i++) {
+                boolean lettre = i < normalise.length() && Character.isLetterOrDigit(normalise.charAt(i));
+                if (lettre && debut < 0) {
+                    debut = i;
+                } else if (!lettre && debut >= 0) {
+                    mots.add(normalise.substring(debut, i));
+                    debut = -1;
+                }
+            }
+            return mots;
+        }
+
+        /**
+         * Normalise un texte puis en extrait les mots indexables (sans les mots vides).
+         *
+         * @param texte Texte à analyser
+         * @return Les mots normalisés, dans l'ordre du texte
+         */
+        public static List<String> mots(String texte) {
+            List<String> mots = decouper(normaliser(texte));
+            mots.removeIf(AnalyseurFrancais::estMotVide);
+            return mots;
+        }
+
+        /**
+         * @param mot Mot normalisé
+         * @return true si le mot est un mot vide
+         */
+        public static boolean estMotVide(String mot) {
+            return MOTS_VIDES.contains(mot);
+        }
+
+        /**
+         * Calcule la racine d'un mot normalisé.
+         *
+         * @param mot Mot normalisé (minuscules, sans accents)
+         * @return La racine du mot
+         */
+        public static String raciner(String mot) {
+            String racine = mot;
+            // Pluriel : -aux devient -al (« médicaux »), -s et -x finaux sont retirés
+            if (racine.length() > 4 && racine.endsWith("aux")) {
+                racine = racine.substring(0, racine.length() - 3) + "al";
+            } else if (racine.length() > LONGUEUR_MIN_RACINE && (racine.endsWith("s") || racine.endsWith("x"))) {
+                racine = racine.substring(0, racine.length() - 1);
+            }
+            for (String suffixe : SUFFIXES) {
+                if (racine.endsWith(suffixe) && racine.length() - suffixe.length() >= LONGUEUR_MIN_RACINE) {
+                    racine = racine.substring(0, racine.length() - suffixe.length());
+                    break;
+                }
+            }
+            // Le « e » final distingue rarement deux mots (« aide », « aid ») : il est retiré
+            if (racine.length() > LONGUEUR_MIN_RACINE && racine.endsWith("e")) {
+                racine = racine.substring(0, racine.length() - 1);
+            }
+            return racine;
+        }
+}
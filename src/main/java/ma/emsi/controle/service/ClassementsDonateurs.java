@@ -0,0 +1,433 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonateurClassementDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.TotalDonateur;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Classement des meilleurs donateurs de chaque campagne (somme des dons par nom de donateur), tenu en mémoire.
+ * <p>
+ * Le classement d'une campagne est chargé depuis la base à sa première consultation, puis mis à jour après le commit
+ * de chaque don. Il se compose des totaux de chaque donateur et d'un ensemble trié borné des meilleurs : un don ne
+ * pouvant qu'augmenter le total de son donateur, celui-ci reste parmi les meilleurs ou remplace le dernier d'entre eux,
+ * sans tri de l'ensemble des donateurs.
+ * <p>
+ * Le chargement lit tous les dons de la campagne dans une transaction REPEATABLE_READ. Les dons notifiés pendant
+ * le chargement, et ceux validés mais pas encore notifiés, sont recherchés par identifiant dans l'état lu : seuls
+ * les absents sont ajoutés, et la notification des présents est ignorée. Un don est ainsi compté une fois quelle que
+ * soit sa date, y compris un don de l'historique importé après le chargement.
+ * <p>
+ * La mémoire est bornée : les classements les moins récemment consultés sont évincés au-delà d'un nombre de campagnes,
+ * et une campagne comptant trop de donateurs distincts est servie par une agrégation SQL.
+ */
+@Service
+public class ClassementsDonateurs {
+
+        /**
+         * Nombre maximal d'identifiants par vérification de leur présence en base
+         */
+        private static final int IDENTIFIANTS_PAR_REQUETE = 1000;
+
+        /**
+         * Ordre du classement : somme des dons décroissante, puis nom du donateur
+         */
+        private static final Comparator<TotalDonateurCampagne> ORDRE =
+                Comparator.comparingLong((TotalDonateurCampagne total) -> total.centimes).reversed()
+                        .thenComparing(total -> total.nomDonateur);
+
+        /**
+         * Repository des dons, pour charger les classements
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Index en mémoire des campagnes, pour vérifier l'existence d'une campagne
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Transaction en écriture des chargements, servie par la base principale : les dons notifiés avant la lecture
+         * doivent y figurer, ce que ne garantit pas une réplique en retard. L'isolation REPEATABLE_READ fige l'état lu
+         * à la première requête : la présence des dons notifiés pendant le chargement est vérifiée dans ce même état.
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Campagne de chaque don publié dans une transaction dont l'issue n'a pas encore été notifiée, par identifiant de don
+         */
+        private final ConcurrentHashMap<Long, Long> donsEnCours = new ConcurrentHashMap<>();
+
+        /**
+         * Classements chargés, par identifiant de campagne
+         */
+        private final ConcurrentHashMap<Long, Classement> classements = new ConcurrentHashMap<>();
+
+        /**
+         * Campagnes dont le classement dépasse le nombre maximal de donateurs, servies depuis la base
+         */
+        private final Set<Long> campagnesVolumineuses = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Nombre de meilleurs donateurs conservés par campagne, et nombre maximal servi
+         */
+        @Value("${campagnes.classements.taille:100}")
+        private int taille;
+
+        /**
+         * Nombre maximal de classements gardés en mémoire
+         */
+        @Value("${campagnes.classements.campagnes-max:1000}")
+        private int campagnesMax;
+
+        /**
+         * Nombre maximal de donateurs distincts d'un classement gardé en mémoire
+         */
+        @Value("${campagnes.classements.donateurs-max:100000}")
+        private int donateursMax;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ClassementsDonateurs(DonRepository donRepository, IndexCampagnes indexCampagnes,
+                                    PlatformTransactionManager transactionManager) {
+            this.donRepository = donRepository;
+            this.indexCampagnes = indexCampagnes;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        }
+
+        /**
+         * Retourne les meilleurs donateurs d'une campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param limite Nombre maximal de donateurs
+         * @return Les donateurs, par somme des dons décroissante puis par nom
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la limite est hors bornes
+         */
+        public List<DonateurClassementDTO> getMeilleursDonateurs(Long campagneId, int limite) {
+            if (limite < 1 || limite > taille) {
+                throw new IllegalStateException("La limite doit être comprise entre 1 et " + taille);
+            }
+            indexCampagnes.trouver(campagneId)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            while (true) {
+                if (campagnesVolumineuses.contains(campagneId)) {
+                    return lireDepuisBase(campagneId, limite);
+                }
+                Classement classement = classements.get(campagneId);
+                if (classement == null) {
+                    Classement nouveau = new Classement();
+                    classement = classements.putIfAbsent(campagneId, nouveau);
+                    if (classement == null) {
+                        classement = nouveau;
+                        charger(campagneId, nouveau);
+                    }
+                }
+                List<DonateurClassementDTO> meilleurs = classement.meilleurs(limite);
+                if (meilleurs != null) {
+                    return meilleurs;
+                }
+                // Classement abandonné pendant son chargement (campagne volumineuse ou erreur) : nouvelle tentative
+            }
+        }
+
+        /**
+         * Note le don publié dans une transaction en cours, jusqu'à la notification de son commit ou de son annulation.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @EventListener
+        public void onDonPublie(DonEnregistreEvent event) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                donsEnCours.put(event.donId(), event.campagneId());
+            }
+        }
+
+        /**
+         * Met à jour le classement chargé de la campagne une fois la transaction du don validée.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public void onDonEnregistre(DonEnregistreEvent event) {
+            Classement classement = classements.get(event.campagneId());
+            if (classement != null && !classement.ajouterDon(event)) {
+                marquerVolumineuse(event.campagneId(), classement);
+            }
+            donsEnCours.remove(event.donId());
+        }
+
+        /**
+         * Oublie le don d'une transaction annulée.
+         *
+         * @param event L'événement de don publié dans la transaction annulée
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+        public void onDonAnnule(DonEnregistreEvent event) {
+            donsEnCours.remove(event.donId());
+        }
+
+        /**
+         * Oublie le classement d'une campagne supprimée.
+         *
+         * @param event L'événement de modification de campagne
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+        public void onCampagneModifiee(CampagneModifieeEvent event) {
+            if (event.supprimee()) {
+                classements.remove(event.campagneId());
+                campagnesVolumineuses.remove(event.campagneId());
+            }
+        }
+
+        /**
+         * @return Le nombre de classements gardés en mémoire
+         */
+        public int getNombreClassements() {
+            return classements.size();
+        }
+
+        /**
+         * Charge le classement d'une campagne à partir des totaux de ses donateurs, puis y ajoute les dons notifiés
+         * pendant la lecture qu'elle n'a pas vus, dans la même transaction.
+         */
+        private void charger(Long campagneId, Classement classement) {
+            try {
+                Boolean charge = transactionTemplate.execute(statut -> {
+                    List<TotalDonateur> totaux = donRepository.calculerTotauxParDonateur(campagneId);
+                    return totaux.size() <= donateursMax && classement.initialiser(campagneId, totaux);
+                });
+                if (!Boolean.TRUE.equals(charge)) {
+                    marquerVolumineuse(campagneId, classement);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                classements.remove(campagneId, classement);
+                classement.abandonner();
+                throw e;
+            }
+            evincer();
+        }
+
+        private void marquerVolumineuse(Long campagneId, Classement classement) {
+            campagnesVolumineuses.add(campagneId);
+            classements.remove(campagneId, classement);
+            classement.abandonner();
+        }
+
+        /**
+         * Évince les classements les moins récemment consultés au-delà du nombre maximal de campagnes.
+         */
+        private void evincer() {
+            while (classements.size() > campagnesMax) {
+                Map.Entry<Long, Classement> plusAncien = null;
+                for (Map.Entry<Long, Classement> entree : classements.entrySet()) {
+                    if (plusAncien == null || entree.getValue().dernierAcces < plusAncien.getValue().dernierAcces) {
+                        plusAncien = entree;
+                    }
+                }
+                if (plusAncien != null) {
+                    classements.remove(plusAncien.getKey(), plusAncien.getValue());
+                }
+            }
+        }
+
+        /**
+         * @return Parmi des identifiants de dons, ceux présents dans l'état de la base lu par la transaction courante
+         */
+        private Set<Long> trouverIdentifiants(Set<Long> ids) {
+            Set<Long> trouves = new HashSet<>();
+            List<Long> paquet = new ArrayList<>(Math.min(ids.size(), IDENTIFIANTS_PAR_REQUETE));
+            for (Long id : ids) {
+                paquet.add(id);
+                if (paquet.size() == IDENTIFIANTS_PAR_REQUETE) {
+                    trouves.addAll(donRepository.trouverIdentifiants(paquet));
+                    paquet.clear();
+                }
+            }
+            if (!paquet.isEmpty()) {
+                trouves.addAll(donRepository.trouverIdentifiants(paquet));
+            }
+            return trouves;
+        }
+
+        private List<DonateurClassementDTO> lireDepuisBase(Long campagneId, int limite) {
+            List<TotalDonateur> totaux = donRepository.trouverMeilleursDonateurs(campagneId, Limit.of(limite));
+            List<DonateurClassementDTO> meilleurs = new ArrayList<>(totaux.size());
+            for (TotalDonateur total : totaux) {
+                meilleurs.add(new DonateurClassementDTO(meilleurs.size() + 1, total.nomDonateur(),
+                        total.montantTotal(), total.nombreDons()));
+            }
+            return meilleurs;
+        }
+
+        /**
+         * Totaux d'un donateur. Modifiés sous le verrou de leur classement, après avoir été retirés de l'ensemble trié.
+         */
+        private static final class TotalDonateurCampagne {
+            private final String nomDonateur;
+            private long centimes;
+            private long nombreDons;
+
+            private TotalDonateurCampagne(String nomDonateur) {
+                this.nomDonateur = nomDonateur;
+            }
+        }
+
+        /**
+         * Classement d'une campagne : totaux par donateur et ensemble trié des meilleurs, protégés par le verrou du classement.
+         * Les notifications reçues pendant le chargement sont mises en attente puis appliquées.
+         */
+        private final class Classement {
+            private final Map<String, TotalDonateurCampagne> totaux = new HashMap<>();
+            private final TreeSet<TotalDonateurCampagne> meilleurs = new TreeSet<>(ORDRE);
+
+            /**
+             * Notifications reçues pendant le chargement ; null une fois le classement chargé
+             */
+            private List<DonEnregistreEvent> enAttente = new ArrayList<>();
+
+            private boolean abandonne;
+
+            /**
+             * Dons lus au chargement mais pas encore notifiés : leur notification est ignorée
+             */
+            private final Set<Long> donsDejaComptes = new HashSet<>();
+
+            private volatile long dernierAcces = System.nanoTime();
+
+            /**
+             * Initialise le classement avec les totaux lus, dans la transaction de leur lecture : les dons notifiés
+             * pendant la lecture ou validés sans être encore notifiés sont recherchés dans l'état lu, seuls les absents
+             * restent à compter.
+             *
+             * @return false si le classement dépasse le nombre maximal de donateurs
+             */
+            private synchronized boolean initialiser(Long campagneId, List<TotalDonateur> totauxCharges) {
+                for (TotalDonateur total : totauxCharges) {
+                    ajouter(total.nomDonateur(), total.montantTotal().centimes(), total.nombreDons());
+                }
+                Set<Long> candidats = new HashSet<>();
+                donsEnCours.forEach((donId, campagne) -> {
+                    if (campagne.equals(campagneId)) {
+                        candidats.add(donId);
+                    }
+                });
+                enAttente.forEach(event -> candidats.add(event.donId()));
+                Set<Long> comptes = candidats.isEmpty() ? new HashSet<>() : trouverIdentifiants(candidats);
+                List<DonEnregistreEvent> notifications = enAttente;
+                enAttente = null;
+                notifyAll();
+                for (DonEnregistreEvent event : notifications) {
+                    if (!comptes.remove(event.donId())) {
+                        ajouter(event.nomDonateur(), event.montant().centimes(), 1);
+                    }
+                }
+                donsDejaComptes.addAll(comptes);
+                return totaux.size() <= donateursMax;
+            }
+
+            private synchronized void abandonner() {
+                abandonne = true;
+                enAttente = null;
+                notifyAll();
+            }
+
+            /**
+             * @return false si le classement dépasse désormais le nombre maximal de donateurs
+             */
+            private synchronized boolean ajouterDon(DonEnregistreEvent event) {
+                if (abandonne) {
+                    return true;
+                }
+                if (enAttente != null) {
+                    enAttente.add(event);
+                    return true;
+                }
+                appliquer(event);
+                return totaux.size() <= donateursMax;
+            }
+
+            private void appliquer(DonEnregistreEvent event) {
+                if (!donsDejaComptes.isEmpty() && donsDejaComptes.remove(event.donId())) {
+                    return;
+                }
+                ajouter(event.nomDonateur(), event.montant().centimes(), 1);
+            }
+
+            private void ajouter(String nomDonateur, long centimes, long nombreDons) {
+                TotalDonateurCampagne total = totaux.computeIfAbsent(nomDonateur, TotalDonateurCampagne::new);
+                boolean parmiMeilleurs = meilleurs.remove(total);
+                total.centimes += centimes;
+                total.nombreDons += nombreDons;
+                if (parmiMeilleurs || meilleurs.size() < taille) {
+                    meilleurs.add(total);
+                } else if (ORDRE.compare(total, meilleurs.last()) < 0) {
+                    meilleurs.pollLast();
+                    meilleurs.add(total);
+                }
+            }
+
+            /**
+             * Attend la fin du chargement puis copie les meilleurs donateurs.
+             *
+             * @return Les meilleurs donateurs, ou null si le classement a été abandonné
+             */
+            private synchronized List<DonateurClassementDTO> meilleurs(int limite) {
+                dernierAcces = System.nanoTime();
+                boolean interrompu = false;
+                while (enAttente != null && !abandonne) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrompu = true;
+                    }
+                }
+                if (interrompu) {
+                    Thread.currentThread().interrupt();
+                }
+                if (abandonne) {
+                    return null;
+                }
+                List<DonateurClassementDTO> resultat = new ArrayList<>(Math.min(limite, meilleurs.size()));
+                Iterator<TotalDonateurCampagne> iterateur = meilleurs.iterator();
+                while (resultat.size() < limite && iterateur.hasNext()) {
+                    TotalDonateurCampagne total = iterateur.next();
+                    resultat.add(new DonateurClassementDTO(resultat.size() + 1, total.nomDonateur,
+                            Montant.deCentimes(total.centimes), total.nombreDons));
+                }
+                return resultat;
+            }
+        }
+}
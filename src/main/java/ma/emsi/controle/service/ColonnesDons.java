@@ -0,0 +1,628 @@
+package ma.emsi.controle.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Stockage en colonnes des dons, hors du tas, pour les rapports analytiques.
+ * <p>
+ * Les dons sont rangés dans des segments de taille fixe, un fichier projeté en mémoire (memory-mapped) par segment :
+ * une colonne d'identifiants de campagne (int), une de montants en centimes (long), une de dates en secondes
+ * (long, date du don lue comme UTC) et une d'identifiants de dons (long), qui n'est pas lue par les agrégations
+ * mais permet de savoir si un don est déjà stocké. Les colonnes sont lues par lots dans des tableaux primitifs, sur lesquels
+ * les opérateurs de sélection et d'agrégation sont des boucles sans appel ni objet, que le compilateur JIT peut dérouler
+ * et vectoriser. Le tas ne contient que ces lots et les tableaux d'agrégats.
+ * <p>
+ * Les fichiers sont rouverts tels quels au redémarrage. Les ajouts sont faits par un thread à la fois ; les lectures
+ * sont concurrentes et ne voient que les lignes publiées (le nombre de lignes d'un segment est écrit après ses colonnes).
+ * Les lignes des campagnes supprimées restent dans les segments et sont écartées des agrégats.
+ */
+public class ColonnesDons implements Closeable {
+
+        /**
+         * Nombre de lignes lues à la fois dans les colonnes ; le nombre de lignes d'un segment en est un multiple
+         */
+        static final int LOT = 1024;
+
+        /**
+         * Nombre maximal de lignes d'un segment : un fichier projeté ne peut dépasser 2 Go
+         */
+        static final int LIGNES_MAX_SEGMENT = 64 * 1024 * 1024;
+
+        private static final int MAGIQUE = 0x444F4E53;
+        private static final int VERSION = 2;
+
+        /**
+         * En-tête d'un segment : magique, version, capacité, lignes publiées, plus grand identifiant de don,
+         * première et dernière date, plus grand identifiant de campagne
+         */
+        private static final int TAILLE_ENTETE = 64;
+        private static final int ENTETE_VERSION = 4;
+        private static final int ENTETE_CAPACITE = 8;
+        private static final int ENTETE_LIGNES = 12;
+        private static final int ENTETE_DERNIER_ID = 16;
+        private static final int ENTETE_PREMIERE_SECONDE = 24;
+        private static final int ENTETE_DERNIERE_SECONDE = 32;
+        private static final int ENTETE_CAMPAGNE_MAX = 40;
+
+        private static final long SECONDES_PAR_JOUR = 86_400;
+
+        private static final String PREFIXE_SEGMENT = "segment-";
+        private static final String SUFFIXE_SEGMENT = ".col";
+        private static final String FICHIER_SUPPRIMEES = "campagnes-supprimees.bin";
+
+        /**
+         * Répertoire des fichiers
+         */
+        private final Path repertoire;
+
+        /**
+         * Nombre de lignes d'un nouveau segment
+         */
+        private final int lignesParSegment;
+
+        /**
+         * Segments, dans l'ordre de leur création ; remplacé par une copie à chaque nouveau segment
+         */
+        private volatile Segment[] segments;
+
+        /**
+         * Identifiants des campagnes supprimées, ajoutés à la suite dans le fichier
+         */
+        private final FileChannel canalSupprimees;
+
+        /**
+         * Campagnes supprimées ; remplacé par une copie à chaque suppression
+         */
+        private volatile BitSet supprimees;
+
+        /**
+         * Bornes des lignes publiées, mises à jour avant la publication de chaque ligne
+         */
+        private volatile long dernierId;
+        private volatile long premiereSeconde;
+        private volatile long derniereSeconde;
+        private volatile int campagneMax;
+
+        /**
+         * Identifiants des dons stockés, relus des segments à l'ouverture
+         */
+        private final Identifiants identifiants = new Identifiants();
+
+        /**
+         * Ouvre les segments existants du répertoire, ou un stockage vide.
+         *
+         * @param repertoire Répertoire des fichiers, créé s'il n'existe pas
+         * @param lignesParSegment Nombre de lignes d'un nouveau segment, arrondi au multiple de LOT supérieur
+         * @throws IOException Si un fichier ne peut pas être ouvert ou n'est pas un segment valide
+         */
+        public ColonnesDons(Path repertoire, int lignesParSegment) throws IOException {
+            if (lignesParSegment < 1 || lignesParSegment > LIGNES_MAX_SEGMENT) {
+                throw new IllegalArgumentException("Le nombre de lignes par segment doit être compris entre 1 et " + LIGNES_MAX_SEGMENT);
+            }
+            this.repertoire = repertoire;
+            this.lignesParSegment = (lignesParSegment + LOT - 1) / LOT * LOT;
+            Files.createDirectories(repertoire);
+            List<Segment> ouverts = new ArrayList<>();
+            for (Path fichier : fichiersSegments(repertoire)) {
+                ouverts.add(Segment.ouvrir(fichier));
+            }
+            this.segments = ouverts.toArray(new Segment[0]);
+            initialiserBornes();
+            for (Segment segment : segments) {
+                for (int ligne = 0; ligne < segment.lignes; ligne++) {
+                    identifiants.ajouter(segment.ids.get(ligne));
+                }
+            }
+            this.canalSupprimees = FileChannel.open(repertoire.resolve(FICHIER_SUPPRIMEES),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.supprimees = lireSupprimees();
+        }
+
+        /**
+         * Supprime les fichiers du stockage d'un répertoire, par exemple après l'échec de leur ouverture.
+         *
+         * @param repertoire Répertoire des fichiers
+         * @throws IOException Si un fichier ne peut pas être supprimé
+         */
+        public static void supprimerFichiers(Path repertoire) throws IOException {
+            if (!Files.isDirectory(repertoire)) {
+                return;
+            }
+            for (Path fichier : fichiersSegments(repertoire)) {
+                Files.delete(fichier);
+            }
+            Files.deleteIfExists(repertoire.resolve(FICHIER_SUPPRIMEES));
+        }
+
+        /**
+         * Ajoute un don.
+         *
+         * @param donId Identifiant du don
+         * @param campagneId Identifiant de la campagne
+         * @param centimes Montant en centimes
+         * @param seconde Date en secondes
+         */
+        public synchronized void ajouter(long donId, long campagneId, long centimes, long seconde) {
+            int campagne = Math.toIntExact(campagneId);
+            Segment[] actuels = segments;
+            Segment courant = actuels.length == 0 ? null : actuels[actuels.length - 1];
+            if (courant == null || courant.estPlein()) {
+                try {
+                    courant = Segment.creer(repertoire.resolve(nomSegment(actuels.length)), lignesParSegment);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                Segment[] nouveaux = Arrays.copyOf(actuels, actuels.length + 1);
+                nouveaux[actuels.length] = courant;
+                segments = nouveaux;
+            }
+            // Bornes d'abord : une ligne publiée est toujours couverte par les bornes lues après son nombre de lignes
+            dernierId = Math.max(dernierId, donId);
+            premiereSeconde = Math.min(premiereSeconde, seconde);
+            derniereSeconde = Math.max(derniereSeconde, seconde);
+            campagneMax = Math.max(campagneMax, campagne);
+            courant.ajouter(donId, campagne, centimes, seconde);
+            identifiants.ajouter(donId);
+        }
+
+        /**
+         * Indique si un don est stocké.
+         *
+         * @param donId Identifiant du don
+         * @return true si le don a été ajouté
+         */
+        public synchronized boolean contient(long donId) {
+            return identifiants.contient(donId);
+        }
+
+        /**
+         * Écarte des agrégats les dons d'une campagne supprimée.
+         *
+         * @param campagneId Identifiant de la campagne
+         */
+        public synchronized void supprimerCampagne(long campagneId) {
+            if (campagneId > Integer.MAX_VALUE || supprimees.get((int) campagneId)) {
+                return;
+            }
+            ByteBuffer tampon = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.nativeOrder()).putInt(0, (int) campagneId);
+            try {
+                canalSupprimees.write(tampon, canalSupprimees.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            BitSet copie = (BitSet) supprimees.clone();
+            copie.set((int) campagneId);
+            supprimees = copie;
+        }
+
+        /**
+         * Supprime tous les dons et toutes les campagnes supprimées.
+         */
+        public synchronized void vider() {
+            try {
+                segments = new Segment[0];
+                for (Path fichier : fichiersSegments(repertoire)) {
+                    Files.delete(fichier);
+                }
+                canalSupprimees.truncate(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            supprimees = new BitSet();
+            identifiants.vider();
+            initialiserBornes();
+        }
+
+        /**
+         * Écrit sur disque les pages modifiées des segments.
+         */
+        public void forcer() {
+            for (Segment segment : segments) {
+                segment.carte.force();
+            }
+            try {
+                canalSupprimees.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            forcer();
+            canalSupprimees.close();
+        }
+
+        /**
+         * @return Le nombre de lignes publiées, campagnes supprimées comprises
+         */
+        public long getNombreLignes() {
+            long lignes = 0;
+            for (Segment segment : segments) {
+                lignes += segment.lignes;
+            }
+            return lignes;
+        }
+
+        /**
+         * @return Le nombre de segments
+         */
+        public int getNombreSegments() {
+            return segments.length;
+        }
+
+        /**
+         * @return Le plus grand identifiant de don ajouté, 0 si aucun
+         */
+        public long getDernierId() {
+            return dernierId;
+        }
+
+        /**
+         * Filtre des lignes agrégées.
+         *
+         * @param campagneId Campagne retenue, null pour toutes
+         * @param debutSeconde Début de la période (inclus), en secondes
+         * @param finSeconde Fin de la période (exclue), en secondes
+         */
+        public record Filtre(Long campagneId, long debutSeconde, long finSeconde) {
+        }
+
+        /**
+         * Nombre de dons et somme des montants en centimes par clé ; la clé de l'indice i vaut origine + i.
+         *
+         * @param origine Clé de l'indice 0
+         * @param nombres Nombre de dons par clé
+         * @param centimes Somme des montants par clé, en centimes
+         */
+        public record Agregat(long origine, long[] nombres, long[] centimes) {
+        }
+
+        /**
+         * Agrège les dons par campagne ; la clé est l'identifiant de la campagne.
+         *
+         * @param filtre Filtre des dons
+         * @return Les agrégats par campagne
+         */
+        public Agregat agregerParCampagne(Filtre filtre) {
+            return agreger(filtre, instantane -> new Cles(0, instantane.campagneMax + 1, (lot, selectionnees) -> {
+                for (int k = 0; k < selectionnees; k++) {
+                    lot.cles[k] = lot.campagnes[lot.selection[k]];
+                }
+            }));
+        }
+
+        /**
+         * Agrège les dons par jour ; la clé est le numéro du jour depuis l'époque (LocalDate.ofEpochDay).
+         *
+         * @param filtre Filtre des dons
+         * @return Les agrégats par jour, du premier au dernier jour ayant reçu un don dans la période
+         */
+        public Agregat agregerParJour(Filtre filtre) {
+            return agreger(filtre, instantane -> {
+                long premierJour = Math.floorDiv(Math.max(filtre.debutSeconde(), instantane.premiereSeconde), SECONDES_PAR_JOUR);
+                long dernierJour = Math.floorDiv(Math.min(filtre.finSeconde() - 1, instantane.derniereSeconde), SECONDES_PAR_JOUR);
+                int jours = (int) Math.max(0, Math.min(Integer.MAX_VALUE - 8, dernierJour - premierJour + 1));
+                return new Cles(premierJour, jours, (lot, selectionnees) -> {
+                    for (int k = 0; k < selectionnees; k++) {
+                        lot.cles[k] = (int) (Math.floorDiv(lot.secondes[lot.selection[k]], SECONDES_PAR_JOUR) - premierJour);
+                    }
+                });
+            });
+        }
+
+        /**
+         * Agrège les dons par tranche de montant ; la clé i est la tranche des montants compris entre
+         * bornes[i - 1] (inclus) et bornes[i] (exclu), la première commençant à 0 et la dernière sans borne supérieure.
+         *
+         * @param filtre Filtre des dons
+         * @param bornes Bornes des tranches en centimes, croissantes
+         * @return Les agrégats par tranche, bornes.length + 1 tranches
+         */
+        public Agregat agregerParTranche(Filtre filtre, long[] bornes) {
+            return agreger(filtre, instantane -> new Cles(0, bornes.length + 1, (lot, selectionnees) -> {
+                for (int k = 0; k < selectionnees; k++) {
+                    long montant = lot.montants[lot.selection[k]];
+                    int tranche = 0;
+                    for (long borne : bornes) {
+                        tranche += montant >= borne ? 1 : 0;
+                    }
+                    lot.cles[k] = tranche;
+                }
+            }));
+        }
+
+        /**
+         * Parcourt les lignes publiées lot par lot : sélection des lignes du filtre, calcul de leur clé,
+         * puis cumul du nombre et du montant par clé dans des tableaux denses.
+         */
+        private Agregat agreger(Filtre filtre, Function<Instantane, Cles> definition) {
+            Instantane instantane = new Instantane();
+            Cles cles = definition.apply(instantane);
+            long[] nombres = new long[Math.max(0, cles.nombre)];
+            long[] centimes = new long[nombres.length];
+            int campagneFiltre = campagneFiltre(filtre.campagneId(), instantane.campagneMax);
+            if (nombres.length == 0 || campagneFiltre == AUCUNE) {
+                return new Agregat(cles.origine, nombres, centimes);
+            }
+            boolean[] exclues = new boolean[instantane.campagneMax + 1];
+            for (int c = instantane.supprimees.nextSetBit(0); c >= 0 && c < exclues.length; c = instantane.supprimees.nextSetBit(c + 1)) {
+                exclues[c] = true;
+            }
+
+            Lot lot = new Lot();
+            for (int s = 0; s < instantane.segments.length; s++) {
+                Segment segment = instantane.segments[s];
+                int lignes = instantane.lignes[s];
+                for (int debut = 0; debut < lignes; debut += LOT) {
+                    int n = Math.min(LOT, lignes - debut);
+                    segment.lire(debut, n, lot);
+                    int selectionnees = selectionner(lot, n, exclues, campagneFiltre, filtre.debutSeconde(), filtre.finSeconde());
+                    cles.operateur.calculer(lot, selectionnees);
+                    for (int k = 0; k < selectionnees; k++) {
+                        int cle = lot.cles[k];
+                        nombres[cle]++;
+                        centimes[cle] += lot.montants[lot.selection[k]];
+                    }
+                }
+            }
+            return new Agregat(cles.origine, nombres, centimes);
+        }
+
+        private static final int TOUTES = -1;
+        private static final int AUCUNE = -2;
+
+        private static int campagneFiltre(Long campagneId, int campagneMax) {
+            if (campagneId == null) {
+                return TOUTES;
+            }
+            return campagneId < 0 || campagneId > campagneMax ? AUCUNE : campagneId.intValue();
+        }
+
+        /**
+         * Range dans lot.selection les indices des lignes retenues par le filtre, sans branchement sur le résultat.
+         *
+         * @return Le nombre de lignes retenues
+         */
+        private static int selectionner(Lot lot, int n, boolean[] exclues, int campagneFiltre, long debutSeconde, long finSeconde) {
+            int selectionnees = 0;
+            for (int j = 0; j < n; j++) {
+                int campagne = lot.campagnes[j];
+                long seconde = lot.secondes[j];
+                boolean retenue = !exclues[campagne] & (campagneFiltre == TOUTES | campagne == campagneFiltre)
+                        & seconde >= debutSeconde & seconde < finSeconde;
+                lot.selection[selectionnees] = j;
+                selectionnees += retenue ? 1 : 0;
+            }
+            return selectionnees;
+        }
+
+        private void initialiserBornes() {
+            long id = 0;
+            long premiere = Long.MAX_VALUE;
+            long derniere = Long.MIN_VALUE;
+            int campagne = -1;
+            for (Segment segment : segments) {
+                if (segment.lignes > 0) {
+                    id = Math.max(id, segment.carte.getLong(ENTETE_DERNIER_ID));
+                    premiere = Math.min(premiere, segment.carte.getLong(ENTETE_PREMIERE_SECONDE));
+                    derniere = Math.max(derniere, segment.carte.getLong(ENTETE_DERNIERE_SECONDE));
+                    campagne = Math.max(campagne, segment.carte.getInt(ENTETE_CAMPAGNE_MAX));
+                }
+            }
+            dernierId = id;
+            premiereSeconde = premiere;
+            derniereSeconde = derniere;
+            campagneMax = campagne;
+        }
+
+        private BitSet lireSupprimees() throws IOException {
+            // Un identifiant incomplet (arrêt brutal pendant l'écriture) est ignoré
+            long taille = canalSupprimees.size() / Integer.BYTES * Integer.BYTES;
+            canalSupprimees.truncate(taille);
+            ByteBuffer contenu = ByteBuffer.allocate((int) taille).order(ByteOrder.nativeOrder());
+            while (contenu.hasRemaining() && canalSupprimees.read(contenu, contenu.position()) >= 0) {
+                // Lecture jusqu'à la fin du fichier
+            }
+            BitSet lues = new BitSet();
+            for (int i = 0; i < taille; i += Integer.BYTES) {
+                lues.set(contenu.getInt(i));
+            }
+            return lues;
+        }
+
+        private static List<Path> fichiersSegments(Path repertoire) throws IOException {
+            List<Path> fichiers = new ArrayList<>();
+            try (DirectoryStream<Path> contenu = Files.newDirectoryStream(repertoire, PREFIXE_SEGMENT + "*" + SUFFIXE_SEGMENT)) {
+                contenu.forEach(fichiers::add);
+            }
+            fichiers.sort(null);
+            return fichiers;
+        }
+
+        private static String nomSegment(int numero) {
+            return String.format("%s%06d%s", PREFIXE_SEGMENT, numero, SUFFIXE_SEGMENT);
+        }
+
+        /**
+         * État lu au début d'une agrégation. Le nombre de lignes de chaque segment est lu avant les bornes :
+         * celles-ci couvrent donc toutes les lignes parcourues.
+         */
+        private final class Instantane {
+            private final Segment[] segments = ColonnesDons.this.segments;
+            private final int[] lignes = lignes(segments);
+            private final long premiereSeconde = ColonnesDons.this.premiereSeconde;
+            private final long derniereSeconde = ColonnesDons.this.derniereSeconde;
+            private final int campagneMax = ColonnesDons.this.campagneMax;
+            private final BitSet supprimees = ColonnesDons.this.supprimees;
+
+            private static int[] lignes(Segment[] segments) {
+                int[] lignes = new int[segments.length];
+                for (int s = 0; s < segments.length; s++) {
+                    lignes[s] = segments[s].lignes;
+                }
+                return lignes;
+            }
+        }
+
+        /**
+         * Clés d'une agrégation : origine, nombre de clés et calcul de la clé des lignes sélectionnées d'un lot.
+         */
+        private record Cles(long origine, int nombre, Operateur operateur) {
+        }
+
+        @FunctionalInterface
+        private interface Operateur {
+            /**
+             * Range dans lot.cles la clé de chacune des lignes sélectionnées du lot.
+             */
+            void calculer(Lot lot, int selectionnees);
+        }
+
+        /**
+         * Lot de lignes lu dans les colonnes, avec la sélection et les clés calculées.
+         */
+        private static final class Lot {
+            private final int[] campagnes = new int[LOT];
+            private final long[] montants = new long[LOT];
+            private final long[] secondes = new long[LOT];
+            private final int[] selection = new int[LOT];
+            private final int[] cles = new int[LOT];
+        }
+
+        /**
+         * Ensemble d'identifiants de dons, en pages de bits allouées à la demande : les identifiants venant
+         * d'une séquence, presque contigus, un don stocké coûte environ un bit.
+         */
+        private static final class Identifiants {
+            private static final int BITS_PAGE = 16;
+            private static final int MASQUE_PAGE = (1 << BITS_PAGE) - 1;
+
+            private final HashMap<Long, long[]> pages = new HashMap<>();
+
+            private void ajouter(long id) {
+                long[] page = pages.computeIfAbsent(id >>> BITS_PAGE, numero -> new long[(1 << BITS_PAGE) / Long.SIZE]);
+                int bit = (int) id & MASQUE_PAGE;
+                page[bit >>> 6] |= 1L << bit;
+            }
+
+            private boolean contient(long id) {
+                long[] page = pages.get(id >>> BITS_PAGE);
+                int bit = (int) id & MASQUE_PAGE;
+                return page != null && (page[bit >>> 6] & (1L << bit)) != 0;
+            }
+
+            private void vider() {
+                pages.clear();
+            }
+        }
+
+        /**
+         * Segment projeté en mémoire : en-tête puis colonnes des campagnes, des montants, des dates et des identifiants.
+         * Les colonnes sont lues et écrites par accès absolus uniquement, sans position partagée entre les threads.
+         */
+        private static final class Segment {
+            private final MappedByteBuffer carte;
+            private final int capacite;
+            private final IntBuffer campagnes;
+            private final LongBuffer montants;
+            private final LongBuffer secondes;
+            private final LongBuffer ids;
+            private volatile int lignes;
+
+            private Segment(MappedByteBuffer carte, int capacite, int lignes) {
+                this.carte = carte;
+                this.capacite = capacite;
+                this.lignes = lignes;
+                int debutMontants = TAILLE_ENTETE + capacite * Integer.BYTES;
+                int debutSecondes = debutMontants + capacite * Long.BYTES;
+                int debutIds = debutSecondes + capacite * Long.BYTES;
+                this.campagnes = carte.slice(TAILLE_ENTETE, capacite * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+                this.montants = carte.slice(debutMontants, capacite * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+                this.secondes = carte.slice(debutSecondes, capacite * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+                this.ids = carte.slice(debutIds, capacite * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            }
+
+            private static long taille(int capacite) {
+                return TAILLE_ENTETE + (long) capacite * (Integer.BYTES + 3 * Long.BYTES);
+            }
+
+            private static Segment creer(Path fichier, int capacite) throws IOException {
+                try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    MappedByteBuffer carte = canal.map(FileChannel.MapMode.READ_WRITE, 0, taille(capacite));
+                    carte.order(ByteOrder.nativeOrder());
+                    carte.putInt(ENTETE_VERSION, VERSION);
+                    carte.putInt(ENTETE_CAPACITE, capacite);
+                    carte.putInt(ENTETE_LIGNES, 0);
+                    carte.putInt(0, MAGIQUE);
+                    return new Segment(carte, capacite, 0);
+                }
+            }
+
+            private static Segment ouvrir(Path fichier) throws IOException {
+                try (FileChannel canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long taille = canal.size();
+                    if (taille < TAILLE_ENTETE) {
+                        throw new IOException("Segment invalide : " + fichier);
+                    }
+                    MappedByteBuffer carte = canal.map(FileChannel.MapMode.READ_WRITE, 0, taille);
+                    carte.order(ByteOrder.nativeOrder());
+                    int capacite = carte.getInt(ENTETE_CAPACITE);
+                    int lignes = carte.getInt(ENTETE_LIGNES);
+                    if (carte.getInt(0) != MAGIQUE || carte.getInt(ENTETE_VERSION) != VERSION
+                            || capacite <= 0 || capacite > LIGNES_MAX_SEGMENT || capacite % LOT != 0
+                            || taille != taille(capacite) || lignes < 0 || lignes > capacite) {
+                        throw new IOException("Segment invalide : " + fichier);
+                    }
+                    return new Segment(carte, capacite, lignes);
+                }
+            }
+
+            private boolean estPlein() {
+                return lignes == capacite;
+            }
+
+            /**
+             * Écrit une ligne et les bornes de l'en-tête, puis publie la ligne.
+             */
+            private void ajouter(long donId, int campagne, long centimes, long seconde) {
+                int ligne = lignes;
+                campagnes.put(ligne, campagne);
+                montants.put(ligne, centimes);
+                secondes.put(ligne, seconde);
+                ids.put(ligne, donId);
+                boolean premiere = ligne == 0;
+                carte.putLong(ENTETE_DERNIER_ID, premiere ? donId : Math.max(carte.getLong(ENTETE_DERNIER_ID), donId));
+                carte.putLong(ENTETE_PREMIERE_SECONDE, premiere ? seconde : Math.min(carte.getLong(ENTETE_PREMIERE_SECONDE), seconde));
+                carte.putLong(ENTETE_DERNIERE_SECONDE, premiere ? seconde : Math.max(carte.getLong(ENTETE_DERNIERE_SECONDE), seconde));
+                carte.putInt(ENTETE_CAMPAGNE_MAX, premiere ? campagne : Math.max(carte.getInt(ENTETE_CAMPAGNE_MAX), campagne));
+                carte.putInt(ENTETE_LIGNES, ligne + 1);
+                lignes = ligne + 1;
+            }
+
+            private void lire(int debut, int n, Lot lot) {
+                campagnes.get(debut, lot.campagnes, 0, n);
+                montants.get(debut, lot.montants, 0, n);
+                secondes.get(debut, lot.secondes, 0, n);
+            }
+        }
+}
@@ -0,0 +1,449 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.MiseAJourCampagneDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.exception.FileAttentePleineException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Diffusion en direct (Server-Sent Events) des dons et des totaux des campagnes.
+ * <p>
+ * Les dons validés sont regroupés par campagne puis publiés à intervalle fixe (campagnes.live.intervalle-ms) :
+ * chaque mise à jour est sérialisée une seule fois, quel que soit le nombre d'abonnés, puis placée dans la file
+ * bornée de chacun. Quelques threads d'envoi vident ces files. Un abonné dont la file est pleine ne suit plus
+ * le rythme : il est déconnecté plutôt que de retenir la diffusion, et son navigateur se reconnecte
+ * en recevant les totaux à jour.
+ */
+@Service
+public class DiffusionDons {
+
+        private static final Logger log = LoggerFactory.getLogger(DiffusionDons.class);
+
+        /**
+         * Nom de l'événement d'une campagne (flux d'une campagne)
+         */
+        static final String EVENEMENT_CAMPAGNE = "campagne";
+
+        /**
+         * Nom de l'événement regroupant les campagnes modifiées pendant l'intervalle (flux global)
+         */
+        static final String EVENEMENT_CAMPAGNES = "campagnes";
+
+        /**
+         * Nombre maximal de dons détaillés par campagne et par mise à jour ; les dons plus anciens ne sont que comptés
+         */
+        private static final int DONS_PAR_MISE_A_JOUR = 20;
+
+        /**
+         * Totaux des campagnes en mémoire
+         */
+        private final TotauxCampagnes totauxCampagnes;
+
+        /**
+         * Index en mémoire des campagnes, utilisé pour vérifier la campagne suivie
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Sérialisation JSON des mises à jour
+         */
+        private final ObjectMapper objectMapper;
+
+        /**
+         * Durée maximale d'une connexion ; le navigateur se reconnecte ensuite
+         */
+        private final Duration timeout;
+
+        /**
+         * Nombre maximal d'abonnés simultanés et de messages en attente par abonné
+         */
+        private final int abonnesMax;
+        private final int fileMax;
+
+        /**
+         * Intervalle entre deux commentaires de maintien de connexion, en nanosecondes
+         */
+        private final long intervallePing;
+
+        /**
+         * Dons validés depuis la dernière diffusion, par campagne
+         */
+        private final ConcurrentHashMap<Long, DonsEnAttente> enAttente = new ConcurrentHashMap<>();
+
+        /**
+         * Abonnés au flux d'une campagne, par campagne
+         */
+        private final ConcurrentHashMap<Long, Set<Abonne>> abonnesParCampagne = new ConcurrentHashMap<>();
+
+        /**
+         * Abonnés au flux de toutes les campagnes
+         */
+        private final Set<Abonne> abonnesGlobaux = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Nombre d'abonnés connectés
+         */
+        private final AtomicInteger nombreAbonnes = new AtomicInteger();
+
+        /**
+         * Statistiques de diffusion
+         */
+        private final LongAdder messagesEnvoyes = new LongAdder();
+        private final LongAdder consommateursLents = new LongAdder();
+
+        /**
+         * Exécuteur des threads d'envoi
+         */
+        private final ExecutorService executeur;
+
+        /**
+         * Message de maintien de connexion, partagé par tous les abonnés
+         */
+        private final Set<DataWithMediaType> ping;
+
+        private volatile long dernierPing = System.nanoTime();
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param totauxCampagnes Totaux des campagnes en mémoire
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param objectMapper Sérialisation JSON
+         * @param fabriqueThreads Fabrique des threads d'envoi
+         * @param envoyeurs Nombre de threads d'envoi
+         * @param timeout Durée maximale d'une connexion
+         * @param abonnesMax Nombre maximal d'abonnés simultanés
+         * @param fileMax Nombre maximal de messages en attente par abonné
+         * @param intervallePingMs Intervalle entre deux commentaires de maintien de connexion
+         */
+        @Autowired
+        public DiffusionDons(TotauxCampagnes totauxCampagnes, IndexCampagnes indexCampagnes, ObjectMapper objectMapper,
+                             FabriqueThreads fabriqueThreads,
+                             @Value("${campagnes.live.envoyeurs:2}") int envoyeurs,
+                             @Value("${campagnes.live.timeout:PT30M}") Duration timeout,
+                             @Value("${campagnes.live.abonnes-max:10000}") int abonnesMax,
+                             @Value("${campagnes.live.file-max:16}") int fileMax,
+                             @Value("${campagnes.live.intervalle-ping-ms:15000}") long intervallePingMs) {
+            this.totauxCampagnes = totauxCampagnes;
+            this.indexCampagnes = indexCampagnes;
+            this.objectMapper = objectMapper;
+            this.timeout = timeout;
+            this.abonnesMax = abonnesMax;
+            this.fileMax = fileMax;
+            this.intervallePing = TimeUnit.MILLISECONDS.toNanos(intervallePingMs);
+            this.executeur = Executors.newFixedThreadPool(envoyeurs, fabriqueThreads.creer("live-"));
+            this.ping = SseEmitter.event().comment("ping").build();
+        }
+
+        /**
+         * Ouvre un flux des mises à jour d'une campagne. Le premier événement contient les totaux actuels.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Le flux SSE de la campagne
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws FileAttentePleineException Si le nombre maximal d'abonnés est atteint
+         */
+        public SseEmitter abonnerCampagne(Long campagneId) {
+            indexCampagnes.trouver(campagneId)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            Abonne abonne = abonner(campagneId);
+            abonnesParCampagne.compute(campagneId, (id, abonnes) -> {
+                Set<Abonne> ensemble = abonnes == null ? ConcurrentHashMap.newKeySet() : abonnes;
+                ensemble.add(abonne);
+                return ensemble;
+            });
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(campagneId);
+            abonne.publier(evenement(EVENEMENT_CAMPAGNE, new MiseAJourCampagneDTO(campagneId, totaux.nombreDons(),
+                    totaux.montantCollecte(), totaux.dernierDon(), 0, List.of())));
+            return abonne.emitter;
+        }
+
+        /**
+         * Ouvre un flux des mises à jour de toutes les campagnes.
+         *
+         * @return Le flux SSE global
+         * @throws FileAttentePleineException Si le nombre maximal d'abonnés est atteint
+         */
+        public SseEmitter abonnerToutes() {
+            Abonne abonne = abonner(null);
+            abonnesGlobaux.add(abonne);
+            return abonne.emitter;
+        }
+
+        /**
+         * Retient un don une fois sa transaction validée, si quelqu'un suit sa campagne.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public void onDonEnregistre(DonEnregistreEvent event) {
+            if (abonnesGlobaux.isEmpty() && !abonnesParCampagne.containsKey(event.campagneId())) {
+                return;
+            }
+            enAttente.compute(event.campagneId(), (id, dons) -> {
+                DonsEnAttente enCours = dons == null ? new DonsEnAttente() : dons;
+                enCours.ajouter(event);
+                return enCours;
+            });
+        }
+
+        /**
+         * Publie les dons reçus depuis la diffusion précédente : un événement par campagne modifiée pour ses abonnés,
+         * un événement regroupant toutes les campagnes modifiées pour les abonnés du flux global.
+         */
+        @Scheduled(fixedDelayString = "${campagnes.live.intervalle-ms:250}")
+        public void diffuser() {
+            if (!enAttente.isEmpty()) {
+                List<MiseAJourCampagneDTO> misesAJour = new ArrayList<>(enAttente.size());
+                for (Long campagneId : enAttente.keySet()) {
+                    DonsEnAttente dons = enAttente.remove(campagneId);
+                    if (dons == null) {
+                        continue;
+                    }
+                    MiseAJourCampagneDTO miseAJour = dons.versMiseAJour(campagneId, totauxCampagnes.getTotaux(campagneId));
+                    misesAJour.add(miseAJour);
+                    Set<Abonne> abonnes = abonnesParCampagne.get(campagneId);
+                    if (abonnes != null && !abonnes.isEmpty()) {
+                        publier(abonnes, evenement(EVENEMENT_CAMPAGNE, miseAJour));
+                    }
+                }
+                if (!abonnesGlobaux.isEmpty() && !misesAJour.isEmpty()) {
+                    publier(abonnesGlobaux, evenement(EVENEMENT_CAMPAGNES, misesAJour));
+                }
+            }
+            long maintenant = System.nanoTime();
+            if (maintenant - dernierPing >= intervallePing) {
+                dernierPing = maintenant;
+                publier(abonnesGlobaux, ping);
+                abonnesParCampagne.values().forEach(abonnes -> publier(abonnes, ping));
+            }
+        }
+
+        /**
+         * @return Les statistiques de diffusion
+         */
+        public StatistiquesDiffusion getStatistiques() {
+            return new StatistiquesDiffusion(nombreAbonnes.get(), messagesEnvoyes.sum(), consommateursLents.sum());
+        }
+
+        /**
+         * Ferme les flux ouverts et arrête les threads d'envoi.
+         */
+        @PreDestroy
+        public void arreter() {
+            abonnesGlobaux.forEach(Abonne::deconnecter);
+            abonnesParCampagne.values().forEach(abonnes -> abonnes.forEach(Abonne::deconnecter));
+            executeur.shutdown();
+            try {
+                if (!executeur.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executeur.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executeur.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Abonne abonner(Long campagneId) {
+            if (nombreAbonnes.incrementAndGet() > abonnesMax) {
+                nombreAbonnes.decrementAndGet();
+                throw new FileAttentePleineException("Nombre maximal d'abonnés au direct atteint, réessayez plus tard");
+            }
+            Abonne abonne = new Abonne(new SseEmitter(timeout.toMillis()), campagneId);
+            abonne.emitter.onCompletion(() -> retirer(abonne));
+            abonne.emitter.onError(e -> retirer(abonne));
+            abonne.emitter.onTimeout(abonne::deconnecter);
+            return abonne;
+        }
+
+        private static void publier(Set<Abonne> abonnes, Set<DataWithMediaType> message) {
+            for (Abonne abonne : abonnes) {
+                abonne.publier(message);
+            }
+        }
+
+        /**
+         * Construit un événement SSE ; la donnée est sérialisée une fois pour tous les abonnés.
+         */
+        private Set<DataWithMediaType> evenement(String nom, Object donnee) {
+            try {
+                return SseEmitter.event().name(nom).data(objectMapper.writeValueAsString(donnee)).build();
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Sérialisation impossible de l'événement " + nom, e);
+            }
+        }
+
+        /**
+         * Retire un abonné des ensembles de diffusion ; sans effet s'il a déjà été retiré.
+         *
+         * @return true si l'abonné vient d'être retiré
+         */
+        private boolean retirer(Abonne abonne) {
+            if (!abonne.ferme.compareAndSet(false, true)) {
+                return false;
+            }
+            nombreAbonnes.decrementAndGet();
+            if (abonne.campagneId == null) {
+                abonnesGlobaux.remove(abonne);
+            } else {
+                abonnesParCampagne.computeIfPresent(abonne.campagneId, (id, abonnes) -> {
+                    abonnes.remove(abonne);
+                    return abonnes.isEmpty() ? null : abonnes;
+                });
+            }
+            return true;
+        }
+
+        /**
+         * Dons d'une campagne reçus depuis la dernière diffusion ; seuls les plus récents sont conservés.
+         * Modifié uniquement sous le verrou de ConcurrentHashMap.compute.
+         */
+        private static final class DonsEnAttente {
+            private final ArrayDeque<DonEnregistreEvent> derniers = new ArrayDeque<>();
+            private int nombre;
+
+            private void ajouter(DonEnregistreEvent event) {
+                nombre++;
+                if (derniers.size() == DONS_PAR_MISE_A_JOUR) {
+                    derniers.removeFirst();
+                }
+                derniers.addLast(event);
+            }
+
+            private MiseAJourCampagneDTO versMiseAJour(Long campagneId, TotauxCampagnes.Totaux totaux) {
+                List<DonDTO> dons = new ArrayList<>(derniers.size());
+                for (DonEnregistreEvent event : derniers) {
+                    dons.add(new DonDTO(event.donId(), event.nomDonateur(), event.montant(), event.date()));
+                }
+                return new MiseAJourCampagneDTO(campagneId, totaux.nombreDons(), totaux.montantCollecte(),
+                        totaux.dernierDon(), nombre, dons);
+            }
+        }
+
+        /**
+         * Abonné à un flux : sa connexion et sa file bornée de messages à envoyer.
+         * Au plus un thread d'envoi vide la file d'un abonné à la fois, ce qui préserve l'ordre des messages.
+         */
+        private final class Abonne {
+            private final SseEmitter emitter;
+
+            /**
+             * Campagne suivie, ou null pour le flux global
+             */
+            private final Long campagneId;
+
+            private final ArrayBlockingQueue<Set<DataWithMediaType>> file;
+            private final AtomicBoolean envoiEnCours = new AtomicBoolean();
+            private final AtomicBoolean ferme = new AtomicBoolean();
+
+            /**
+             * true si la connexion doit être fermée par le thread d'envoi
+             */
+            private final AtomicBoolean aTerminer = new AtomicBoolean();
+
+            private Abonne(SseEmitter emitter, Long campagneId) {
+                this.emitter = emitter;
+                this.campagneId = campagneId;
+                this.file = new ArrayBlockingQueue<>(fileMax);
+            }
+
+            /**
+             * Place un message dans la file de l'abonné ; déconnecte l'abonné si sa file est pleine.
+             */
+            private void publier(Set<DataWithMediaType> message) {
+                if (ferme.get()) {
+                    return;
+                }
+                if (!file.offer(message)) {
+                    consommateursLents.increment();
+                    log.debug("Abonné trop lent déconnecté du direct (campagne {})", campagneId);
+                    deconnecter();
+                    return;
+                }
+                planifier();
+            }
+
+            /**
+             * Retire l'abonné et ferme sa connexion. La fermeture est confiée au thread d'envoi,
+             * qui peut être bloqué sur une écriture vers ce même client.
+             */
+            private void deconnecter() {
+                if (retirer(this)) {
+                    aTerminer.set(true);
+                    planifier();
+                }
+            }
+
+            private void planifier() {
+                if (envoiEnCours.compareAndSet(false, true)) {
+                    try {
+                        executeur.execute(this::vider);
+                    } catch (RejectedExecutionException e) {
+                        envoiEnCours.set(false);
+                    }
+                }
+            }
+
+            private void vider() {
+                do {
+                    Set<DataWithMediaType> message;
+                    while (!ferme.get() && (message = file.poll()) != null) {
+                        try {
+                            emitter.send(message);
+                            messagesEnvoyes.increment();
+                        } catch (IOException | IllegalStateException e) {
+                            // Client parti : le conteneur signale l'erreur et termine la requête
+                            retirer(this);
+                        }
+                    }
+                    if (ferme.get()) {
+                        file.clear();
+                        if (aTerminer.compareAndSet(true, false)) {
+                            emitter.complete();
+                        }
+                    }
+                    envoiEnCours.set(false);
+                } while ((ferme.get() ? aTerminer.get() : !file.isEmpty()) && envoiEnCours.compareAndSet(false, true));
+            }
+        }
+
+        /**
+         * Statistiques de la diffusion en direct.
+         *
+         * @param abonnes Nombre d'abonnés connectés
+         * @param messagesEnvoyes Nombre de messages envoyés depuis le démarrage
+         * @param consommateursLents Nombre d'abonnés déconnectés car trop lents depuis le démarrage
+         */
+        public record StatistiquesDiffusion(int abonnes, long messagesEnvoyes, long consommateursLents) {
+        }
+}
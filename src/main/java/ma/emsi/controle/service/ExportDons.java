@@ -0,0 +1,426 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export des dons d'une campagne sur une période, en CSV ou en NDJSON, éventuellement compressé en gzip.
+ * <p>
+ * Les dons sont lus en flux sur l'index (campagne_id, date, id) et encodés directement en UTF-8 dans un tampon
+ * d'octets de taille fixe, réutilisé d'un bout à l'autre de l'export et vidé dans la réponse lorsqu'il est plein.
+ * La requête projette chaque ligne en DonDTO (avec son nom, sa date et son montant, quelques centaines d'octets
+ * avec les objets du pilote JDBC) ; l'encodage n'y ajoute aucune chaîne ni aucun objet. Ces objets sont abandonnés
+ * dès la ligne écrite, hors de tout contexte de persistance : la mémoire retenue ne dépend pas du nombre de dons.
+ * Le NDJSON reprend les champs et les formats de DonDTO.
+ */
+@Service
+public class ExportDons {
+
+        /**
+         * Borne inférieure d'une période sans début (plus petite date d'un TIMESTAMP SQL)
+         */
+        private static final LocalDateTime DEBUT_MIN = LocalDateTime.of(1, 1, 1, 0, 0);
+
+        /**
+         * Borne supérieure (exclue) d'une période sans fin (plus grande date d'un TIMESTAMP SQL)
+         */
+        private static final LocalDateTime FIN_MAX = LocalDateTime.of(9999, 12, 31, 23, 59, 59, 999_999_000);
+
+        /**
+         * Ligne d'en-tête du CSV
+         */
+        private static final byte[] ENTETE_CSV = "id,campagne,donateur,montant,date\r\n".getBytes(StandardCharsets.US_ASCII);
+
+        private static final byte[] JSON_ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] JSON_NOM_CAMPAGNE = ",\"nomCampagne\":".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] JSON_NOM_DONATEUR = ",\"nomDonateur\":".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] JSON_MONTANT = ",\"montant\":".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] JSON_DATE = ",\"date\":".getBytes(StandardCharsets.US_ASCII);
+        private static final byte[] JSON_NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+        private static final byte[] CHIFFRES_HEXA = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+        /**
+         * Format d'export
+         */
+        public enum Format {
+
+            /**
+             * Une ligne d'en-tête puis une ligne par don (RFC 4180 : champs texte entre guillemets, fins de ligne CRLF)
+             */
+            CSV,
+
+            /**
+             * Un objet JSON par ligne, avec les champs de DonDTO
+             */
+            NDJSON
+        }
+
+        /**
+         * Export préparé : campagne et période vérifiées, prêtes à être lues.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param nomCampagne Nom de la campagne
+         * @param debut Début de la période (inclus)
+         * @param fin Fin de la période (exclue)
+         * @param format Format d'export
+         */
+        public record Export(Long campagneId, String nomCampagne, LocalDateTime debut, LocalDateTime fin, Format format) {
+        }
+
+        /**
+         * Repository pour accéder aux données des dons
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Index en mémoire des campagnes
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Taille du tampon d'écriture, et du tampon de compression, en octets
+         */
+        @Value("${dons.export.taille-tampon:65536}")
+        private int tailleTampon;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         * @param indexCampagnes Index en mémoire des campagnes
+         */
+        @Autowired
+        public ExportDons(DonRepository donRepository, IndexCampagnes indexCampagnes) {
+            this.donRepository = donRepository;
+            this.indexCampagnes = indexCampagnes;
+        }
+
+        /**
+         * Vérifie la campagne et la période d'un export, avant que la réponse ne commence.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param debut Début de la période (inclus), null pour le premier don
+         * @param fin Fin de la période (exclue), null pour le dernier don
+         * @param format Format d'export
+         * @return L'export préparé
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la période est vide
+         */
+        public Export preparer(Long campagneId, LocalDateTime debut, LocalDateTime fin, Format format) {
+            String nomCampagne = indexCampagnes.trouver(campagneId)
+                    .map(CampagneInfo::nom)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            LocalDateTime debutPeriode = debut != null ? debut : DEBUT_MIN;
+            LocalDateTime finPeriode = fin != null ? fin : FIN_MAX;
+            if (!debutPeriode.isBefore(finPeriode)) {
+                throw new IllegalStateException("La date de début doit précéder la date de fin");
+            }
+            return new Export(campagneId, nomCampagne, debutPeriode, finPeriode, format);
+        }
+
+        /**
+         * Écrit les dons d'un export dans l'ordre chronologique. Le flux de sortie n'est pas fermé.
+         *
+         * @param export Export préparé
+         * @param gzip true pour compresser la sortie en gzip
+         * @param sortie Flux de sortie
+         * @return Le nombre de dons écrits
+         * @throws IOException Si l'écriture échoue (client déconnecté par exemple)
+         */
+        @Transactional(readOnly = true)
+        public long exporter(Export export, boolean gzip, OutputStream sortie) throws IOException {
+            OutputStream cible = gzip ? new GZIPOutputStream(new SansFermeture(sortie), tailleTampon) : sortie;
+            Tampon tampon = new Tampon(cible, tailleTampon);
+            boolean csv = export.format() == Format.CSV;
+            // Nom de la campagne encodé une seule fois pour toutes les lignes
+            Tampon nom = new Tampon(null, 8 * export.nomCampagne().length() + 2);
+            nom.texte(export.nomCampagne(), csv);
+            long lignes = 0;
+            if (csv) {
+                tampon.octets(ENTETE_CSV, ENTETE_CSV.length);
+            }
+            try (Stream<DonDTO> dons = donRepository.parcourirDonsPeriode(export.campagneId(), export.debut(), export.fin())) {
+                Iterator<DonDTO> iterateur = dons.iterator();
+                while (iterateur.hasNext()) {
+                    DonDTO don = iterateur.next();
+                    if (csv) {
+                        tampon.ligneCsv(don, nom);
+                    } else {
+                        tampon.ligneJson(don, nom);
+                    }
+                    lignes++;
+                }
+            }
+            tampon.vider();
+            if (gzip) {
+                // Écrit la fin du flux gzip et libère le compresseur, sans fermer la réponse
+                cible.close();
+            }
+            return lignes;
+        }
+
+        /**
+         * Tampon d'octets de taille fixe, vidé dans le flux de sortie lorsqu'il est plein.
+         * Les valeurs sont encodées directement en octets, sans chaîne intermédiaire.
+         */
+        private static final class Tampon {
+
+            private final OutputStream sortie;
+            private final byte[] octets;
+            private int position;
+
+            private Tampon(OutputStream sortie, int taille) {
+                this.sortie = sortie;
+                this.octets = new byte[taille];
+            }
+
+            private void ligneCsv(DonDTO don, Tampon nom) throws IOException {
+                entier(don.getId());
+                octet(',');
+                octets(nom.octets, nom.position);
+                octet(',');
+                texte(don.getNomDonateur(), true);
+                octet(',');
+                montant(don.getMontant());
+                octet(',');
+                if (don.getDate() != null) {
+                    date(don.getDate());
+                }
+                octet('\r');
+                octet('\n');
+            }
+
+            private void ligneJson(DonDTO don, Tampon nom) throws IOException {
+                octets(JSON_ID, JSON_ID.length);
+                entier(don.getId());
+                octets(JSON_NOM_CAMPAGNE, JSON_NOM_CAMPAGNE.length);
+                octets(nom.octets, nom.position);
+                octets(JSON_NOM_DONATEUR, JSON_NOM_DONATEUR.length);
+                texte(don.getNomDonateur(), false);
+                octets(JSON_MONTANT, JSON_MONTANT.length);
+                montant(don.getMontant());
+                octets(JSON_DATE, JSON_DATE.length);
+                if (don.getDate() == null) {
+                    octets(JSON_NULL, JSON_NULL.length);
+                } else {
+                    octet('"');
+                    date(don.getDate());
+                    octet('"');
+                }
+                octet('}');
+                octet('\n');
+            }
+
+            private void octet(int octet) throws IOException {
+                if (position == octets.length) {
+                    vider();
+                }
+                octets[position++] = (byte) octet;
+            }
+
+            private void octets(byte[] source, int longueur) throws IOException {
+                for (int i = 0; i < longueur; i++) {
+                    octet(source[i]);
+                }
+            }
+
+            private void vider() throws IOException {
+                sortie.write(octets, 0, position);
+                position = 0;
+            }
+
+            private void entier(long valeur) throws IOException {
+                if (valeur < 0) {
+                    if (valeur == Long.MIN_VALUE) {
+                        texteAscii(Long.toString(valeur));
+                        return;
+                    }
+                    octet('-');
+                    valeur = -valeur;
+                }
+                long diviseur = 1;
+                while (valeur / diviseur >= 10) {
+                    diviseur *= 10;
+                }
+                for (; diviseur > 0; diviseur /= 10) {
+                    octet('0' + (int) (valeur / diviseur % 10));
+                }
+            }
+
+            /**
+             * Écrit un montant à 2 décimales, comme DonDTO en JSON.
+             */
+            private void montant(Montant montant) throws IOException {
+                long centimes = montant.centimes();
+                if (centimes == Long.MIN_VALUE) {
+                    texteAscii(montant.toString());
+                    return;
+                }
+                if (centimes < 0) {
+                    octet('-');
+                }
+                long absolu = Math.abs(centimes);
+                entier(absolu / 100);
+                octet('.');
+                octet('0' + (int) (absolu / 10 % 10));
+                octet('0' + (int) (absolu % 10));
+            }
+
+            /**
+             * Écrit une date au format ISO_LOCAL_DATE_TIME, fraction de seconde sans ses zéros finaux, comme DonDTO en JSON.
+             */
+            private void date(LocalDateTime date) throws IOException {
+                if (date.getYear() < 0 || date.getYear() > 9999) {
+                    texteAscii(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(date));
+                    return;
+                }
+                chiffres(date.getYear(), 4);
+                octet('-');
+                chiffres(date.getMonthValue(), 2);
+                octet('-');
+                chiffres(date.getDayOfMonth(), 2);
+                octet('T');
+                chiffres(date.getHour(), 2);
+                octet(':');
+                chiffres(date.getMinute(), 2);
+                octet(':');
+                chiffres(date.getSecond(), 2);
+                int nanos = date.getNano();
+                if (nanos != 0) {
+                    int nombre = 9;
+                    while (nanos % 10 == 0) {
+                        nanos /= 10;
+                        nombre--;
+                    }
+                    octet('.');
+                    chiffres(nanos, nombre);
+                }
+            }
+
+            private void chiffres(int valeur, int nombre) throws IOException {
+                int diviseur = 1;
+                for (int i = 1; i < nombre; i++) {
+                    diviseur *= 10;
+                }
+                for (; diviseur > 0; diviseur /= 10) {
+                    octet('0' + valeur / diviseur % 10);
+                }
+            }
+
+            private void texteAscii(String texte) throws IOException {
+                for (int i = 0; i < texte.length(); i++) {
+                    octet(texte.charAt(i));
+                }
+            }
+
+            /**
+             * Écrit un texte entre guillemets, encodé en UTF-8 : guillemets doublés en CSV, échappements JSON en NDJSON.
+             */
+            private void texte(String texte, boolean csv) throws IOException {
+                octet('"');
+                for (int i = 0; i < texte.length(); i++) {
+                    char c = texte.charAt(i);
+                    if (c == '"') {
+                        octet(csv ? '"' : '\\');
+                        octet('"');
+                    } else if (csv) {
+                        i = caractere(texte, i);
+                    } else if (c == '\\') {
+                        octet('\\');
+                        octet('\\');
+                    } else if (c < 0x20) {
+                        echappementJson(c);
+                    } else {
+                        i = caractere(texte, i);
+                    }
+                }
+                octet('"');
+            }
+
+            private void echappementJson(char c) throws IOException {
+                octet('\\');
+                switch (c) {
+                    case '\n' -> octet('n');
+                    case '\r' -> octet('r');
+                    case '\t' -> octet('t');
+                    case '\b' -> octet('b');
+                    case '\f' -> octet('f');
+                    default -> {
+                        octet('u');
+                        octet('0');
+                        octet('0');
+                        octet(CHIFFRES_HEXA[c >> 4]);
+                        octet(CHIFFRES_HEXA[c & 0xF]);
+                    }
+                }
+            }
+
+            /**
+             * Encode en UTF-8 le caractère à la position donnée, ou la paire de substitution qui y commence.
+             *
+             * @return La position du dernier caractère encodé
+             */
+            private int caractere(String texte, int i) throws IOException {
+                char c = texte.charAt(i);
+                if (c < 0x80) {
+                    octet(c);
+                } else if (c < 0x800) {
+                    octet(0xC0 | c >> 6);
+                    octet(0x80 | c & 0x3F);
+                } else if (Character.isHighSurrogate(c) && i + 1 < texte.length()
+                        && Character.isLowSurrogate(texte.charAt(i + 1))) {
+                    int point = Character.toCodePoint(c, texte.charAt(i + 1));
+                    octet(0xF0 | point >> 18);
+                    octet(0x80 | point >> 12 & 0x3F);
+                    octet(0x80 | point >> 6 & 0x3F);
+                    octet(0x80 | point & 0x3F);
+                    return i + 1;
+                } else if (Character.isSurrogate(c)) {
+                    // Demi-paire isolée, non représentable en UTF-8
+                    octet('?');
+                } else {
+                    octet(0xE0 | c >> 12);
+                    octet(0x80 | c >> 6 & 0x3F);
+                    octet(0x80 | c & 0x3F);
+                }
+                return i;
+            }
+        }
+
+        /**
+         * Flux qui transmet les écritures sans fermer le flux sous-jacent (la réponse reste fermée par le conteneur).
+         */
+        private static final class SansFermeture extends FilterOutputStream {
+
+            private SansFermeture(OutputStream sortie) {
+                super(sortie);
+            }
+
+            @Override
+            public void write(byte[] octets, int debut, int longueur) throws IOException {
+                out.write(octets, debut, longueur);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }
+}
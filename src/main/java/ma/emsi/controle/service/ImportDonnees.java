@@ -0,0 +1,1135 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.repository.CampagneRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Import en masse de campagnes ou de dons depuis un fichier CSV ou NDJSON (reprise de l'historique d'une autre plateforme).
+ * <p>
+ * Le fichier est projeté en mémoire par fenêtres de taille fixe ; le thread appelant y repère les fins de ligne et
+ * découpe chaque fenêtre en morceaux de lignes complètes, transmis par une file bornée à plusieurs threads de traitement.
+ * Chaque thread lit les lignes de ses morceaux, les valide avec les mêmes contraintes que les API (DonCampagneDTO,
+ * Campagne) et écrit les lignes valides d'un morceau dans une transaction : les dons par un INSERT en lot JDBC, avec
+ * leurs identifiants pris dans la séquence des dons et un incrément du montant collecté par campagne, les campagnes
+ * par leur repository (identifiants IDENTITY). Les événements habituels sont publiés après chaque transaction : les
+ * totaux, statistiques, classements et rapports en mémoire comptent les dons importés quelle que soit leur date,
+ * y compris celles antérieures à la dernière reconstruction des statistiques (voir ServiceStatistiquesDons).
+ * La mémoire consommée ne dépend pas de la taille du fichier.
+ * <p>
+ * Les lignes rejetées sont écrites, avec leur numéro et leurs erreurs, dans un fichier de rejets. Un seul import
+ * s'exécute à la fois ; sa progression est consultable pendant et après l'import.
+ */
+@Service
+public class ImportDonnees {
+
+        private static final Logger log = LoggerFactory.getLogger(ImportDonnees.class);
+
+        private static final String INSERTION_DON =
+                "INSERT INTO donation (id, campagne_id, nom_donateur, montant, date) VALUES (?, ?, ?, ?, ?)";
+
+        /**
+         * Valeur suivante de la séquence des dons (syntaxe SQL standard, comprise par H2)
+         */
+        private static final String SEQUENCE_DONS = "SELECT NEXT VALUE FOR donation_seq";
+
+        /**
+         * Nombre d'identifiants réservés par valeur de la séquence, égal à l'allocationSize de Donation : comme Hibernate
+         * (optimiseur pooled), une valeur v de la séquence réserve les identifiants de v - 49 à v
+         */
+        private static final int ALLOCATION_DONS = 50;
+
+        /**
+         * Longueur maximale de la ligne d'en-tête d'un CSV
+         */
+        private static final int ENTETE_MAX = 64 * 1024;
+
+        private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+        /**
+         * Morceau signalant aux threads de traitement la fin du fichier
+         */
+        private static final Morceau FIN = new Morceau(null, 0, 0, 0);
+
+        /**
+         * Type de données importées, avec les colonnes d'un CSV (les premières étant obligatoires dans l'en-tête)
+         */
+        public enum Type {
+
+            /**
+             * Campagnes : nom, objectifMontant, dateDebut et dateFin (AAAA-MM-JJ)
+             */
+            CAMPAGNES(4, "nom", "objectifMontant", "dateDebut", "dateFin"),
+
+            /**
+             * Dons : campagneId, nomDonateur, montant et date (ISO, facultative : date de début de l'import si absente)
+             */
+            DONS(3, "campagneId", "nomDonateur", "montant", "date");
+
+            private final int obligatoires;
+            private final List<String> colonnes;
+
+            Type(int obligatoires, String... colonnes) {
+                this.obligatoires = obligatoires;
+                this.colonnes = List.of(colonnes);
+            }
+
+            /**
+             * @param texte Type en toutes lettres (campagnes ou dons)
+             * @return Le type
+             * @throws IllegalStateException Si le type est inconnu
+             */
+            public static Type lire(String texte) {
+                return switch (texte.toLowerCase(Locale.ROOT)) {
+                    case "campagnes" -> CAMPAGNES;
+                    case "dons" -> DONS;
+                    default -> throw new IllegalStateException("Type d'import inconnu : " + texte + " (campagnes ou dons)");
+                };
+            }
+        }
+
+        /**
+         * Format du fichier importé
+         */
+        public enum Format {
+
+            /**
+             * Ligne d'en-tête nommant les colonnes, puis une ligne par élément (RFC 4180, sans saut de ligne dans un champ)
+             */
+            CSV,
+
+            /**
+             * Un objet JSON par ligne, avec les champs nommés comme les colonnes du CSV
+             */
+            NDJSON;
+
+            /**
+             * @param texte Format en toutes lettres (csv ou ndjson)
+             * @return Le format
+             * @throws IllegalStateException Si le format est inconnu
+             */
+            public static Format lire(String texte) {
+                return switch (texte.toLowerCase(Locale.ROOT)) {
+                    case "csv" -> CSV;
+                    case "ndjson" -> NDJSON;
+                    default -> throw new IllegalStateException("Format d'import inconnu : " + texte + " (csv ou ndjson)");
+                };
+            }
+        }
+
+        /**
+         * Statut d'un import
+         */
+        public enum Statut {
+            EN_COURS, TERMINE, ECHOUE
+        }
+
+        /**
+         * Progression d'un import.
+         *
+         * @param id Numéro de l'import depuis le démarrage
+         * @param type Type de données importées
+         * @param format Format du fichier
+         * @param statut Statut de l'import
+         * @param debut Date de début
+         * @param fin Date de fin, null pendant l'import
+         * @param octets Taille du fichier
+         * @param octetsTraites Octets des lignes traitées
+         * @param lignes Lignes traitées (importées ou rejetées, hors lignes vides)
+         * @param importees Lignes importées
+         * @param rejetees Lignes rejetées
+         * @param lignesParSeconde Débit de l'import
+         * @param fichierRejets Fichier des lignes rejetées, null si aucune ligne n'a été rejetée
+         * @param erreur Cause de l'échec, null si l'import n'a pas échoué ; les morceaux écrits avant l'échec restent importés
+         */
+        public record Progression(long id, Type type, Format format, Statut statut, LocalDateTime debut, LocalDateTime fin,
+                                  long octets, long octetsTraites, long lignes, long importees, long rejetees,
+                                  long lignesParSeconde, String fichierRejets, String erreur) {
+        }
+
+        /**
+         * Ligne d'un fichier de campagnes en NDJSON
+         */
+        private record LigneCampagne(String nom, Montant objectifMontant, LocalDate dateDebut, LocalDate dateFin) {
+        }
+
+        /**
+         * Lignes complètes d'une fenêtre du fichier, de l'octet debut (inclus) à l'octet fin (exclu).
+         *
+         * @param octets Fenêtre projetée en mémoire
+         * @param debut Position du premier octet
+         * @param fin Position suivant le dernier octet
+         * @param premiereLigne Numéro, dans le fichier, de la première ligne
+         */
+        private record Morceau(ByteBuffer octets, int debut, int fin, long premiereLigne) {
+        }
+
+        /**
+         * Repository des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Index en mémoire des campagnes, pour vérifier la campagne d'un don sans requête
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Suivi du montant collecté par campagne
+         */
+        private final ObjectifsCampagnes objectifsCampagnes;
+
+        /**
+         * Validateur Bean Validation appliqué à chaque ligne
+         */
+        private final Validator validator;
+
+        /**
+         * Lecteurs JSON des lignes NDJSON, configurés comme l'ObjectMapper de l'application
+         */
+        private final ObjectReader lecteurDons;
+        private final ObjectReader lecteurCampagnes;
+
+        /**
+         * Insertions en lot des dons, dans la transaction du morceau
+         */
+        private final JdbcTemplate jdbcTemplate;
+
+        /**
+         * Publicateur des événements de don, consommés après le commit de chaque morceau
+         */
+        private final ApplicationEventPublisher eventPublisher;
+
+        /**
+         * Fabrique des threads de traitement
+         */
+        private final FabriqueThreads fabriqueThreads;
+
+        /**
+         * Transactions des morceaux, servies par la base principale
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Répertoire des fichiers reçus par l'API et des fichiers de rejets
+         */
+        @Value("${dons.import.repertoire:data/import}")
+        private Path repertoire;
+
+        /**
+         * Nombre de threads de traitement ; chacun prend une connexion à la base principale le temps d'écrire un morceau
+         */
+        @Value("${dons.import.parallelisme:4}")
+        private int parallelisme;
+
+        /**
+         * Nombre de lignes par morceau, donc par transaction
+         */
+        @Value("${dons.import.taille-lot:1000}")
+        private int tailleLot;
+
+        /**
+         * Taille des fenêtres projetées en mémoire, et longueur maximale d'une ligne
+         */
+        @Value("${dons.import.taille-fenetre:67108864}")
+        private long tailleFenetre;
+
+        /**
+         * Intervalle entre deux journalisations de la progression
+         */
+        @Value("${dons.import.intervalle-progression-ms:5000}")
+        private long intervalleProgressionMs;
+
+        /**
+         * true pendant un import
+         */
+        private final AtomicBoolean enCours = new AtomicBoolean();
+
+        /**
+         * Numéro du dernier import
+         */
+        private final AtomicLong numeros = new AtomicLong();
+
+        /**
+         * Import en cours ou dernier import
+         */
+        private volatile Execution derniere;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param campagneRepository Repository des campagnes
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param objectifsCampagnes Suivi du montant collecté par campagne
+         * @param validator Validateur Bean Validation
+         * @param objectMapper ObjectMapper de l'application
+         * @param jdbcTemplate JdbcTemplate de l'application
+         * @param eventPublisher Publicateur des événements de l'application
+         * @param fabriqueThreads Fabrique de threads de l'application
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ImportDonnees(CampagneRepository campagneRepository, IndexCampagnes indexCampagnes,
+                             ObjectifsCampagnes objectifsCampagnes, Validator validator, ObjectMapper objectMapper,
+                             JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher,
+                             FabriqueThreads fabriqueThreads, PlatformTransactionManager transactionManager) {
+            this.campagneRepository = campagneRepository;
+            this.indexCampagnes = indexCampagnes;
+            this.objectifsCampagnes = objectifsCampagnes;
+            this.validator = validator;
+            this.lecteurDons = objectMapper.readerFor(DonCampagneDTO.class);
+            this.lecteurCampagnes = objectMapper.readerFor(LigneCampagne.class);
+            this.jdbcTemplate = jdbcTemplate;
+            this.eventPublisher = eventPublisher;
+            this.fabriqueThreads = fabriqueThreads;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+
+        /**
+         * Enregistre un fichier reçu en flux dans le répertoire d'import, puis l'importe en tâche de fond.
+         * Le fichier est supprimé à la fin de l'import.
+         *
+         * @param corps Contenu du fichier
+         * @param gzip true si le contenu est compressé en gzip
+         * @param type Type de données importées
+         * @param format Format du fichier
+         * @return La progression de l'import lancé
+         * @throws IllegalStateException Si un import est déjà en cours ou si l'en-tête du CSV est incomplet
+         * @throws IOException Si le fichier ne peut pas être enregistré
+         */
+        public Progression recevoir(InputStream corps, boolean gzip, Type type, Format format) throws IOException {
+            if (enCours.get()) {
+                throw new IllegalStateException("Un import est déjà en cours");
+            }
+            Files.createDirectories(repertoire);
+            Path fichier = Files.createTempFile(repertoire, "recu-", format == Format.CSV ? ".csv" : ".ndjson");
+            try {
+                try (InputStream entree = gzip ? new GZIPInputStream(corps) : corps) {
+                    Files.copy(entree, fichier, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return lancer(fichier, type, format, true);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(fichier);
+                throw e;
+            }
+        }
+
+        /**
+         * Lance l'import d'un fichier en tâche de fond.
+         *
+         * @param fichier Fichier à importer
+         * @param type Type de données importées
+         * @param format Format du fichier
+         * @param supprimer true pour supprimer le fichier à la fin de l'import
+         * @return La progression de l'import lancé
+         * @throws IllegalStateException Si un import est déjà en cours, si le fichier est illisible ou si l'en-tête du CSV est incomplet
+         */
+        public Progression lancer(Path fichier, Type type, Format format, boolean supprimer) {
+            Execution execution = preparer(fichier, type, format);
+            fabriqueThreads.creer("import-").newThread(() -> {
+                try {
+                    executer(execution);
+                } finally {
+                    enCours.set(false);
+                    if (supprimer) {
+                        supprimer(fichier);
+                    }
+                }
+            }).start();
+            return execution.progression();
+        }
+
+        /**
+         * Importe un fichier dans le thread appelant (import en ligne de commande).
+         *
+         * @param fichier Fichier à importer
+         * @param type Type de données importées
+         * @param format Format du fichier
+         * @return La progression de l'import terminé
+         * @throws IllegalStateException Si un import est déjà en cours, si le fichier est illisible ou si l'en-tête du CSV est incomplet
+         */
+        public Progression importer(Path fichier, Type type, Format format) {
+            Execution execution = preparer(fichier, type, format);
+            try {
+                executer(execution);
+            } finally {
+                enCours.set(false);
+            }
+            return execution.progression();
+        }
+
+        /**
+         * @return La progression de l'import en cours ou du dernier import
+         * @throws EntityNotFoundException Si aucun import n'a été lancé
+         */
+        public Progression getProgression() {
+            return trouverDerniere().progression();
+        }
+
+        /**
+         * @return Le fichier des lignes rejetées par l'import en cours ou le dernier import
+         * @throws EntityNotFoundException Si aucun import n'a été lancé ou si aucune ligne n'a été rejetée
+         */
+        public Path getFichierRejets() {
+            Execution execution = trouverDerniere();
+            if (execution.rejetees.sum() == 0 || !Files.exists(execution.fichierRejets)) {
+                throw new EntityNotFoundException("Aucune ligne rejetée par l'import n°" + execution.numero);
+            }
+            return execution.fichierRejets;
+        }
+
+        private Execution trouverDerniere() {
+            Execution execution = derniere;
+            if (execution == null) {
+                throw new EntityNotFoundException("Aucun import n'a été lancé");
+            }
+            return execution;
+        }
+
+        /**
+         * Réserve l'exécution de l'import et lit l'en-tête du fichier.
+         */
+        private Execution preparer(Path fichier, Type type, Format format) {
+            if (!enCours.compareAndSet(false, true)) {
+                throw new IllegalStateException("Un import est déjà en cours");
+            }
+            try {
+                Files.createDirectories(repertoire);
+                long octets = Files.size(fichier);
+                byte[] debut = new byte[(int) Math.min(octets, ENTETE_MAX)];
+                try (InputStream entree = Files.newInputStream(fichier)) {
+                    entree.readNBytes(debut, 0, debut.length);
+                }
+                int debutDonnees = debut.length >= BOM.length && Arrays.equals(debut, 0, BOM.length, BOM, 0, BOM.length)
+                        ? BOM.length : 0;
+                int[] colonnes = new int[type.colonnes.size()];
+                long premiereLigne = 1;
+                if (format == Format.CSV) {
+                    int finEntete = debutDonnees;
+                    while (finEntete < debut.length && debut[finEntete] != '\n') {
+                        finEntete++;
+                    }
+                    if (finEntete == debut.length && octets > debut.length) {
+                        throw new IllegalStateException("En-tête du CSV plus long que " + ENTETE_MAX + " octets");
+                    }
+                    lireEntete(debut, debutDonnees, finEntete, type, colonnes);
+                    debutDonnees = Math.min(finEntete + 1, debut.length);
+                    premiereLigne = 2;
+                }
+                long numero = numeros.incrementAndGet();
+                Execution execution = new Execution(numero, fichier, type, format, octets, debutDonnees, colonnes,
+                        premiereLigne, repertoire.resolve("import-" + numero + "-rejets.csv"));
+                derniere = execution;
+                return execution;
+            } catch (IOException e) {
+                enCours.set(false);
+                throw new IllegalStateException("Fichier d'import illisible : " + fichier + " (" + e.getMessage() + ")", e);
+            } catch (RuntimeException e) {
+                enCours.set(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Associe chaque colonne du type à sa position dans l'en-tête (-1 si absente) ; les colonnes inconnues sont ignorées.
+         */
+        private static void lireEntete(byte[] octets, int debut, int fin, Type type, int[] colonnes) {
+            int longueur = fin > debut && octets[fin - 1] == '\r' ? fin - 1 - debut : fin - debut;
+            byte[] entete = Arrays.copyOfRange(octets, debut, debut + longueur);
+            String[] champs = new String[type.colonnes.size() + 64];
+            int nombre = Lecteur.decouperCsv(entete, longueur, champs, new byte[longueur]);
+            Arrays.fill(colonnes, -1);
+            for (int i = 0; i < nombre; i++) {
+                int colonne = type.colonnes.indexOf(champs[i].strip());
+                if (colonne >= 0) {
+                    colonnes[colonne] = i;
+                }
+            }
+            for (int i = 0; i < type.obligatoires; i++) {
+                if (colonnes[i] < 0) {
+                    throw new IllegalStateException("Colonne obligatoire absente de l'en-tête du CSV : " + type.colonnes.get(i)
+                            + " (colonnes attendues : " + String.join(",", type.colonnes) + ")");
+                }
+            }
+        }
+
+        /**
+         * Découpe le fichier en morceaux, traités par les threads de traitement, puis attend la fin de leur traitement.
+         */
+        private void executer(Execution execution) {
+            log.info("Import n°{} : {} depuis {} ({} octets)", execution.numero, execution.type, execution.fichier,
+                    execution.octets);
+            BlockingQueue<Morceau> file = new ArrayBlockingQueue<>(2 * parallelisme);
+            List<Thread> threads = new ArrayList<>(parallelisme);
+            try (FileChannel canal = FileChannel.open(execution.fichier, StandardOpenOption.READ);
+                 Rejets rejets = new Rejets(execution.fichierRejets)) {
+                ThreadFactory fabrique = fabriqueThreads.creer("import-" + execution.numero + "-");
+                for (int i = 0; i < parallelisme; i++) {
+                    Thread thread = fabrique.newThread(() -> traiterMorceaux(execution, file, rejets));
+                    thread.start();
+                    threads.add(thread);
+                }
+                try {
+                    decouper(canal, execution, file);
+                } catch (IOException | RuntimeException e) {
+                    execution.echouer(e);
+                } finally {
+                    for (Thread ignored : threads) {
+                        file.put(FIN);
+                    }
+                    for (Thread thread : threads) {
+                        thread.join();
+                    }
+                }
+            } catch (IOException e) {
+                execution.echouer(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                execution.echouer(e);
+            }
+            execution.terminer();
+            Progression progression = execution.progression();
+            if (progression.statut() == Statut.ECHOUE) {
+                log.error("Échec de l'import n°{} après {} lignes : {}", execution.numero, progression.lignes(),
+                        progression.erreur(), execution.echec.get());
+            } else {
+                log.info("Import n°{} terminé : {} lignes importées, {} rejetées{}, {} lignes/s", execution.numero,
+                        progression.importees(), progression.rejetees(),
+                        progression.fichierRejets() != null ? " (" + progression.fichierRejets() + ")" : "",
+                        progression.lignesParSeconde());
+            }
+        }
+
+        /**
+         * Projette le fichier en mémoire fenêtre par fenêtre et transmet chaque morceau de tailleLot lignes complètes.
+         * Une ligne coupée par la fin d'une fenêtre est relue au début de la suivante.
+         */
+        private void decouper(FileChannel canal, Execution execution, BlockingQueue<Morceau> file)
+                throws IOException, InterruptedException {
+            long position = execution.debutDonnees;
+            long ligne = execution.premiereLigne;
+            while (position < execution.octets && execution.echec.get() == null) {
+                long longueur = Math.min(tailleFenetre, execution.octets - position);
+                boolean derniereFenetre = position + longueur == execution.octets;
+                ByteBuffer fenetre = canal.map(FileChannel.MapMode.READ_ONLY, position, longueur);
+                int limite = (int) longueur;
+                int debutMorceau = 0;
+                int finLignes = 0;
+                int lignes = 0;
+                for (int i = 0; i < limite; i++) {
+                    if (fenetre.get(i) == '\n') {
+                        finLignes = i + 1;
+                        if (++lignes == tailleLot) {
+                            soumettre(file, new Morceau(fenetre, debutMorceau, finLignes, ligne), execution);
+                            if (execution.echec.get() != null) {
+                                return;
+                            }
+                            ligne += lignes;
+                            lignes = 0;
+                            debutMorceau = finLignes;
+                        }
+                    }
+                }
+                if (derniereFenetre) {
+                    // Dernière ligne sans fin de ligne comprise
+                    finLignes = limite;
+                } else if (finLignes == 0) {
+                    throw new IllegalStateException("La ligne " + ligne + " dépasse " + tailleFenetre + " octets");
+                }
+                if (finLignes > debutMorceau) {
+                    soumettre(file, new Morceau(fenetre, debutMorceau, finLignes, ligne), execution);
+                    ligne += lignes;
+                }
+                position += finLignes;
+            }
+        }
+
+        /**
+         * Transmet un morceau aux threads de traitement, en attendant qu'une place se libère dans la file,
+         * et journalise la progression à intervalles réguliers.
+         */
+        private void soumettre(BlockingQueue<Morceau> file, Morceau morceau, Execution execution) throws InterruptedException {
+            file.put(morceau);
+            long maintenant = System.nanoTime();
+            if (maintenant - execution.dernierJournal >= intervalleProgressionMs * 1_000_000) {
+                execution.dernierJournal = maintenant;
+                Progression progression = execution.progression();
+                log.info("Import n°{} : {} lignes ({} %), {} lignes/s", execution.numero, progression.lignes(),
+                        progression.octets() == 0 ? 100 : progression.octetsTraites() * 100 / progression.octets(),
+                        progression.lignesParSeconde());
+            }
+        }
+
+        /**
+         * Boucle d'un thread de traitement : traite les morceaux jusqu'à la fin du fichier.
+         * Après un échec, les morceaux restants sont ignorés.
+         */
+        private void traiterMorceaux(Execution execution, BlockingQueue<Morceau> file, Rejets rejets) {
+            Lecteur lecteur = new Lecteur(tailleLot);
+            try {
+                while (true) {
+                    Morceau morceau = file.take();
+                    if (morceau == FIN) {
+                        return;
+                    }
+                    if (execution.echec.get() == null) {
+                        try {
+                            traiter(execution, morceau, lecteur, rejets);
+                        } catch (IOException | RuntimeException e) {
+                            execution.echouer(e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                execution.echouer(e);
+            }
+        }
+
+        /**
+         * Lit et valide les lignes d'un morceau, écrit les lignes rejetées puis enregistre les lignes valides en une transaction.
+         */
+        private void traiter(Execution execution, Morceau morceau, Lecteur lecteur, Rejets rejets) throws IOException {
+            ByteBuffer octets = morceau.octets();
+            long numero = morceau.premiereLigne();
+            long lignes = 0;
+            int position = morceau.debut();
+            while (position < morceau.fin()) {
+                int finLigne = position;
+                while (finLigne < morceau.fin() && octets.get(finLigne) != '\n') {
+                    finLigne++;
+                }
+                int longueur = finLigne - position;
+                if (longueur > 0 && octets.get(finLigne - 1) == '\r') {
+                    longueur--;
+                }
+                byte[] ligne = lecteur.copier(octets, position, longueur);
+                if (!Lecteur.estVide(ligne, longueur)) {
+                    Map<String, String> erreurs = execution.type == Type.DONS
+                            ? lireDon(execution, lecteur, ligne, longueur)
+                            : lireCampagne(execution, lecteur, ligne, longueur);
+                    if (!erreurs.isEmpty()) {
+                        rejets.ecrire(numero, erreurs, ligne, longueur);
+                        execution.rejetees.increment();
+                    }
+                    lignes++;
+                }
+                numero++;
+                position = finLigne + 1;
+            }
+
+            if (!lecteur.dons.isEmpty()) {
+                transactionTemplate.executeWithoutResult(statut -> insererDons(lecteur));
+                execution.importees.add(lecteur.dons.size());
+            } else if (!lecteur.campagnes.isEmpty()) {
+                transactionTemplate.executeWithoutResult(statut -> campagneRepository.saveAll(lecteur.campagnes));
+                execution.importees.add(lecteur.campagnes.size());
+            }
+            lecteur.dons.clear();
+            lecteur.campagnes.clear();
+            execution.lignes.add(lignes);
+            execution.octetsTraites.add(morceau.fin() - morceau.debut());
+        }
+
+        /**
+         * Lit et valide une ligne de don ; un don valide est ajouté aux dons du morceau.
+         *
+         * @return Les erreurs par champ, vide si le don est valide
+         */
+        private Map<String, String> lireDon(Execution execution, Lecteur lecteur, byte[] ligne, int longueur) {
+            Map<String, String> erreurs = new TreeMap<>();
+            DonCampagneDTO don;
+            if (execution.format == Format.NDJSON) {
+                try {
+                    don = lecteurDons.readValue(ligne, 0, longueur);
+                } catch (IOException e) {
+                    erreurs.put(champ(e), message(e));
+                    return erreurs;
+                }
+            } else {
+                String[] champs = lecteur.champs(execution, ligne, longueur, erreurs);
+                if (champs == null) {
+                    return erreurs;
+                }
+                don = new DonCampagneDTO();
+                String campagneId = champs[0].strip();
+                if (!campagneId.isEmpty()) {
+                    try {
+                        don.setCampagneId(Long.parseLong(campagneId));
+                    } catch (NumberFormatException e) {
+                        erreurs.put("campagneId", "Identifiant de campagne invalide : " + campagneId);
+                    }
+                }
+                don.setNomDonateur(champs[1]);
+                don.setMontant(lireMontant(champs[2], "montant", erreurs));
+                String date = champs[3].strip();
+                if (!date.isEmpty()) {
+                    try {
+                        don.setDate(LocalDateTime.parse(date));
+                    } catch (DateTimeParseException e) {
+                        erreurs.put("date", "Date invalide : " + date);
+                    }
+                }
+            }
+            if (don == null) {
+                erreurs.put("ligne", "Ligne sans don");
+                return erreurs;
+            }
+            if (erreurs.isEmpty()) {
+                for (ConstraintViolation<DonCampagneDTO> violation : validator.validate(don)) {
+                    erreurs.put(violation.getPropertyPath().toString(), violation.getMessage());
+                }
+            }
+            if (erreurs.isEmpty() && indexCampagnes.trouver(don.getCampagneId()).isEmpty()) {
+                erreurs.put("campagneId", "Campagne non trouvée avec l'ID: " + don.getCampagneId());
+            }
+            if (erreurs.isEmpty()) {
+                if (don.getDate() == null) {
+                    don.setDate(execution.debut);
+                }
+                lecteur.dons.add(don);
+            }
+            return erreurs;
+        }
+
+        /**
+         * Lit et valide une ligne de campagne ; une campagne valide est ajoutée aux campagnes du morceau.
+         *
+         * @return Les erreurs par champ, vide si la campagne est valide
+         */
+        private Map<String, String> lireCampagne(Execution execution, Lecteur lecteur, byte[] ligne, int longueur) {
+            Map<String, String> erreurs = new TreeMap<>();
+            LigneCampagne lue;
+            if (execution.format == Format.NDJSON) {
+                try {
+                    lue = lecteurCampagnes.readValue(ligne, 0, longueur);
+                } catch (IOException e) {
+                    erreurs.put(champ(e), message(e));
+                    return erreurs;
+                }
+            } else {
+                String[] champs = lecteur.champs(execution, ligne, longueur, erreurs);
+                if (champs == null) {
+                    return erreurs;
+                }
+                lue = new LigneCampagne(champs[0], lireMontant(champs[1], "objectifMontant", erreurs),
+                        lireDate(champs[2], "dateDebut", erreurs), lireDate(champs[3], "dateFin", erreurs));
+            }
+            if (lue == null) {
+                erreurs.put("ligne", "Ligne sans campagne");
+                return erreurs;
+            }
+            Campagne campagne = new Campagne();
+            campagne.setNom(lue.nom());
+            campagne.setObjectifMontant(lue.objectifMontant());
+            campagne.setDateDebut(lue.dateDebut());
+            campagne.setDateFin(lue.dateFin());
+            if (erreurs.isEmpty()) {
+                for (ConstraintViolation<Campagne> violation : validator.validate(campagne)) {
+                    erreurs.put(violation.getPropertyPath().toString(), violation.getMessage());
+                }
+            }
+            if (erreurs.isEmpty()) {
+                lecteur.campagnes.add(campagne);
+            }
+            return erreurs;
+        }
+
+        private static Montant lireMontant(String texte, String champ, Map<String, String> erreurs) {
+            String montant = texte.strip();
+            if (montant.isEmpty()) {
+                return null;
+            }
+            try {
+                return Montant.parse(montant);
+            } catch (NumberFormatException | ArithmeticException e) {
+                erreurs.put(champ, e.getMessage());
+                return null;
+            }
+        }
+
+        private static LocalDate lireDate(String texte, String champ, Map<String, String> erreurs) {
+            String date = texte.strip();
+            if (date.isEmpty()) {
+                return null;
+            }
+            try {
+                return LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                erreurs.put(champ, "Date invalide : " + date);
+                return null;
+            }
+        }
+
+        /**
+         * @return Le champ JSON en cause, ou "ligne" si l'erreur porte sur la ligne entière
+         */
+        private static String champ(IOException e) {
+            if (e instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+                String nom = mapping.getPath().get(mapping.getPath().size() - 1).getFieldName();
+                if (nom != null) {
+                    return nom;
+                }
+            }
+            return "ligne";
+        }
+
+        /**
+         * @return La première ligne du message d'erreur de Jackson, sans la position dans la source
+         */
+        private static String message(IOException e) {
+            String message = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+            if (message == null) {
+                return "JSON invalide";
+            }
+            int fin = message.indexOf('\n');
+            return fin < 0 ? message : message.substring(0, fin);
+        }
+
+        /**
+         * Insère les dons valides d'un morceau en un lot JDBC, enregistre un incrément du montant collecté par campagne
+         * et publie un événement par don, traité après le commit.
+         */
+        private void insererDons(Lecteur lecteur) {
+            List<DonCampagneDTO> dons = lecteur.dons;
+            for (int i = 0; i < dons.size(); i++) {
+                dons.get(i).setId(lecteur.identifiantSuivant(jdbcTemplate));
+            }
+            jdbcTemplate.batchUpdate(INSERTION_DON, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement requete, int i) throws SQLException {
+                    DonCampagneDTO don = dons.get(i);
+                    requete.setLong(1, don.getId());
+                    requete.setLong(2, don.getCampagneId());
+                    requete.setString(3, don.getNomDonateur());
+                    requete.setBigDecimal(4, don.getMontant().toBigDecimal());
+                    requete.setObject(5, don.getDate());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return dons.size();
+                }
+            });
+            Map<Long, long[]> cumuls = new HashMap<>();
+            for (DonCampagneDTO don : dons) {
+                long[] cumul = cumuls.computeIfAbsent(don.getCampagneId(), id -> new long[2]);
+                cumul[0] += don.getMontant().centimes();
+                cumul[1]++;
+            }
+            cumuls.forEach((campagneId, cumul) ->
+                    objectifsCampagnes.ajouter(campagneId, Montant.deCentimes(cumul[0]), (int) cumul[1]));
+            for (DonCampagneDTO don : dons) {
+                eventPublisher.publishEvent(new DonEnregistreEvent(don.getId(), don.getCampagneId(), don.getNomDonateur(),
+                        don.getMontant(), don.getDate()));
+            }
+        }
+
+        private static void supprimer(Path fichier) {
+            try {
+                Files.deleteIfExists(fichier);
+            } catch (IOException e) {
+                log.warn("Fichier d'import {} non supprimé : {}", fichier, e.getMessage());
+            }
+        }
+
+        /**
+         * État d'un import, mis à jour par les threads de traitement.
+         */
+        private static final class Execution {
+
+            private final long numero;
+            private final Path fichier;
+            private final Type type;
+            private final Format format;
+            private final long octets;
+            private final long debutDonnees;
+            private final int[] colonnes;
+            private final long premiereLigne;
+            private final Path fichierRejets;
+            private final LocalDateTime debut = LocalDateTime.now();
+            private final long debutNanos = System.nanoTime();
+            private final LongAdder lignes = new LongAdder();
+            private final LongAdder importees = new LongAdder();
+            private final LongAdder rejetees = new LongAdder();
+            private final LongAdder octetsTraites = new LongAdder();
+            private final AtomicReference<Throwable> echec = new AtomicReference<>();
+            private volatile LocalDateTime fin;
+            private volatile long finNanos;
+
+            /**
+             * Date de la dernière journalisation de la progression, lue et écrite par le thread qui découpe le fichier
+             */
+            private long dernierJournal = debutNanos;
+
+            private Execution(long numero, Path fichier, Type type, Format format, long octets, long debutDonnees,
+                              int[] colonnes, long premiereLigne, Path fichierRejets) {
+                this.numero = numero;
+                this.fichier = fichier;
+                this.type = type;
+                this.format = format;
+                this.octets = octets;
+                this.debutDonnees = debutDonnees;
+                this.colonnes = colonnes;
+                this.premiereLigne = premiereLigne;
+                this.fichierRejets = fichierRejets;
+            }
+
+            private void echouer(Throwable cause) {
+                echec.compareAndSet(null, cause);
+            }
+
+            private void terminer() {
+                finNanos = System.nanoTime();
+                fin = LocalDateTime.now();
+            }
+
+            private Progression progression() {
+                LocalDateTime finImport = fin;
+                long nanos = (finImport != null ? finNanos : System.nanoTime()) - debutNanos;
+                long lues = lignes.sum();
+                Throwable cause = echec.get();
+                Statut statut = finImport == null ? Statut.EN_COURS : cause != null ? Statut.ECHOUE : Statut.TERMINE;
+                long rejets = rejetees.sum();
+                return new Progression(numero, type, format, statut, debut, finImport, octets,
+                        Math.min(octets, debutDonnees + octetsTraites.sum()), lues, importees.sum(), rejets,
+                        nanos > 0 ? (long) (lues * 1e9 / nanos) : 0, rejets > 0 ? fichierRejets.toString() : null,
+                        cause != null ? String.valueOf(cause.getMessage()) : null);
+            }
+        }
+
+        /**
+         * État propre à un thread de traitement : tampons de lecture, éléments valides du morceau en cours
+         * et identifiants de dons réservés.
+         */
+        private static final class Lecteur {
+
+            private final List<DonCampagneDTO> dons;
+            private final List<Campagne> campagnes;
+            private byte[] ligne = new byte[1024];
+            private byte[] champ = new byte[1024];
+            private String[] champs;
+            private long prochainId = 1;
+            private long dernierId = 0;
+
+            private Lecteur(int tailleLot) {
+                this.dons = new ArrayList<>(tailleLot);
+                this.campagnes = new ArrayList<>(tailleLot);
+            }
+
+            /**
+             * Copie une ligne de la fenêtre dans le tampon de ligne, agrandi si nécessaire.
+             */
+            private byte[] copier(ByteBuffer octets, int position, int longueur) {
+                if (ligne.length < longueur) {
+                    ligne = new byte[Math.max(longueur, 2 * ligne.length)];
+                    champ = new byte[ligne.length];
+                }
+                octets.get(position, ligne, 0, longueur);
+                return ligne;
+            }
+
+            /**
+             * Découpe une ligne CSV et range ses champs dans l'ordre des colonnes du type (chaîne vide si absente).
+             *
+             * @return Les champs, null si la ligne est mal formée (erreur ajoutée)
+             */
+            private String[] champs(Execution execution, byte[] octets, int longueur, Map<String, String> erreurs) {
+                int nombreColonnes = execution.type.colonnes.size();
+                int maximum = 0;
+                for (int colonne : execution.colonnes) {
+                    maximum = Math.max(maximum, colonne + 1);
+                }
+                if (champs == null) {
+                    champs = new String[maximum + 64];
+                }
+                int nombre;
+                try {
+                    nombre = decouperCsv(octets, longueur, champs, champ);
+                } catch (IllegalArgumentException e) {
+                    erreurs.put("ligne", e.getMessage());
+                    return null;
+                }
+                String[] valeurs = new String[nombreColonnes];
+                for (int i = 0; i < nombreColonnes; i++) {
+                    int colonne = execution.colonnes[i];
+                    valeurs[i] = colonne >= 0 && colonne < nombre ? champs[colonne] : "";
+                }
+                return valeurs;
+            }
+
+            /**
+             * Découpe une ligne CSV (RFC 4180 : champs éventuellement entre guillemets, guillemets doublés).
+             *
+             * @param octets Ligne encodée en UTF-8
+             * @param longueur Longueur de la ligne
+             * @param champs Champs lus
+             * @param tampon Tampon de décodage des champs entre guillemets, au moins aussi long que la ligne
+             * @return Le nombre de champs
+             * @throws IllegalArgumentException Si la ligne est mal formée ou a plus de champs que prévu
+             */
+            private static int decouperCsv(byte[] octets, int longueur, String[] champs, byte[] tampon) {
+                int nombre = 0;
+                int i = 0;
+                while (true) {
+                    if (nombre == champs.length) {
+                        throw new IllegalArgumentException("Plus de " + champs.length + " champs");
+                    }
+                    if (i < longueur && octets[i] == '"') {
+                        int j = i + 1;
+                        int taille = 0;
+                        while (true) {
+                            if (j >= longueur) {
+                                throw new IllegalArgumentException("Guillemet non fermé dans le champ " + (nombre + 1));
+                            }
+                            if (octets[j] == '"') {
+                                if (j + 1 < longueur && octets[j + 1] == '"') {
+                                    tampon[taille++] = '"';
+                                    j += 2;
+                                    continue;
+                                }
+                                j++;
+                                break;
+                            }
+                            tampon[taille++] = octets[j++];
+                        }
+                        if (j < longueur && octets[j] != ',') {
+                            throw new IllegalArgumentException("Caractère inattendu après le champ " + (nombre + 1));
+                        }
+                        champs[nombre++] = new String(tampon, 0, taille, StandardCharsets.UTF_8);
+                        i = j;
+                    } else {
+                        int j = i;
+                        while (j < longueur && octets[j] != ',') {
+                            j++;
+                        }
+                        champs[nombre++] = new String(octets, i, j - i, StandardCharsets.UTF_8);
+                        i = j;
+                    }
+                    if (i >= longueur) {
+                        return nombre;
+                    }
+                    // Séparateur : un champ suit, éventuellement vide
+                    i++;
+                }
+            }
+
+            private static boolean estVide(byte[] octets, int longueur) {
+                for (int i = 0; i < longueur; i++) {
+                    if (octets[i] != ' ' && octets[i] != '\t') {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            /**
+             * Retourne l'identifiant de don suivant, en réservant un bloc dans la séquence des dons lorsque le bloc
+             * courant est épuisé.
+             */
+            private long identifiantSuivant(JdbcTemplate jdbcTemplate) {
+                if (prochainId > dernierId) {
+                    Long valeur = jdbcTemplate.queryForObject(SEQUENCE_DONS, Long.class);
+                    dernierId = valeur;
+                    prochainId = Math.max(1, valeur - ALLOCATION_DONS + 1);
+                }
+                return prochainId++;
+            }
+        }
+
+        /**
+         * Fichier des lignes rejetées (CSV : ligne, erreurs, contenu), créé au premier rejet et partagé par les threads
+         * de traitement ; les lignes y sont dans l'ordre de leur traitement.
+         */
+        private static final class Rejets implements Closeable {
+
+            private final Path fichier;
+            private BufferedWriter sortie;
+
+            private Rejets(Path fichier) {
+                this.fichier = fichier;
+            }
+
+            private synchronized void ecrire(long ligne, Map<String, String> erreurs, byte[] contenu, int longueur)
+                    throws IOException {
+                if (sortie == null) {
+                    sortie = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8);
+                    sortie.write("ligne,erreurs,contenu\r\n");
+                }
+                StringBuilder texte = new StringBuilder();
+                erreurs.forEach((champ, message) -> texte.append(texte.isEmpty() ? "" : " ; ")
+                        .append(champ).append(" : ").append(message));
+                sortie.write(Long.toString(ligne));
+                sortie.write(',');
+                sortie.write(entreGuillemets(texte.toString()));
+                sortie.write(',');
+                sortie.write(entreGuillemets(new String(contenu, 0, longueur, StandardCharsets.UTF_8)));
+                sortie.write("\r\n");
+            }
+
+            private static String entreGuillemets(String texte) {
+                return '"' + texte.replace("\"", "\"\"") + '"';
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                if (sortie != null) {
+                    sortie.close();
+                } else {
+                    // Fichier d'un import précédent de même numéro (avant redémarrage)
+                    Files.deleteIfExists(fichier);
+                }
+            }
+        }
+}
@@ -0,0 +1,170 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Index en mémoire des campagnes (identifiant vers nom et dates), consulté par le chemin d'écriture des dons
+ * pour vérifier qu'une campagne est active sans la charger depuis la base.
+ * L'index est construit au démarrage puis tenu à jour par les événements de modification de campagne.
+ * Une campagne absente de l'index (créée par un autre processus par exemple) est chargée à la demande.
+ */
+@Component
+public class IndexCampagnes {
+
+        /**
+         * Repository pour accéder aux données des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Informations par identifiant de campagne
+         */
+        private volatile ConcurrentHashMap<Long, CampagneInfo> campagnes = new ConcurrentHashMap<>();
+
+        /**
+         * Modifications reçues pendant une reconstruction, rejouées sur le nouvel index
+         */
+        private List<CampagneModifieeEvent> modificationsPendantReconstruction;
+
+        /**
+         * Génération de l'index, incrémentée à chaque modification et à chaque reconstruction. Protégée par le moniteur
+         * de l'index ; volatile pour être lue sans lui avant un chargement.
+         */
+        private volatile long generation;
+
+        /**
+         * Compteurs de lectures servies par l'index et de chargements depuis la base
+         */
+        private final LongAdder succes = new LongAdder();
+        private final LongAdder chargements = new LongAdder();
+
+        /**
+         * Date et durée de la dernière reconstruction
+         */
+        private volatile Instant derniereReconstruction;
+        private volatile Duration dureeReconstruction = Duration.ZERO;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param campagneRepository Repository des campagnes
+         */
+        @Autowired
+        public IndexCampagnes(CampagneRepository campagneRepository) {
+            this.campagneRepository = campagneRepository;
+        }
+
+        /**
+         * Reconstruit l'index à partir de la table des campagnes.
+         * Les modifications reçues pendant la lecture sont rejouées sur le nouvel index avant qu'il ne remplace l'ancien.
+         * La lecture se fait dans une transaction en écriture, servie par la base principale : une réplique en retard
+         * manquerait des écritures dont les modifications ont déjà été appliquées à l'ancien index.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        @Transactional
+        public void reconstruire() {
+            long debut = System.nanoTime();
+            synchronized (this) {
+                modificationsPendantReconstruction = new ArrayList<>();
+            }
+            ConcurrentHashMap<Long, CampagneInfo> nouvelIndex = new ConcurrentHashMap<>();
+            for (CampagneInfo info : campagneRepository.findAllInfos()) {
+                nouvelIndex.put(info.id(), info);
+            }
+            synchronized (this) {
+                modificationsPendantReconstruction.forEach(event -> appliquer(nouvelIndex, event));
+                modificationsPendantReconstruction = null;
+                campagnes = nouvelIndex;
+                generation++;
+            }
+            dureeReconstruction = Duration.ofNanos(System.nanoTime() - debut);
+            derniereReconstruction = Instant.now();
+        }
+
+        /**
+         * Met à jour l'index après le commit d'une écriture sur une campagne.
+         *
+         * @param event L'événement de modification de campagne
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+        public synchronized void onCampagneModifiee(CampagneModifieeEvent event) {
+            if (modificationsPendantReconstruction != null) {
+                modificationsPendantReconstruction.add(event);
+            }
+            appliquer(campagnes, event);
+            generation++;
+        }
+
+        /**
+         * Recherche les informations d'une campagne, en les chargeant depuis la base si elles sont absentes de l'index.
+         * Une campagne chargée n'entre dans l'index que si aucune modification n'a été appliquée pendant le chargement :
+         * la lecture a pu précéder cette modification (une suppression notamment) et ne doit pas l'écraser.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Les informations de la campagne, vide si elle n'existe pas
+         */
+        public Optional<CampagneInfo> trouver(Long campagneId) {
+            CampagneInfo info = campagnes.get(campagneId);
+            if (info != null) {
+                succes.increment();
+                return Optional.of(info);
+            }
+            chargements.increment();
+            long generationChargement = generation;
+            Optional<CampagneInfo> chargee = campagneRepository.findInfoById(campagneId);
+            if (chargee.isPresent()) {
+                synchronized (this) {
+                    if (generation == generationChargement) {
+                        campagnes.putIfAbsent(campagneId, chargee.get());
+                    }
+                }
+            }
+            return chargee;
+        }
+
+        /**
+         * @return Les statistiques de l'index
+         */
+        public StatistiquesIndex getStatistiques() {
+            return new StatistiquesIndex(campagnes.size(), succes.sum(), chargements.sum(),
+                    derniereReconstruction, dureeReconstruction.toMillis());
+        }
+
+        private static void appliquer(ConcurrentHashMap<Long, CampagneInfo> index, CampagneModifieeEvent event) {
+            if (event.supprimee()) {
+                index.remove(event.campagneId());
+            } else {
+                index.put(event.campagneId(),
+                        new CampagneInfo(event.campagneId(), event.nom(), event.dateDebut(), event.dateFin(), event.statut()));
+            }
+        }
+
+        /**
+         * Statistiques de l'index des campagnes.
+         *
+         * @param taille Nombre de campagnes indexées
+         * @param succes Lectures servies par l'index
+         * @param chargements Lectures ayant nécessité un chargement depuis la base
+         * @param derniereReconstruction Date de la dernière reconstruction, null si aucune
+         * @param dureeReconstructionMs Durée de la dernière reconstruction en millisecondes
+         */
+        public record StatistiquesIndex(int taille, long succes, long chargements,
+                                        Instant derniereReconstruction, long dureeReconstructionMs) {
+        }
+}
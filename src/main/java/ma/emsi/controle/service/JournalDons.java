@@ -0,0 +1,317 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.entities.Montant;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Journal local des dons acceptés en écriture différée.
+ * Un don est écrit et synchronisé sur disque (fsync) avant que sa soumission ne soit acquittée,
+ * puis marqué traité une fois sa transaction validée. Au redémarrage, les dons acceptés mais non traités
+ * sont relus pour être réinjectés dans la file.
+ * <p>
+ * Les écritures sont synchronisées par groupe : chaque écriture ajoute ses lignes au fichier sous un verrou court,
+ * puis attend qu'un fsync la couvre. Un seul fsync s'exécute à la fois ; il couvre toutes les écritures faites
+ * avant son lancement, et les soumissions arrivées pendant un fsync partagent le suivant au lieu d'en lancer un chacune.
+ * Les dons en attente sont aussi gardés en mémoire : la relecture et la compaction ne relisent pas le fichier.
+ * <p>
+ * Format : une ligne par enregistrement, {@code A|suivi|campagneId|nomDonateur(base64)|montant} pour un don accepté
+ * et {@code T|suivi} pour un don traité. Une dernière ligne sans fin de ligne (arrêt brutal pendant l'écriture) est ignorée.
+ * La compaction réécrit le journal avec les seuls dons acceptés et non traités.
+ */
+public class JournalDons implements Closeable {
+
+        private static final Base64.Encoder ENCODEUR = Base64.getUrlEncoder().withoutPadding();
+        private static final Base64.Decoder DECODEUR = Base64.getUrlDecoder();
+
+        /**
+         * Fichier du journal
+         */
+        private final Path fichier;
+
+        /**
+         * Canal d'écriture, positionné en fin de fichier ; rouvert après une compaction
+         */
+        private FileChannel canal;
+
+        /**
+         * Lignes d'acceptation des dons non marqués traités, dans leur ordre d'acceptation, indexées par numéro de suivi
+         */
+        private final Map<String, String> enAttente;
+
+        /**
+         * Vrai si des dons ont pu être marqués traités depuis la dernière compaction
+         */
+        private boolean aCompacter;
+
+        /**
+         * Nombre d'écritures faites dans le fichier ; incrémenté sous le verrou, après l'écriture
+         */
+        private volatile long ecritures;
+
+        /**
+         * Nombre d'écritures couvertes par le dernier fsync réussi
+         */
+        private volatile long ecrituresSynchronisees;
+
+        /**
+         * Nombre de fsync des écritures
+         */
+        private final AtomicLong synchronisations = new AtomicLong();
+
+        /**
+         * Verrou sérialisant les écritures dans le fichier et l'état en mémoire, jamais tenu pendant un fsync d'écritures.
+         * Des ReentrantLock pour ne pas épingler les threads virtuels.
+         */
+        private final ReentrantLock verrou = new ReentrantLock();
+
+        /**
+         * Verrou du fsync des écritures, pris avant {@link #verrou} par la compaction et la fermeture
+         */
+        private final ReentrantLock verrouSynchronisation = new ReentrantLock();
+
+        /**
+         * Ouvre (ou crée) le journal.
+         *
+         * @param fichier Chemin du fichier du journal
+         * @throws IOException Si le fichier ne peut pas être ouvert
+         */
+        public JournalDons(Path fichier) throws IOException {
+            this.fichier = fichier;
+            Path parent = fichier.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.canal = FileChannel.open(fichier, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            // Supprime une éventuelle ligne incomplète pour que les prochains ajouts commencent sur une ligne neuve
+            this.canal.truncate(finDerniereLigneComplete());
+            this.canal.position(canal.size());
+            this.aCompacter = canal.size() > 0;
+            this.enAttente = lignesEnAttente(Files.readString(fichier, StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Relit les dons acceptés qui n'ont pas été marqués traités.
+         *
+         * @return Les dons en attente, dans leur ordre d'acceptation, indexés par numéro de suivi
+         */
+        public Map<String, DonCampagneDTO> relireEnAttente() {
+            verrou.lock();
+            try {
+                Map<String, DonCampagneDTO> dons = new LinkedHashMap<>();
+                enAttente.forEach((suivi, ligne) -> {
+                    String[] champs = ligne.split("\\|");
+                    DonCampagneDTO don = new DonCampagneDTO();
+                    don.setCampagneId(Long.valueOf(champs[2]));
+                    don.setNomDonateur(new String(DECODEUR.decode(champs[3]), StandardCharsets.UTF_8));
+                    don.setMontant(Montant.parse(champs[4]));
+                    dons.put(suivi, don);
+                });
+                return dons;
+            } finally {
+                verrou.unlock();
+            }
+        }
+
+        /**
+         * Enregistre durablement l'acceptation d'un don : retourne une fois l'écriture couverte par un fsync.
+         *
+         * @param suivi Numéro de suivi du don
+         * @param don Don accepté
+         */
+        public void ajouter(String suivi, DonCampagneDTO don) {
+            String nom = ENCODEUR.encodeToString(don.getNomDonateur().getBytes(StandardCharsets.UTF_8));
+            String ligne = "A|" + suivi + "|" + don.getCampagneId() + "|" + nom + "|" + don.getMontant();
+            long ecriture;
+            verrou.lock();
+            try {
+                ecriture = ecrire(ligne + "\n");
+                enAttente.put(suivi, ligne);
+            } finally {
+                verrou.unlock();
+            }
+            synchroniser(ecriture);
+        }
+
+        /**
+         * Marque des dons comme traités, en une seule écriture synchronisée.
+         *
+         * @param suivis Numéros de suivi des dons traités
+         */
+        public void marquerTraites(Collection<String> suivis) {
+            StringBuilder lignes = new StringBuilder(suivis.size() * 40);
+            suivis.forEach(suivi -> lignes.append("T|").append(suivi).append('\n'));
+            long ecriture;
+            verrou.lock();
+            try {
+                ecriture = ecrire(lignes.toString());
+                suivis.forEach(enAttente::remove);
+                aCompacter = true;
+            } finally {
+                verrou.unlock();
+            }
+            synchroniser(ecriture);
+        }
+
+        /**
+         * Réécrit le journal avec les seuls dons acceptés et non marqués traités, pris en mémoire, si des dons ont été
+         * marqués traités depuis la dernière compaction. Le nouveau journal est écrit et synchronisé dans un fichier temporaire,
+         * puis remplace l'ancien par un renommage atomique : un arrêt brutal pendant la compaction laisse
+         * l'un ou l'autre, jamais un journal partiel.
+         *
+         * @return true si le journal a été réécrit
+         */
+        public boolean compacter() {
+            verrouSynchronisation.lock();
+            verrou.lock();
+            try {
+                if (!aCompacter) {
+                    return false;
+                }
+                try {
+                    if (enAttente.isEmpty()) {
+                        canal.truncate(0);
+                        canal.position(0);
+                        canal.force(true);
+                    } else {
+                        Path temporaire = fichier.resolveSibling(fichier.getFileName() + ".tmp");
+                        try (FileChannel sortie = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                            StringBuilder lignes = new StringBuilder(enAttente.size() * 80);
+                            enAttente.values().forEach(ligne -> lignes.append(ligne).append('\n'));
+                            ByteBuffer tampon = ByteBuffer.wrap(lignes.toString().getBytes(StandardCharsets.UTF_8));
+                            while (tampon.hasRemaining()) {
+                                sortie.write(tampon);
+                            }
+                            sortie.force(true);
+                        }
+                        Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                        canal.close();
+                        canal = FileChannel.open(fichier, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        canal.position(canal.size());
+                    }
+                    // Le nouveau journal, synchronisé, contient tout ce qui avait été écrit
+                    ecrituresSynchronisees = ecritures;
+                    aCompacter = false;
+                    return true;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } finally {
+                verrou.unlock();
+                verrouSynchronisation.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            verrouSynchronisation.lock();
+            verrou.lock();
+            try {
+                canal.close();
+            } finally {
+                verrou.unlock();
+                verrouSynchronisation.unlock();
+            }
+        }
+
+        /**
+         * @return Le nombre de fsync des écritures depuis l'ouverture du journal
+         */
+        long synchronisations() {
+            return synchronisations.get();
+        }
+
+        /**
+         * Extrait d'un contenu de journal les lignes des dons acceptés qui n'ont pas été marqués traités.
+         *
+         * @param contenu Contenu du fichier du journal
+         * @return Les lignes d'acceptation en attente, dans leur ordre d'acceptation, indexées par numéro de suivi
+         */
+        private static Map<String, String> lignesEnAttente(String contenu) {
+            Map<String, String> enAttente = new LinkedHashMap<>();
+            // Seules les lignes complètes comptent : une ligne sans fin de ligne n'a jamais été acquittée
+            for (String ligne : contenu.substring(0, contenu.lastIndexOf('\n') + 1).split("\n")) {
+                String[] champs = ligne.split("\\|");
+                if (champs.length == 5 && champs[0].equals("A")) {
+                    enAttente.put(champs[1], ligne);
+                } else if (champs.length == 2 && champs[0].equals("T")) {
+                    enAttente.remove(champs[1]);
+                }
+            }
+            return enAttente;
+        }
+
+        private long finDerniereLigneComplete() throws IOException {
+            ByteBuffer octet = ByteBuffer.allocate(1);
+            for (long position = canal.size() - 1; position >= 0; position--) {
+                octet.clear();
+                canal.read(octet, position);
+                if (octet.get(0) == '\n') {
+                    return position + 1;
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Ajoute des lignes au fichier, sans fsync. Appelée sous le verrou.
+         *
+         * @return Le numéro de l'écriture, à passer à {@link #synchroniser(long)}
+         */
+        private long ecrire(String lignes) {
+            try {
+                ByteBuffer tampon = ByteBuffer.wrap(lignes.getBytes(StandardCharsets.UTF_8));
+                while (tampon.hasRemaining()) {
+                    canal.write(tampon);
+                }
+                return ++ecritures;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Attend qu'un fsync couvre une écriture. Le premier thread à obtenir le verrou de synchronisation lance
+         * un fsync couvrant toutes les écritures déjà faites ; les threads qui attendaient derrière lui le trouvent
+         * fait pour leur écriture et retournent sans fsync. Après un échec, l'écriture reste non couverte et
+         * le thread suivant retente le fsync.
+         *
+         * @param ecriture Numéro de l'écriture
+         */
+        private void synchroniser(long ecriture) {
+            if (ecrituresSynchronisees >= ecriture) {
+                return;
+            }
+            verrouSynchronisation.lock();
+            try {
+                if (ecrituresSynchronisees >= ecriture) {
+                    return;
+                }
+                // Les écritures jusqu'à ce numéro sont dans le fichier : le fsync qui suit les couvre toutes
+                long couvertes = ecritures;
+                canal.force(false);
+                synchronisations.incrementAndGet();
+                ecrituresSynchronisees = couvertes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                verrouSynchronisation.unlock();
+            }
+        }
+}
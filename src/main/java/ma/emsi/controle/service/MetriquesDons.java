@@ -0,0 +1,46 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Publie le débit et les montants des dons par campagne (résumé dons.montant, étiquette campagne) :
+ * le nombre d'observations donne le nombre de dons, leur somme le montant collecté.
+ * Seuls les dons dont la transaction a été validée sont comptés.
+ */
+@Component
+public class MetriquesDons {
+
+        /**
+         * Registre des métriques
+         */
+        private final MeterRegistry meterRegistry;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param meterRegistry Registre des métriques
+         */
+        @Autowired
+        public MetriquesDons(MeterRegistry meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        /**
+         * Enregistre un don dans les métriques de sa campagne.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public void onDonEnregistre(DonEnregistreEvent event) {
+            DistributionSummary.builder("dons.montant")
+                    .description("Montant des dons enregistrés")
+                    .tag("campagne", String.valueOf(event.campagneId()))
+                    .register(meterRegistry)
+                    .record(event.montant().centimes() / 100.0);
+        }
+}
@@ -0,0 +1,227 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.IncrementCampagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.IncrementCampagneRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Suivi du montant collecté par campagne et clôture automatique des campagnes qui atteignent leur objectif.
+ * <p>
+ * Un don n'écrit jamais sur la ligne de sa campagne : sa transaction insère un incrément (IncrementCampagne),
+ * ce qui n'impose aucun verrou commun aux donateurs d'une même campagne. Une tâche planifiée fusionne les incréments
+ * dans le montant collecté de chaque campagne, sous verrouillage optimiste (@Version) : si la campagne a été modifiée
+ * entre sa lecture et son écriture, la fusion est annulée puis rejouée. Une campagne dont le montant collecté atteint
+ * l'objectif passe au statut FINANCEE ; l'index des campagnes en est informé après le commit et les dons suivants
+ * sont refusés sans requête supplémentaire.
+ */
+@Service
+public class ObjectifsCampagnes {
+
+        private static final Logger log = LoggerFactory.getLogger(ObjectifsCampagnes.class);
+
+        /**
+         * Nombre maximal de tentatives d'une fusion en conflit avec une autre écriture sur une campagne
+         */
+        private static final int TENTATIVES_MAX = 5;
+
+        /**
+         * Repository des incréments en attente de fusion
+         */
+        private final IncrementCampagneRepository incrementCampagneRepository;
+
+        /**
+         * Repository des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Contexte de persistance des fusions
+         */
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        /**
+         * Transactions de fusion
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Nombre maximal d'incréments fusionnés par transaction
+         */
+        @Value("${campagnes.objectifs.taille-fusion:10000}")
+        private int tailleFusion;
+
+        /**
+         * Verrou tenu pendant chaque transaction de fusion, pour suspendre les fusions de cette instance (voir sansFusion)
+         */
+        private final ReentrantLock verrouFusion = new ReentrantLock();
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param incrementCampagneRepository Repository des incréments de montant collecté
+         * @param campagneRepository Repository des campagnes
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ObjectifsCampagnes(IncrementCampagneRepository incrementCampagneRepository,
+                                  CampagneRepository campagneRepository, PlatformTransactionManager transactionManager) {
+            this.incrementCampagneRepository = incrementCampagneRepository;
+            this.campagneRepository = campagneRepository;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+
+        /**
+         * Enregistre, dans la transaction du don, l'incrément du montant collecté d'une campagne.
+         * L'incrément n'est compté que si la transaction est validée.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param montant Montant des dons
+         * @param nombreDons Nombre de dons
+         */
+        @Transactional(propagation = Propagation.MANDATORY)
+        public void ajouter(Long campagneId, Montant montant, int nombreDons) {
+            incrementCampagneRepository.save(new IncrementCampagne(campagneId, montant, nombreDons));
+        }
+
+        /**
+         * Exécute une action pendant laquelle aucune fusion de cette instance ne lit ni n'écrit les campagnes.
+         * Sert aux corrections du montant collecté, qui doivent être validées et retirées du cache de second niveau
+         * avant que la fusion suivante ne relise les campagnes corrigées.
+         *
+         * @param action Action à exécuter
+         * @return Le résultat de l'action
+         */
+        public <T> T sansFusion(Supplier<T> action) {
+            verrouFusion.lock();
+            try {
+                return action.get();
+            } finally {
+                verrouFusion.unlock();
+            }
+        }
+
+        /**
+         * Initialise au démarrage, avant la construction de l'index des campagnes, le suivi des objectifs
+         * des campagnes qui n'en ont pas encore (base créée avant l'introduction du suivi).
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public void initialiser() {
+            Integer initialisees = transactionTemplate.execute(statut -> {
+                int nombre = campagneRepository.initialiserSuiviObjectifs();
+                if (nombre > 0) {
+                    campagneRepository.cloreCampagnesFinancees();
+                }
+                return nombre;
+            });
+            if (initialisees != null && initialisees > 0) {
+                log.info("Suivi des objectifs initialisé pour {} campagnes", initialisees);
+            }
+        }
+
+        /**
+         * Fusionne les incréments en attente dans le montant collecté des campagnes.
+         */
+        @Scheduled(fixedDelayString = "${campagnes.objectifs.intervalle-fusion-ms:1000}")
+        public void fusionner() {
+            int fusionnes;
+            do {
+                fusionnes = fusionnerLot();
+            } while (fusionnes == tailleFusion);
+        }
+
+        /**
+         * Fusionne un lot d'incréments, en rejouant la transaction si une campagne a été modifiée entre-temps.
+         *
+         * @return Le nombre d'incréments fusionnés
+         */
+        private int fusionnerLot() {
+            for (int tentative = 1; ; tentative++) {
+                try {
+                    Integer fusionnes = sansFusion(() -> transactionTemplate.execute(statut -> appliquerIncrements()));
+                    return fusionnes == null ? 0 : fusionnes;
+                } catch (OptimisticLockingFailureException e) {
+                    if (tentative == TENTATIVES_MAX) {
+                        // Les incréments restent en attente pour la prochaine fusion
+                        log.warn("Fusion des montants collectés abandonnée après {} conflits", TENTATIVES_MAX, e);
+                        return 0;
+                    }
+                } catch (PessimisticLockingFailureException e) {
+                    // Ligne de campagne verrouillée trop longtemps : les incréments restent en attente pour la prochaine fusion
+                    log.warn("Fusion des montants collectés reportée : {}", e.getMessage());
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Supprime les incréments lus puis les ajoute au montant collecté de leur campagne en clôturant
+         * les campagnes financées, dans la transaction courante.
+         */
+        private int appliquerIncrements() {
+            List<IncrementCampagne> increments = incrementCampagneRepository.trouverPremiers(Limit.of(tailleFusion));
+            if (increments.isEmpty()) {
+                return 0;
+            }
+            Map<Long, Montant> montants = new HashMap<>();
+            increments.forEach(increment -> montants.merge(increment.getCampagneId(), increment.getMontant(), Montant::plus));
+            // Chargement par identifiants : les campagnes sont lues dans le cache de second niveau, une seule requête
+            // charge les absentes. Le cache reste à jour car elles sont écrites en tant qu'entités
+            List<Campagne> campagnes = entityManager.unwrap(Session.class).byMultipleIds(Campagne.class).with(CacheMode.NORMAL)
+                    .multiLoad(List.copyOf(montants.keySet()));
+
+            // Un incrément déjà supprimé a été fusionné par une fusion concurrente : la campagne lue peut déjà l'inclure.
+            // Les lignes des campagnes, disputées par les contrôles de clé étrangère des dons, sont écrites en dernier
+            // pour être verrouillées le moins longtemps possible ; les incréments d'une campagne supprimée sont simplement supprimés
+            if (incrementCampagneRepository.supprimer(increments.stream().map(IncrementCampagne::getId).toList()) != increments.size()) {
+                throw new ObjectOptimisticLockingFailureException(IncrementCampagne.class, increments.get(0).getId());
+            }
+            for (Campagne campagne : campagnes) {
+                if (campagne == null) {
+                    continue;
+                }
+                Montant montantCollecte = (campagne.getMontantCollecte() == null ? Montant.ZERO : campagne.getMontantCollecte())
+                        .plus(montants.get(campagne.getId()));
+                campagne.setMontantCollecte(montantCollecte);
+                if (campagne.getStatut() != StatutCampagne.FINANCEE) {
+                    // Un changement de statut est publié par CampagneListener lors de l'écriture
+                    campagne.setStatut(montantCollecte.compareTo(campagne.getObjectifMontant()) >= 0
+                            ? StatutCampagne.FINANCEE : StatutCampagne.OUVERTE);
+                }
+            }
+            // UPDATE ... WHERE version = ? : une campagne modifiée depuis sa lecture fait échouer la fusion, qui est rejouée
+            campagneRepository.flush();
+            return increments.size();
+        }
+}
@@ -0,0 +1,394 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.ResultatDonDTO;
+import ma.emsi.controle.DTOs.SuiviDonDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.exception.FileAttentePleineException;
+import ma.emsi.controle.projection.CampagneInfo;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline d'écriture différée des dons (mode optionnel, dons.ecriture-differee.enabled=true).
+ * Un don soumis est vérifié, journalisé sur disque puis placé dans une file bornée ; sa soumission est acquittée
+ * immédiatement avec un numéro de suivi. Quelques threads d'écriture vident la file par lots et enregistrent
+ * chaque lot dans une seule transaction (commit groupé), ce qui libère les threads HTTP et les connexions
+ * à la base pendant les pics de dons.
+ * Lorsque la file est pleine, la soumission est refusée (FileAttentePleineException, réponse 429).
+ * Un don n'est marqué traité qu'une fois enregistré ou rejeté pour lui-même ; s'il n'a pas pu être écrit
+ * (base indisponible, connexion perdue...), il est remis en file après une attente croissante.
+ * Le numéro de suivi est enregistré avec le don : un don rejoué depuis le journal alors qu'il avait été validé
+ * en base n'est pas inséré une seconde fois.
+ */
+@Component
+@ConditionalOnProperty(name = "dons.ecriture-differee.enabled", havingValue = "true")
+public class PipelineDons {
+
+        private static final Logger log = LoggerFactory.getLogger(PipelineDons.class);
+
+        /**
+         * Service d'ingestion par lots, utilisé pour le commit groupé
+         */
+        private final ServiceLotDons serviceLotDons;
+
+        /**
+         * Index en mémoire des campagnes, utilisé pour vérifier la campagne avant d'acquitter
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Fabrique des threads d'écriture (virtuels ou de plateforme)
+         */
+        private final FabriqueThreads fabriqueThreads;
+
+        /**
+         * Capacité de la file, nombre de threads d'écriture et taille maximale d'un lot
+         */
+        private final int capacite;
+        private final int ecrivains;
+        private final int tailleLot;
+
+        /**
+         * Durée de conservation de l'état d'un don traité, pour la consultation du suivi
+         */
+        private final Duration retentionSuivis;
+
+        /**
+         * Attentes minimale et maximale avant de remettre en file des dons dont l'écriture a échoué
+         */
+        private static final long ATTENTE_REPRISE_MIN_MS = 100;
+        private static final long ATTENTE_REPRISE_MAX_MS = 5000;
+
+        /**
+         * File bornée des dons en attente d'écriture
+         */
+        private final ArrayBlockingQueue<DonDiffere> file;
+
+        /**
+         * Places libres dans la pipeline ; une place est rendue lorsque le don est traité (et non dès qu'il quitte la file)
+         */
+        private final Semaphore places;
+
+        /**
+         * Journal local garantissant qu'un don acquitté survit à un arrêt brutal
+         */
+        private final JournalDons journal;
+
+        /**
+         * État des dons soumis, par numéro de suivi
+         */
+        private final ConcurrentHashMap<String, Suivi> suivis = new ConcurrentHashMap<>();
+
+        /**
+         * Exécuteur des threads d'écriture
+         */
+        private ExecutorService executeur;
+
+        private volatile boolean actif = true;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param serviceLotDons Service d'ingestion par lots
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param fabriqueThreads Fabrique des threads d'écriture
+         * @param capacite Nombre maximal de dons acceptés et non encore enregistrés
+         * @param ecrivains Nombre de threads d'écriture
+         * @param tailleLot Nombre maximal de dons par transaction
+         * @param cheminJournal Chemin du journal local
+         * @param retentionSuivis Durée de conservation de l'état d'un don traité
+         * @throws IOException Si le journal ne peut pas être ouvert
+         */
+        @Autowired
+        public PipelineDons(ServiceLotDons serviceLotDons, IndexCampagnes indexCampagnes, FabriqueThreads fabriqueThreads,
+                            @Value("${dons.ecriture-differee.capacite:10000}") int capacite,
+                            @Value("${dons.ecriture-differee.ecrivains:2}") int ecrivains,
+                            @Value("${dons.ecriture-differee.taille-lot:200}") int tailleLot,
+                            @Value("${dons.ecriture-differee.journal:data/journal-dons.log}") Path cheminJournal,
+                            @Value("${dons.ecriture-differee.retention-suivis:PT10M}") Duration retentionSuivis) throws IOException {
+            this.serviceLotDons = serviceLotDons;
+            this.indexCampagnes = indexCampagnes;
+            this.fabriqueThreads = fabriqueThreads;
+            this.capacite = capacite;
+            this.ecrivains = ecrivains;
+            this.tailleLot = tailleLot;
+            this.retentionSuivis = retentionSuivis;
+            this.file = new ArrayBlockingQueue<>(capacite);
+            this.places = new Semaphore(capacite);
+            this.journal = new JournalDons(cheminJournal);
+        }
+
+        /**
+         * Démarre les threads d'écriture puis réinjecte les dons journalisés mais non traités avant le dernier arrêt.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        public void demarrer() {
+            executeur = Executors.newFixedThreadPool(ecrivains, fabriqueThreads.creer("dons-ecrivain-"));
+            for (int i = 0; i < ecrivains; i++) {
+                executeur.submit(this::boucleEcriture);
+            }
+            Map<String, DonCampagneDTO> enAttente = journal.relireEnAttente();
+            if (!enAttente.isEmpty()) {
+                log.info("Reprise de {} don(s) journalisé(s) non enregistré(s)", enAttente.size());
+            }
+            enAttente.forEach((suivi, don) -> {
+                places.acquireUninterruptibly();
+                suivis.put(suivi, Suivi.enAttente(suivi));
+                file.add(new DonDiffere(suivi, don));
+            });
+        }
+
+        /**
+         * Arrête les threads d'écriture après avoir vidé la file. Les dons non traités restent dans le journal.
+         */
+        @PreDestroy
+        public void arreter() throws IOException, InterruptedException {
+            actif = false;
+            if (executeur != null) {
+                executeur.shutdown();
+                executeur.awaitTermination(30, TimeUnit.SECONDS);
+            }
+            journal.close();
+        }
+
+        /**
+         * Soumet un don pour écriture différée.
+         * La campagne est vérifiée immédiatement ; le don est journalisé avant que la méthode ne retourne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param donDTO Don à enregistrer, déjà validé
+         * @return L'état initial du don (EN_ATTENTE) et son numéro de suivi
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la campagne n'est pas active ou a atteint son objectif
+         * @throws FileAttentePleineException Si la file d'attente est pleine
+         */
+        public SuiviDonDTO soumettre(Long campagneId, DonDTO donDTO) {
+            CampagneInfo campagne = indexCampagnes.trouver(campagneId)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            if (!campagne.estActiveLe(LocalDate.now())) {
+                throw new IllegalStateException("Cette campagne n'est pas active actuellement");
+            }
+            if (campagne.estFinancee()) {
+                throw new IllegalStateException("Cette campagne a atteint son objectif et n'accepte plus de dons");
+            }
+            if (!actif || !places.tryAcquire()) {
+                throw new FileAttentePleineException("La file des dons est pleine, veuillez réessayer plus tard");
+            }
+
+            DonCampagneDTO don = new DonCampagneDTO();
+            don.setCampagneId(campagneId);
+            don.setNomDonateur(donDTO.getNomDonateur());
+            don.setMontant(donDTO.getMontant());
+            String suivi = UUID.randomUUID().toString();
+            try {
+                journal.ajouter(suivi, don);
+            } catch (RuntimeException e) {
+                places.release();
+                throw e;
+            }
+            Suivi etat = Suivi.enAttente(suivi);
+            suivis.put(suivi, etat);
+            file.add(new DonDiffere(suivi, don));
+            return etat.dto();
+        }
+
+        /**
+         * Consulte l'état d'un don soumis.
+         *
+         * @param suivi Numéro de suivi du don
+         * @return L'état du don, vide s'il est inconnu ou si son état a expiré
+         */
+        public Optional<SuiviDonDTO> getSuivi(String suivi) {
+            return Optional.ofNullable(suivis.get(suivi)).map(Suivi::dto);
+        }
+
+        /**
+         * @return Le nombre de dons acceptés et non encore enregistrés
+         */
+        public int getDonsEnAttente() {
+            return capacite - places.availablePermits();
+        }
+
+        /**
+         * Boucle d'un thread d'écriture : attend un premier don, complète le lot avec ceux déjà en file,
+         * puis l'enregistre en une transaction. Les dons qui n'ont pas pu être écrits gardent leur place
+         * et sont remis en file.
+         */
+        private void boucleEcriture() {
+            List<DonDiffere> lot = new ArrayList<>(tailleLot);
+            List<DonDiffere> aReprendre = List.of();
+            long attente = 0;
+            long prochainePurge = 0;
+            while (actif || !file.isEmpty()) {
+                try {
+                    DonDiffere premier = file.poll(200, TimeUnit.MILLISECONDS);
+                    if (premier != null) {
+                        lot.add(premier);
+                        file.drainTo(lot, tailleLot - 1);
+                        aReprendre = ecrire(lot);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // Les dons du lot restent dans le journal et seront repris au prochain démarrage
+                    log.error("Échec de l'écriture d'un lot de {} don(s)", lot.size(), e);
+                } finally {
+                    places.release(lot.size() - aReprendre.size());
+                    lot.clear();
+                }
+                if (!aReprendre.isEmpty()) {
+                    attente = Math.min(Math.max(2 * attente, ATTENTE_REPRISE_MIN_MS), ATTENTE_REPRISE_MAX_MS);
+                    if (!reprendre(aReprendre, attente)) {
+                        return;
+                    }
+                    aReprendre = List.of();
+                } else {
+                    attente = 0;
+                }
+                if (System.currentTimeMillis() >= prochainePurge) {
+                    purgerSuivis();
+                    journal.compacter();
+                    prochainePurge = System.currentTimeMillis() + 1000;
+                }
+            }
+        }
+
+        /**
+         * Remet en file, après une attente, des dons dont l'écriture a échoué ; ils y ont gardé leur place.
+         * Pendant l'arrêt, ils restent seulement dans le journal et seront repris au prochain démarrage.
+         *
+         * @return false si le thread a été interrompu pendant l'attente
+         */
+        private boolean reprendre(List<DonDiffere> dons, long attente) {
+            try {
+                Thread.sleep(attente);
+            } catch (InterruptedException e) {
+                places.release(dons.size());
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (actif) {
+                file.addAll(dons);
+            } else {
+                places.release(dons.size());
+            }
+            return true;
+        }
+
+        /**
+         * Enregistre un lot dans une seule transaction. Si la transaction échoue, les dons sont repris
+         * un par un pour isoler le ou les dons en cause. Seuls les dons enregistrés ou rejetés sont marqués traités :
+         * dès qu'un don ne peut pas être écrit pour une autre raison que son contenu, lui et les suivants
+         * restent dans le journal et sont retournés pour être remis en file.
+         *
+         * @return Les dons à remettre en file
+         */
+        private List<DonDiffere> ecrire(List<DonDiffere> lot) {
+            List<ResultatDonDTO> resultats;
+            try {
+                resultats = serviceLotDons.enregistrerDonsSuivis(lot.stream().map(DonDiffere::suivi).toList(),
+                        lot.stream().map(DonDiffere::don).toList());
+            } catch (RuntimeException e) {
+                log.warn("Échec du commit groupé de {} don(s), reprise don par don", lot.size(), e);
+                resultats = new ArrayList<>(lot.size());
+                boolean echec = false;
+                for (int i = 0; i < lot.size(); i++) {
+                    ResultatDonDTO resultat = echec ? null : enregistrerSeul(i, lot.get(i));
+                    echec = resultat == null;
+                    resultats.add(resultat);
+                }
+            }
+
+            long maintenant = System.currentTimeMillis();
+            List<String> traites = new ArrayList<>(lot.size());
+            List<DonDiffere> aReprendre = new ArrayList<>();
+            for (int i = 0; i < lot.size(); i++) {
+                String suivi = lot.get(i).suivi();
+                ResultatDonDTO resultat = resultats.get(i);
+                if (resultat == null) {
+                    aReprendre.add(lot.get(i));
+                    continue;
+                }
+                SuiviDonDTO.Statut statut = resultat.getStatut() == ResultatDonDTO.Statut.ENREGISTRE
+                        ? SuiviDonDTO.Statut.ENREGISTRE : SuiviDonDTO.Statut.REJETE;
+                suivis.put(suivi, new Suivi(new SuiviDonDTO(suivi, statut, resultat.getDon(), resultat.getErreurs()), maintenant));
+                traites.add(suivi);
+            }
+            if (!traites.isEmpty()) {
+                journal.marquerTraites(traites);
+            }
+            return aReprendre;
+        }
+
+        /**
+         * Enregistre un don seul. Un don refusé par les contraintes de la base est rejeté ; toute autre erreur
+         * (base indisponible, connexion perdue, délai dépassé...) ne dit rien du don, qui doit être réessayé.
+         *
+         * @return Le résultat du don, null s'il doit être réessayé
+         */
+        private ResultatDonDTO enregistrerSeul(int index, DonDiffere don) {
+            try {
+                ResultatDonDTO resultat = serviceLotDons.enregistrerDonsSuivis(List.of(don.suivi()), List.of(don.don())).get(0);
+                return resultat.getStatut() == ResultatDonDTO.Statut.ENREGISTRE
+                        ? ResultatDonDTO.enregistre(index, resultat.getDon())
+                        : ResultatDonDTO.rejete(index, resultat.getErreurs());
+            } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+                log.warn("Don {} rejeté par la base", don.suivi(), e);
+                return ResultatDonDTO.rejete(index, Map.of("don", "Erreur lors de l'enregistrement du don"));
+            } catch (RuntimeException e) {
+                log.warn("Échec de l'enregistrement du don {}, nouvel essai", don.suivi(), e);
+                return null;
+            }
+        }
+
+        /**
+         * Supprime l'état des dons traités depuis plus longtemps que la durée de rétention.
+         */
+        private void purgerSuivis() {
+            long limite = System.currentTimeMillis() - retentionSuivis.toMillis();
+            suivis.values().removeIf(s -> s.traiteLe() != 0 && s.traiteLe() < limite);
+        }
+
+        /**
+         * Don en file, accompagné de son numéro de suivi.
+         */
+        private record DonDiffere(String suivi, DonCampagneDTO don) {
+        }
+
+        /**
+         * État d'un don et date de fin de traitement (0 tant qu'il est en attente).
+         */
+        private record Suivi(SuiviDonDTO dto, long traiteLe) {
+            static Suivi enAttente(String suivi) {
+                return new Suivi(new SuiviDonDTO(suivi, SuiviDonDTO.Statut.EN_ATTENTE, null, null), 0);
+            }
+        }
+}
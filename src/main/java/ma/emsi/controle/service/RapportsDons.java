@@ -0,0 +1,369 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.LigneRapportDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.DonAnalyse;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Rapports analytiques sur l'historique des dons (nombre et montant par campagne, par jour ou par tranche de montant),
+ * calculés sur un stockage en colonnes hors du tas (ColonnesDons) plutôt qu'en chargeant les entités Donation.
+ * <p>
+ * Les dons sont ajoutés au stockage après le commit de leur transaction. Les fichiers survivent aux redémarrages :
+ * au démarrage, les dons absents du stockage sont lus en base. Les identifiants sont alloués par blocs (séquence
+ * à allocation groupée) : un don peut être validé après un don d'identifiant supérieur. Le rattrapage lit donc
+ * les dons postérieurs au dernier don du stockage, puis compare les identifiants antérieurs de la base à ceux
+ * du stockage pour relire les dons manquants (notification perdue lors d'un arrêt brutal, par exemple).
+ * Les notifications reçues pendant ce rattrapage sont mises en attente puis appliquées ; un don déjà stocké
+ * n'est jamais ajouté une seconde fois.
+ */
+@Service
+public class RapportsDons {
+
+        private static final Logger log = LoggerFactory.getLogger(RapportsDons.class);
+
+        /**
+         * Nombre maximal de dons manquants relus par requête
+         */
+        private static final int DONS_PAR_REQUETE = 1000;
+
+        /**
+         * Regroupement des dons d'un rapport
+         */
+        public enum Regroupement {
+            CAMPAGNE, JOUR, TRANCHE
+        }
+
+        /**
+         * Repository des dons, pour le rattrapage
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Index en mémoire des campagnes, pour vérifier l'existence d'une campagne
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Fabrique du thread de reconstruction
+         */
+        private final FabriqueThreads fabriqueThreads;
+
+        /**
+         * Transaction en écriture du rattrapage, servie par la base principale : les dons notifiés avant la lecture
+         * doivent y figurer, ce que ne garantit pas une réplique en retard
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Bornes des tranches de montant, en centimes
+         */
+        private final long[] tranches;
+
+        /**
+         * Stockage en colonnes des dons
+         */
+        private final ColonnesDons colonnes;
+
+        /**
+         * Notifications reçues pendant un rattrapage ; null en dehors d'un rattrapage
+         */
+        private List<DonEnregistreEvent> enAttente = new ArrayList<>();
+
+        private final AtomicBoolean reconstructionEnCours = new AtomicBoolean();
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param fabriqueThreads Fabrique du thread de reconstruction
+         * @param transactionManager Gestionnaire de transactions
+         * @param repertoire Répertoire des fichiers du stockage
+         * @param lignesParSegment Nombre de dons par fichier
+         * @param tranches Bornes des tranches de montant, croissantes
+         * @throws IOException Si le stockage ne peut pas être ouvert
+         */
+        @Autowired
+        public RapportsDons(DonRepository donRepository, IndexCampagnes indexCampagnes, FabriqueThreads fabriqueThreads,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${dons.rapports.repertoire:data/rapports}") Path repertoire,
+                            @Value("${dons.rapports.lignes-segment:1048576}") int lignesParSegment,
+                            @Value("${dons.rapports.tranches:10,50,100,500,1000}") List<BigDecimal> tranches) throws IOException {
+            this.donRepository = donRepository;
+            this.indexCampagnes = indexCampagnes;
+            this.fabriqueThreads = fabriqueThreads;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.tranches = tranches.stream().mapToLong(borne -> Montant.of(borne).centimes()).toArray();
+            for (int i = 1; i < this.tranches.length; i++) {
+                if (this.tranches[i] <= this.tranches[i - 1]) {
+                    throw new IllegalArgumentException("Les bornes des tranches de montant doivent être croissantes");
+                }
+            }
+            this.colonnes = ouvrir(repertoire, lignesParSegment);
+        }
+
+        /**
+         * Ouvre le stockage ; des fichiers illisibles sont supprimés et les dons relus en base au rattrapage.
+         */
+        private static ColonnesDons ouvrir(Path repertoire, int lignesParSegment) throws IOException {
+            try {
+                return new ColonnesDons(repertoire, lignesParSegment);
+            } catch (IOException e) {
+                log.warn("Stockage des rapports illisible ({}), reconstruction depuis la base", e.getMessage());
+                ColonnesDons.supprimerFichiers(repertoire);
+                return new ColonnesDons(repertoire, lignesParSegment);
+            }
+        }
+
+        /**
+         * Rattrape, au démarrage, les dons absents du stockage.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        public void charger() {
+            rattraper(false);
+        }
+
+        /**
+         * Ajoute le don au stockage une fois la transaction validée, ou le met en attente pendant un rattrapage.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public synchronized void onDonEnregistre(DonEnregistreEvent event) {
+            if (enAttente != null) {
+                enAttente.add(event);
+                return;
+            }
+            appliquer(event);
+        }
+
+        /**
+         * Écarte des rapports les dons d'une campagne supprimée.
+         *
+         * @param event L'événement de modification de campagne
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+        public void onCampagneModifiee(CampagneModifieeEvent event) {
+            if (event.supprimee()) {
+                colonnes.supprimerCampagne(event.campagneId());
+            }
+        }
+
+        /**
+         * Écrit périodiquement sur disque les pages modifiées du stockage.
+         */
+        @Scheduled(fixedDelayString = "${dons.rapports.intervalle-synchronisation-ms:10000}")
+        public void synchroniser() {
+            colonnes.forcer();
+        }
+
+        /**
+         * Ferme le stockage à l'arrêt de l'application.
+         *
+         * @throws IOException Si le stockage ne peut pas être écrit
+         */
+        @PreDestroy
+        public void fermer() throws IOException {
+            colonnes.close();
+        }
+
+        /**
+         * Calcule un rapport sur les dons.
+         *
+         * @param regroupement Regroupement des dons (par campagne, par jour ou par tranche de montant)
+         * @param campagneId Campagne retenue, optionnelle
+         * @param debut Début de la période (inclus), optionnel
+         * @param fin Fin de la période (exclue), optionnelle
+         * @return Les groupes ayant reçu au moins un don : par identifiant de campagne, par jour ou par tranche croissants
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la date de début ne précède pas la date de fin
+         */
+        public List<LigneRapportDTO> consulter(Regroupement regroupement, Long campagneId, LocalDateTime debut, LocalDateTime fin) {
+            if (campagneId != null) {
+                indexCampagnes.trouver(campagneId)
+                        .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            }
+            if (debut != null && fin != null && !debut.isBefore(fin)) {
+                throw new IllegalStateException("La date de début doit précéder la date de fin");
+            }
+            ColonnesDons.Filtre filtre = new ColonnesDons.Filtre(campagneId,
+                    debut != null ? enSecondes(debut) : Long.MIN_VALUE,
+                    fin != null ? enSecondes(fin) : Long.MAX_VALUE);
+            ColonnesDons.Agregat agregat = switch (regroupement) {
+                case CAMPAGNE -> colonnes.agregerParCampagne(filtre);
+                case JOUR -> colonnes.agregerParJour(filtre);
+                case TRANCHE -> colonnes.agregerParTranche(filtre, tranches);
+            };
+            List<LigneRapportDTO> lignes = new ArrayList<>();
+            for (int i = 0; i < agregat.nombres().length; i++) {
+                if (agregat.nombres()[i] > 0) {
+                    lignes.add(new LigneRapportDTO(cle(regroupement, agregat.origine() + i),
+                            agregat.nombres()[i], Montant.deCentimes(agregat.centimes()[i])));
+                }
+            }
+            return lignes;
+        }
+
+        /**
+         * Lance, en tâche de fond, la reconstruction du stockage à partir de la table des dons.
+         * Les rapports calculés pendant la reconstruction ne portent que sur les dons déjà relus.
+         *
+         * @throws IllegalStateException Si une reconstruction est déjà en cours
+         */
+        public void lancerReconstruction() {
+            if (!reconstructionEnCours.compareAndSet(false, true)) {
+                throw new IllegalStateException("Une reconstruction des rapports est déjà en cours");
+            }
+            fabriqueThreads.creer("rapports-dons-").newThread(() -> {
+                try {
+                    rattraper(true);
+                } finally {
+                    reconstructionEnCours.set(false);
+                }
+            }).start();
+        }
+
+        /**
+         * @return Le nombre de dons du stockage, campagnes supprimées comprises
+         */
+        public long getNombreDons() {
+            return colonnes.getNombreLignes();
+        }
+
+        /**
+         * Lit en base les dons absents du stockage, puis applique les notifications reçues pendant la lecture.
+         * Un stockage en avance sur la base (base recréée) est vidé. Après un échec, les notifications sont de nouveau
+         * appliquées ; les dons qui n'ont pas pu être relus le seront au prochain rattrapage.
+         *
+         * @param vider true pour vider le stockage et relire tous les dons
+         */
+        void rattraper(boolean vider) {
+            synchronized (this) {
+                if (enAttente == null) {
+                    enAttente = new ArrayList<>();
+                }
+                if (vider) {
+                    colonnes.vider();
+                }
+            }
+            long debut = System.nanoTime();
+            long lignesAvant = colonnes.getNombreLignes();
+            try {
+                Long dernierIdBase = transactionTemplate.execute(statut -> donRepository.trouverDernierId());
+                if (colonnes.getDernierId() > (dernierIdBase != null ? dernierIdBase : 0)) {
+                    log.warn("Stockage des rapports en avance sur la base, reconstruction depuis la base");
+                    colonnes.vider();
+                }
+                long depuis = colonnes.getDernierId();
+                transactionTemplate.executeWithoutResult(statut -> {
+                    if (depuis > 0) {
+                        relireManquants(depuis);
+                    }
+                    try (Stream<DonAnalyse> dons = donRepository.parcourirDonsApres(depuis)) {
+                        dons.forEach(this::ajouter);
+                    }
+                });
+                log.info("Stockage des rapports : {} don(s) relu(s) en base, {} au total, en {} ms",
+                        colonnes.getNombreLignes() - lignesAvant, colonnes.getNombreLignes(),
+                        Duration.ofNanos(System.nanoTime() - debut).toMillis());
+            } catch (RuntimeException e) {
+                log.error("Échec du rattrapage du stockage des rapports ; les dons manquants seront relus au prochain rattrapage", e);
+            } finally {
+                synchronized (this) {
+                    List<DonEnregistreEvent> notifications = enAttente;
+                    enAttente = null;
+                    for (DonEnregistreEvent event : notifications) {
+                        appliquer(event);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compare les identifiants des dons de la base jusqu'à une borne à ceux du stockage, et relit les dons manquants :
+         * ceux validés après un don d'identifiant supérieur déjà stocké.
+         */
+        private void relireManquants(long jusqua) {
+            List<Long> manquants = new ArrayList<>();
+            try (Stream<Long> ids = donRepository.parcourirIdentifiants(jusqua)) {
+                ids.forEach(id -> {
+                    if (!colonnes.contient(id)) {
+                        manquants.add(id);
+                    }
+                });
+            }
+            for (int i = 0; i < manquants.size(); i += DONS_PAR_REQUETE) {
+                donRepository.trouverDonsAnalyse(manquants.subList(i, Math.min(i + DONS_PAR_REQUETE, manquants.size())))
+                        .forEach(this::ajouter);
+            }
+            if (!manquants.isEmpty()) {
+                log.info("Stockage des rapports : {} don(s) manquant(s) d'identifiant inférieur au dernier don stocké",
+                        manquants.size());
+            }
+        }
+
+        private void ajouter(DonAnalyse don) {
+            if (don.date() != null && !colonnes.contient(don.id())) {
+                colonnes.ajouter(don.id(), don.campagneId(), don.montant().centimes(), enSecondes(don.date()));
+            }
+        }
+
+        private void appliquer(DonEnregistreEvent event) {
+            if (event.date() == null || colonnes.contient(event.donId())) {
+                return;
+            }
+            colonnes.ajouter(event.donId(), event.campagneId(), event.montant().centimes(), enSecondes(event.date()));
+        }
+
+        private String cle(Regroupement regroupement, long cle) {
+            return switch (regroupement) {
+                case CAMPAGNE -> String.valueOf(cle);
+                case JOUR -> LocalDate.ofEpochDay(cle).toString();
+                case TRANCHE -> libelleTranche((int) cle);
+            };
+        }
+
+        /**
+         * @return Le libellé de la tranche : "0.00-10.00", ..., "1000.00+"
+         */
+        private String libelleTranche(int tranche) {
+            String debut = Montant.deCentimes(tranche == 0 ? 0 : tranches[tranche - 1]).toString();
+            if (tranche == tranches.length) {
+                return debut + "+";
+            }
+            return debut + "-" + Montant.deCentimes(tranches[tranche]);
+        }
+
+        private static long enSecondes(LocalDateTime date) {
+            return date.toEpochSecond(ZoneOffset.UTC);
+        }
+}
@@ -0,0 +1,458 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.ResultatRechercheDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.projection.CampagneRecherche;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Recherche plein texte des campagnes par les mots de leur nom, servie par un index inversé en mémoire.
+ * <p>
+ * Les noms sont analysés par {@link AnalyseurFrancais} (minuscules, sans accents, sans mots vides) ; chaque mot est
+ * indexé sous sa racine, pour la recherche par mot complet, et sous sa forme normalisée dans un dictionnaire trié,
+ * pour la recherche par préfixe. Tant que la saisie ne se termine pas par un séparateur, son dernier mot est traité
+ * comme un préfixe (recherche au fil de la frappe), à partir de deux lettres. Une campagne doit contenir tous les mots
+ * de la requête.
+ * <p>
+ * Seule la liste la plus courte parmi celles des mots de la requête est parcourue : les autres mots sont vérifiés sur
+ * les quelques mots de chaque campagne candidate, sans intersection d'ensembles. Les résultats sont classés par
+ * activité (campagnes acceptant des dons en premier), puis mot complet avant préfixe, puis progression de la collecte,
+ * lue dans les totaux en mémoire ; seuls les meilleurs sont conservés pendant le parcours.
+ * <p>
+ * L'index est construit au démarrage puis tenu à jour par les événements de modification de campagne.
+ */
+@Service
+public class RechercheCampagnes {
+
+        /**
+         * Nombre maximal de mots du dictionnaire parcourus pour un préfixe seul
+         */
+        private static final int TERMES_PREFIXE_MAX = 64;
+
+        /**
+         * Longueur minimale d'un préfixe complété : une lettre seule désignerait une grande partie des campagnes
+         */
+        private static final int LONGUEUR_MIN_PREFIXE = 2;
+
+        /**
+         * Nombre maximal de mots pris en compte dans une requête
+         */
+        private static final int MOTS_REQUETE_MAX = 10;
+
+        private static final Document[] AUCUN_DOCUMENT = new Document[0];
+
+        /**
+         * Ordre des résultats : campagnes actives, mot complet, progression décroissante, puis identifiant
+         */
+        private static final Comparator<Candidat> ORDRE = Candidat::comparer;
+
+        /**
+         * Repository pour accéder aux données des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Totaux de dons en mémoire, pour la progression des campagnes
+         */
+        private final TotauxCampagnes totauxCampagnes;
+
+        /**
+         * Index courant, remplacé en bloc lors d'une reconstruction
+         */
+        private volatile Index index = Index.de(List.of());
+
+        /**
+         * Modifications reçues pendant une reconstruction, rejouées sur le nouvel index
+         */
+        private List<CampagneModifieeEvent> modificationsPendantReconstruction;
+
+        /**
+         * Nombre maximal de résultats d'une recherche
+         */
+        @Value("${campagnes.recherche.resultats-max:100}")
+        private int resultatsMax;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param campagneRepository Repository des campagnes
+         * @param totauxCampagnes Totaux de dons en mémoire
+         */
+        @Autowired
+        public RechercheCampagnes(CampagneRepository campagneRepository, TotauxCampagnes totauxCampagnes) {
+            this.campagneRepository = campagneRepository;
+            this.totauxCampagnes = totauxCampagnes;
+        }
+
+        /**
+         * Reconstruit l'index à partir de la table des campagnes.
+         * Les modifications reçues pendant la lecture sont rejouées sur le nouvel index avant qu'il ne remplace l'ancien.
+         * La lecture se fait dans une transaction en écriture, servie par la base principale, comme pour IndexCampagnes.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        @Transactional
+        public void reconstruire() {
+            synchronized (this) {
+                modificationsPendantReconstruction = new ArrayList<>();
+            }
+            Index nouvelIndex = Index.de(campagneRepository.findAllRecherche());
+            synchronized (this) {
+                modificationsPendantReconstruction.forEach(nouvelIndex::appliquer);
+                modificationsPendantReconstruction = null;
+                index = nouvelIndex;
+            }
+        }
+
+        /**
+         * Met à jour l'index après le commit d'une écriture sur une campagne.
+         *
+         * @param event L'événement de modification de campagne
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+        public synchronized void onCampagneModifiee(CampagneModifieeEvent event) {
+            if (modificationsPendantReconstruction != null) {
+                modificationsPendantReconstruction.add(event);
+            }
+            index.appliquer(event);
+        }
+
+        /**
+         * Recherche les campagnes dont le nom contient tous les mots de la requête.
+         *
+         * @param requete Texte saisi ; son dernier mot est un préfixe s'il n'est pas suivi d'un séparateur
+         * @param limite Nombre maximal de résultats
+         * @return Les campagnes trouvées, les mieux classées en premier
+         * @throws IllegalStateException Si la limite est hors bornes
+         */
+        public List<ResultatRechercheDTO> rechercher(String requete, int limite) {
+            if (limite < 1 || limite > resultatsMax) {
+                throw new IllegalStateException("La limite doit être comprise entre 1 et " + resultatsMax);
+            }
+            String normalisee = AnalyseurFrancais.normaliser(requete);
+            List<String> mots = AnalyseurFrancais.decouper(normalisee);
+            if (mots.isEmpty()) {
+                return List.of();
+            }
+            boolean saisieTerminee = mots.size() > MOTS_REQUETE_MAX
+                    || !Character.isLetterOrDigit(normalisee.charAt(normalisee.length() - 1));
+            mots = mots.subList(0, Math.min(mots.size(), MOTS_REQUETE_MAX));
+            String dernierMot = mots.get(mots.size() - 1);
+            String prefixe = saisieTerminee || dernierMot.length() < LONGUEUR_MIN_PREFIXE ? null : dernierMot;
+            List<String> racines = (saisieTerminee ? mots : mots.subList(0, mots.size() - 1)).stream()
+                    .filter(mot -> !AnalyseurFrancais.estMotVide(mot))
+                    .map(mot -> AnalyseurFrancais.raciner(mot).intern())
+                    .distinct()
+                    .toList();
+            if (racines.isEmpty() && prefixe == null) {
+                return List.of();
+            }
+
+            Index courant = index;
+            Document[] pilote = null;
+            String racinePilote = null;
+            for (String racine : racines) {
+                Document[] documents = courant.racines.get(racine);
+                if (documents == null) {
+                    return List.of();
+                }
+                if (pilote == null || documents.length < pilote.length) {
+                    pilote = documents;
+                    racinePilote = racine;
+                }
+            }
+
+            // Les campagnes de la liste pilote contiennent sa racine : seules les autres sont vérifiées
+            List<String> autresRacines = new ArrayList<>(racines);
+            autresRacines.remove(racinePilote);
+            Classement classement = new Classement(limite, autresRacines, prefixe, LocalDate.now().toEpochDay());
+            if (pilote != null) {
+                for (Document document : pilote) {
+                    classement.evaluer(document);
+                }
+                return classement.resultats();
+            }
+
+            // Préfixe seul : campagnes contenant le mot complet, puis celles ayant un mot qui commence par le préfixe,
+            // chacune classée une seule fois
+            BitSet vues = new BitSet(courant.prochainRang);
+            for (Document document : courant.racines.getOrDefault(classement.racinePrefixe, AUCUN_DOCUMENT)) {
+                vues.set(document.rang());
+                classement.proposer(document, true);
+            }
+            int termes = 0;
+            for (Document[] documents : courant.mots.subMap(prefixe, prefixe + Character.MAX_VALUE).values()) {
+                for (Document document : documents) {
+                    if (!vues.get(document.rang())) {
+                        vues.set(document.rang());
+                        classement.proposer(document, false);
+                    }
+                }
+                if (++termes == TERMES_PREFIXE_MAX) {
+                    break;
+                }
+            }
+            return classement.resultats();
+        }
+
+        /**
+         * @return Le nombre de campagnes indexées
+         */
+        public int getTaille() {
+            return index.documents.size();
+        }
+
+        /**
+         * Index inversé : campagnes par identifiant, par racine et par mot normalisé.
+         * Les listes de campagnes sont des tableaux remplacés à chaque écriture (copie sur écriture) : les lectures
+         * les parcourent sans verrou ni indirection, les écritures, rares et sérialisées par le service, les recopient.
+         */
+        private static final class Index {
+            private final ConcurrentHashMap<Long, Document> documents = new ConcurrentHashMap<>();
+            private final ConcurrentHashMap<String, Document[]> racines = new ConcurrentHashMap<>();
+            private final ConcurrentSkipListMap<String, Document[]> mots = new ConcurrentSkipListMap<>();
+
+            /**
+             * Rang attribué à la prochaine campagne indexée, pour marquer les campagnes vues dans un BitSet
+             */
+            private volatile int prochainRang;
+
+            /**
+             * Construit un index en une passe, sans les recopies d'un ajout campagne par campagne.
+             */
+            private static Index de(List<CampagneRecherche> campagnes) {
+                Map<String, List<Document>> racines = new HashMap<>();
+                Map<String, List<Document>> mots = new HashMap<>();
+                Index index = new Index();
+                int rang = 0;
+                for (CampagneRecherche campagne : campagnes) {
+                    Document document = Document.de(rang++, campagne.id(), campagne.nom(), campagne.objectifMontant(),
+                            campagne.dateDebut(), campagne.dateFin(), campagne.statut());
+                    index.documents.put(document.id(), document);
+                    for (String racine : document.racines()) {
+                        racines.computeIfAbsent(racine, r -> new ArrayList<>()).add(document);
+                    }
+                    for (String mot : document.mots()) {
+                        mots.computeIfAbsent(mot, m -> new ArrayList<>()).add(document);
+                    }
+                }
+                racines.forEach((racine, liste) -> index.racines.put(racine, liste.toArray(AUCUN_DOCUMENT)));
+                mots.forEach((mot, liste) -> index.mots.put(mot, liste.toArray(AUCUN_DOCUMENT)));
+                index.prochainRang = rang;
+                return index;
+            }
+
+            private void appliquer(CampagneModifieeEvent event) {
+                Document existant = retirer(event.campagneId());
+                if (event.supprimee()) {
+                    return;
+                }
+                Document document = Document.de(existant != null ? existant.rang() : prochainRang, event.campagneId(),
+                        event.nom(), event.objectifMontant(), event.dateDebut(), event.dateFin(), event.statut());
+                if (existant == null) {
+                    prochainRang++;
+                }
+                documents.put(document.id(), document);
+                for (String racine : document.racines()) {
+                    racines.merge(racine, new Document[]{document}, Index::ajouter);
+                }
+                for (String mot : document.mots()) {
+                    mots.merge(mot, new Document[]{document}, Index::ajouter);
+                }
+            }
+
+            /**
+             * @return La campagne retirée, ou null si elle n'était pas indexée
+             */
+            private Document retirer(Long id) {
+                Document document = documents.remove(id);
+                if (document == null) {
+                    return null;
+                }
+                for (String racine : document.racines()) {
+                    racines.computeIfPresent(racine, (r, liste) -> retirer(liste, document));
+                }
+                for (String mot : document.mots()) {
+                    mots.computeIfPresent(mot, (m, liste) -> retirer(liste, document));
+                }
+                return document;
+            }
+
+            private static Document[] ajouter(Document[] liste, Document[] ajout) {
+                Document[] copie = Arrays.copyOf(liste, liste.length + 1);
+                copie[liste.length] = ajout[0];
+                return copie;
+            }
+
+            /**
+             * @return La liste sans la campagne, ou null si elle devient vide (l'entrée est alors supprimée)
+             */
+            private static Document[] retirer(Document[] liste, Document document) {
+                Document[] copie = new Document[liste.length - 1];
+                int taille = 0;
+                for (Document d : liste) {
+                    if (d != document && taille < copie.length) {
+                        copie[taille++] = d;
+                    }
+                }
+                return copie.length == 0 ? null : copie;
+            }
+        }
+
+        /**
+         * Campagne indexée : ses informations de classement et ses mots distincts, normalisés et racinisés.
+         * Les dates sont gardées en jours depuis l'époque et les racines sont internées, comme celles des requêtes,
+         * pour être comparées sans déréférencement.
+         */
+        private record Document(int rang, Long id, String nom, Montant objectifMontant,
+                                long jourDebut, long jourFin, StatutCampagne statut, String[] mots, String[] racines) {
+
+            private static Document de(int rang, Long id, String nom, Montant objectifMontant, LocalDate dateDebut,
+                                       LocalDate dateFin, StatutCampagne statut) {
+                List<String> mots = AnalyseurFrancais.mots(nom);
+                return new Document(rang, id, nom, objectifMontant, dateDebut.toEpochDay(), dateFin.toEpochDay(), statut,
+                        mots.stream().distinct().toArray(String[]::new),
+                        mots.stream().map(mot -> AnalyseurFrancais.raciner(mot).intern()).distinct().toArray(String[]::new));
+            }
+
+            private boolean contientRacine(String racine) {
+                for (String r : racines) {
+                    if (r == racine) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            private boolean contientPrefixe(String prefixe) {
+                for (String mot : mots) {
+                    if (mot.startsWith(prefixe)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            private boolean accepteDonsLe(long jour) {
+                return statut != StatutCampagne.FINANCEE && jour >= jourDebut && jour <= jourFin;
+            }
+        }
+
+        /**
+         * Campagne retenue par une recherche et ses critères de classement.
+         */
+        private record Candidat(Document document, boolean active, boolean exact, long centimes, double progression) {
+
+            /**
+             * Compare deux candidats sans boxing : négatif si ce candidat est mieux classé que l'autre.
+             */
+            private int comparer(Candidat autre) {
+                return comparer(autre.active, autre.exact, autre.progression, autre.document.id());
+            }
+
+            private int comparer(boolean active, boolean exact, double progression, long id) {
+                if (this.active != active) {
+                    return this.active ? -1 : 1;
+                }
+                if (this.exact != exact) {
+                    return this.exact ? -1 : 1;
+                }
+                int ordre = Double.compare(progression, this.progression);
+                return ordre != 0 ? ordre : Long.compare(document.id(), id);
+            }
+        }
+
+        /**
+         * Sélection des meilleurs résultats d'une recherche : seuls les {@code limite} meilleurs candidats sont conservés,
+         * dans un tas dont la tête est le moins bon.
+         */
+        private final class Classement {
+            private final int limite;
+            private final List<String> racines;
+            private final String prefixe;
+            private final String racinePrefixe;
+            private final long jour;
+            private final PriorityQueue<Candidat> meilleurs;
+
+            private Classement(int limite, List<String> racines, String prefixe, long jour) {
+                this.limite = limite;
+                this.racines = racines;
+                this.prefixe = prefixe;
+                this.racinePrefixe = prefixe == null ? null : AnalyseurFrancais.raciner(prefixe).intern();
+                this.jour = jour;
+                this.meilleurs = new PriorityQueue<>(limite + 1, ORDRE.reversed());
+            }
+
+            /**
+             * Vérifie qu'une campagne contient tous les mots de la requête puis la classe.
+             */
+            private void evaluer(Document document) {
+                for (String racine : racines) {
+                    if (!document.contientRacine(racine)) {
+                        return;
+                    }
+                }
+                boolean exact = true;
+                if (prefixe != null) {
+                    exact = document.contientRacine(racinePrefixe);
+                    if (!exact && !document.contientPrefixe(prefixe)) {
+                        return;
+                    }
+                }
+                proposer(document, exact);
+            }
+
+            /**
+             * Classe une campagne qui correspond à la requête.
+             * Une campagne moins bien classée que la dernière des meilleures est écartée sans allocation,
+             * et sans lire ses totaux si son activité suffit à la départager.
+             */
+            private void proposer(Document document, boolean exact) {
+                boolean active = document.accepteDonsLe(jour);
+                boolean complet = meilleurs.size() == limite;
+                if (complet && meilleurs.peek().comparer(active, exact, Double.POSITIVE_INFINITY, document.id()) < 0) {
+                    return;
+                }
+                long centimes = totauxCampagnes.getCentimes(document.id());
+                long objectif = document.objectifMontant().centimes();
+                double progression = objectif > 0 ? (double) centimes / objectif : 0;
+                if (complet && meilleurs.peek().comparer(active, exact, progression, document.id()) < 0) {
+                    return;
+                }
+                meilleurs.add(new Candidat(document, active, exact, centimes, progression));
+                if (complet) {
+                    meilleurs.poll();
+                }
+            }
+
+            private List<ResultatRechercheDTO> resultats() {
+                List<Candidat> candidats = new ArrayList<>(meilleurs);
+                candidats.sort(ORDRE);
+                return candidats.stream()
+                        .map(candidat -> new ResultatRechercheDTO(candidat.document().id(), candidat.document().nom(),
+                                candidat.document().objectifMontant(), Montant.deCentimes(candidat.centimes()),
+                                candidat.progression(), candidat.active(), candidat.document().statut()))
+                        .toList();
+            }
+        }
+}
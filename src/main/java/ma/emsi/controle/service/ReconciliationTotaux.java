@@ -0,0 +1,550 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.PartitionReconciliation;
+import ma.emsi.controle.entities.Reconciliation;
+import ma.emsi.controle.entities.StatutReconciliation;
+import ma.emsi.controle.projection.CollecteCampagne;
+import ma.emsi.controle.projection.DonAnalyse;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.DonRepository;
+import ma.emsi.controle.repository.ReconciliationRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Contrôle nocturne des montants collectés : le montant collecté de chaque campagne (colonne dénormalisée et incréments
+ * en attente de fusion) et ses totaux en mémoire (TotauxCampagnes) sont comparés à la somme de ses dons en base,
+ * et corrigés en cas d'écart.
+ * <p>
+ * Les campagnes sont découpées en partitions d'identifiants contrôlées en parallèle par un ForkJoinPool dédié
+ * de taille configurable. Chaque partition relit ses dons en flux (une requête sur l'index des dons par campagne),
+ * cumule les montants en centimes dans des tableaux, puis enregistre ses corrections et son résultat dans une même
+ * transaction : une exécution interrompue reprend aux partitions restantes, au démarrage ou au lancement suivant.
+ * La lecture des dons est limitée en débit pour ne pas concurrencer les écritures de dons.
+ * <p>
+ * Un écart de montant collecté est corrigé par un incrément, fusionné ensuite comme ceux des dons (ObjectifsCampagnes) :
+ * le statut de la campagne suit la correction. Une campagne dont le montant collecté a changé pendant le recomptage
+ * (don enregistré entre-temps) n'est pas corrigée mais reportée au contrôle suivant.
+ */
+@Service
+public class ReconciliationTotaux {
+
+        private static final Logger log = LoggerFactory.getLogger(ReconciliationTotaux.class);
+
+        /**
+         * Délai maximal entre le commit d'un don et sa prise en compte dans les totaux en mémoire.
+         * Les totaux en mémoire d'une campagne ayant reçu un don plus récent ne sont pas corrigés
+         */
+        private static final Duration DELAI_NOTIFICATION_MAX = Duration.ofMinutes(1);
+
+        /**
+         * Nombre de dons lus entre deux passages par le limiteur de débit
+         */
+        private static final int LOT_LIMITEUR = 500;
+
+        /**
+         * Montant d'une campagne absente de la base, ou dont le suivi des objectifs n'est pas encore initialisé
+         */
+        private static final long ABSENTE = Long.MIN_VALUE;
+
+        /**
+         * Repository des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Repository des dons
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Repository des exécutions du contrôle
+         */
+        private final ReconciliationRepository reconciliationRepository;
+
+        /**
+         * Suivi des montants collectés, qui applique les corrections
+         */
+        private final ObjectifsCampagnes objectifsCampagnes;
+
+        /**
+         * Totaux de dons en mémoire
+         */
+        private final TotauxCampagnes totauxCampagnes;
+
+        /**
+         * Fabrique du thread de lancement
+         */
+        private final FabriqueThreads fabriqueThreads;
+
+        /**
+         * Transactions du contrôle, en écriture pour être servies par la base principale, qui a tous les dons validés
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Contexte de persistance, pour l'enregistrement des partitions et l'éviction des campagnes corrigées
+         */
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        /**
+         * Nombre de partitions contrôlées en parallèle ; chacune garde une connexion à la base principale pendant sa lecture
+         */
+        @Value("${campagnes.reconciliation.parallelisme:2}")
+        private int parallelisme;
+
+        /**
+         * Nombre d'identifiants de campagnes par partition
+         */
+        @Value("${campagnes.reconciliation.taille-partition:1000}")
+        private int taillePartition;
+
+        /**
+         * Nombre maximal de dons relus par seconde, toutes partitions confondues (0 : sans limite)
+         */
+        @Value("${campagnes.reconciliation.dons-par-seconde:200000}")
+        private long donsParSeconde;
+
+        /**
+         * true pendant une exécution lancée en tâche de fond
+         */
+        private final AtomicBoolean enCours = new AtomicBoolean();
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param campagneRepository Repository des campagnes
+         * @param donRepository Repository des dons
+         * @param reconciliationRepository Repository des exécutions du contrôle
+         * @param objectifsCampagnes Suivi des montants collectés
+         * @param totauxCampagnes Totaux de dons en mémoire
+         * @param fabriqueThreads Fabrique de threads de l'application
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ReconciliationTotaux(CampagneRepository campagneRepository, DonRepository donRepository,
+                                    ReconciliationRepository reconciliationRepository, ObjectifsCampagnes objectifsCampagnes,
+                                    TotauxCampagnes totauxCampagnes, FabriqueThreads fabriqueThreads,
+                                    PlatformTransactionManager transactionManager) {
+            this.campagneRepository = campagneRepository;
+            this.donRepository = donRepository;
+            this.reconciliationRepository = reconciliationRepository;
+            this.objectifsCampagnes = objectifsCampagnes;
+            this.totauxCampagnes = totauxCampagnes;
+            this.fabriqueThreads = fabriqueThreads;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+        }
+
+        /**
+         * Reprend au démarrage une exécution interrompue.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        public void reprendre() {
+            Reconciliation derniere = trouverDerniere();
+            if (derniere != null && derniere.getStatut() == StatutReconciliation.EN_COURS) {
+                log.info("Reprise du contrôle des montants collectés n°{}", derniere.getId());
+                lancer();
+            }
+        }
+
+        /**
+         * Lance le contrôle nocturne.
+         */
+        @Scheduled(cron = "${campagnes.reconciliation.cron:0 0 3 * * *}")
+        public void planifier() {
+            try {
+                lancer();
+            } catch (IllegalStateException e) {
+                log.warn("Contrôle des montants collectés non lancé : {}", e.getMessage());
+            }
+        }
+
+        /**
+         * Lance le contrôle en tâche de fond, ou reprend l'exécution interrompue.
+         *
+         * @throws IllegalStateException Si un contrôle est déjà en cours
+         */
+        public void lancer() {
+            if (!enCours.compareAndSet(false, true)) {
+                throw new IllegalStateException("Un contrôle des montants collectés est déjà en cours");
+            }
+            fabriqueThreads.creer("reconciliation-").newThread(() -> {
+                try {
+                    executer();
+                } catch (RuntimeException e) {
+                    log.error("Échec du contrôle des montants collectés", e);
+                } finally {
+                    enCours.set(false);
+                }
+            }).start();
+        }
+
+        /**
+         * Contrôle les partitions restantes de l'exécution en cours, ou d'une nouvelle exécution.
+         * Une partition en échec reste à contrôler : l'exécution n'est alors pas terminée.
+         */
+        void executer() {
+            long debut = System.nanoTime();
+            Reconciliation reconciliation = transactionTemplate.execute(statut -> preparer());
+            List<PartitionReconciliation> restantes = transactionTemplate.execute(statut ->
+                    reconciliationRepository.trouverPartitions(reconciliation.getId())).stream()
+                    .filter(partition -> !partition.isTerminee())
+                    .toList();
+
+            Limiteur limiteur = new Limiteur(donsParSeconde);
+            ForkJoinPool pool = new ForkJoinPool(parallelisme, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("reconciliation-partition-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+            try {
+                // Le limiteur bloque les threads du pool sans en démarrer d'autres : le parallélisme reste borné
+                pool.invoke(new Controle(restantes, 0, restantes.size(), limiteur));
+            } finally {
+                pool.shutdown();
+            }
+
+            boolean terminee = Boolean.TRUE.equals(transactionTemplate.execute(statut -> {
+                if (reconciliationRepository.trouverPartitions(reconciliation.getId()).stream()
+                        .anyMatch(partition -> !partition.isTerminee())) {
+                    return false;
+                }
+                entityManager.merge(reconciliation).terminer(LocalDateTime.now());
+                return true;
+            }));
+            long millis = (System.nanoTime() - debut) / 1_000_000;
+            if (terminee) {
+                log.info("Contrôle des montants collectés n°{} terminé : {} partitions en {} ms",
+                        reconciliation.getId(), restantes.size(), millis);
+            } else {
+                log.warn("Contrôle des montants collectés n°{} incomplet après {} ms, repris au prochain lancement",
+                        reconciliation.getId(), millis);
+            }
+        }
+
+        /**
+         * Retourne l'exécution en cours, ou en crée une avec ses partitions.
+         */
+        private Reconciliation preparer() {
+            List<Reconciliation> dernieres = reconciliationRepository.trouverDernieres(Limit.of(1));
+            if (!dernieres.isEmpty() && dernieres.get(0).getStatut() == StatutReconciliation.EN_COURS) {
+                Reconciliation reconciliation = dernieres.get(0);
+                reconciliation.setParallelisme(parallelisme);
+                return reconciliation;
+            }
+            Reconciliation reconciliation = reconciliationRepository.save(new Reconciliation(LocalDateTime.now(), parallelisme));
+            Long dernierId = campagneRepository.trouverDernierId();
+            long fin = dernierId == null ? 1 : dernierId + 1;
+            int numero = 0;
+            for (long debut = 1; debut < fin; debut += taillePartition) {
+                entityManager.persist(new PartitionReconciliation(reconciliation.getId(), numero++, debut,
+                        Math.min(debut + taillePartition, fin)));
+            }
+            return reconciliation;
+        }
+
+        /**
+         * Contrôle une partition puis enregistre ses corrections et son résultat.
+         *
+         * @param partition Partition à contrôler
+         * @param limiteur Limiteur de débit partagé par les partitions
+         */
+        private void controler(PartitionReconciliation partition, Limiteur limiteur) {
+            long debut = System.nanoTime();
+            long premier = partition.getCampagneDebut();
+            int taille = (int) (partition.getCampagneFin() - premier);
+            LocalDateTime limiteNotification = LocalDateTime.now().minus(DELAI_NOTIFICATION_MAX);
+            TotauxCampagnes.Totaux[] memoire = new TotauxCampagnes.Totaux[taille];
+            for (int i = 0; i < taille; i++) {
+                memoire[i] = totauxCampagnes.getTotaux(premier + i);
+            }
+            long[] collectes = transactionTemplate.execute(statut -> lireCollectes(premier, taille));
+
+            Recomptage recomptage = new Recomptage(taille);
+            transactionTemplate.executeWithoutResult(statut -> {
+                try (Stream<DonAnalyse> dons = donRepository.parcourirDonsCampagnes(premier, premier + taille)) {
+                    Iterator<DonAnalyse> iterateur = dons.iterator();
+                    while (iterateur.hasNext()) {
+                        recomptage.ajouter(iterateur.next(), premier);
+                        if (recomptage.dons % LOT_LIMITEUR == 0) {
+                            recomptage.attenteNanos += limiteur.acquerir(LOT_LIMITEUR);
+                        }
+                    }
+                }
+            });
+
+            List<Long> corrigees = new ArrayList<>();
+            List<Integer> memoiresCorrigees = new ArrayList<>();
+            // Fusions suspendues : la correction est validée et la campagne retirée du cache avant d'être relue par une fusion
+            objectifsCampagnes.sansFusion(() -> {
+                transactionTemplate.executeWithoutResult(statut -> {
+                    long[] relus = lireCollectes(premier, taille);
+                    int campagnes = 0;
+                    int reportees = 0;
+                    for (int i = 0; i < taille; i++) {
+                        if (relus[i] == ABSENTE && collectes[i] == ABSENTE) {
+                            continue;
+                        }
+                        campagnes++;
+                        if (relus[i] != collectes[i] || relus[i] == ABSENTE) {
+                            // Don enregistré ou campagne créée pendant le recomptage
+                            reportees++;
+                            continue;
+                        }
+                        long ecart = recomptage.centimes[i] - relus[i];
+                        if (ecart != 0) {
+                            objectifsCampagnes.ajouter(premier + i, Montant.deCentimes(ecart), 0);
+                            corrigees.add(premier + i);
+                        }
+                        TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(premier + i);
+                        boolean stables = totaux.equals(memoire[i]) && (recomptage.derniers[i] == null
+                                || recomptage.derniers[i].isBefore(limiteNotification));
+                        // La date du dernier don n'est pas comparée : celle notifiée est plus précise que celle relue en base
+                        if (stables && (totaux.nombreDons() != recomptage.nombres[i]
+                                || totaux.montantCollecte().centimes() != recomptage.centimes[i])) {
+                            memoiresCorrigees.add(i);
+                        }
+                    }
+                    long duree = System.nanoTime() - debut;
+                    entityManager.merge(partition).terminer(campagnes, recomptage.dons, corrigees.size(),
+                            memoiresCorrigees.size(), reportees, duree / 1_000_000, recomptage.attenteNanos / 1_000_000,
+                            LocalDateTime.now());
+                });
+                corrigees.forEach(id -> entityManager.getEntityManagerFactory().getCache().evict(Campagne.class, id));
+                return null;
+            });
+
+            for (int i : memoiresCorrigees) {
+                TotauxCampagnes.Totaux totaux = memoire[i];
+                totauxCampagnes.corriger(premier + i, recomptage.nombres[i] - totaux.nombreDons(),
+                        recomptage.centimes[i] - totaux.montantCollecte().centimes(), recomptage.derniers[i]);
+            }
+            if (!corrigees.isEmpty() || !memoiresCorrigees.isEmpty()) {
+                log.warn("Partition {} ({}-{}) : montant collecté corrigé pour les campagnes {}, totaux en mémoire pour {} campagnes",
+                        partition.getNumero(), premier, partition.getCampagneFin(), corrigees, memoiresCorrigees.size());
+            }
+        }
+
+        /**
+         * Lit, pour chaque campagne d'un intervalle, le montant collecté augmenté des incréments en attente.
+         *
+         * @param premier Premier identifiant de campagne
+         * @param taille Nombre d'identifiants
+         * @return Les montants en centimes, indexés par identifiant - premier, ABSENTE pour un identifiant sans campagne
+         */
+        private long[] lireCollectes(long premier, int taille) {
+            long[] montants = new long[taille];
+            Arrays.fill(montants, ABSENTE);
+            for (CollecteCampagne collecte : campagneRepository.trouverCollectes(premier, premier + taille)) {
+                if (collecte.montantCollecte() != null) {
+                    montants[(int) (collecte.campagneId() - premier)] = collecte.montantCollecte().plus(collecte.enAttente()).centimes();
+                }
+            }
+            return montants;
+        }
+
+        /**
+         * Retourne le rapport de la dernière exécution, avec la durée de chaque partition.
+         *
+         * @return Le rapport
+         * @throws EntityNotFoundException Si aucun contrôle n'a été exécuté
+         */
+        public Rapport getRapport() {
+            return transactionTemplate.execute(statut -> {
+                Reconciliation reconciliation = trouverDerniere();
+                if (reconciliation == null) {
+                    throw new EntityNotFoundException("Aucun contrôle des montants collectés n'a été exécuté");
+                }
+                List<RapportPartition> partitions = reconciliationRepository.trouverPartitions(reconciliation.getId()).stream()
+                        .map(p -> new RapportPartition(p.getNumero(), p.getCampagneDebut(), p.getCampagneFin(), p.isTerminee(),
+                                p.getCampagnes(), p.getDons(), p.getEcartsCollecte(), p.getEcartsMemoire(), p.getReportees(),
+                                p.getDureeMs(), p.getAttenteMs(), p.getFin()))
+                        .toList();
+                return new Rapport(reconciliation.getId(), reconciliation.getStatut(), reconciliation.getDebut(),
+                        reconciliation.getFin(), reconciliation.getParallelisme(),
+                        partitions.stream().mapToInt(RapportPartition::campagnes).sum(),
+                        partitions.stream().mapToLong(RapportPartition::dons).sum(),
+                        partitions.stream().mapToInt(RapportPartition::ecartsCollecte).sum(),
+                        partitions.stream().mapToInt(RapportPartition::ecartsMemoire).sum(),
+                        partitions.stream().mapToInt(RapportPartition::reportees).sum(),
+                        partitions);
+            });
+        }
+
+        private Reconciliation trouverDerniere() {
+            List<Reconciliation> dernieres = transactionTemplate.execute(statut -> reconciliationRepository.trouverDernieres(Limit.of(1)));
+            return dernieres.isEmpty() ? null : dernieres.get(0);
+        }
+
+        /**
+         * Contrôle d'une plage de partitions, divisée en deux tant qu'elle en contient plusieurs.
+         */
+        private final class Controle extends RecursiveAction {
+
+            private final List<PartitionReconciliation> partitions;
+            private final int debut;
+            private final int fin;
+            private final Limiteur limiteur;
+
+            private Controle(List<PartitionReconciliation> partitions, int debut, int fin, Limiteur limiteur) {
+                this.partitions = partitions;
+                this.debut = debut;
+                this.fin = fin;
+                this.limiteur = limiteur;
+            }
+
+            @Override
+            protected void compute() {
+                if (fin - debut > 1) {
+                    int milieu = (debut + fin) >>> 1;
+                    invokeAll(new Controle(partitions, debut, milieu, limiteur), new Controle(partitions, milieu, fin, limiteur));
+                } else if (fin > debut) {
+                    PartitionReconciliation partition = partitions.get(debut);
+                    try {
+                        controler(partition, limiteur);
+                    } catch (RuntimeException e) {
+                        log.error("Échec du contrôle de la partition {} ({}-{})", partition.getNumero(),
+                                partition.getCampagneDebut(), partition.getCampagneFin(), e);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Totaux recomptés d'une partition, indexés par identifiant de campagne - premier identifiant.
+         */
+        private static final class Recomptage {
+            private final long[] nombres;
+            private final long[] centimes;
+            private final LocalDateTime[] derniers;
+            private long dons;
+            private long attenteNanos;
+
+            private Recomptage(int taille) {
+                this.nombres = new long[taille];
+                this.centimes = new long[taille];
+                this.derniers = new LocalDateTime[taille];
+            }
+
+            private void ajouter(DonAnalyse don, long premier) {
+                int i = (int) (don.campagneId() - premier);
+                nombres[i]++;
+                centimes[i] += don.montant().centimes();
+                if (derniers[i] == null || don.date().isAfter(derniers[i])) {
+                    derniers[i] = don.date();
+                }
+                dons++;
+            }
+        }
+
+        /**
+         * Limiteur de débit à jetons partagé par les partitions : chaque lot de dons lus réserve sa part de temps
+         * et attend qu'elle soit atteinte.
+         */
+        private static final class Limiteur {
+
+            /**
+             * Temps réservé par don, en nanosecondes (0 : sans limite)
+             */
+            private final long nanosParDon;
+
+            /**
+             * Instant (System.nanoTime) à partir duquel le prochain lot peut être lu
+             */
+            private long prochain = System.nanoTime();
+
+            private Limiteur(long donsParSeconde) {
+                this.nanosParDon = donsParSeconde <= 0 ? 0 : 1_000_000_000L / donsParSeconde;
+            }
+
+            /**
+             * @param dons Nombre de dons lus
+             * @return L'attente imposée, en nanosecondes
+             */
+            private long acquerir(int dons) {
+                if (nanosParDon == 0) {
+                    return 0;
+                }
+                long attente;
+                synchronized (this) {
+                    long maintenant = System.nanoTime();
+                    long depart = Math.max(prochain, maintenant);
+                    prochain = depart + dons * nanosParDon;
+                    attente = depart - maintenant;
+                }
+                if (attente > 0) {
+                    LockSupport.parkNanos(attente);
+                }
+                return attente;
+            }
+        }
+
+        /**
+         * Rapport d'une exécution du contrôle.
+         *
+         * @param id Identifiant de l'exécution
+         * @param statut Statut de l'exécution
+         * @param debut Date de lancement
+         * @param fin Date de fin, null si l'exécution est en cours
+         * @param parallelisme Nombre de partitions contrôlées en parallèle
+         * @param campagnes Nombre de campagnes contrôlées
+         * @param dons Nombre de dons relus
+         * @param ecartsCollecte Nombre de montants collectés corrigés
+         * @param ecartsMemoire Nombre de totaux en mémoire corrigés
+         * @param reportees Nombre de campagnes reportées au contrôle suivant
+         * @param partitions Détail et durée de chaque partition
+         */
+        public record Rapport(Long id, StatutReconciliation statut, LocalDateTime debut, LocalDateTime fin, int parallelisme,
+                              int campagnes, long dons, int ecartsCollecte, int ecartsMemoire, int reportees,
+                              List<RapportPartition> partitions) {
+        }
+
+        /**
+         * Rapport d'une partition.
+         *
+         * @param numero Numéro de la partition
+         * @param campagneDebut Premier identifiant de campagne (inclus)
+         * @param campagneFin Dernier identifiant de campagne (exclu)
+         * @param terminee true si la partition a été contrôlée
+         * @param campagnes Nombre de campagnes contrôlées
+         * @param dons Nombre de dons relus
+         * @param ecartsCollecte Nombre de montants collectés corrigés
+         * @param ecartsMemoire Nombre de totaux en mémoire corrigés
+         * @param reportees Nombre de campagnes reportées
+         * @param dureeMs Durée du contrôle, en millisecondes
+         * @param attenteMs Part de la durée passée en attente du limiteur de débit, en millisecondes
+         * @param fin Date de fin du contrôle
+         */
+        public record RapportPartition(int numero, long campagneDebut, long campagneFin, boolean terminee, int campagnes,
+                                       long dons, int ecartsCollecte, int ecartsMemoire, int reportees, long dureeMs,
+                                       long attenteMs, LocalDateTime fin) {
+        }
+}
@@ -1,31 +1,119 @@
 package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.CampagneActiveDTO;
+import ma.emsi.controle.events.CampagneModifieeEvent;
 import ma.emsi.controle.projection.CampagneResume;
 import ma.emsi.controle.repository.CampagneRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service qui gère la logique métier liée aux campagnes de dons.
+ * La liste des campagnes actives est servie depuis un instantané immuable en mémoire :
+ * elle ne change qu'à un changement de jour où une campagne commence ou se termine, ou lors d'une écriture
+ * sur une campagne. L'instantané connaît l'instant de sa prochaine transition et est rechargé
+ * à la première lecture qui suit cet instant ou une invalidation.
+ * <p>
+ * La réponse JSON de GET /api/campagnes/actives est elle aussi conservée, sérialisée : elle est réutilisée
+ * tant que ni l'instantané ni les totaux de dons n'ont changé.
  */
 @Service
 public class ServiceCampagne {
 
+        /**
+         * Type de la réponse sérialisée, pour que l'ObjectWriter résolve le sérialiseur des éléments une seule fois
+         */
+        private static final TypeReference<List<CampagneActiveDTO>> LISTE_CAMPAGNES_ACTIVES = new TypeReference<>() {
+        };
+
         /**
          * Repository pour accéder aux données des campagnes
          */
         private final CampagneRepository campagneRepository;
 
+        /**
+         * Totaux de dons maintenus en mémoire
+         */
+        private final TotauxCampagnes totauxCampagnes;
+
+        /**
+         * Sérialisation JSON de la liste des campagnes actives
+         */
+        private final ObjectMapper objectMapper;
+
+        /**
+         * Transaction en écriture des rechargements, servie par la base principale : un rechargement suit le plus
+         * souvent une écriture sur une campagne, qu'une réplique en retard ne refléterait pas encore
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Instantané courant des campagnes actives, null tant qu'aucun chargement n'a eu lieu
+         */
+        private final AtomicReference<Instantane> instantane = new AtomicReference<>();
+
+        /**
+         * Dernière réponse JSON calculée, null tant qu'aucune n'a été demandée
+         */
+        private volatile ReponseSerialisee reponseActives;
+
+        /**
+         * Compteur d'invalidations ; un instantané chargé avant la dernière invalidation n'est plus valide
+         */
+        private final AtomicLong generation = new AtomicLong();
+
+        /**
+         * Verrou empêchant plusieurs threads de recharger l'instantané en même temps.
+         * Un ReentrantLock plutôt qu'un bloc synchronized : la requête exécutée sous verrou n'épingle pas
+         * le thread porteur lorsque les requêtes sont traitées par des threads virtuels.
+         */
+        private final ReentrantLock verrouRechargement = new ReentrantLock();
+
+        /**
+         * Compteurs de lectures servies depuis l'instantané, de rechargements et d'invalidations
+         */
+        private final LongAdder succes = new LongAdder();
+        private final LongAdder echecs = new LongAdder();
+        private final LongAdder rechargements = new LongAdder();
+        private final LongAdder invalidations = new LongAdder();
+
+        /**
+         * Horloge utilisée pour déterminer la date du jour
+         */
+        private Clock horloge = Clock.systemDefaultZone();
+
         /**
          * Constructeur avec injection de dépendances via Spring
          *
          * @param campagneRepository Repository des campagnes
+         * @param totauxCampagnes Totaux de dons par campagne
+         * @param objectMapper ObjectMapper de l'application
+         * @param transactionManager Gestionnaire de transactions
          */
         @Autowired
-        public ServiceCampagne(CampagneRepository campagneRepository) {
+        public ServiceCampagne(CampagneRepository campagneRepository, TotauxCampagnes totauxCampagnes,
+                               ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
             this.campagneRepository = campagneRepository;
+            this.totauxCampagnes = totauxCampagnes;
+            this.objectMapper = objectMapper;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
         }
 
         /**
@@ -35,7 +123,181 @@ public class ServiceCampagne {
          * @return Liste des résumés des campagnes actives
          */
         public List<CampagneResume> getCampagnesActives() {
-            LocalDate currentDate = LocalDate.now();
-            return campagneRepository.findActiveCampagnesAsResume(currentDate);
+            return instantaneCourant().campagnes();
+        }
+
+        /**
+         * Invalide l'instantané des campagnes actives après le commit d'une écriture sur une campagne.
+         *
+         * @param event L'événement de modification de campagne
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+        public void onCampagneModifiee(CampagneModifieeEvent event) {
+            invalider();
+        }
+
+        /**
+         * Invalide l'instantané des campagnes actives ; la prochaine lecture le rechargera.
+         */
+        public void invalider() {
+            generation.incrementAndGet();
+            invalidations.increment();
+        }
+
+        /**
+         * @return Les statistiques d'utilisation de l'instantané des campagnes actives
+         */
+        public StatistiquesCache getStatistiquesCache() {
+            Instantane courant = instantane.get();
+            return new StatistiquesCache(succes.sum(), echecs.sum(), rechargements.sum(), invalidations.sum(),
+                    courant == null ? 0 : courant.campagnes().size(),
+                    courant == null ? null : courant.prochaineTransition());
+        }
+
+        /**
+         * Remplace l'horloge utilisée pour déterminer la date du jour.
+         *
+         * @param horloge La nouvelle horloge
+         */
+        void setHorloge(Clock horloge) {
+            this.horloge = horloge;
+        }
+
+        /**
+         * Retourne l'instantané courant des campagnes actives, rechargé s'il n'est plus valide.
+         */
+        private Instantane instantaneCourant() {
+            Instantane courant = instantane.get();
+            if (estValide(courant)) {
+                succes.increment();
+                return courant;
+            }
+            echecs.increment();
+            return recharger();
+        }
+
+        /**
+         * Recharge l'instantané depuis la base, un seul thread à la fois.
+         * Les threads en attente réutilisent l'instantané chargé par le premier.
+         */
+        private Instantane recharger() {
+            verrouRechargement.lock();
+            try {
+                Instantane courant = instantane.get();
+                if (estValide(courant)) {
+                    return courant;
+                }
+                long generationChargee = generation.get();
+                LocalDate currentDate = LocalDate.now(horloge);
+                Instantane nouveau = transactionTemplate.execute(statut -> new Instantane(
+                        List.copyOf(campagneRepository.findActiveCampagnesAsResume(currentDate)),
+                        prochaineTransition(currentDate), generationChargee));
+                instantane.set(nouveau);
+                rechargements.increment();
+                return nouveau;
+            } finally {
+                verrouRechargement.unlock();
+            }
+        }
+
+        /**
+         * Calcule l'instant à partir duquel la liste des campagnes actives change :
+         * le lendemain de la plus proche date de fin active, ou la plus proche date de début future.
+         *
+         * @return L'instant de la prochaine transition, Instant.MAX si aucune n'est prévue
+         */
+        private Instant prochaineTransition(LocalDate currentDate) {
+            LocalDate prochaineFin = campagneRepository.findProchaineFinActive(currentDate);
+            LocalDate prochainDebut = campagneRepository.findProchainDebut(currentDate);
+            LocalDate transition = prochaineFin == null ? null : prochaineFin.plusDays(1);
+            if (prochainDebut != null && (transition == null || prochainDebut.isBefore(transition))) {
+                transition = prochainDebut;
+            }
+            return transition == null ? Instant.MAX : transition.atStartOfDay(horloge.getZone()).toInstant();
+        }
+
+        private boolean estValide(Instantane courant) {
+            return courant != null
+                    && courant.generation() == generation.get()
+                    && horloge.instant().isBefore(courant.prochaineTransition());
+        }
+
+        /**
+         * Récupère les campagnes actives accompagnées de leur progression (montant collecté,
+         * nombre de dons, dernier don). La progression est lue dans les totaux en mémoire.
+         *
+         * @return Liste des campagnes actives avec leur progression
+         */
+        public List<CampagneActiveDTO> getCampagnesActivesAvecProgression() {
+            return avecProgression(instantaneCourant());
+        }
+
+        /**
+         * Récupère les campagnes actives avec leur progression, sérialisées en JSON.
+         * La réponse n'est recalculée que si l'instantané ou les totaux ont changé depuis le calcul précédent.
+         *
+         * @return Le tableau JSON des campagnes actives avec leur progression (encodé en UTF-8)
+         */
+        @Timed(value = "campagnes.actives", histogram = true)
+        public byte[] getCampagnesActivesJson() {
+            // La version est lue avant les totaux : un don arrivé pendant le calcul invalide la réponse produite
+            long version = totauxCampagnes.getVersion();
+            Instantane courant = instantaneCourant();
+            ReponseSerialisee reponse = reponseActives;
+            if (reponse != null && reponse.instantane() == courant && reponse.versionTotaux() == version) {
+                return reponse.json();
+            }
+            try {
+                byte[] json = objectMapper.writerFor(LISTE_CAMPAGNES_ACTIVES).writeValueAsBytes(avecProgression(courant));
+                reponseActives = new ReponseSerialisee(courant, version, json);
+                return json;
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Sérialisation impossible des campagnes actives", e);
+            }
+        }
+
+        private List<CampagneActiveDTO> avecProgression(Instantane courant) {
+            List<CampagneActiveDTO> campagnes = new ArrayList<>(courant.campagnes().size());
+            for (CampagneResume resume : courant.campagnes()) {
+                TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(resume.id());
+                campagnes.add(new CampagneActiveDTO(resume.id(), resume.nom(), resume.objectifMontant(),
+                        totaux.montantCollecte(), totaux.nombreDons(), totaux.dernierDon()));
+            }
+            return campagnes;
+        }
+
+        /**
+         * Liste immuable des campagnes actives, valable jusqu'à sa prochaine transition
+         * ou jusqu'à la prochaine invalidation.
+         *
+         * @param campagnes Les campagnes actives
+         * @param prochaineTransition Instant à partir duquel la liste n'est plus valable
+         * @param generation Génération d'invalidation au moment du chargement
+         */
+        private record Instantane(List<CampagneResume> campagnes, Instant prochaineTransition, long generation) {
+        }
+
+        /**
+         * Réponse JSON des campagnes actives et état à partir duquel elle a été calculée.
+         *
+         * @param instantane Instantané des campagnes actives utilisé
+         * @param versionTotaux Version des totaux de dons lue avant le calcul
+         * @param json Réponse sérialisée
+         */
+        private record ReponseSerialisee(Instantane instantane, long versionTotaux, byte[] json) {
+        }
+
+        /**
+         * Statistiques d'utilisation de l'instantané des campagnes actives.
+         *
+         * @param succes Lectures servies depuis l'instantané
+         * @param echecs Lectures ayant nécessité un rechargement
+         * @param rechargements Rechargements effectués depuis la base
+         * @param invalidations Invalidations dues à des écritures sur les campagnes
+         * @param taille Nombre de campagnes dans l'instantané courant
+         * @param prochaineTransition Instant de la prochaine transition, null si aucun instantané
+         */
+        public record StatistiquesCache(long succes, long echecs, long rechargements, long invalidations,
+                                        int taille, Instant prochaineTransition) {
         }
 }
@@ -0,0 +1,168 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.PageDonsDTO;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.DonRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Service de consultation des dons d'une campagne.
+ * Les dons sont lus par pagination par clé sur (campagne_id, date, id) : une page coûte le même prix quelle que soit
+ * sa position, contrairement à une pagination par décalage. L'export NDJSON parcourt la campagne ligne à ligne,
+ * la mémoire consommée ne dépend donc pas du nombre de dons.
+ */
+@Service
+public class ServiceConsultationDons {
+
+        private static final Base64.Encoder ENCODEUR = Base64.getUrlEncoder().withoutPadding();
+        private static final Base64.Decoder DECODEUR = Base64.getUrlDecoder();
+
+        /**
+         * Repository pour accéder aux données des dons
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Index en mémoire des campagnes
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Écrivain JSON des dons, sans flush après chaque don
+         */
+        private final ObjectWriter writerDon;
+
+        /**
+         * Nombre maximal de dons par page
+         */
+        @Value("${dons.liste.taille-max:500}")
+        private int tailleMaxPage;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param objectMapper ObjectMapper de l'application
+         */
+        @Autowired
+        public ServiceConsultationDons(DonRepository donRepository, IndexCampagnes indexCampagnes, ObjectMapper objectMapper) {
+            this.donRepository = donRepository;
+            this.indexCampagnes = indexCampagnes;
+            this.writerDon = objectMapper.writerFor(DonDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        }
+
+        /**
+         * Retourne une page de dons d'une campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param curseur Curseur renvoyé par la page précédente, null pour la première page
+         * @param taille Nombre maximal de dons de la page
+         * @return La page de dons et le curseur de la page suivante
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la taille ou le curseur sont invalides
+         */
+        @Transactional(readOnly = true)
+        public PageDonsDTO listerDons(Long campagneId, String curseur, int taille) {
+            if (taille < 1 || taille > tailleMaxPage) {
+                throw new IllegalStateException("La taille de page doit être comprise entre 1 et " + tailleMaxPage);
+            }
+            String nomCampagne = nomCampagne(campagneId);
+
+            // Un don de plus que demandé indique s'il existe une page suivante
+            Limit limite = Limit.of(taille + 1);
+            List<DonDTO> dons;
+            if (curseur == null || curseur.isEmpty()) {
+                dons = donRepository.trouverPremiersDons(campagneId, limite);
+            } else {
+                Cle cle = decoder(curseur);
+                dons = donRepository.trouverDonsApres(campagneId, cle.date(), cle.id(), limite);
+            }
+
+            String curseurSuivant = null;
+            if (dons.size() > taille) {
+                dons = dons.subList(0, taille);
+                DonDTO dernier = dons.get(taille - 1);
+                curseurSuivant = encoder(new Cle(dernier.getDate(), dernier.getId()));
+            }
+            dons.forEach(don -> don.setNomCampagne(nomCampagne));
+            return new PageDonsDTO(dons, curseurSuivant);
+        }
+
+        /**
+         * Écrit tous les dons d'une campagne au format NDJSON (un objet JSON par ligne), dans l'ordre chronologique.
+         * Les dons sont lus et écrits un par un ; le flux de sortie n'est pas fermé.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param sortie Flux de sortie
+         * @throws IOException Si l'écriture échoue (client déconnecté par exemple)
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         */
+        @Transactional(readOnly = true)
+        public void exporterDons(Long campagneId, OutputStream sortie) throws IOException {
+            String nomCampagne = nomCampagne(campagneId);
+            try (Stream<DonDTO> dons = donRepository.parcourirDons(campagneId);
+                 JsonGenerator generateur = writerDon.createGenerator(sortie)) {
+                generateur.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                Iterator<DonDTO> iterateur = dons.iterator();
+                while (iterateur.hasNext()) {
+                    DonDTO don = iterateur.next();
+                    don.setNomCampagne(nomCampagne);
+                    writerDon.writeValue(generateur, don);
+                    generateur.writeRaw('\n');
+                }
+            }
+        }
+
+        /**
+         * @param campagneId Identifiant de la campagne
+         * @return Le nom de la campagne
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         */
+        public String nomCampagne(Long campagneId) {
+            return indexCampagnes.trouver(campagneId)
+                    .map(CampagneInfo::nom)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+        }
+
+        private static String encoder(Cle cle) {
+            return ENCODEUR.encodeToString((cle.date() + "|" + cle.id()).getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static Cle decoder(String curseur) {
+            try {
+                String[] champs = new String(DECODEUR.decode(curseur), StandardCharsets.UTF_8).split("\\|");
+                if (champs.length != 2) {
+                    throw new IllegalStateException("Curseur invalide");
+                }
+                return new Cle(LocalDateTime.parse(champs[0]), Long.valueOf(champs[1]));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalStateException("Curseur invalide");
+            }
+        }
+
+        /**
+         * Clé de tri d'un don, portée par le curseur.
+         */
+        private record Cle(LocalDateTime date, Long id) {
+        }
+}
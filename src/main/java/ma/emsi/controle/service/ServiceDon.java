@@ -1,11 +1,14 @@
 package ma.emsi.controle.service;
 import ma.emsi.controle.DTOs.DonDTO;
-import ma.emsi.controle.entities.Campagne;
 import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.CampagneInfo;
 import ma.emsi.controle.repository.CampagneRepository;
 import ma.emsi.controle.repository.DonRepository;
 import jakarta.persistence.EntityNotFoundException;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -28,54 +31,89 @@ public class ServiceDon {
          */
         private final CampagneRepository campagneRepository;
 
+        /**
+         * Publicateur des événements de don, consommés après le commit de la transaction
+         */
+        private final ApplicationEventPublisher eventPublisher;
+
+        /**
+         * Index en mémoire des campagnes, consulté à la place d'un SELECT sur la campagne
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Suivi du montant collecté par campagne
+         */
+        private final ObjectifsCampagnes objectifsCampagnes;
+
         /**
          * Constructeur avec injection de dépendances via Spring
          *
          * @param donRepository Repository des dons
          * @param campagneRepository Repository des campagnes
+         * @param eventPublisher Publicateur des événements de l'application
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param objectifsCampagnes Suivi du montant collecté par campagne
          */
         @Autowired
-        public ServiceDon(DonRepository donRepository, CampagneRepository campagneRepository) {
+        public ServiceDon(DonRepository donRepository, CampagneRepository campagneRepository,
+                          ApplicationEventPublisher eventPublisher, IndexCampagnes indexCampagnes,
+                          ObjectifsCampagnes objectifsCampagnes) {
             this.donRepository = donRepository;
             this.campagneRepository = campagneRepository;
+            this.eventPublisher = eventPublisher;
+            this.indexCampagnes = indexCampagnes;
+            this.objectifsCampagnes = objectifsCampagnes;
         }
 
         /**
          * Enregistre un nouveau don pour une campagne spécifiée.
-         * Vérifie si la campagne existe et si elle est active avant d'enregistrer le don.
+         * Vérifie si la campagne existe, si elle est active et si elle n'a pas atteint son objectif avant d'enregistrer le don.
+         * La campagne est lue dans l'index en mémoire et référencée par un proxy non initialisé :
+         * l'enregistrement d'un don se limite ainsi à des INSERT (le don et l'incrément du montant collecté),
+         * sans verrou sur la ligne de la campagne.
          *
          * @param campagneId Identifiant de la campagne
          * @param donDTO Données du don à enregistrer
          * @return Le DTO du don enregistré avec les informations complétées (id, date, nom de campagne)
          * @throws EntityNotFoundException Si la campagne n'existe pas
-         * @throws IllegalStateException Si la campagne n'est pas active
+         * @throws IllegalStateException Si la campagne n'est pas active ou a atteint son objectif
          */
+        @Timed(value = "dons.enregistrement", histogram = true)
         @Transactional
         public DonDTO enregistrerDon(Long campagneId, DonDTO donDTO) {
-            // Recherche de la campagne par son ID
-            Campagne campagne = campagneRepository.findById(campagneId)
+            // Recherche de la campagne dans l'index
+            CampagneInfo campagne = indexCampagnes.trouver(campagneId)
                     .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
 
             LocalDateTime currentDate = LocalDateTime.now();
-            LocalDate today = LocalDate.now();
+            LocalDate today = currentDate.toLocalDate();
 
             // Vérification de l'activité de la campagne
-            if (today.isBefore(campagne.getDateDebut()) || today.isAfter(campagne.getDateFin())) {
+            if (!campagne.estActiveLe(today)) {
                 throw new IllegalStateException("Cette campagne n'est pas active actuellement");
             }
+            if (campagne.estFinancee()) {
+                throw new IllegalStateException("Cette campagne a atteint son objectif et n'accepte plus de dons");
+            }
 
             // Création et initialisation d'un nouvel objet Donation
             Donation donation = new Donation();
-            donation.setCampagne(campagne);
+            donation.setCampagne(campagneRepository.getReferenceById(campagneId));
             donation.setNomDonateur(donDTO.getNomDonateur());
             donation.setMontant(donDTO.getMontant());
             donation.setDate(currentDate);
 
             // Sauvegarde du don dans la base de données
             Donation savedDonation = donRepository.save(donation);
+            objectifsCampagnes.ajouter(campagneId, savedDonation.getMontant(), 1);
+
+            // Notification des abonnés (totaux en mémoire...), traitée après le commit
+            eventPublisher.publishEvent(new DonEnregistreEvent(savedDonation.getId(), campagneId,
+                    savedDonation.getNomDonateur(), savedDonation.getMontant(), savedDonation.getDate()));
 
-            // Conversion de l'entité en DTO pour le retour
-            return convertToDTO(savedDonation);
+            // Conversion de l'entité en DTO pour le retour, sans initialiser le proxy de la campagne
+            return convertToDTO(savedDonation, campagne.nom());
         }
 
         /**
@@ -85,9 +123,21 @@ public class ServiceDon {
          * @return Le DTO correspondant
          */
         public DonDTO convertToDTO(Donation donation) {
+            return convertToDTO(donation, donation.getCampagne().getNom());
+        }
+
+        /**
+         * Convertit une entité Donation en DonDTO en utilisant un nom de campagne déjà connu,
+         * ce qui évite de charger la campagne associée.
+         *
+         * @param donation L'entité à convertir
+         * @param nomCampagne Le nom de la campagne du don
+         * @return Le DTO correspondant
+         */
+        public DonDTO convertToDTO(Donation donation, String nomCampagne) {
             DonDTO donDTO = new DonDTO();
             donDTO.setId(donation.getId());
-            donDTO.setNomCampagne(donation.getCampagne().getNom());
+            donDTO.setNomCampagne(nomCampagne);
             donDTO.setNomDonateur(donation.getNomDonateur());
             donDTO.setMontant(donation.getMontant());
             donDTO.setDate(donation.getDate());
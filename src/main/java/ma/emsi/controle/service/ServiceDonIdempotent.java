@@ -0,0 +1,262 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.CleIdempotence;
+import ma.emsi.controle.exception.CleIdempotenceReutiliseeException;
+import ma.emsi.controle.repository.CleIdempotenceRepository;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Enregistrement idempotent des dons soumis avec un en-tête Idempotency-Key.
+ * <p>
+ * Une requête rejouée avec la même clé renvoie le don d'origine sans exécuter de nouvelle transaction.
+ * Les soumissions simultanées d'une même clé sont regroupées : une seule est exécutée, les autres attendent son résultat.
+ * Les clés récentes sont conservées en mémoire (nombre borné, durée de rétention) ; la clé est aussi enregistrée
+ * en base dans la transaction du don, ce qui couvre les clés sorties de la mémoire, les redémarrages
+ * et les requêtes traitées par une autre instance.
+ */
+@Service
+public class ServiceDonIdempotent {
+
+        /**
+         * Longueur maximale d'une clé d'idempotence
+         */
+        private static final int LONGUEUR_MAX_CLE = 100;
+
+        /**
+         * Service des dons, exécuté une seule fois par clé
+         */
+        private final ServiceDon serviceDon;
+
+        /**
+         * Repository des dons, pour relire le don d'origine d'une clé enregistrée en base
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Repository des clés d'idempotence
+         */
+        private final CleIdempotenceRepository cleIdempotenceRepository;
+
+        /**
+         * Transaction englobant le don et sa clé
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Transaction en lecture seule, servie par la réplique
+         */
+        private final TransactionTemplate lectureSeule;
+
+        /**
+         * Clés récentes et soumissions en cours, par clé
+         */
+        private final ConcurrentHashMap<String, Entree> entrees = new ConcurrentHashMap<>();
+
+        /**
+         * Durée de conservation d'une clé, en mémoire comme en base
+         */
+        @Value("${dons.idempotence.retention:PT24H}")
+        private Duration retention;
+
+        /**
+         * Nombre maximal de clés conservées en mémoire ; au-delà, les clés ne sont relues que depuis la base
+         */
+        @Value("${dons.idempotence.capacite:100000}")
+        private int capacite;
+
+        /**
+         * Relit le don d'origine d'une clé sur la base principale : une réplique en retard peut ne pas encore
+         * avoir la clé qui vient d'être enregistrée, y compris par une autre instance
+         */
+        @Value("${dons.idempotence.relecture-principale:true}")
+        private boolean relecturePrincipale;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param serviceDon Service des dons
+         * @param donRepository Repository des dons
+         * @param cleIdempotenceRepository Repository des clés d'idempotence
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ServiceDonIdempotent(ServiceDon serviceDon, DonRepository donRepository,
+                                    CleIdempotenceRepository cleIdempotenceRepository,
+                                    PlatformTransactionManager transactionManager) {
+            this.serviceDon = serviceDon;
+            this.donRepository = donRepository;
+            this.cleIdempotenceRepository = cleIdempotenceRepository;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.lectureSeule = new TransactionTemplate(transactionManager);
+            this.lectureSeule.setReadOnly(true);
+        }
+
+        /**
+         * Enregistre un don au plus une fois par clé d'idempotence.
+         *
+         * @param cle Clé d'idempotence fournie par le client
+         * @param campagneId Identifiant de la campagne
+         * @param donDTO Données du don à enregistrer
+         * @return Le don enregistré, par cette requête ou par la requête d'origine
+         * @throws CleIdempotenceReutiliseeException Si la clé a déjà servi pour une requête différente
+         * @throws IllegalStateException Si la clé est invalide ou si la campagne n'est pas active
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         */
+        public DonDTO enregistrerDon(String cle, Long campagneId, DonDTO donDTO) {
+            if (cle.isBlank() || cle.length() > LONGUEUR_MAX_CLE) {
+                throw new IllegalStateException("La clé d'idempotence doit contenir entre 1 et " + LONGUEUR_MAX_CLE + " caractères");
+            }
+            String empreinte = empreinte(campagneId, donDTO);
+            Entree nouvelle = new Entree(empreinte);
+            while (true) {
+                Entree existante = entrees.putIfAbsent(cle, nouvelle);
+                if (existante == null) {
+                    break;
+                }
+                if (existante.estExpiree(System.currentTimeMillis())) {
+                    entrees.remove(cle, existante);
+                    continue;
+                }
+                verifierEmpreinte(cle, existante.empreinte, empreinte);
+                return attendre(existante.resultat);
+            }
+
+            try {
+                DonDTO don = executer(cle, empreinte, campagneId, donDTO);
+                nouvelle.expiration = System.currentTimeMillis() + retention.toMillis();
+                nouvelle.resultat.complete(don);
+                if (entrees.size() > capacite) {
+                    purgerMemoire();
+                    if (entrees.size() > capacite) {
+                        // Mémoire pleine : la clé reste disponible en base
+                        entrees.remove(cle, nouvelle);
+                    }
+                }
+                return don;
+            } catch (RuntimeException e) {
+                // Un échec n'est pas mémorisé : une nouvelle soumission de la clé sera exécutée
+                entrees.remove(cle, nouvelle);
+                nouvelle.resultat.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Supprime les clés expirées, en mémoire et en base.
+         */
+        @Scheduled(fixedDelayString = "${dons.idempotence.intervalle-purge-ms:60000}")
+        public void purger() {
+            purgerMemoire();
+            cleIdempotenceRepository.supprimerAvant(LocalDateTime.now().minus(retention));
+        }
+
+        private void purgerMemoire() {
+            long maintenant = System.currentTimeMillis();
+            entrees.entrySet().removeIf(entree -> entree.getValue().estExpiree(maintenant));
+        }
+
+        /**
+         * Exécute la soumission, sauf si la clé est déjà enregistrée en base.
+         */
+        private DonDTO executer(String cle, String empreinte, Long campagneId, DonDTO donDTO) {
+            Optional<DonDTO> enregistre = relire(cle, empreinte);
+            if (enregistre.isPresent()) {
+                return enregistre.get();
+            }
+            try {
+                return transactionTemplate.execute(statut -> {
+                    DonDTO don = serviceDon.enregistrerDon(campagneId, donDTO);
+                    cleIdempotenceRepository.save(new CleIdempotence(cle, empreinte, don.getId(), LocalDateTime.now()));
+                    return don;
+                });
+            } catch (DataIntegrityViolationException e) {
+                // Clé enregistrée entre-temps par une autre instance : son don est le don d'origine, le nôtre est annulé
+                return relire(cle, empreinte).orElseThrow(() -> e);
+            }
+        }
+
+        /**
+         * Relit le don d'origine d'une clé enregistrée en base, sur la base principale ou sur la réplique
+         * (dons.idempotence.relecture-principale).
+         */
+        private Optional<DonDTO> relire(String cle, String empreinte) {
+            TransactionTemplate relecture = relecturePrincipale ? transactionTemplate : lectureSeule;
+            return relecture.execute(statut -> cleIdempotenceRepository.findById(cle)
+                    .filter(enregistree -> enregistree.getDateCreation().isAfter(LocalDateTime.now().minus(retention)))
+                    .map(enregistree -> {
+                        verifierEmpreinte(cle, enregistree.getEmpreinte(), empreinte);
+                        return donRepository.trouverDon(enregistree.getDonId())
+                                .orElseThrow(() -> new EntityNotFoundException("Don non trouvé avec l'ID: " + enregistree.getDonId()));
+                    }));
+        }
+
+        private static void verifierEmpreinte(String cle, String attendue, String empreinte) {
+            if (!attendue.equals(empreinte)) {
+                throw new CleIdempotenceReutiliseeException("La clé d'idempotence " + cle + " a déjà été utilisée pour une autre requête");
+            }
+        }
+
+        /**
+         * Attend le résultat d'une soumission en cours ou terminée, en relançant son éventuelle exception.
+         */
+        private static DonDTO attendre(CompletableFuture<DonDTO> resultat) {
+            try {
+                return resultat.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Empreinte d'une requête : deux requêtes de même empreinte désignent le même don.
+         */
+        static String empreinte(Long campagneId, DonDTO donDTO) {
+            String montant = donDTO.getMontant() == null ? "" : donDTO.getMontant().toString();
+            String contenu = campagneId + "|" + donDTO.getNomDonateur() + "|" + montant;
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(contenu.getBytes(StandardCharsets.UTF_8));
+                return HexFormat.of().formatHex(hash);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Soumission d'une clé : en cours tant que son résultat n'est pas disponible, puis conservée jusqu'à expiration.
+         */
+        private static final class Entree {
+            private final String empreinte;
+            private final CompletableFuture<DonDTO> resultat = new CompletableFuture<>();
+            private volatile long expiration = Long.MAX_VALUE;
+
+            private Entree(String empreinte) {
+                this.empreinte = empreinte;
+            }
+
+            private boolean estExpiree(long maintenant) {
+                return maintenant >= expiration;
+            }
+        }
+}
@@ -0,0 +1,308 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.ResultatDonDTO;
+import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Service d'ingestion de dons par lots.
+ * Chaque campagne n'est résolue qu'une seule fois par lot (via l'index en mémoire) et les dons valides sont insérés
+ * dans une seule transaction, en lots JDBC (hibernate.jdbc.batch_size).
+ * Les dons invalides sont rejetés individuellement sans faire échouer le reste du lot.
+ */
+@Service
+public class ServiceLotDons {
+
+        /**
+         * Repository pour accéder aux données des dons
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Repository pour accéder aux données des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Service des dons, utilisé pour la conversion en DTO
+         */
+        private final ServiceDon serviceDon;
+
+        /**
+         * Validateur Bean Validation appliqué à chaque élément du lot
+         */
+        private final Validator validator;
+
+        /**
+         * Publicateur des événements de don, consommés après le commit de la transaction
+         */
+        private final ApplicationEventPublisher eventPublisher;
+
+        /**
+         * Index en mémoire des campagnes
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Suivi du montant collecté par campagne
+         */
+        private final ObjectifsCampagnes objectifsCampagnes;
+
+        /**
+         * Contexte de persistance, vidé périodiquement pour borner la mémoire des gros lots
+         */
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        /**
+         * Nombre maximal de dons acceptés dans un lot
+         */
+        @Value("${dons.lot.taille-max:1000}")
+        private int tailleMaxLot;
+
+        /**
+         * Nombre d'insertions entre deux flush du contexte de persistance, aligné sur hibernate.jdbc.batch_size
+         */
+        @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+        private int tailleLotJdbc;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         * @param campagneRepository Repository des campagnes
+         * @param serviceDon Service des dons
+         * @param validator Validateur Bean Validation
+         * @param eventPublisher Publicateur des événements de l'application
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param objectifsCampagnes Suivi du montant collecté par campagne
+         */
+        @Autowired
+        public ServiceLotDons(DonRepository donRepository, CampagneRepository campagneRepository, ServiceDon serviceDon,
+                              Validator validator, ApplicationEventPublisher eventPublisher, IndexCampagnes indexCampagnes,
+                              ObjectifsCampagnes objectifsCampagnes) {
+            this.donRepository = donRepository;
+            this.campagneRepository = campagneRepository;
+            this.serviceDon = serviceDon;
+            this.validator = validator;
+            this.eventPublisher = eventPublisher;
+            this.indexCampagnes = indexCampagnes;
+            this.objectifsCampagnes = objectifsCampagnes;
+        }
+
+        /**
+         * Enregistre un lot de dons pour une même campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param dons Dons à enregistrer
+         * @return Un résultat par don, dans l'ordre du lot
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la campagne n'est pas active, a atteint son objectif ou si le lot est trop grand
+         */
+        @Timed(value = "dons.lot", histogram = true)
+        @Transactional
+        public List<ResultatDonDTO> enregistrerDons(Long campagneId, List<? extends DonDTO> dons) {
+            verifierTailleLot(dons);
+            CampagneInfo campagne = indexCampagnes.trouver(campagneId)
+                    .orElseThrow(() -> new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId));
+            if (!campagne.estActiveLe(LocalDate.now())) {
+                throw new IllegalStateException("Cette campagne n'est pas active actuellement");
+            }
+            if (campagne.estFinancee()) {
+                throw new IllegalStateException("Cette campagne a atteint son objectif et n'accepte plus de dons");
+            }
+            return enregistrer(dons, null, don -> campagne, new ResultatDonDTO[dons.size()]);
+        }
+
+        /**
+         * Enregistre un lot de dons pouvant concerner plusieurs campagnes.
+         * Chaque campagne du lot n'est résolue qu'une fois ; un don destiné à une campagne
+         * inexistante, inactive ou financée est rejeté individuellement.
+         *
+         * @param dons Dons à enregistrer, chacun portant l'identifiant de sa campagne
+         * @return Un résultat par don, dans l'ordre du lot
+         * @throws IllegalStateException Si le lot est trop grand
+         */
+        @Timed(value = "dons.lot", histogram = true)
+        @Transactional
+        public List<ResultatDonDTO> enregistrerDonsMultiCampagnes(List<DonCampagneDTO> dons) {
+            verifierTailleLot(dons);
+            return enregistrer(dons, null, campagneDuLot(), new ResultatDonDTO[dons.size()]);
+        }
+
+        /**
+         * Enregistre un lot de dons de l'écriture différée, chacun avec son numéro de suivi.
+         * Un don dont le numéro de suivi est déjà en base (don rejoué depuis le journal après un arrêt survenu
+         * entre le commit et son marquage) n'est pas inséré une seconde fois : le don existant est retourné.
+         *
+         * @param suivis Numéros de suivi des dons, dans l'ordre du lot
+         * @param dons Dons à enregistrer, chacun portant l'identifiant de sa campagne
+         * @return Un résultat par don, dans l'ordre du lot
+         * @throws IllegalStateException Si le lot est trop grand
+         */
+        @Timed(value = "dons.lot", histogram = true)
+        @Transactional
+        public List<ResultatDonDTO> enregistrerDonsSuivis(List<String> suivis, List<DonCampagneDTO> dons) {
+            verifierTailleLot(dons);
+            ResultatDonDTO[] resultats = new ResultatDonDTO[dons.size()];
+            Set<String> dejaEnregistres = new HashSet<>(donRepository.trouverSuivis(suivis));
+            for (int i = 0; i < dons.size() && !dejaEnregistres.isEmpty(); i++) {
+                if (dejaEnregistres.contains(suivis.get(i))) {
+                    resultats[i] = ResultatDonDTO.enregistre(i, donRepository.trouverDonSuivi(suivis.get(i)).orElseThrow());
+                }
+            }
+            return enregistrer(dons, suivis, campagneDuLot(), resultats);
+        }
+
+        /**
+         * @return La résolution de la campagne d'un don portant son identifiant de campagne, chaque campagne
+         * n'étant cherchée qu'une fois
+         */
+        private Function<DonDTO, CampagneInfo> campagneDuLot() {
+            Map<Long, Optional<CampagneInfo>> campagnes = new HashMap<>();
+            return don -> campagnes
+                    .computeIfAbsent(((DonCampagneDTO) don).getCampagneId(), indexCampagnes::trouver)
+                    .orElse(null);
+        }
+
+        /**
+         * Valide puis insère les dons d'un lot qui n'ont pas encore de résultat.
+         *
+         * @param dons Dons à enregistrer
+         * @param suivis Numéros de suivi des dons, null hors écriture différée
+         * @param campagneDuDon Résolution de la campagne d'un don (null si introuvable)
+         * @param resultats Résultats déjà connus, complétés par cette méthode
+         * @return Un résultat par don, dans l'ordre du lot
+         */
+        private List<ResultatDonDTO> enregistrer(List<? extends DonDTO> dons, List<String> suivis,
+                                                 Function<DonDTO, CampagneInfo> campagneDuDon, ResultatDonDTO[] resultats) {
+            LocalDateTime currentDate = LocalDateTime.now();
+            LocalDate today = currentDate.toLocalDate();
+            List<Donation> enAttente = new ArrayList<>(tailleLotJdbc);
+            List<Integer> indexEnAttente = new ArrayList<>(tailleLotJdbc);
+            List<String> nomsEnAttente = new ArrayList<>(tailleLotJdbc);
+
+            for (int i = 0; i < dons.size(); i++) {
+                if (resultats[i] != null) {
+                    continue;
+                }
+                DonDTO donDTO = dons.get(i);
+                Map<String, String> erreurs = valider(donDTO);
+                CampagneInfo campagne = erreurs.isEmpty() ? campagneDuDon.apply(donDTO) : null;
+                if (erreurs.isEmpty() && campagne == null) {
+                    erreurs.put("campagneId", "Campagne non trouvée avec l'ID: " + ((DonCampagneDTO) donDTO).getCampagneId());
+                } else if (campagne != null && !campagne.estActiveLe(today)) {
+                    erreurs.put("campagneId", "Cette campagne n'est pas active actuellement");
+                } else if (campagne != null && campagne.estFinancee()) {
+                    erreurs.put("campagneId", "Cette campagne a atteint son objectif et n'accepte plus de dons");
+                }
+                if (!erreurs.isEmpty()) {
+                    resultats[i] = ResultatDonDTO.rejete(i, erreurs);
+                    continue;
+                }
+
+                Donation donation = new Donation();
+                donation.setCampagne(campagneRepository.getReferenceById(campagne.id()));
+                donation.setNomDonateur(donDTO.getNomDonateur());
+                donation.setMontant(donDTO.getMontant());
+                donation.setDate(currentDate);
+                donation.setSuivi(suivis == null ? null : suivis.get(i));
+                enAttente.add(donation);
+                indexEnAttente.add(i);
+                nomsEnAttente.add(campagne.nom());
+
+                if (enAttente.size() == tailleLotJdbc) {
+                    inserer(enAttente, indexEnAttente, nomsEnAttente, resultats);
+                }
+            }
+            inserer(enAttente, indexEnAttente, nomsEnAttente, resultats);
+            return List.of(resultats);
+        }
+
+        /**
+         * Insère les dons en attente en un lot JDBC, avec un seul incrément du montant collecté par campagne,
+         * puis vide le contexte de persistance pour que la mémoire consommée ne dépende pas de la taille du lot reçu.
+         */
+        private void inserer(List<Donation> enAttente, List<Integer> indexEnAttente, List<String> nomsEnAttente,
+                             ResultatDonDTO[] resultats) {
+            if (enAttente.isEmpty()) {
+                return;
+            }
+            List<Donation> enregistres = donRepository.saveAll(enAttente);
+            Map<Long, Montant> montants = new HashMap<>();
+            Map<Long, Integer> nombres = new HashMap<>();
+            for (Donation donation : enregistres) {
+                montants.merge(donation.getCampagne().getId(), donation.getMontant(), Montant::plus);
+                nombres.merge(donation.getCampagne().getId(), 1, Integer::sum);
+            }
+            montants.forEach((campagneId, montant) -> objectifsCampagnes.ajouter(campagneId, montant, nombres.get(campagneId)));
+            entityManager.flush();
+            for (int j = 0; j < enregistres.size(); j++) {
+                Donation donation = enregistres.get(j);
+                int index = indexEnAttente.get(j);
+                resultats[index] = ResultatDonDTO.enregistre(index, serviceDon.convertToDTO(donation, nomsEnAttente.get(j)));
+                eventPublisher.publishEvent(new DonEnregistreEvent(donation.getId(), donation.getCampagne().getId(),
+                        donation.getNomDonateur(), donation.getMontant(), donation.getDate()));
+            }
+            entityManager.clear();
+            enAttente.clear();
+            indexEnAttente.clear();
+            nomsEnAttente.clear();
+        }
+
+        /**
+         * Applique les contraintes Bean Validation du DTO.
+         *
+         * @return Les erreurs par champ, vide si le don est valide
+         */
+        private Map<String, String> valider(DonDTO donDTO) {
+            Map<String, String> erreurs = new HashMap<>();
+            if (donDTO == null) {
+                erreurs.put("don", "Le don est obligatoire");
+                return erreurs;
+            }
+            for (ConstraintViolation<DonDTO> violation : validator.validate(donDTO)) {
+                erreurs.put(violation.getPropertyPath().toString(), violation.getMessage());
+            }
+            return erreurs;
+        }
+
+        /**
+         * Refuse les lots vides ou dépassant la taille maximale configurée.
+         */
+        private void verifierTailleLot(List<?> dons) {
+            if (dons == null || dons.isEmpty()) {
+                throw new IllegalStateException("Le lot de dons est vide");
+            }
+            if (dons.size() > tailleMaxLot) {
+                throw new IllegalStateException("Le lot contient " + dons.size() + " dons, le maximum est " + tailleMaxLot);
+            }
+        }
+}
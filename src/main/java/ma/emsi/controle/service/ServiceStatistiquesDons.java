@@ -0,0 +1,529 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.StatDonDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Granularite;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatDon;
+import ma.emsi.controle.entities.StatDonId;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.DonRepository;
+import ma.emsi.controle.repository.StatDonRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Statistiques des dons par campagne et par intervalle de temps (minute, heure, jour), pré-agrégées dans la table stat_don.
+ * <p>
+ * Chaque don validé est cumulé en mémoire dans les trois intervalles qui le contiennent, puis les cumuls sont écrits
+ * en base périodiquement, en une transaction. Une consultation lit une ligne par intervalle, augmentée des cumuls
+ * pas encore écrits : son coût ne dépend pas du nombre de dons.
+ * <p>
+ * La reconstruction recalcule les intervalles à partir de la table des dons, pour les dons antérieurs à une borne.
+ * Elle est lancée au démarrage si la table est vide, ou à la demande pour les jours révolus (cumuls perdus lors
+ * d'un arrêt brutal par exemple). Pendant une reconstruction, les dons antérieurs à la borne notifiés pour une campagne
+ * pas encore relue sont ignorés : sa relecture les compte. Les autres sont cumulés, quelle que soit leur date, comme
+ * ceux d'un import de l'historique.
+ */
+@Service
+public class ServiceStatistiquesDons {
+
+        private static final Logger log = LoggerFactory.getLogger(ServiceStatistiquesDons.class);
+
+        /**
+         * Début des intervalles remplacés par la reconstruction d'une campagne (plus petite date d'un TIMESTAMP SQL)
+         */
+        private static final LocalDateTime DEBUT_MIN = LocalDateTime.of(1, 1, 1, 0, 0);
+
+        /**
+         * Repository des statistiques pré-agrégées
+         */
+        private final StatDonRepository statDonRepository;
+
+        /**
+         * Repository des dons, lu par la reconstruction
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Repository des campagnes
+         */
+        private final CampagneRepository campagneRepository;
+
+        /**
+         * Index en mémoire des campagnes
+         */
+        private final IndexCampagnes indexCampagnes;
+
+        /**
+         * Fabrique des threads de reconstruction
+         */
+        private final FabriqueThreads fabriqueThreads;
+
+        /**
+         * Transactions d'écriture des cumuls et de lecture des dons d'une reconstruction
+         */
+        private final TransactionTemplate transactionTemplate;
+
+        /**
+         * Transactions d'écriture des lots d'intervalles reconstruits, indépendantes de la lecture en cours
+         */
+        private final TransactionTemplate transactionLot;
+
+        /**
+         * Contexte de persistance, vidé régulièrement pendant une reconstruction
+         */
+        @PersistenceContext
+        private EntityManager entityManager;
+
+        /**
+         * Nombre maximal d'intervalles retournés par une consultation
+         */
+        @Value("${dons.stats.intervalles-max:10000}")
+        private int intervallesMax;
+
+        /**
+         * Nombre d'intervalles reconstruits écrits par transaction, sous le verrou exclusif de la table
+         */
+        @Value("${dons.stats.intervalles-par-lot:1000}")
+        private int intervallesParLot;
+
+        /**
+         * Cumuls pas encore écrits en base, remplacés en bloc à chaque écriture
+         */
+        private volatile ConcurrentHashMap<StatDonId, Cumul> enAttente = new ConcurrentHashMap<>();
+
+        /**
+         * Partagé par les dons qui alimentent les cumuls, exclusif pour remplacer la table des cumuls à écrire
+         */
+        private final ReentrantReadWriteLock verrouCumuls = new ReentrantReadWriteLock();
+
+        /**
+         * Partagé par les consultations, exclusif pour les écritures en base : une consultation ne voit jamais
+         * des cumuls à la fois en base et en attente
+         */
+        private final ReentrantReadWriteLock verrouTable = new ReentrantReadWriteLock();
+
+        /**
+         * Borne de la reconstruction en cours
+         */
+        private volatile LocalDateTime borneReconstruction = LocalDateTime.MIN;
+
+        /**
+         * Campagnes dont la reconstruction en cours n'a pas encore commencé la relecture : leurs dons antérieurs
+         * à la borne seront comptés par celle-ci. Remplacée avec la borne sous le verrou exclusif des cumuls.
+         */
+        private volatile Set<Long> campagnesARelire = Set.of();
+
+        /**
+         * Indique qu'une reconstruction est en cours
+         */
+        private final AtomicBoolean reconstructionEnCours = new AtomicBoolean();
+
+        /**
+         * Campagne dont les intervalles sont en cours de remplacement, null sinon. Protégée par le verrou de la table.
+         */
+        private Long campagneReconstruite;
+
+        /**
+         * Par granularité, début des intervalles de la campagne reconstruite pas encore remplacés : leurs cumuls
+         * restent en attente jusqu'au remplacement. Protégé par le verrou de la table.
+         */
+        private LocalDateTime[] curseursReconstruction;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param statDonRepository Repository des statistiques
+         * @param donRepository Repository des dons
+         * @param campagneRepository Repository des campagnes
+         * @param indexCampagnes Index en mémoire des campagnes
+         * @param fabriqueThreads Fabrique de threads de l'application
+         * @param transactionManager Gestionnaire de transactions
+         */
+        @Autowired
+        public ServiceStatistiquesDons(StatDonRepository statDonRepository, DonRepository donRepository,
+                                       CampagneRepository campagneRepository, IndexCampagnes indexCampagnes,
+                                       FabriqueThreads fabriqueThreads, PlatformTransactionManager transactionManager) {
+            this.statDonRepository = statDonRepository;
+            this.donRepository = donRepository;
+            this.campagneRepository = campagneRepository;
+            this.indexCampagnes = indexCampagnes;
+            this.fabriqueThreads = fabriqueThreads;
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.transactionLot = new TransactionTemplate(transactionManager);
+            this.transactionLot.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        /**
+         * Cumule un don une fois sa transaction validée.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        public void onDonEnregistre(DonEnregistreEvent event) {
+            ajouterDon(event.campagneId(), event.montant(), event.date());
+        }
+
+        /**
+         * Cumule un don dans les intervalles minute, heure et jour qui le contiennent.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param montant Montant du don
+         * @param date Date du don
+         */
+        public void ajouterDon(Long campagneId, Montant montant, LocalDateTime date) {
+            long centimes = enCentimes(montant);
+            verrouCumuls.readLock().lock();
+            try {
+                if (date.isBefore(borneReconstruction) && campagnesARelire.contains(campagneId)) {
+                    return;
+                }
+                for (Granularite granularite : Granularite.values()) {
+                    enAttente.computeIfAbsent(new StatDonId(campagneId, granularite, granularite.debut(date)), id -> new Cumul())
+                            .ajouter(1, centimes);
+                }
+            } finally {
+                verrouCumuls.readLock().unlock();
+            }
+        }
+
+        /**
+         * Écrit en base les cumuls en attente, en une transaction.
+         * Les cumuls des intervalles d'une campagne en cours de reconstruction qui n'ont pas encore été remplacés
+         * restent en attente. En cas d'échec, les cumuls sont remis en attente pour la prochaine écriture.
+         */
+        @Scheduled(fixedDelayString = "${dons.stats.intervalle-ecriture-ms:1000}")
+        public void ecrireCumuls() {
+            verrouTable.writeLock().lock();
+            try {
+                ConcurrentHashMap<StatDonId, Cumul> aEcrire;
+                verrouCumuls.writeLock().lock();
+                try {
+                    aEcrire = enAttente;
+                    if (aEcrire.isEmpty()) {
+                        return;
+                    }
+                    enAttente = new ConcurrentHashMap<>();
+                    if (campagneReconstruite != null) {
+                        aEcrire.entrySet().removeIf(entree -> {
+                            if (!enCoursDeRemplacement(entree.getKey())) {
+                                return false;
+                            }
+                            enAttente.put(entree.getKey(), entree.getValue());
+                            return true;
+                        });
+                    }
+                } finally {
+                    verrouCumuls.writeLock().unlock();
+                }
+                try {
+                    transactionTemplate.executeWithoutResult(statut ->
+                            aEcrire.forEach((id, cumul) -> cumuler(id, cumul.nombre.sum(), cumul.centimes.sum())));
+                } catch (RuntimeException e) {
+                    log.warn("Écriture des statistiques de dons impossible, nouvel essai à la prochaine échéance", e);
+                    verrouCumuls.readLock().lock();
+                    try {
+                        aEcrire.forEach((id, cumul) -> enAttente.computeIfAbsent(id, cle -> new Cumul())
+                                .ajouter(cumul.nombre.sum(), cumul.centimes.sum()));
+                    } finally {
+                        verrouCumuls.readLock().unlock();
+                    }
+                }
+            } finally {
+                verrouTable.writeLock().unlock();
+            }
+        }
+
+        /**
+         * Retourne les statistiques d'une campagne sur une période.
+         * Seuls les intervalles ayant reçu au moins un don sont retournés.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param granularite Granularité des intervalles
+         * @param debut Début de la période (inclus), par défaut un nombre d'intervalles propre à la granularité avant la fin
+         * @param fin Fin de la période (exclue), par défaut maintenant
+         * @return Les intervalles de la période, dans l'ordre chronologique
+         * @throws EntityNotFoundException Si la campagne n'existe pas
+         * @throws IllegalStateException Si la période est vide ou contient trop d'intervalles
+         */
+        public List<StatDonDTO> consulter(Long campagneId, Granularite granularite, LocalDateTime debut, LocalDateTime fin) {
+            if (indexCampagnes.trouver(campagneId).isEmpty()) {
+                throw new EntityNotFoundException("Campagne non trouvée avec l'ID: " + campagneId);
+            }
+            LocalDateTime finPeriode = fin != null ? fin : LocalDateTime.now();
+            LocalDateTime debutPeriode = granularite.debut(debut != null ? debut
+                    : finPeriode.minus(granularite.duree().multipliedBy(granularite.getIntervallesParDefaut())));
+            if (!debutPeriode.isBefore(finPeriode)) {
+                throw new IllegalStateException("La date de début doit précéder la date de fin");
+            }
+            if (Duration.between(debutPeriode, finPeriode).dividedBy(granularite.duree()) >= intervallesMax) {
+                throw new IllegalStateException("La période contient plus de " + intervallesMax + " intervalles");
+            }
+
+            verrouTable.readLock().lock();
+            try {
+                TreeMap<LocalDateTime, StatDonDTO> intervalles = new TreeMap<>();
+                for (StatDonDTO stat : statDonRepository.trouverIntervalles(campagneId, granularite, debutPeriode, finPeriode)) {
+                    intervalles.put(stat.getDebut(), stat);
+                }
+                for (Map.Entry<StatDonId, Cumul> entree : enAttente.entrySet()) {
+                    StatDonId id = entree.getKey();
+                    if (id.getCampagneId().equals(campagneId) && id.getGranularite() == granularite
+                            && !id.getDebut().isBefore(debutPeriode) && id.getDebut().isBefore(finPeriode)) {
+                        Cumul cumul = entree.getValue();
+                        intervalles.merge(id.getDebut(),
+                                new StatDonDTO(id.getDebut(), cumul.nombre.sum(), Montant.deCentimes(cumul.centimes.sum())),
+                                (ecrit, nonEcrit) -> new StatDonDTO(ecrit.getDebut(), ecrit.getNombreDons() + nonEcrit.getNombreDons(),
+                                        ecrit.getMontantTotal().plus(nonEcrit.getMontantTotal())));
+                    }
+                }
+                return new ArrayList<>(intervalles.values());
+            } finally {
+                verrouTable.readLock().unlock();
+            }
+        }
+
+        /**
+         * Reconstruit les statistiques au démarrage si la table est vide alors que des dons existent
+         * (première mise en service), en tâche de fond.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        public void initialiser() {
+            if (statDonRepository.count() == 0 && donRepository.count() > 0) {
+                lancerReconstruction(LocalDateTime.now());
+            }
+        }
+
+        /**
+         * Lance en tâche de fond la reconstruction des statistiques des jours révolus.
+         *
+         * @throws IllegalStateException Si une reconstruction est déjà en cours
+         */
+        public void lancerReconstructionJoursRevolus() {
+            lancerReconstruction(LocalDate.now().atStartOfDay());
+        }
+
+        private void lancerReconstruction(LocalDateTime borne) {
+            if (!reconstructionEnCours.compareAndSet(false, true)) {
+                throw new IllegalStateException("Une reconstruction des statistiques est déjà en cours");
+            }
+            fabriqueThreads.creer("stats-dons-").newThread(() -> {
+                try {
+                    reconstruire(borne);
+                } catch (RuntimeException e) {
+                    log.error("Échec de la reconstruction des statistiques de dons", e);
+                } finally {
+                    reconstructionEnCours.set(false);
+                }
+            }).start();
+        }
+
+        /**
+         * Recalcule, campagne par campagne, les intervalles des dons antérieurs à la borne.
+         * <p>
+         * Les intervalles commençant avant la borne sont remplacés. La borne est alignée sur un début de jour,
+         * sauf au démarrage sur une table vide : l'intervalle à cheval sur la borne ne contient alors que les cumuls
+         * des dons postérieurs, auxquels la reconstruction ajoute les dons antérieurs.
+         * Les dons de chaque campagne sont lus dans l'ordre chronologique, chaque intervalle est donc complet avant
+         * la lecture des suivants. Les intervalles complets sont écrits par lots, chacun dans une courte transaction
+         * qui remplace la plage de dates qu'il couvre : le verrou exclusif de la table n'est pris que le temps d'un
+         * lot, les consultations et l'écriture des cumuls ne sont pas bloquées pendant la lecture des dons, et la
+         * mémoire consommée ne dépend pas du nombre de dons.
+         * <p>
+         * La campagne sort des campagnes à relire juste avant la lecture de ses dons : ceux notifiés ensuite sont
+         * cumulés, et leurs cumuls restent en attente tant que la plage de leur intervalle n'a pas été remplacée.
+         * Les reconstructions s'exécutent l'une après l'autre.
+         *
+         * @param borne Date avant laquelle les dons sont recomptés
+         */
+        synchronized void reconstruire(LocalDateTime borne) {
+            long debut = System.nanoTime();
+            List<CampagneInfo> campagnes = campagneRepository.findAllInfos();
+            Set<Long> aRelire = ConcurrentHashMap.newKeySet();
+            campagnes.forEach(campagne -> aRelire.add(campagne.id()));
+            verrouCumuls.writeLock().lock();
+            try {
+                campagnesARelire = aRelire;
+                borneReconstruction = borne;
+            } finally {
+                verrouCumuls.writeLock().unlock();
+            }
+            try {
+                // Les cumuls antérieurs à la borne déjà reçus sont écrits puis remplacés ; les suivants sont ignorés
+                // jusqu'à la relecture de leur campagne
+                ecrireCumuls();
+                for (CampagneInfo campagne : campagnes) {
+                    reconstruireCampagne(campagne.id(), borne);
+                }
+            } finally {
+                campagnesARelire = Set.of();
+            }
+            log.info("Statistiques de dons reconstruites pour {} campagnes avant {} en {} ms", campagnes.size(), borne,
+                    Duration.ofNanos(System.nanoTime() - debut).toMillis());
+        }
+
+        private void reconstruireCampagne(Long campagneId, LocalDateTime borne) {
+            Granularite[] granularites = Granularite.values();
+            LocalDateTime[] curseurs = new LocalDateTime[granularites.length];
+            Arrays.fill(curseurs, DEBUT_MIN);
+            verrouTable.writeLock().lock();
+            try {
+                campagneReconstruite = campagneId;
+                curseursReconstruction = curseurs;
+            } finally {
+                verrouTable.writeLock().unlock();
+            }
+            try {
+                transactionTemplate.executeWithoutResult(statut -> relireCampagne(campagneId, borne, granularites));
+            } finally {
+                verrouTable.writeLock().lock();
+                try {
+                    campagneReconstruite = null;
+                    curseursReconstruction = null;
+                } finally {
+                    verrouTable.writeLock().unlock();
+                }
+            }
+        }
+
+        /**
+         * Lit les dons antérieurs à la borne d'une campagne et écrit ses intervalles par lots.
+         */
+        private void relireCampagne(Long campagneId, LocalDateTime borne, Granularite[] granularites) {
+            StatDonId[] courants = new StatDonId[granularites.length];
+            Cumul[] cumuls = new Cumul[granularites.length];
+            Map<StatDonId, Cumul> lot = new HashMap<>();
+            campagnesARelire.remove(campagneId);
+
+            try (Stream<DonDTO> dons = donRepository.parcourirDons(campagneId)) {
+                Iterator<DonDTO> iterateur = dons.iterator();
+                while (iterateur.hasNext()) {
+                    DonDTO don = iterateur.next();
+                    if (!don.getDate().isBefore(borne)) {
+                        break;
+                    }
+                    long centimes = enCentimes(don.getMontant());
+                    for (int g = 0; g < granularites.length; g++) {
+                        LocalDateTime debutIntervalle = granularites[g].debut(don.getDate());
+                        if (courants[g] == null || !courants[g].getDebut().equals(debutIntervalle)) {
+                            if (courants[g] != null) {
+                                lot.put(courants[g], cumuls[g]);
+                            }
+                            courants[g] = new StatDonId(campagneId, granularites[g], debutIntervalle);
+                            cumuls[g] = new Cumul();
+                        }
+                        cumuls[g].ajouter(1, centimes);
+                    }
+                    if (lot.size() >= intervallesParLot) {
+                        // Plages couvertes : jusqu'au début des intervalles en cours, encore incomplets
+                        LocalDateTime[] fins = new LocalDateTime[granularites.length];
+                        for (int g = 0; g < granularites.length; g++) {
+                            fins[g] = courants[g].getDebut();
+                        }
+                        ecrireLot(campagneId, granularites, lot, fins);
+                        lot.clear();
+                    }
+                }
+            }
+            LocalDateTime[] fins = new LocalDateTime[granularites.length];
+            for (int g = 0; g < granularites.length; g++) {
+                if (courants[g] != null) {
+                    lot.put(courants[g], cumuls[g]);
+                }
+                fins[g] = granularites[g].debut(borne);
+            }
+            ecrireLot(campagneId, granularites, lot, fins);
+        }
+
+        /**
+         * Remplace, dans une transaction séparée et sous le verrou exclusif de la table, les intervalles d'une campagne
+         * compris entre le curseur de chaque granularité et la fin de la plage couverte par un lot, puis avance les curseurs.
+         * L'intervalle à cheval sur la borne, hors des plages, reçoit les dons antérieurs en plus de ses cumuls.
+         */
+        private void ecrireLot(Long campagneId, Granularite[] granularites, Map<StatDonId, Cumul> lot, LocalDateTime[] fins) {
+            verrouTable.writeLock().lock();
+            try {
+                transactionLot.executeWithoutResult(statut -> {
+                    for (int g = 0; g < granularites.length; g++) {
+                        statDonRepository.supprimerEntre(campagneId, granularites[g], curseursReconstruction[g], fins[g]);
+                    }
+                    lot.forEach((id, cumul) -> cumuler(id, cumul.nombre.sum(), cumul.centimes.sum()));
+                });
+                System.arraycopy(fins, 0, curseursReconstruction, 0, fins.length);
+            } finally {
+                verrouTable.writeLock().unlock();
+            }
+        }
+
+        /**
+         * @return true si l'intervalle appartient à la campagne en cours de reconstruction et n'a pas encore été remplacé
+         */
+        private boolean enCoursDeRemplacement(StatDonId id) {
+            return id.getCampagneId().equals(campagneReconstruite)
+                    && !id.getDebut().isBefore(curseursReconstruction[id.getGranularite().ordinal()])
+                    && id.getDebut().isBefore(id.getGranularite().debut(borneReconstruction));
+        }
+
+        /**
+         * Ajoute des dons à un intervalle, en le créant s'il n'existe pas encore.
+         */
+        private void cumuler(StatDonId id, long nombre, long centimes) {
+            StatDon stat = entityManager.find(StatDon.class, id);
+            if (stat == null) {
+                stat = new StatDon(id);
+                entityManager.persist(stat);
+            }
+            stat.ajouter(nombre, Montant.deCentimes(centimes));
+        }
+
+        private static long enCentimes(Montant montant) {
+            return montant == null ? 0L : montant.centimes();
+        }
+
+        /**
+         * Cumul mutable d'un intervalle.
+         */
+        private static final class Cumul {
+            private final LongAdder nombre = new LongAdder();
+            private final LongAdder centimes = new LongAdder();
+
+            private void ajouter(long nombreDons, long centimesDons) {
+                nombre.add(nombreDons);
+                centimes.add(centimesDons);
+            }
+        }
+}
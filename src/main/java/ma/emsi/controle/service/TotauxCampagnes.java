@@ -0,0 +1,334 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.TotalDonsCampagne;
+import ma.emsi.controle.repository.DonRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totaux de dons par campagne maintenus en mémoire (nombre de dons, montant collecté, date du dernier don).
+ * Les compteurs sont des LongAdder, ce qui permet aux threads de dons concurrents de les mettre à jour
+ * sans verrou. Les montants sont cumulés en centimes, sans allocation à chaque don.
+ * Les totaux sont reconstruits depuis la base au démarrage puis alimentés après chaque commit de don.
+ * <p>
+ * L'application reçoit des dons pendant la reconstruction : les dons notifiés pendant celle-ci sont rejoués sur
+ * les nouveaux compteurs, sauf ceux que la requête de reconstruction a déjà comptés. Ceux validés avant la
+ * requête mais notifiés après la reconstruction sont ignorés à leur notification.
+ */
+@Component
+public class TotauxCampagnes {
+
+        /**
+         * Repository pour reconstruire les totaux depuis la base
+         */
+        private final DonRepository donRepository;
+
+        /**
+         * Compteurs par identifiant de campagne, remplacés en bloc lors d'une reconstruction
+         */
+        private volatile ConcurrentHashMap<Long, Compteurs> compteurs = new ConcurrentHashMap<>();
+
+        /**
+         * Nombre de modifications des totaux (dons ajoutés, reconstructions), toutes campagnes confondues
+         */
+        private final LongAdder modifications = new LongAdder();
+
+        /**
+         * Nombre maximal d'identifiants par vérification de leur présence en base
+         */
+        private static final int IDENTIFIANTS_PAR_REQUETE = 1000;
+
+        /**
+         * Identifiants des dons publiés dans une transaction dont l'issue n'a pas encore été notifiée
+         */
+        private final Set<Long> donsEnCours = ConcurrentHashMap.newKeySet();
+
+        /**
+         * Dons notifiés pendant une reconstruction, rejoués sur les nouveaux compteurs s'ils n'ont pas été comptés
+         * par celle-ci
+         */
+        private List<DonEnregistreEvent> donsPendantReconstruction;
+
+        /**
+         * Dons comptés par la dernière reconstruction mais pas encore notifiés : leur notification est ignorée
+         */
+        private final Set<Long> donsDejaComptes = new HashSet<>();
+
+        /**
+         * Vrai pendant une reconstruction, puis tant que des dons déjà comptés restent à notifier :
+         * les notifications passent alors par un traitement synchronisé
+         */
+        private volatile boolean reconstructionEnCours;
+
+        /**
+         * Constructeur avec injection de dépendances via Spring
+         *
+         * @param donRepository Repository des dons
+         */
+        @Autowired
+        public TotauxCampagnes(DonRepository donRepository) {
+            this.donRepository = donRepository;
+        }
+
+        /**
+         * Reconstruit l'ensemble des totaux à partir de la table des dons.
+         * Appelée au démarrage de l'application, après l'initialisation des données.
+         * La lecture se fait dans une transaction en écriture, servie par la base principale : les dons déjà notifiés
+         * doivent tous figurer dans les totaux relus. L'isolation REPEATABLE_READ fige l'état de la base à la
+         * première requête : la présence des dons notifiés pendant la reconstruction est vérifiée dans ce même état.
+         */
+        @EventListener(ApplicationReadyEvent.class)
+        @Transactional(isolation = Isolation.REPEATABLE_READ)
+        public void reconstruire() {
+            synchronized (this) {
+                donsPendantReconstruction = new ArrayList<>();
+                reconstructionEnCours = true;
+            }
+            try {
+                ConcurrentHashMap<Long, Compteurs> nouveaux = new ConcurrentHashMap<>();
+                for (TotalDonsCampagne total : donRepository.calculerTotauxParCampagne()) {
+                    Compteurs c = new Compteurs();
+                    c.nombreDons.add(total.nombreDons());
+                    c.centimes.add(total.montantTotal().centimes());
+                    c.dernierDon.set(total.dernierDon());
+                    nouveaux.put(total.campagneId(), c);
+                }
+                synchronized (this) {
+                    // Dons notifiés pendant la requête ou validés sans être encore notifiés : seuls ceux absents
+                    // de l'état lu par la requête restent à compter
+                    Set<Long> candidats = new HashSet<>(donsEnCours);
+                    donsPendantReconstruction.forEach(event -> candidats.add(event.donId()));
+                    Set<Long> comptes = trouverIdentifiants(candidats);
+                    for (DonEnregistreEvent event : donsPendantReconstruction) {
+                        if (!comptes.remove(event.donId())) {
+                            ajouter(nouveaux, event.campagneId(), event.montant(), event.date());
+                        }
+                    }
+                    donsDejaComptes.clear();
+                    donsDejaComptes.addAll(comptes);
+                    donsPendantReconstruction = null;
+                    compteurs = nouveaux;
+                    reconstructionEnCours = !donsDejaComptes.isEmpty();
+                }
+                modifications.increment();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    donsPendantReconstruction = null;
+                    reconstructionEnCours = !donsDejaComptes.isEmpty();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Note le don publié dans une transaction en cours, jusqu'à la notification de son commit ou de son annulation.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @EventListener
+        public void onDonPublie(DonEnregistreEvent event) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                donsEnCours.add(event.donId());
+            }
+        }
+
+        /**
+         * Met à jour les totaux une fois la transaction du don validée,
+         * avant les autres abonnés qui peuvent lire ces totaux (diffusion en direct).
+         * Hors reconstruction, le don est ajouté sans verrou ; si une reconstruction a commencé ou remplacé
+         * les compteurs entre-temps, il passe par le traitement synchronisé.
+         *
+         * @param event L'événement de don enregistré
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        public void onDonEnregistre(DonEnregistreEvent event) {
+            ConcurrentHashMap<Long, Compteurs> actuels = compteurs;
+            if (reconstructionEnCours) {
+                notifierPendantReconstruction(event, null);
+                return;
+            }
+            ajouter(actuels, event.campagneId(), event.montant(), event.date());
+            if (reconstructionEnCours || compteurs != actuels) {
+                notifierPendantReconstruction(event, actuels);
+                return;
+            }
+            donsEnCours.remove(event.donId());
+            if (reconstructionEnCours) {
+                // Une reconstruction a pu lire ce don en cours après son ajout aux anciens compteurs
+                synchronized (this) {
+                    donsDejaComptes.remove(event.donId());
+                    reconstructionEnCours = donsPendantReconstruction != null || !donsDejaComptes.isEmpty();
+                }
+            }
+        }
+
+        /**
+         * Oublie le don d'une transaction annulée.
+         *
+         * @param event L'événement de don publié dans la transaction annulée
+         */
+        @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+        public void onDonAnnule(DonEnregistreEvent event) {
+            donsEnCours.remove(event.donId());
+        }
+
+        /**
+         * Ajoute un don aux totaux d'une campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param montant Montant du don
+         * @param date Date du don
+         */
+        public void ajouterDon(Long campagneId, Montant montant, LocalDateTime date) {
+            ajouter(compteurs, campagneId, montant, date);
+        }
+
+        /**
+         * Traite la notification d'un don pendant une reconstruction ou juste après : pendant la reconstruction,
+         * le don est ajouté aux compteurs actuels et gardé pour être rejoué ; après, il n'est ajouté que s'il
+         * n'a pas été compté par la reconstruction.
+         *
+         * @param event L'événement de don enregistré
+         * @param dejaAjouteA Compteurs auxquels le don a déjà été ajouté, null sinon
+         */
+        private synchronized void notifierPendantReconstruction(DonEnregistreEvent event,
+                                                                ConcurrentHashMap<Long, Compteurs> dejaAjouteA) {
+            if (donsPendantReconstruction != null) {
+                donsPendantReconstruction.add(event);
+                if (dejaAjouteA != compteurs) {
+                    ajouter(compteurs, event.campagneId(), event.montant(), event.date());
+                }
+            } else if (!donsDejaComptes.remove(event.donId()) && dejaAjouteA != compteurs) {
+                ajouter(compteurs, event.campagneId(), event.montant(), event.date());
+            }
+            donsEnCours.remove(event.donId());
+            reconstructionEnCours = donsPendantReconstruction != null || !donsDejaComptes.isEmpty();
+        }
+
+        /**
+         * @return Parmi des identifiants de dons, ceux présents dans l'état de la base lu par la transaction courante
+         */
+        private Set<Long> trouverIdentifiants(Set<Long> ids) {
+            Set<Long> trouves = new HashSet<>();
+            List<Long> paquet = new ArrayList<>(Math.min(ids.size(), IDENTIFIANTS_PAR_REQUETE));
+            for (Long id : ids) {
+                paquet.add(id);
+                if (paquet.size() == IDENTIFIANTS_PAR_REQUETE) {
+                    trouves.addAll(donRepository.trouverIdentifiants(paquet));
+                    paquet.clear();
+                }
+            }
+            if (!paquet.isEmpty()) {
+                trouves.addAll(donRepository.trouverIdentifiants(paquet));
+            }
+            return trouves;
+        }
+
+        private void ajouter(ConcurrentHashMap<Long, Compteurs> cible, Long campagneId, Montant montant,
+                             LocalDateTime date) {
+            Compteurs c = cible.computeIfAbsent(campagneId, id -> new Compteurs());
+            c.nombreDons.increment();
+            c.centimes.add(montant.centimes());
+            c.dernierDon.accumulateAndGet(date, (actuel, nouveau) ->
+                    actuel == null || nouveau.isAfter(actuel) ? nouveau : actuel);
+            modifications.increment();
+        }
+
+        /**
+         * Corrige les totaux d'une campagne d'après un recomptage de ses dons en base (voir ReconciliationTotaux).
+         * Les écarts sont ajoutés aux compteurs plutôt que de les remplacer, et la date du dernier don ne peut
+         * qu'avancer : un don notifié pendant la correction reste compté et reste le dernier don.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @param ecartNombreDons Nombre de dons à ajouter (négatif pour en retirer)
+         * @param ecartCentimes Montant à ajouter, en centimes (négatif pour en retirer)
+         * @param dernierDon Date du dernier don recompté, null si la campagne n'a aucun don
+         */
+        public void corriger(Long campagneId, long ecartNombreDons, long ecartCentimes, LocalDateTime dernierDon) {
+            Compteurs c = compteurs.computeIfAbsent(campagneId, id -> new Compteurs());
+            c.nombreDons.add(ecartNombreDons);
+            c.centimes.add(ecartCentimes);
+            c.dernierDon.accumulateAndGet(dernierDon, (actuel, recompte) ->
+                    actuel == null || recompte != null && recompte.isAfter(actuel) ? recompte : actuel);
+            modifications.increment();
+        }
+
+        /**
+         * Retourne la version des totaux : elle augmente à chaque modification, quelle que soit la campagne.
+         * Deux lectures de même valeur encadrent une période sans modification, ce qui permet de réutiliser
+         * une réponse calculée à partir des totaux.
+         *
+         * @return La version courante des totaux
+         */
+        public long getVersion() {
+            return modifications.sum();
+        }
+
+        /**
+         * Retourne une copie des totaux d'une campagne.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Les totaux, ou Totaux.AUCUN si la campagne n'a reçu aucun don
+         */
+        public Totaux getTotaux(Long campagneId) {
+            Compteurs c = compteurs.get(campagneId);
+            if (c == null) {
+                return Totaux.AUCUN;
+            }
+            return new Totaux(c.nombreDons.sum(), Montant.deCentimes(c.centimes.sum()), c.dernierDon.get());
+        }
+
+        /**
+         * Retourne le montant collecté d'une campagne en centimes, sans allocation.
+         *
+         * @param campagneId Identifiant de la campagne
+         * @return Le montant collecté en centimes, 0 si la campagne n'a reçu aucun don
+         */
+        public long getCentimes(Long campagneId) {
+            Compteurs c = compteurs.get(campagneId);
+            return c == null ? 0L : c.centimes.sum();
+        }
+
+        /**
+         * Compteurs mutables d'une campagne.
+         */
+        private static final class Compteurs {
+            private final LongAdder nombreDons = new LongAdder();
+            private final LongAdder centimes = new LongAdder();
+            private final AtomicReference<LocalDateTime> dernierDon = new AtomicReference<>();
+        }
+
+        /**
+         * Vue immuable des totaux d'une campagne à un instant donné.
+         *
+         * @param nombreDons Nombre de dons reçus
+         * @param montantCollecte Somme des montants reçus
+         * @param dernierDon Date du dernier don, ou null
+         */
+        public record Totaux(long nombreDons, Montant montantCollecte, LocalDateTime dernierDon) {
+            /**
+             * Totaux d'une campagne n'ayant reçu aucun don
+             */
+            public static final Totaux AUCUN = new Totaux(0L, Montant.ZERO, null);
+        }
+}
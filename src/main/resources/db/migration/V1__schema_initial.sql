@@ -0,0 +1,60 @@
+-- Schéma tel que le créait Hibernate (ddl-auto=update) avant le passage aux migrations.
+-- Les colonnes version, montant_collecte et statut de campagne restent nullables : les campagnes
+-- créées avant le suivi des objectifs sont complétées au démarrage (ObjectifsCampagnes.initialiser).
+
+CREATE SEQUENCE donation_seq START WITH 1 INCREMENT BY 50;
+
+CREATE SEQUENCE increment_campagne_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE campagne (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    nom VARCHAR(255) NOT NULL,
+    objectif_montant NUMERIC(38, 2) NOT NULL,
+    date_debut DATE NOT NULL,
+    date_fin DATE NOT NULL,
+    version BIGINT,
+    montant_collecte NUMERIC(38, 2),
+    statut ENUM('FINANCEE', 'OUVERTE'),
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE donation (
+    id BIGINT NOT NULL,
+    campagne_id BIGINT,
+    nom_donateur VARCHAR(255) NOT NULL,
+    montant NUMERIC(38, 2) NOT NULL,
+    date TIMESTAMP(6),
+    PRIMARY KEY (id)
+);
+
+-- Créé avant la clé étrangère, qui s'en sert au lieu de créer son propre index sur campagne_id
+CREATE INDEX idx_donation_campagne_date_id ON donation (campagne_id, date, id);
+
+ALTER TABLE donation ADD CONSTRAINT fk_donation_campagne FOREIGN KEY (campagne_id) REFERENCES campagne;
+
+CREATE TABLE increment_campagne (
+    id BIGINT NOT NULL,
+    campagne_id BIGINT,
+    montant NUMERIC(38, 2),
+    nombre_dons INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE stat_don (
+    campagne_id BIGINT NOT NULL,
+    granularite ENUM('HEURE', 'JOUR', 'MINUTE') NOT NULL,
+    debut TIMESTAMP(6) NOT NULL,
+    nombre_dons BIGINT NOT NULL,
+    montant_total NUMERIC(38, 2),
+    PRIMARY KEY (campagne_id, debut, granularite)
+);
+
+CREATE TABLE cle_idempotence (
+    cle VARCHAR(100) NOT NULL,
+    empreinte VARCHAR(64) NOT NULL,
+    don_id BIGINT NOT NULL,
+    date_creation TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (cle)
+);
+
+CREATE INDEX idx_cle_idempotence_date ON cle_idempotence (date_creation);
@@ -0,0 +1,4 @@
+-- Campagnes actives à une date (findActiveCampagnesAsResume, findProchaineFinActive) et prochain début
+-- (findProchainDebut) : parcours de la plage date_debut <= :date, date_fin lue dans l'index.
+-- Le plan H2 de chaque requête des repositories est vérifié par PlansRequetesIntegrationTest.
+CREATE INDEX idx_campagne_dates ON campagne (date_debut, date_fin);
@@ -0,0 +1,31 @@
+-- Contrôle nocturne des montants collectés (ReconciliationTotaux) : une ligne par exécution et une ligne par partition
+-- d'identifiants de campagnes. Une partition marquée terminée n'est pas recontrôlée lorsque l'exécution reprend.
+
+CREATE TABLE reconciliation (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    debut TIMESTAMP(6) NOT NULL,
+    fin TIMESTAMP(6),
+    statut ENUM('EN_COURS', 'TERMINEE') NOT NULL,
+    parallelisme INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE TABLE partition_reconciliation (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    reconciliation_id BIGINT NOT NULL,
+    numero INTEGER NOT NULL,
+    campagne_debut BIGINT NOT NULL,
+    campagne_fin BIGINT NOT NULL,
+    terminee BOOLEAN NOT NULL,
+    campagnes INTEGER NOT NULL,
+    dons BIGINT NOT NULL,
+    ecarts_collecte INTEGER NOT NULL,
+    ecarts_memoire INTEGER NOT NULL,
+    reportees INTEGER NOT NULL,
+    duree_ms BIGINT NOT NULL,
+    attente_ms BIGINT NOT NULL,
+    fin TIMESTAMP(6),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_partition_reconciliation ON partition_reconciliation (reconciliation_id, numero);
@@ -0,0 +1,7 @@
+-- Numéro de suivi des dons reçus en écriture différée (PipelineDons), enregistré avec le don : un don rejoué depuis
+-- le journal après un arrêt survenu entre le commit et son marquage n'est pas inséré une seconde fois.
+-- Nul pour les autres dons ; l'index unique admet plusieurs valeurs nulles.
+
+ALTER TABLE donation ADD COLUMN suivi VARCHAR(36);
+
+CREATE UNIQUE INDEX idx_donation_suivi ON donation (suivi);
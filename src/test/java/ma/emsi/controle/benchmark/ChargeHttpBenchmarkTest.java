@@ -0,0 +1,137 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test de charge HTTP de POST /api/campagnes/{id}/dons : N clients concurrents envoient des dons en boucle
+ * fermée pendant une durée fixe, puis le débit et les latences p50/p99 sont affichés.
+ * Le mode d'exécution mesuré est celui de la configuration, pour comparer les deux modes :
+ * <pre>
+ * mvn test -Pbenchmark,java21 -Dtest=ChargeHttpBenchmarkTest
+ * mvn test -Pbenchmark,java21 -Dtest=ChargeHttpBenchmarkTest -Dspring.threads.virtual.enabled=true
+ * </pre>
+ * Paramètres : -Dbench.clients=1000,5000,10000 (défaut) et -Dbench.duree=10 (secondes par palier).
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "server.tomcat.max-connections=20000",
+        "server.tomcat.accept-count=10000"
+})
+public class ChargeHttpBenchmarkTest {
+
+        private static final List<Integer> PALIERS = Arrays.stream(System.getProperty("bench.clients", "1000,5000,10000").split(","))
+                .map(String::trim).map(Integer::valueOf).toList();
+
+        private static final Duration DUREE = Duration.ofSeconds(Long.getLong("bench.duree", 10));
+
+        @LocalServerPort
+        private int port;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private FabriqueThreads fabriqueThreads;
+
+        /**
+         * Exécute chaque palier de clients concurrents et affiche débit et latences.
+         */
+        @Test
+        void mesurerDebitEtLatences() throws InterruptedException {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne benchmark charge");
+            campagne.setObjectifMontant(Montant.parse("1000000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            Long campagneId = campagneRepository.save(campagne).getId();
+
+            HttpRequest requete = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/campagnes/" + campagneId + "/dons"))
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"nomDonateur\": \"Donateur charge\", \"montant\": 10.00}"))
+                    .build();
+            ExecutorService executeurClient = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(60))
+                    .executor(executeurClient)
+                    .build();
+
+            String mode = fabriqueThreads.isVirtuels() ? "virtuels" : "plateforme";
+            for (int clients : PALIERS) {
+                executer(client, requete, Math.min(clients, 200), Duration.ofSeconds(2));
+                Mesure mesure = executer(client, requete, clients, DUREE);
+                System.out.printf("[threads %s] %6d clients : %8.0f requêtes/s, p50 %6.1f ms, p99 %7.1f ms, %d erreur(s)%n",
+                        mode, clients, mesure.debit(), mesure.p50Ms(), mesure.p99Ms(), mesure.erreurs());
+            }
+            executeurClient.shutdown();
+        }
+
+        private Mesure executer(HttpClient client, HttpRequest requete, int clients, Duration duree) throws InterruptedException {
+            ConcurrentLinkedQueue<Long> latences = new ConcurrentLinkedQueue<>();
+            AtomicLong erreurs = new AtomicLong();
+            CountDownLatch termines = new CountDownLatch(clients);
+            long debut = System.nanoTime();
+            long fin = debut + duree.toNanos();
+            for (int i = 0; i < clients; i++) {
+                envoyer(client, requete, fin, latences, erreurs, termines);
+            }
+            termines.await();
+            double secondes = (System.nanoTime() - debut) / 1e9;
+
+            long[] triees = latences.stream().mapToLong(Long::longValue).sorted().toArray();
+            if (triees.length == 0) {
+                return new Mesure(0, 0, 0, erreurs.get());
+            }
+            return new Mesure(triees.length / secondes,
+                    triees[(int) (triees.length * 0.50)] / 1e6,
+                    triees[Math.min(triees.length - 1, (int) (triees.length * 0.99))] / 1e6,
+                    erreurs.get());
+        }
+
+        /**
+         * Envoie une requête puis, à sa réponse, la suivante tant que la durée du palier n'est pas écoulée.
+         */
+        private void envoyer(HttpClient client, HttpRequest requete, long fin, ConcurrentLinkedQueue<Long> latences,
+                             AtomicLong erreurs, CountDownLatch termines) {
+            long debut = System.nanoTime();
+            client.sendAsync(requete, HttpResponse.BodyHandlers.discarding()).whenComplete((reponse, erreur) -> {
+                if (erreur != null || reponse.statusCode() != 201) {
+                    erreurs.incrementAndGet();
+                } else {
+                    latences.add(System.nanoTime() - debut);
+                }
+                if (System.nanoTime() < fin) {
+                    envoyer(client, requete, fin, latences, erreurs, termines);
+                } else {
+                    termines.countDown();
+                }
+            });
+        }
+
+        private record Mesure(double debit, double p50Ms, double p99Ms, long erreurs) {
+        }
+}
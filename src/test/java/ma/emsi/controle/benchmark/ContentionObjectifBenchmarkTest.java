@@ -0,0 +1,118 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ObjectifsCampagnes;
+import ma.emsi.controle.service.ServiceDon;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mesure de contention : de nombreux donateurs simultanés sur une seule campagne, jusqu'à ce qu'elle soit financée.
+ * Vérifie aussi qu'aucun don accepté n'est perdu par la fusion des montants collectés.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+public class ContentionObjectifBenchmarkTest {
+
+        /**
+         * Nombre de threads donateurs
+         */
+        private static final int THREADS = Integer.getInteger("bench.threads", 500);
+
+        /**
+         * Nombre maximal de dons par thread
+         */
+        private static final int DONS_PAR_THREAD = Integer.getInteger("bench.dons-par-thread", 40);
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        /**
+         * Les donateurs visent une campagne dont l'objectif vaut la moitié des dons tentés :
+         * elle doit être close en cours de mesure et les dons suivants refusés.
+         */
+        @Test
+        void donateursSimultanesSurUneCampagne() throws InterruptedException {
+            Montant montant = Montant.parse("10.00");
+            Montant objectif = Montant.deCentimes(montant.centimes() * (THREADS * DONS_PAR_THREAD / 2));
+            Long campagneId = creerCampagne(objectif).getId();
+
+            AtomicInteger acceptes = new AtomicInteger();
+            AtomicInteger refuses = new AtomicInteger();
+            AtomicLong dureeMaxNanos = new AtomicLong();
+            CountDownLatch depart = new CountDownLatch(1);
+            List<Thread> donateurs = new ArrayList<>(THREADS);
+            for (int t = 0; t < THREADS; t++) {
+                DonDTO don = new DonDTO();
+                don.setNomDonateur("Donateur " + t);
+                don.setMontant(montant);
+                Thread donateur = new Thread(() -> {
+                    try {
+                        depart.await();
+                        for (int i = 0; i < DONS_PAR_THREAD; i++) {
+                            long debut = System.nanoTime();
+                            serviceDon.enregistrerDon(campagneId, don);
+                            dureeMaxNanos.accumulateAndGet(System.nanoTime() - debut, Math::max);
+                            acceptes.incrementAndGet();
+                        }
+                    } catch (IllegalStateException e) {
+                        refuses.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                donateur.start();
+                donateurs.add(donateur);
+            }
+
+            long debut = System.nanoTime();
+            depart.countDown();
+            for (Thread donateur : donateurs) {
+                donateur.join();
+            }
+            double secondes = (System.nanoTime() - debut) / 1e9;
+            objectifsCampagnes.fusionner();
+
+            Campagne campagne = campagneRepository.findById(campagneId).orElseThrow();
+            System.out.printf("Contention : %d threads, %d dons acceptés en %.1f s (%.0f dons/s, pire latence %.0f ms), "
+                            + "%d donateurs refusés après clôture, collecté %s pour un objectif de %s%n",
+                    THREADS, acceptes.get(), secondes, acceptes.get() / secondes, dureeMaxNanos.get() / 1e6,
+                    refuses.get(), campagne.getMontantCollecte(), objectif);
+
+            assertEquals(0, Montant.deCentimes(montant.centimes() * acceptes.get()).compareTo(campagne.getMontantCollecte()));
+            assertEquals(StatutCampagne.FINANCEE, campagne.getStatut());
+            assertTrue(campagne.getMontantCollecte().compareTo(objectif) >= 0);
+        }
+
+        private Campagne creerCampagne(Montant objectif) {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne benchmark contention");
+            campagne.setObjectifMontant(objectif);
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+}
@@ -0,0 +1,98 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ImportDonnees;
+import ma.emsi.controle.service.ServiceDon;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mesure du débit de l'import en masse d'un fichier CSV de dons, comparé à l'enregistrement unitaire.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark -Dtest=ImportDonsBenchmarkTest
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+public class ImportDonsBenchmarkTest {
+
+        /**
+         * Nombre de lignes du fichier importé
+         */
+        private static final int NOMBRE_LIGNES = Integer.getInteger("bench.lignes", 1_000_000);
+
+        /**
+         * Nombre de dons enregistrés un par un pour la comparaison
+         */
+        private static final int NOMBRE_UNITAIRES = Integer.getInteger("bench.unitaires", 10_000);
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private ImportDonnees importDonnees;
+
+        @TempDir
+        private Path repertoire;
+
+        /**
+         * Compare les lignes par seconde de l'import et de l'enregistrement unitaire.
+         */
+        @Test
+        void comparerImportEtUnitaire() throws IOException {
+            Long campagneId = creerCampagne().getId();
+            Path fichier = repertoire.resolve("dons.csv");
+            try (BufferedWriter sortie = Files.newBufferedWriter(fichier, StandardCharsets.UTF_8)) {
+                sortie.write("campagneId,nomDonateur,montant,date\n");
+                for (int i = 0; i < NOMBRE_LIGNES; i++) {
+                    sortie.write(campagneId + ",Donateur " + i + "," + (1 + i % 500) + ".50,2025-04-01T10:30:00\n");
+                }
+            }
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur unitaire");
+            don.setMontant(Montant.parse("10.00"));
+
+            // Préchauffage de l'enregistrement unitaire
+            for (int i = 0; i < 500; i++) {
+                serviceDon.enregistrerDon(campagneId, don);
+            }
+            long debut = System.nanoTime();
+            for (int i = 0; i < NOMBRE_UNITAIRES; i++) {
+                serviceDon.enregistrerDon(campagneId, don);
+            }
+            double unitaire = NOMBRE_UNITAIRES / ((System.nanoTime() - debut) / 1e9);
+
+            ImportDonnees.Progression progression = importDonnees.importer(fichier, ImportDonnees.Type.DONS,
+                    ImportDonnees.Format.CSV);
+            assertEquals(NOMBRE_LIGNES, progression.importees());
+
+            System.out.printf("Import de %d dons (%d Mo) : %d lignes/s, enregistrement unitaire %.0f dons/s (x%.1f)%n",
+                    NOMBRE_LIGNES, progression.octets() >> 20, progression.lignesParSeconde(), unitaire,
+                    progression.lignesParSeconde() / unitaire);
+        }
+
+        private Campagne creerCampagne() {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne benchmark import");
+            campagne.setObjectifMontant(Montant.parse("1000000000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+}
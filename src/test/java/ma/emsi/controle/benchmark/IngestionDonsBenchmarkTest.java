@@ -0,0 +1,89 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ServiceDon;
+import ma.emsi.controle.service.ServiceLotDons;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mesure du débit d'insertion de dons : enregistrement unitaire contre enregistrement par lots.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+public class IngestionDonsBenchmarkTest {
+
+        /**
+         * Nombre de dons insérés par mesure
+         */
+        private static final int NOMBRE_DONS = Integer.getInteger("bench.dons", 20_000);
+
+        /**
+         * Taille des lots envoyés au service d'ingestion par lots
+         */
+        private static final int TAILLE_LOT = 1000;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private ServiceLotDons serviceLotDons;
+
+        /**
+         * Compare les insertions par seconde des deux chemins d'écriture.
+         */
+        @Test
+        void comparerUnitaireEtLots() {
+            Long campagneId = creerCampagne().getId();
+            List<DonDTO> dons = new ArrayList<>(TAILLE_LOT);
+            for (int i = 0; i < TAILLE_LOT; i++) {
+                DonDTO don = new DonDTO();
+                don.setNomDonateur("Donateur " + i);
+                don.setMontant(Montant.parse("10.00"));
+                dons.add(don);
+            }
+
+            // Préchauffage des deux chemins
+            for (int i = 0; i < 500; i++) {
+                serviceDon.enregistrerDon(campagneId, dons.get(i));
+            }
+            serviceLotDons.enregistrerDons(campagneId, dons);
+
+            long debut = System.nanoTime();
+            for (int i = 0; i < NOMBRE_DONS; i++) {
+                serviceDon.enregistrerDon(campagneId, dons.get(i % TAILLE_LOT));
+            }
+            double unitaire = NOMBRE_DONS / ((System.nanoTime() - debut) / 1e9);
+
+            debut = System.nanoTime();
+            for (int i = 0; i < NOMBRE_DONS; i += TAILLE_LOT) {
+                serviceLotDons.enregistrerDons(campagneId, dons);
+            }
+            double parLots = NOMBRE_DONS / ((System.nanoTime() - debut) / 1e9);
+
+            System.out.printf("Ingestion de %d dons : unitaire %.0f insertions/s, par lots de %d %.0f insertions/s (x%.1f)%n",
+                    NOMBRE_DONS, unitaire, TAILLE_LOT, parLots, parLots / unitaire);
+        }
+
+        private Campagne creerCampagne() {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne benchmark ingestion");
+            campagne.setObjectifMontant(Montant.parse("1000000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+}
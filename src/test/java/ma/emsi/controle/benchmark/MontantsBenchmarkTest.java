@@ -0,0 +1,119 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.entities.Montant;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mesure du cumul des montants de dons par campagne, avec des montants en BigDecimal (avant) et en Montant,
+ * cumulés en centimes (après) : lecture du montant depuis son texte JSON puis cumul, et cumul seul de montants déjà lus.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class MontantsBenchmarkTest {
+
+        /**
+         * Nombre de dons cumulés par mesure
+         */
+        private static final int NOMBRE_DONS = Integer.getInteger("bench.dons", 10_000_000);
+
+        /**
+         * Nombre de campagnes
+         */
+        private static final int NOMBRE_CAMPAGNES = Integer.getInteger("bench.campagnes", 1_000);
+
+        /**
+         * Nombre de mesures par variante
+         */
+        private static final int ITERATIONS = Integer.getInteger("bench.iterations", 5);
+
+        /**
+         * Nombre de montants distincts, parcourus en boucle (puissance de 2)
+         */
+        private static final int MONTANTS = 1 << 16;
+
+        /**
+         * Durée et octets alloués sur le tas par cumul de NOMBRE_DONS dons, pour chaque variante.
+         */
+        @Test
+        void cumulDesMontants() {
+            SplittableRandom aleatoire = new SplittableRandom(42);
+            String[] textes = new String[MONTANTS];
+            BigDecimal[] decimaux = new BigDecimal[MONTANTS];
+            Montant[] montants = new Montant[MONTANTS];
+            int[] campagnes = new int[MONTANTS];
+            for (int i = 0; i < MONTANTS; i++) {
+                long centimes = 100 + aleatoire.nextInt(100_000);
+                textes[i] = BigDecimal.valueOf(centimes, 2).toPlainString();
+                decimaux[i] = new BigDecimal(textes[i]);
+                montants[i] = Montant.parse(textes[i]);
+                campagnes[i] = aleatoire.nextInt(NOMBRE_CAMPAGNES);
+            }
+
+            long lectureAvant = mesurer("lecture+cumul BigDecimal", () -> {
+                BigDecimal[] totaux = new BigDecimal[NOMBRE_CAMPAGNES];
+                Arrays.fill(totaux, BigDecimal.ZERO);
+                for (int i = 0; i < NOMBRE_DONS; i++) {
+                    int j = i & (MONTANTS - 1);
+                    totaux[campagnes[j]] = totaux[campagnes[j]].add(new BigDecimal(textes[j]));
+                }
+                return Arrays.stream(totaux).reduce(BigDecimal.ZERO, BigDecimal::add).unscaledValue().longValueExact();
+            });
+            long lectureApres = mesurer("lecture+cumul Montant", () -> {
+                long[] totaux = new long[NOMBRE_CAMPAGNES];
+                for (int i = 0; i < NOMBRE_DONS; i++) {
+                    int j = i & (MONTANTS - 1);
+                    totaux[campagnes[j]] += Montant.parse(textes[j]).centimes();
+                }
+                return Arrays.stream(totaux).sum();
+            });
+            assertEquals(lectureAvant, lectureApres);
+
+            long cumulAvant = mesurer("cumul BigDecimal", () -> {
+                BigDecimal[] totaux = new BigDecimal[NOMBRE_CAMPAGNES];
+                Arrays.fill(totaux, BigDecimal.ZERO);
+                for (int i = 0; i < NOMBRE_DONS; i++) {
+                    int j = i & (MONTANTS - 1);
+                    totaux[campagnes[j]] = totaux[campagnes[j]].add(decimaux[j]);
+                }
+                return Arrays.stream(totaux).reduce(BigDecimal.ZERO, BigDecimal::add).unscaledValue().longValueExact();
+            });
+            long cumulApres = mesurer("cumul Montant", () -> {
+                long[] totaux = new long[NOMBRE_CAMPAGNES];
+                for (int i = 0; i < NOMBRE_DONS; i++) {
+                    int j = i & (MONTANTS - 1);
+                    totaux[campagnes[j]] += montants[j].centimes();
+                }
+                return Arrays.stream(totaux).sum();
+            });
+            assertEquals(cumulAvant, cumulApres);
+            assertEquals(lectureAvant, cumulAvant);
+        }
+
+        private long mesurer(String variante, LongSupplier cumul) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long total = 0;
+            // Préchauffage
+            for (int i = 0; i < ITERATIONS; i++) {
+                total = cumul.getAsLong();
+            }
+            long octetsAvant = threads.getCurrentThreadAllocatedBytes();
+            long debut = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                total = cumul.getAsLong();
+            }
+            double millis = (System.nanoTime() - debut) / 1e6 / ITERATIONS;
+            double octets = (double) (threads.getCurrentThreadAllocatedBytes() - octetsAvant) / ITERATIONS;
+            System.out.printf("Montants : %-26s %.1f ms, %.0f Mo alloués pour %d dons (%.1f octets/don)%n",
+                    variante, millis, octets / 1e6, NOMBRE_DONS, octets / NOMBRE_DONS);
+            return total;
+        }
+}
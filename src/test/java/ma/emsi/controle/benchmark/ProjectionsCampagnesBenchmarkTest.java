@@ -0,0 +1,133 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.repository.CampagneRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mesure du chargement des campagnes actives : entités gérées, projections proxy par interface
+ * (telles que les construisait Spring Data) et projections record par expression constructeur.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "spring.jpa.show-sql=false")
+public class ProjectionsCampagnesBenchmarkTest {
+
+        /**
+         * Nombre de campagnes actives
+         */
+        private static final int NOMBRE_CAMPAGNES = Integer.getInteger("bench.campagnes", 10_000);
+
+        /**
+         * Nombre de chargements mesurés par variante
+         */
+        private static final int ITERATIONS = Integer.getInteger("bench.iterations", 50);
+
+        private static final String CONDITION = " FROM Campagne c WHERE c.dateDebut <= :currentDate AND c.dateFin >= :currentDate "
+                + "AND (c.statut IS NULL OR c.statut <> ma.emsi.controle.entities.StatutCampagne.FINANCEE)";
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private EntityManager entityManager;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        /**
+         * Projection par interface, telle que CampagneResume avant son passage en record
+         */
+        public interface ResumeProxy {
+            Long getId();
+
+            String getNom();
+
+            Montant getObjectifMontant();
+        }
+
+        /**
+         * Durée et octets alloués par chargement complet des campagnes actives, pour chaque variante.
+         */
+        @Test
+        void chargerCampagnesActives() {
+            List<Campagne> campagnes = new ArrayList<>(NOMBRE_CAMPAGNES);
+            for (int i = 0; i < NOMBRE_CAMPAGNES; i++) {
+                Campagne campagne = new Campagne();
+                campagne.setNom("Campagne projection " + i);
+                campagne.setObjectifMontant(Montant.parse("10000.00"));
+                campagne.setDateDebut(LocalDate.now().minusDays(1));
+                campagne.setDateFin(LocalDate.now().plusDays(30));
+                campagnes.add(campagne);
+            }
+            campagneRepository.saveAll(campagnes);
+            LocalDate aujourdhui = LocalDate.now();
+            SpelAwareProxyProjectionFactory fabrique = new SpelAwareProxyProjectionFactory();
+
+            int entites = mesurer("entités", () -> transactionTemplate.execute(statut -> {
+                List<Campagne> resultat = entityManager.createQuery("SELECT c" + CONDITION, Campagne.class)
+                        .setParameter("currentDate", aujourdhui).getResultList();
+                entityManager.clear();
+                return resultat.size();
+            }));
+            int proxies = mesurer("proxies", () -> transactionTemplate.execute(statut -> {
+                List<Tuple> lignes = entityManager.createQuery(
+                                "SELECT c.id AS id, c.nom AS nom, c.objectifMontant AS objectifMontant" + CONDITION, Tuple.class)
+                        .setParameter("currentDate", aujourdhui).getResultList();
+                List<ResumeProxy> resultat = new ArrayList<>(lignes.size());
+                for (Tuple ligne : lignes) {
+                    Map<String, Object> valeurs = new HashMap<>(4);
+                    valeurs.put("id", ligne.get("id"));
+                    valeurs.put("nom", ligne.get("nom"));
+                    valeurs.put("objectifMontant", ligne.get("objectifMontant"));
+                    resultat.add(fabrique.createProjection(ResumeProxy.class, valeurs));
+                }
+                return resultat.size();
+            }));
+            int records = mesurer("records", () -> {
+                List<CampagneResume> resultat = campagneRepository.findActiveCampagnesAsResume(aujourdhui);
+                return resultat.size();
+            });
+
+            assertEquals(entites, proxies);
+            assertEquals(entites, records);
+        }
+
+        private int mesurer(String variante, Supplier<Integer> chargement) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            int taille = 0;
+            // Préchauffage
+            for (int i = 0; i < ITERATIONS; i++) {
+                taille = chargement.get();
+            }
+            long octetsAvant = threads.getCurrentThreadAllocatedBytes();
+            long debut = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                taille = chargement.get();
+            }
+            double millis = (System.nanoTime() - debut) / 1e6 / ITERATIONS;
+            double octets = (double) (threads.getCurrentThreadAllocatedBytes() - octetsAvant) / ITERATIONS;
+            System.out.printf("Projections : %-8s %d campagnes, %.1f ms, %.0f Ko alloués par chargement (%.0f o par campagne)%n",
+                    variante, taille, millis, octets / 1024, octets / taille);
+            return taille;
+        }
+}
@@ -0,0 +1,126 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.service.ColonnesDons;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Mesure d'un rapport par campagne sur un grand historique de dons : stockage en colonnes hors du tas,
+ * comparé à une agrégation sur des objets du tas (montant en BigDecimal, date en LocalDateTime), telle que
+ * la ferait un parcours des entités Donation. Les dons de la variante objets restent tous sur le tas.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class RapportsDonsBenchmarkTest {
+
+        /**
+         * Nombre de dons
+         */
+        private static final int NOMBRE_DONS = Integer.getInteger("bench.dons", 5_000_000);
+
+        /**
+         * Nombre de campagnes
+         */
+        private static final int NOMBRE_CAMPAGNES = Integer.getInteger("bench.campagnes", 10_000);
+
+        /**
+         * Nombre de rapports mesurés par variante
+         */
+        private static final int ITERATIONS = Integer.getInteger("bench.iterations", 10);
+
+        private static final LocalDateTime ORIGINE = LocalDateTime.of(2020, 1, 1, 0, 0);
+
+        @TempDir
+        Path repertoire;
+
+        /**
+         * Don tel que lu depuis une entité
+         */
+        private record DonObjet(long campagneId, BigDecimal montant, LocalDateTime date) {
+        }
+
+        /**
+         * Durée et octets alloués sur le tas par rapport, pour chaque variante.
+         */
+        @Test
+        void rapportParCampagne() throws Exception {
+            SplittableRandom aleatoire = new SplittableRandom(42);
+            List<DonObjet> objets = new ArrayList<>(NOMBRE_DONS);
+            long tasAvant = tasUtilise();
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1 << 20)) {
+                for (int i = 0; i < NOMBRE_DONS; i++) {
+                    long campagneId = 1 + aleatoire.nextInt(NOMBRE_CAMPAGNES);
+                    long centimes = 100 + aleatoire.nextInt(100_000);
+                    LocalDateTime date = ORIGINE.plusSeconds(aleatoire.nextInt(4 * 365 * 86_400));
+                    colonnes.ajouter(i + 1, campagneId, centimes, date.toEpochSecond(ZoneOffset.UTC));
+                    objets.add(new DonObjet(campagneId, BigDecimal.valueOf(centimes, 2), date));
+                }
+                System.out.printf("Rapports : %d dons, %.0f Mo sur le tas pour les objets, %d segments hors du tas%n",
+                        NOMBRE_DONS, (tasUtilise() - tasAvant) / 1e6, colonnes.getNombreSegments());
+
+                LocalDateTime debut = ORIGINE.plusYears(1);
+                LocalDateTime fin = ORIGINE.plusYears(3);
+                ColonnesDons.Filtre filtre = new ColonnesDons.Filtre(null,
+                        debut.toEpochSecond(ZoneOffset.UTC), fin.toEpochSecond(ZoneOffset.UTC));
+                long totalColonnes = mesurer("colonnes", () -> somme(colonnes.agregerParCampagne(filtre).centimes()));
+                long totalObjets = mesurer("objets", () -> {
+                    Map<Long, BigDecimal> totaux = new HashMap<>();
+                    for (DonObjet don : objets) {
+                        if (!don.date().isBefore(debut) && don.date().isBefore(fin)) {
+                            totaux.merge(don.campagneId(), don.montant(), BigDecimal::add);
+                        }
+                    }
+                    return totaux.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add).unscaledValue().longValueExact();
+                });
+                assertEquals(totalObjets, totalColonnes);
+            }
+        }
+
+        private long mesurer(String variante, LongSupplier rapport) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long total = 0;
+            // Préchauffage
+            for (int i = 0; i < ITERATIONS; i++) {
+                total = rapport.getAsLong();
+            }
+            long octetsAvant = threads.getCurrentThreadAllocatedBytes();
+            long debut = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                total = rapport.getAsLong();
+            }
+            double millis = (System.nanoTime() - debut) / 1e6 / ITERATIONS;
+            double octets = (double) (threads.getCurrentThreadAllocatedBytes() - octetsAvant) / ITERATIONS;
+            System.out.printf("Rapports : %-8s %.1f ms, %.0f Ko alloués par rapport (%.1f Mdons/s)%n",
+                    variante, millis, octets / 1024, NOMBRE_DONS / millis / 1000);
+            return total;
+        }
+
+        private static long somme(long[] valeurs) {
+            long somme = 0;
+            for (long valeur : valeurs) {
+                somme += valeur;
+            }
+            return somme;
+        }
+
+        private static long tasUtilise() {
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+}
@@ -0,0 +1,107 @@
+package ma.emsi.controle.benchmark;
+
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.projection.CampagneRecherche;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.RechercheCampagnes;
+import ma.emsi.controle.service.TotauxCampagnes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mesure de la latence de la recherche de campagnes sur un index de 100 000 campagnes aux noms synthétiques.
+ * Exclu de la construction par défaut, lancé avec : mvn test -Pbenchmark
+ */
+@Tag("benchmark")
+public class RechercheCampagnesBenchmarkTest {
+
+        /**
+         * Nombre de campagnes indexées
+         */
+        private static final int NOMBRE_CAMPAGNES = Integer.getInteger("bench.campagnes", 100_000);
+
+        /**
+         * Nombre de recherches mesurées
+         */
+        private static final int RECHERCHES = 10_000;
+
+        /**
+         * Vocabulaire des noms de campagnes, volontairement réduit : chaque mot figure dans des milliers de noms
+         */
+        private static final String[] MOTS = {
+                "aide", "soutien", "étudiants", "recherche", "médicale", "enfants", "hôpital", "école", "bourses",
+                "réfugiés", "inondations", "séisme", "eau", "potable", "puits", "forêt", "reboisement", "animaux",
+                "refuge", "bibliothèque", "livres", "ordinateurs", "village", "rural", "femmes", "artisanes",
+                "cantine", "scolaire", "hiver", "couvertures", "ambulance", "dialyse", "cancer", "pédiatrie",
+                "handicap", "fauteuils", "orphelinat", "mosquée", "restauration", "patrimoine", "musique",
+                "sport", "terrain", "football", "jeunes", "emploi", "formation", "numérique", "solaire", "énergie"
+        };
+
+        /**
+         * Requêtes mesurées : mots complets, préfixes en cours de frappe et combinaisons
+         */
+        private static final String[] REQUETES = {
+                "médicale ", "recherche méd", "étud", "bourses étudiants ", "re", "pu", "aide aux enfants ",
+                "hopital pediatrie ", "reboisement forêt", "cantine sco", "sport", "inondations village ",
+                "numérique", "dialyse can", "patrimoine musique "
+        };
+
+        /**
+         * Latences médiane et au 99e centile de requêtes variées, limite de 20 résultats.
+         */
+        @Test
+        void latenceRecherche() {
+            Random aleatoire = new Random(42);
+            LocalDate aujourdhui = LocalDate.now();
+            List<CampagneRecherche> campagnes = new ArrayList<>(NOMBRE_CAMPAGNES);
+            TotauxCampagnes totaux = new TotauxCampagnes(null);
+            for (long id = 1; id <= NOMBRE_CAMPAGNES; id++) {
+                StringBuilder nom = new StringBuilder("Campagne");
+                for (int i = 2 + aleatoire.nextInt(4); i > 0; i--) {
+                    nom.append(' ').append(MOTS[aleatoire.nextInt(MOTS.length)]);
+                }
+                LocalDate debut = aujourdhui.plusDays(aleatoire.nextInt(60) - 45);
+                campagnes.add(new CampagneRecherche(id, nom.toString(), Montant.parse("100000.00"), debut,
+                        debut.plusDays(30), StatutCampagne.OUVERTE));
+                totaux.ajouterDon(id, Montant.deCentimes(aleatoire.nextInt(100_000) * 100L), LocalDateTime.now());
+            }
+            CampagneRepository campagneRepository = mock(CampagneRepository.class);
+            when(campagneRepository.findAllRecherche()).thenReturn(campagnes);
+            RechercheCampagnes recherche = new RechercheCampagnes(campagneRepository, totaux);
+            ReflectionTestUtils.setField(recherche, "resultatsMax", 100);
+
+            long debutIndexation = System.nanoTime();
+            recherche.reconstruire();
+            System.out.printf("Recherche : %d campagnes indexées en %.0f ms%n",
+                    recherche.getTaille(), (System.nanoTime() - debutIndexation) / 1e6);
+            assertEquals(NOMBRE_CAMPAGNES, recherche.getTaille());
+
+            // Préchauffage
+            for (int i = 0; i < RECHERCHES; i++) {
+                assertFalse(recherche.rechercher(REQUETES[i % REQUETES.length], 20).isEmpty());
+            }
+            long[] durees = new long[RECHERCHES];
+            for (int i = 0; i < RECHERCHES; i++) {
+                long debut = System.nanoTime();
+                recherche.rechercher(REQUETES[i % REQUETES.length], 20);
+                durees[i] = System.nanoTime() - debut;
+            }
+            Arrays.sort(durees);
+            System.out.printf("Recherche : %d requêtes, p50 %.1f µs, p99 %.1f µs, max %.1f µs%n", RECHERCHES,
+                    durees[RECHERCHES / 2] / 1e3, durees[RECHERCHES * 99 / 100] / 1e3, durees[RECHERCHES - 1] / 1e3);
+        }
+}
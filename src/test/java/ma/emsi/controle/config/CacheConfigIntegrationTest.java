@@ -0,0 +1,103 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ObjectifsCampagnes;
+import ma.emsi.controle.service.ServiceDon;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests d'intégration du cache de second niveau : campagnes et résultats de la requête des campagnes actives.
+ */
+@SpringBootTest
+public class CacheConfigIntegrationTest {
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private EntityManagerFactory entityManagerFactory;
+
+        /**
+         * Vérifie que la fusion des montants collectés lit les campagnes dans le cache et le garde à jour :
+         * la campagne relue ensuite est servie par le cache, avec le montant fusionné.
+         */
+        @Test
+        void testFusionServieParLeCache() {
+            CacheRegionStatistics region = statistiques().getDomainDataRegionStatistics(CacheConfig.REGION_CAMPAGNES);
+            Long campagneId = creerCampagne("Campagne cache").getId();
+
+            serviceDon.enregistrerDon(campagneId, don("10.00"));
+            objectifsCampagnes.fusionner();
+
+            long succes = region.getHitCount();
+            serviceDon.enregistrerDon(campagneId, don("15.00"));
+            objectifsCampagnes.fusionner();
+            assertEquals(succes + 1, region.getHitCount(), "la fusion doit lire la campagne dans le cache");
+
+            succes = region.getHitCount();
+            Campagne campagne = campagneRepository.findById(campagneId).orElseThrow();
+            assertEquals(succes + 1, region.getHitCount());
+            assertEquals(0, Montant.parse("25.00").compareTo(campagne.getMontantCollecte()));
+        }
+
+        /**
+         * Vérifie que la requête des campagnes actives est servie par le cache de requêtes,
+         * et que son résultat est invalidé par une écriture sur une campagne.
+         */
+        @Test
+        void testCampagnesActivesServiesParLeCacheDeRequetes() {
+            LocalDate aujourdhui = LocalDate.now();
+            List<CampagneResume> avant = campagneRepository.findActiveCampagnesAsResume(aujourdhui);
+            CacheRegionStatistics region = statistiques().getQueryRegionStatistics(CacheConfig.REGION_CAMPAGNES_ACTIVES);
+            long succes = region.getHitCount();
+
+            assertEquals(avant, campagneRepository.findActiveCampagnesAsResume(aujourdhui));
+            assertEquals(succes + 1, region.getHitCount());
+
+            Long campagneId = creerCampagne("Campagne cache de requêtes").getId();
+            List<CampagneResume> apres = campagneRepository.findActiveCampagnesAsResume(aujourdhui);
+            assertEquals(avant.size() + 1, apres.size());
+            assertTrue(apres.stream().anyMatch(resume -> resume.id().equals(campagneId)));
+        }
+
+        private Statistics statistiques() {
+            return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        }
+
+        private Campagne creerCampagne(String nom) {
+            Campagne campagne = new Campagne();
+            campagne.setNom(nom);
+            campagne.setObjectifMontant(Montant.parse("1000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+
+        private static DonDTO don(String montant) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur");
+            don.setMontant(Montant.parse(montant));
+            return don;
+        }
+}
@@ -0,0 +1,121 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.DTOs.CampagneActiveDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Montant;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests des sérialiseurs écrits à la main : le JSON produit doit être identique à celui de la sérialisation générique.
+ */
+public class JsonConfigTest {
+
+        /**
+         * ObjectMappers configurés comme celui de Spring Boot (dates au format ISO)
+         */
+        private final ObjectMapper generique = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).modulesToInstall(JsonConfig.moduleMontant()).build();
+
+        private final ObjectMapper ecritALaMain = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(JsonConfig.module(), JsonConfig.moduleMontant()).build();
+
+        /**
+         * Vérifie la sérialisation d'un DonDTO complet, partiel (valeurs nulles) et d'une date avec fraction de seconde.
+         */
+        @Test
+        void testSerialiserDon() throws Exception {
+            DonDTO complet = new DonDTO(12L, "Marie Dupont", Montant.parse("500.00"), LocalDateTime.of(2025, 4, 1, 10, 30));
+            complet.setNomCampagne("Campagne \"Été\"");
+            DonDTO partiel = new DonDTO();
+            partiel.setMontant(Montant.parse("1E+3"));
+            DonDTO precis = new DonDTO(13L, "Jean", Montant.parse("0.5"), LocalDateTime.of(2025, 4, 1, 10, 30, 5, 120_000_000));
+            DonDTO lointain = new DonDTO(14L, "Paul", Montant.parse("1"), LocalDateTime.of(12025, 12, 31, 23, 59, 59, 1));
+
+            for (DonDTO don : List.of(complet, partiel, precis, lointain)) {
+                assertEquals(generique.writeValueAsString(don), ecritALaMain.writeValueAsString(don));
+            }
+            assertTrue(ecritALaMain.writeValueAsString(precis).endsWith("\"date\":\"2025-04-01T10:30:05.12\"}"));
+        }
+
+        /**
+         * Vérifie que les dates restent écrites comme par Jackson lorsqu'elles sont configurées en tableaux.
+         */
+        @Test
+        void testDatesEnTableaux() throws Exception {
+            ObjectMapper generiqueTableaux = Jackson2ObjectMapperBuilder.json()
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).modulesToInstall(JsonConfig.moduleMontant()).build();
+            ObjectMapper ecritALaMainTableaux = Jackson2ObjectMapperBuilder.json()
+                    .featuresToEnable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .modulesToInstall(JsonConfig.module(), JsonConfig.moduleMontant()).build();
+            DonDTO don = new DonDTO(12L, "Marie Dupont", Montant.parse("500.00"), LocalDateTime.of(2025, 4, 1, 10, 30));
+
+            assertEquals(generiqueTableaux.writeValueAsString(don), ecritALaMainTableaux.writeValueAsString(don));
+        }
+
+        /**
+         * Vérifie la sérialisation d'une liste de CampagneActiveDTO, avec et sans dernier don.
+         */
+        @Test
+        void testSerialiserCampagnesActives() throws Exception {
+            List<CampagneActiveDTO> campagnes = List.of(
+                    new CampagneActiveDTO(1L, "Aide médicale", Montant.parse("5000.00"), Montant.parse("120.50"), 3,
+                            LocalDateTime.of(2025, 4, 1, 0, 0)),
+                    new CampagneActiveDTO(2L, "Rentrée scolaire", Montant.parse("3000.00"), Montant.parse("0.00"), 0, null));
+
+            String json = ecritALaMain.writeValueAsString(campagnes);
+            assertEquals(generique.writeValueAsString(campagnes), json);
+            assertTrue(json.endsWith("{\"id\":2,\"nom\":\"Rentrée scolaire\",\"objectifMontant\":3000.00,\"montantCollecte\":0.00,"
+                    + "\"nombreDons\":0,\"dernierDon\":null}]"), json);
+        }
+
+        /**
+         * Vérifie l'écriture des montants (2 décimales, négatifs) et leur lecture exacte depuis un nombre ou une chaîne.
+         */
+        @Test
+        void testMontants() throws Exception {
+            assertEquals("[12.50,-0.05,0.00,92233720368547758.07]", ecritALaMain.writeValueAsString(List.of(
+                    Montant.parse("12.5"), Montant.parse("-0.05"), Montant.ZERO, Montant.deCentimes(Long.MAX_VALUE))));
+
+            assertEquals(Montant.deCentimes(1200), ecritALaMain.readValue("12", Montant.class));
+            assertEquals(Montant.deCentimes(1250), ecritALaMain.readValue("12.500", Montant.class));
+            assertEquals(Montant.deCentimes(100_000), ecritALaMain.readValue("1E+3", Montant.class));
+            assertEquals(Montant.deCentimes(5), ecritALaMain.readValue("\"0.05\"", Montant.class));
+            assertEquals(Montant.deCentimes(123_456_789_012_345_678L), ecritALaMain.readValue("1234567890123456.78", Montant.class));
+
+            assertThrows(InvalidFormatException.class, () -> ecritALaMain.readValue("12.505", Montant.class));
+            assertThrows(InvalidFormatException.class, () -> ecritALaMain.readValue("\"douze\"", Montant.class));
+            assertThrows(InvalidFormatException.class, () -> ecritALaMain.readValue("99999999999999999999", Montant.class));
+        }
+
+        /**
+         * Vérifie qu'un montant à exposant démesuré est refusé immédiatement, en JSON comme en texte,
+         * au lieu d'occuper un processeur pendant le changement d'échelle.
+         */
+        @Test
+        void testMontantsExposantsExtremes() {
+            assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+                assertThrows(ArithmeticException.class, () -> Montant.parse("1e100000000"));
+                assertThrows(ArithmeticException.class, () -> Montant.parse("1e-100000000"));
+                assertThrows(ArithmeticException.class, () -> Montant.parse("-1E+100000000"));
+                assertThrows(InvalidFormatException.class, () -> ecritALaMain.readValue("1e100000000", Montant.class));
+                assertThrows(InvalidFormatException.class, () -> ecritALaMain.readValue("\"1e-100000000\"", Montant.class));
+                assertEquals(Montant.ZERO, Montant.parse("0E+100000000"));
+                assertEquals(Montant.deCentimes(1250), Montant.parse("1250000E-5"));
+                assertEquals(Montant.deCentimes(Long.MAX_VALUE), Montant.parse("9.223372036854775807E+16"));
+                assertThrows(ArithmeticException.class, () -> Montant.parse("9.3E+16"));
+            });
+        }
+}
@@ -0,0 +1,123 @@
+package ma.emsi.controle.config;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ServiceDonIdempotent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests d'intégration du routage des connexions, avec deux bases H2 distinctes pour la base principale et la réplique.
+ * La réplique n'étant pas alimentée par la base principale, une ligne présente dans une seule des deux bases
+ * indique la base interrogée.
+ */
+@SpringBootTest(properties = "dons.idempotence.capacite=0")
+public class SourcesDonneesConfigIntegrationTest {
+
+        private static final String URL_REPLIQUE = "jdbc:h2:mem:replique-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ServiceDonIdempotent serviceDonIdempotent;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        @Autowired
+        private MeterRegistry meterRegistry;
+
+        @Autowired
+        @Qualifier("sourcePrincipale")
+        private DataSource sourcePrincipale;
+
+        @Autowired
+        @Qualifier("sourceReplique")
+        private DataSource sourceReplique;
+
+        /**
+         * Crée le schéma de la réplique avant le démarrage de l'application.
+         */
+        @DynamicPropertySource
+        static void replique(DynamicPropertyRegistry registry) {
+            Flyway.configure().dataSource(URL_REPLIQUE, "sa", "").load().migrate();
+            registry.add("base.replique.jdbc-url", () -> URL_REPLIQUE);
+        }
+
+        /**
+         * Vérifie que les lectures en lecture seule sont servies par la réplique,
+         * et qu'une transaction en écriture lit la base principale.
+         */
+        @Test
+        void testLecturesSurLaReplique() {
+            new JdbcTemplate(sourceReplique).update("INSERT INTO campagne (id, nom, objectif_montant, date_debut, date_fin) "
+                    + "VALUES (1000000, 'Campagne de la réplique', 100.00, CURRENT_DATE, CURRENT_DATE)");
+
+            assertTrue(campagneRepository.findInfoById(1000000L).isPresent());
+            assertTrue(transactionTemplate.execute(statut -> campagneRepository.findInfoById(1000000L)).isEmpty());
+        }
+
+        /**
+         * Vérifie que les écritures sont faites sur la base principale.
+         */
+        @Test
+        void testEcrituresSurLaBasePrincipale() {
+            Long campagneId = creerCampagne().getId();
+
+            String compter = "SELECT COUNT(*) FROM campagne WHERE id = ?";
+            assertEquals(1, new JdbcTemplate(sourcePrincipale).queryForObject(compter, Integer.class, campagneId));
+            assertEquals(0, new JdbcTemplate(sourceReplique).queryForObject(compter, Integer.class, campagneId));
+        }
+
+        /**
+         * Vérifie qu'un don rejoué, absent de la mémoire (capacité nulle), est relu sur la base principale :
+         * la réplique n'a ni la clé ni le don.
+         */
+        @Test
+        void testDonRejoueReluSurLaBasePrincipale() {
+            Long campagneId = creerCampagne().getId();
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur");
+            don.setMontant(Montant.parse("10.00"));
+
+            DonDTO premier = serviceDonIdempotent.enregistrerDon("cle-replique", campagneId, don);
+            DonDTO rejoue = serviceDonIdempotent.enregistrerDon("cle-replique", campagneId, don);
+            assertEquals(premier.getId(), rejoue.getId());
+        }
+
+        /**
+         * Vérifie que les deux pools sont dimensionnés séparément.
+         */
+        @Test
+        void testPoolsDistincts() {
+            assertEquals(10, meterRegistry.get("hikaricp.connections.max").tag("pool", "principale").gauge().value());
+            assertEquals(20, meterRegistry.get("hikaricp.connections.max").tag("pool", "replique").gauge().value());
+            assertEquals(2, meterRegistry.find("hikaricp.connections.max").gauges().size());
+        }
+
+        private Campagne creerCampagne() {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne principale");
+            campagne.setObjectifMontant(Montant.parse("1000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+}
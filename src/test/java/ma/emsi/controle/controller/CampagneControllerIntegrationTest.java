@@ -1,21 +1,34 @@
 package ma.emsi.controle.controller;
 import ma.emsi.controle.DTOs.DonDTO;
 import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
 import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ObjectifsCampagnes;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
-import java.math.BigDecimal;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 /**
@@ -24,6 +37,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  */
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability
 public class CampagneControllerIntegrationTest {
 
         /**
@@ -44,6 +58,12 @@ public class CampagneControllerIntegrationTest {
         @Autowired
         private CampagneRepository campagneRepository;
 
+        /**
+         * Suivi des montants collectés, dont la fusion planifiée écrit sur les campagnes
+         */
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
         // Suite du fichier src/test/java/com/example/donation/controller/CampagneControllerIntegrationTest.java
 
         /**
@@ -51,13 +71,16 @@ public class CampagneControllerIntegrationTest {
          */
         @BeforeEach
         void setUp() {
-            // Nettoyage de la base de données
-            campagneRepository.deleteAll();
+            // Nettoyage de la base de données, sans fusion concurrente qui modifierait une campagne lue pour être supprimée
+            objectifsCampagnes.sansFusion(() -> {
+                campagneRepository.deleteAll();
+                return null;
+            });
 
             // Création d'une campagne active
             Campagne campagneActive = new Campagne();
             campagneActive.setNom("Campagne Test Active");
-            campagneActive.setObjectifMontant(new BigDecimal("5000.00"));
+            campagneActive.setObjectifMontant(Montant.parse("5000.00"));
             campagneActive.setDateDebut(LocalDate.now().minusDays(5));
             campagneActive.setDateFin(LocalDate.now().plusDays(5));
             campagneRepository.save(campagneActive);
@@ -65,7 +88,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'une campagne inactive (future)
             Campagne campagneFuture = new Campagne();
             campagneFuture.setNom("Campagne Test Future");
-            campagneFuture.setObjectifMontant(new BigDecimal("3000.00"));
+            campagneFuture.setObjectifMontant(Montant.parse("3000.00"));
             campagneFuture.setDateDebut(LocalDate.now().plusDays(2));
             campagneFuture.setDateFin(LocalDate.now().plusDays(10));
             campagneRepository.save(campagneFuture);
@@ -73,7 +96,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'une campagne inactive (passée)
             Campagne campagnePassee = new Campagne();
             campagnePassee.setNom("Campagne Test Passée");
-            campagnePassee.setObjectifMontant(new BigDecimal("2000.00"));
+            campagnePassee.setObjectifMontant(Montant.parse("2000.00"));
             campagnePassee.setDateDebut(LocalDate.now().minusDays(20));
             campagnePassee.setDateFin(LocalDate.now().minusDays(10));
             campagneRepository.save(campagnePassee);
@@ -109,7 +132,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'un objet DonDTO valide
             DonDTO donDTO = new DonDTO();
             donDTO.setNomDonateur("Jean Dupont");
-            donDTO.setMontant(new BigDecimal("100.00"));
+            donDTO.setMontant(Montant.parse("100.00"));
 
             // Envoi de la requête POST
             mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
@@ -121,6 +144,36 @@ public class CampagneControllerIntegrationTest {
                     .andExpect(jsonPath("$.montant").value(100.00));
         }
 
+        /**
+         * Test de la progression renvoyée par GET /api/campagnes/actives.
+         * Vérifie qu'un don enregistré est immédiatement reflété dans les totaux de la campagne.
+         */
+        @Test
+        void testProgressionApresDon() throws Exception {
+            // Récupération de l'ID de la campagne active
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst()
+                    .map(Campagne::getId)
+                    .orElseThrow();
+
+            DonDTO donDTO = new DonDTO();
+            donDTO.setNomDonateur("Jean Dupont");
+            donDTO.setMontant(Montant.parse("250.50"));
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(donDTO)))
+                    .andExpect(status().isCreated());
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/actives")
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].nombreDons").value(1))
+                    .andExpect(jsonPath("$[0].montantCollecte").value(250.50))
+                    .andExpect(jsonPath("$[0].dernierDon").exists());
+        }
+
         /**
          * Test de l'endpoint POST /api/campagnes/{id}/dons avec des données invalides.
          * Vérifie que les validations sont bien appliquées.
@@ -137,7 +190,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'un objet DonDTO invalide (montant négatif)
             DonDTO donDTO = new DonDTO();
             donDTO.setNomDonateur("Jean Dupont");
-            donDTO.setMontant(new BigDecimal("-50.00"));
+            donDTO.setMontant(Montant.parse("-50.00"));
 
             // Envoi de la requête POST
             mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
@@ -146,6 +199,30 @@ public class CampagneControllerIntegrationTest {
                     .andExpect(status().isBadRequest());
         }
 
+        /**
+         * Test de l'endpoint POST /api/campagnes/{id}/dons avec un montant à plus de 2 décimales.
+         * Vérifie que le montant est refusé au lieu d'être arrondi, et qu'un montant exact est accepté.
+         */
+        @Test
+        void testEnregistrerDonMontantNonArrondi() throws Exception {
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst()
+                    .map(Campagne::getId)
+                    .orElseThrow();
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"nomDonateur\":\"Jean Dupont\",\"montant\":10.005}"))
+                    .andExpect(status().isBadRequest());
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"nomDonateur\":\"Jean Dupont\",\"montant\":\"10.050\"}"))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.montant").value(10.05));
+        }
+
         /**
          * Test de l'endpoint POST /api/campagnes/{id}/dons pour une campagne inexistante.
          * Vérifie que l'API renvoie une erreur 404 Not Found.
@@ -158,7 +235,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'un objet DonDTO valide
             DonDTO donDTO = new DonDTO();
             donDTO.setNomDonateur("Jean Dupont");
-            donDTO.setMontant(new BigDecimal("100.00"));
+            donDTO.setMontant(Montant.parse("100.00"));
 
             // Envoi de la requête POST
             mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneInexistanteId)
@@ -183,7 +260,7 @@ public class CampagneControllerIntegrationTest {
             // Création d'un objet DonDTO valide
             DonDTO donDTO = new DonDTO();
             donDTO.setNomDonateur("Jean Dupont");
-            donDTO.setMontant(new BigDecimal("100.00"));
+            donDTO.setMontant(Montant.parse("100.00"));
 
             // Envoi de la requête POST
             mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneInactiveId)
@@ -192,4 +269,442 @@ public class CampagneControllerIntegrationTest {
                     .andExpect(status().isBadRequest());
         }
 
+        /**
+         * Test de l'endpoint POST /api/campagnes/{id}/dons/batch.
+         * Vérifie que les dons valides sont enregistrés et que les dons invalides sont rejetés individuellement.
+         */
+        @Test
+        void testEnregistrerDonsParLot() throws Exception {
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst()
+                    .map(Campagne::getId)
+                    .orElseThrow();
+
+            DonDTO donValide = new DonDTO();
+            donValide.setNomDonateur("Jean Dupont");
+            donValide.setMontant(Montant.parse("100.00"));
+            DonDTO donInvalide = new DonDTO();
+            donInvalide.setNomDonateur("");
+            donInvalide.setMontant(Montant.parse("10.00"));
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons/batch", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(List.of(donValide, donInvalide, donValide))))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(3)))
+                    .andExpect(jsonPath("$[0].statut").value("ENREGISTRE"))
+                    .andExpect(jsonPath("$[0].don.nomCampagne").value("Campagne Test Active"))
+                    .andExpect(jsonPath("$[1].statut").value("REJETE"))
+                    .andExpect(jsonPath("$[1].erreurs.nomDonateur").exists())
+                    .andExpect(jsonPath("$[2].statut").value("ENREGISTRE"));
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/actives"))
+                    .andExpect(jsonPath("$[0].nombreDons").value(2));
+        }
+
+        /**
+         * Test de l'endpoint POST /api/campagnes/dons/batch avec plusieurs campagnes.
+         * Vérifie qu'un don destiné à une campagne inactive ou inexistante est rejeté sans bloquer les autres.
+         */
+        @Test
+        void testEnregistrerDonsMultiCampagnes() throws Exception {
+            List<Campagne> campagnes = campagneRepository.findAll();
+            Long campagneActiveId = campagnes.stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst().map(Campagne::getId).orElseThrow();
+            Long campagneFutureId = campagnes.stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Future"))
+                    .findFirst().map(Campagne::getId).orElseThrow();
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/dons/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("[" +
+                                    "{\"campagneId\": " + campagneActiveId + ", \"nomDonateur\": \"A\", \"montant\": 5}," +
+                                    "{\"campagneId\": " + campagneFutureId + ", \"nomDonateur\": \"B\", \"montant\": 5}," +
+                                    "{\"campagneId\": 999, \"nomDonateur\": \"C\", \"montant\": 5}," +
+                                    "{\"nomDonateur\": \"D\", \"montant\": 5}]"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].statut").value("ENREGISTRE"))
+                    .andExpect(jsonPath("$[1].statut").value("REJETE"))
+                    .andExpect(jsonPath("$[2].statut").value("REJETE"))
+                    .andExpect(jsonPath("$[3].erreurs.campagneId").exists());
+        }
+
+        /**
+         * Test de l'en-tête Idempotency-Key de POST /api/campagnes/{id}/dons.
+         * Vérifie qu'une requête rejouée renvoie le don d'origine sans créer de second don,
+         * et qu'une clé réutilisée pour un autre don est refusée.
+         */
+        @Test
+        void testEnregistrerDonIdempotent() throws Exception {
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst().map(Campagne::getId).orElseThrow();
+            DonDTO donDTO = new DonDTO();
+            donDTO.setNomDonateur("Jean Dupont");
+            donDTO.setMontant(Montant.parse("100.00"));
+            String cle = "cle-" + campagneActiveId;
+
+            MvcResult premier = mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .header("Idempotency-Key", cle)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(donDTO)))
+                    .andExpect(status().isCreated())
+                    .andReturn();
+            Long donId = objectMapper.readValue(premier.getResponse().getContentAsString(), DonDTO.class).getId();
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .header("Idempotency-Key", cle)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(donDTO)))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.id").value(donId));
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId))
+                    .andExpect(jsonPath("$.dons", hasSize(1)));
+
+            donDTO.setMontant(Montant.parse("200.00"));
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .header("Idempotency-Key", cle)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(donDTO)))
+                    .andExpect(status().isUnprocessableEntity());
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/{id}/dons.
+         * Vérifie que le curseur permet de parcourir tous les dons sans doublon, y compris lorsque
+         * plusieurs dons ont la même date (départage par identifiant).
+         */
+        @Test
+        void testListerDonsParCurseur() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            MvcResult premierePage = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId)
+                            .param("taille", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.dons", hasSize(2)))
+                    .andExpect(jsonPath("$.dons[0].nomDonateur").value("Donateur 0"))
+                    .andExpect(jsonPath("$.dons[0].nomCampagne").value("Campagne Test Active"))
+                    .andExpect(jsonPath("$.curseurSuivant").exists())
+                    .andReturn();
+            String curseur = objectMapper.readTree(premierePage.getResponse().getContentAsString()).get("curseurSuivant").asText();
+
+            MvcResult deuxiemePage = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId)
+                            .param("taille", "2").param("curseur", curseur))
+                    .andExpect(jsonPath("$.dons[0].nomDonateur").value("Donateur 2"))
+                    .andExpect(jsonPath("$.dons[1].nomDonateur").value("Donateur 3"))
+                    .andReturn();
+            curseur = objectMapper.readTree(deuxiemePage.getResponse().getContentAsString()).get("curseurSuivant").asText();
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId)
+                            .param("taille", "2").param("curseur", curseur))
+                    .andExpect(jsonPath("$.dons", hasSize(1)))
+                    .andExpect(jsonPath("$.dons[0].nomDonateur").value("Donateur 4"))
+                    .andExpect(jsonPath("$.curseurSuivant").doesNotExist());
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId)
+                            .param("curseur", "invalide"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", 999))
+                    .andExpect(status().isNotFound());
+        }
+
+        /**
+         * Test de l'export NDJSON de GET /api/campagnes/{id}/dons.
+         * Vérifie que chaque don est écrit sur sa propre ligne, dans l'ordre chronologique.
+         */
+        @Test
+        void testExporterDonsNdjson() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            MvcResult resultat = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", campagneActiveId)
+                            .accept(MediaType.APPLICATION_NDJSON))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            String contenu = mockMvc.perform(asyncDispatch(resultat))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andReturn().getResponse().getContentAsString();
+            String[] lignes = contenu.split("\n");
+            assertEquals(5, lignes.length);
+            for (int i = 0; i < lignes.length; i++) {
+                DonDTO don = objectMapper.readValue(lignes[i], DonDTO.class);
+                assertEquals("Donateur " + i, don.getNomDonateur());
+                assertEquals("Campagne Test Active", don.getNomCampagne());
+            }
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/{id}/dons/export.
+         * Vérifie l'export CSV de tous les dons, puis l'export NDJSON compressé d'une période qui les contient.
+         */
+        @Test
+        void testExporterDonsPeriode() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            MvcResult resultat = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons/export", campagneActiveId))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            String csv = mockMvc.perform(asyncDispatch(resultat))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"dons-campagne-" + campagneActiveId + ".csv\""))
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+            String[] lignes = csv.split("\r\n");
+            assertEquals(6, lignes.length);
+            assertEquals("id,campagne,donateur,montant,date", lignes[0]);
+            assertTrue(lignes[1].contains(",\"Campagne Test Active\",\"Donateur 0\",10.00,"), lignes[1]);
+
+            LocalDateTime maintenant = LocalDateTime.now();
+            resultat = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons/export", campagneActiveId)
+                            .param("from", maintenant.minusHours(1).toString())
+                            .param("to", maintenant.plusHours(1).toString())
+                            .param("format", "ndjson")
+                            .param("gzip", "true"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            byte[] compresse = mockMvc.perform(asyncDispatch(resultat))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andReturn().getResponse().getContentAsByteArray();
+            try (GZIPInputStream entree = new GZIPInputStream(new ByteArrayInputStream(compresse))) {
+                lignes = new String(entree.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            }
+            assertEquals(5, lignes.length);
+            for (int i = 0; i < lignes.length; i++) {
+                assertEquals("Donateur " + i, objectMapper.readValue(lignes[i], DonDTO.class).getNomDonateur());
+            }
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/{id}/dons/export avec une campagne inexistante, un format inconnu
+         * et une période vide : les erreurs sont renvoyées avant l'export.
+         */
+        @Test
+        void testExporterDonsPeriodeInvalide() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons/export", 999))
+                    .andExpect(status().isNotFound());
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons/export", campagneActiveId)
+                            .param("format", "xml"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons/export", campagneActiveId)
+                            .param("from", "2025-04-02T00:00:00")
+                            .param("to", "2025-04-01T00:00:00"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/{id}/stats.
+         * Vérifie que les dons enregistrés sont visibles dans les intervalles, qu'ils soient déjà écrits en base ou encore en attente.
+         */
+        @Test
+        void testStatistiquesDons() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/stats", campagneActiveId)
+                            .param("granularity", "HEURE"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].nombreDons").value(5))
+                    .andExpect(jsonPath("$[0].montantTotal").value(50.0));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/stats", campagneActiveId))
+                    .andExpect(jsonPath("$[0].nombreDons").value(5));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/stats", campagneActiveId)
+                            .param("granularity", "MINUTE")
+                            .param("debut", "2020-01-01T00:00:00"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/stats", 999))
+                    .andExpect(status().isNotFound());
+        }
+
+        /**
+         * Test de l'endpoint GET /api/rapports.
+         * Vérifie que les dons enregistrés sont ajoutés au stockage des rapports et regroupés par campagne, jour et tranche.
+         */
+        @Test
+        void testRapportsDons() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("campagneId", campagneActiveId.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].cle").value(campagneActiveId.toString()))
+                    .andExpect(jsonPath("$[0].nombreDons").value(5))
+                    .andExpect(jsonPath("$[0].montantTotal").value(50.0));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("regroupement", "JOUR")
+                            .param("campagneId", campagneActiveId.toString()))
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].nombreDons").value(5));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("regroupement", "TRANCHE")
+                            .param("campagneId", campagneActiveId.toString()))
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].cle").value("10.00-50.00"))
+                    .andExpect(jsonPath("$[0].montantTotal").value(50.0));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("campagneId", campagneActiveId.toString())
+                            .param("fin", LocalDate.now().minusDays(1).atStartOfDay().toString()))
+                    .andExpect(jsonPath("$", hasSize(0)));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("debut", "2024-01-02T00:00:00")
+                            .param("fin", "2024-01-01T00:00:00"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports").param("campagneId", "999"))
+                    .andExpect(status().isNotFound());
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/{id}/top-donateurs.
+         * Vérifie le classement chargé depuis la base puis sa mise à jour après un nouveau don.
+         */
+        @Test
+        void testMeilleursDonateurs() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/top-donateurs", campagneActiveId)
+                            .param("limite", "3"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(3)))
+                    .andExpect(jsonPath("$[0].nomDonateur").value("Donateur 0"))
+                    .andExpect(jsonPath("$[0].montantTotal").value(10.0));
+
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur 3");
+            don.setMontant(Montant.parse("25.00"));
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(don)))
+                    .andExpect(status().isCreated());
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/top-donateurs", campagneActiveId))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(5)))
+                    .andExpect(jsonPath("$[0].rang").value(1))
+                    .andExpect(jsonPath("$[0].nomDonateur").value("Donateur 3"))
+                    .andExpect(jsonPath("$[0].montantTotal").value(35.0))
+                    .andExpect(jsonPath("$[0].nombreDons").value(2));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/top-donateurs", 999))
+                    .andExpect(status().isNotFound());
+        }
+
+        /**
+         * Test des endpoints GET /api/campagnes/{id}/live et GET /api/campagnes/live.
+         * Vérifie que le flux d'une campagne commence par ses totaux puis reçoit les nouveaux dons,
+         * et que le flux global reçoit les campagnes modifiées.
+         */
+        @Test
+        void testSuivreCampagnesEnDirect() throws Exception {
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst().map(Campagne::getId).orElseThrow();
+            MvcResult campagne = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/live", campagneActiveId)
+                            .accept(MediaType.TEXT_EVENT_STREAM))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            MvcResult toutes = mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/live")
+                            .accept(MediaType.TEXT_EVENT_STREAM))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            enregistrerCinqDons();
+
+            String fluxCampagne = attendreContenu(campagne, "\"nombreDons\":5");
+            assertTrue(fluxCampagne.startsWith("event:campagne\ndata:{\"campagneId\":" + campagneActiveId + ",\"nombreDons\":0"));
+            assertTrue(fluxCampagne.contains("\"montantCollecte\":50.00"));
+            assertTrue(fluxCampagne.contains("\"nomDonateur\":\"Donateur 4\""));
+            String fluxGlobal = attendreContenu(toutes, "\"nombreDons\":5");
+            assertTrue(fluxGlobal.startsWith("event:campagnes\ndata:[{\"campagneId\":" + campagneActiveId));
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/live", 999))
+                    .andExpect(status().isNotFound());
+        }
+
+        /**
+         * Test de l'endpoint GET /api/campagnes/search.
+         * Vérifie que la recherche ignore les accents, complète le dernier mot et classe les campagnes actives en premier.
+         */
+        @Test
+        void testRechercherCampagnes() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/search").param("q", "campagnes test"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(3)))
+                    .andExpect(jsonPath("$[0].nom").value("Campagne Test Active"))
+                    .andExpect(jsonPath("$[0].active").value(true))
+                    .andExpect(jsonPath("$[1].active").value(false));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/search").param("q", "PASSÉ"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].nom").value("Campagne Test Passée"));
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/search").param("q", "test").param("limite", "1000"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        /**
+         * Test de l'endpoint GET /actuator/prometheus.
+         * Vérifie la présence des métriques de dons, de requêtes SQL par endpoint, de transactions, d'erreurs
+         * et du cache de second niveau.
+         */
+        @Test
+        void testMetriquesPrometheus() throws Exception {
+            Long campagneActiveId = enregistrerCinqDons();
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/dons", 999))
+                    .andExpect(status().isNotFound());
+
+            String metriques = mockMvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertTrue(metriques.contains("dons_montant_count{application=\"Controle\",campagne=\"" + campagneActiveId + "\"} 5"));
+            assertTrue(metriques.contains("http_server_requests_sql_count{"));
+            assertTrue(metriques.contains("transactions_seconds_count{"));
+            assertTrue(metriques.contains("dons_lot_seconds_count{"));
+            assertTrue(metriques.contains("api_erreurs_total{application=\"Controle\",exception=\"EntityNotFoundException\",statut=\"404\"}"));
+            assertTrue(metriques.contains("hikaricp_connections_acquire_seconds_bucket{"));
+            assertTrue(metriques.contains("hibernate_cache_succes_total{application=\"Controle\",region=\"campagne\"}"));
+            assertTrue(metriques.contains("hibernate_cache_ratio{application=\"Controle\",region=\"campagnes-actives\"}"));
+            assertTrue(metriques.contains("cache_evictions_total{application=\"Controle\",cache=\"campagne\""));
+        }
+
+        /**
+         * Enregistre cinq dons (de « Donateur 0 » à « Donateur 4 ») sur la campagne active, en un seul lot.
+         *
+         * @return L'identifiant de la campagne active
+         */
+        private Long enregistrerCinqDons() throws Exception {
+            Long campagneActiveId = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Campagne Test Active"))
+                    .findFirst().map(Campagne::getId).orElseThrow();
+            List<DonDTO> dons = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                DonDTO don = new DonDTO();
+                don.setNomDonateur("Donateur " + i);
+                don.setMontant(Montant.parse("10.00"));
+                dons.add(don);
+            }
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons/batch", campagneActiveId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(dons)))
+                    .andExpect(status().isOk());
+            return campagneActiveId;
+        }
+
+        /**
+         * Attend qu'un flux en cours contienne le texte donné.
+         *
+         * @return Le contenu reçu par le flux
+         */
+        private String attendreContenu(MvcResult flux, String attendu) throws Exception {
+            String contenu = flux.getResponse().getContentAsString();
+            for (int essai = 0; essai < 50 && !contenu.contains(attendu); essai++) {
+                Thread.sleep(100);
+                contenu = flux.getResponse().getContentAsString();
+            }
+            assertTrue(contenu.contains(attendu), contenu);
+            return contenu;
+        }
 }
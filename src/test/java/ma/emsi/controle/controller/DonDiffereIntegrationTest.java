@@ -0,0 +1,134 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.DTOs.ResultatDonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ServiceLotDons;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests d'intégration de l'écriture différée des dons.
+ */
+@SpringBootTest(properties = "dons.ecriture-differee.enabled=true")
+@AutoConfigureMockMvc
+public class DonDiffereIntegrationTest {
+
+        @TempDir
+        static Path repertoire;
+
+        @DynamicPropertySource
+        static void proprietes(DynamicPropertyRegistry registry) {
+            registry.add("dons.ecriture-differee.journal", () -> repertoire.resolve("journal-dons.log").toString());
+        }
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ServiceLotDons serviceLotDons;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        /**
+         * Vérifie qu'un don rejoué avec le numéro de suivi d'un don déjà enregistré (arrêt entre le commit
+         * et le marquage dans le journal) n'est pas inséré une seconde fois.
+         */
+        @Test
+        void testRejeuIdempotent() {
+            DonCampagneDTO don = new DonCampagneDTO();
+            don.setCampagneId(creerCampagne("Campagne Rejeu"));
+            don.setNomDonateur("Jean Dupont");
+            don.setMontant(Montant.parse("15.00"));
+            String suivi = UUID.randomUUID().toString();
+
+            ResultatDonDTO premier = serviceLotDons.enregistrerDonsSuivis(List.of(suivi), List.of(don)).get(0);
+            ResultatDonDTO rejoue = serviceLotDons.enregistrerDonsSuivis(List.of(suivi), List.of(don)).get(0);
+
+            assertEquals(ResultatDonDTO.Statut.ENREGISTRE, rejoue.getStatut());
+            assertEquals(premier.getDon().getId(), rejoue.getDon().getId());
+            assertEquals("Campagne Rejeu", rejoue.getDon().getNomCampagne());
+            assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM donation WHERE suivi = ?", Integer.class, suivi));
+        }
+
+        /**
+         * Vérifie qu'un don soumis est acquitté en 202 puis enregistré par les threads d'écriture.
+         */
+        @Test
+        void testSoumissionPuisSuivi() throws Exception {
+            Long campagneId = creerCampagne("Campagne Différée");
+
+            String reponse = mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons/differes", campagneId)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"nomDonateur\": \"Jean Dupont\", \"montant\": 42.00}"))
+                    .andExpect(status().isAccepted())
+                    .andExpect(header().exists("Location"))
+                    .andExpect(jsonPath("$.statut").value("EN_ATTENTE"))
+                    .andReturn().getResponse().getContentAsString();
+            String suivi = objectMapper.readTree(reponse).get("suivi").asText();
+
+            JsonNode etat = null;
+            for (int essai = 0; essai < 50; essai++) {
+                etat = objectMapper.readTree(mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/dons/differes/{suivi}", suivi))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString());
+                if (!etat.get("statut").asText().equals("EN_ATTENTE")) {
+                    break;
+                }
+                Thread.sleep(100);
+            }
+            assertEquals("ENREGISTRE", etat.get("statut").asText());
+            assertEquals("Campagne Différée", etat.get("don").get("nomCampagne").asText());
+        }
+
+        /**
+         * Vérifie que les validations et la vérification de la campagne sont faites avant l'acquittement.
+         */
+        @Test
+        void testRejetsSynchrones() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons/differes", 999L)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"nomDonateur\": \"Jean Dupont\", \"montant\": 42.00}"))
+                    .andExpect(status().isNotFound());
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/campagnes/{id}/dons/differes", 999L)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"nomDonateur\": \"\", \"montant\": -1}"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        private Long creerCampagne(String nom) {
+            Campagne campagne = new Campagne();
+            campagne.setNom(nom);
+            campagne.setObjectifMontant(Montant.parse("5000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne).getId();
+        }
+}
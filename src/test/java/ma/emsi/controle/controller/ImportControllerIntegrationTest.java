@@ -0,0 +1,121 @@
+package ma.emsi.controle.controller;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.service.ObjectifsCampagnes;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Tests d'intégration pour ImportController.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class ImportControllerIntegrationTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        /**
+         * Envoie un CSV de dons compressé : l'import est lancé en tâche de fond (202), sa progression est consultable
+         * jusqu'à la fin, puis le fichier des rejets est téléchargeable.
+         */
+        @Test
+        void testImporterDons() throws Exception {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne Import HTTP");
+            campagne.setObjectifMontant(Montant.parse("5000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            campagne = campagneRepository.save(campagne);
+            String csv = "campagneId,nomDonateur,montant,date\n"
+                    + campagne.getId() + ",Jean Dupont,100.00,2025-04-01T10:30:00\n"
+                    + campagne.getId() + ",Marie,abc,\n"
+                    + campagne.getId() + ",Paul,20.50,\n";
+
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/import")
+                            .param("type", "dons")
+                            .contentType("text/csv")
+                            .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                            .content(gzip(csv)))
+                    .andExpect(status().isAccepted())
+                    .andExpect(jsonPath("$.type").value("DONS"))
+                    .andExpect(jsonPath("$.format").value("CSV"));
+
+            JsonNode progression = attendreFin();
+            assertEquals("TERMINE", progression.get("statut").asText());
+            assertEquals(2, progression.get("importees").asLong());
+            assertEquals(1, progression.get("rejetees").asLong());
+
+            String rejets = mockMvc.perform(MockMvcRequestBuilders.get("/api/import/rejets"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+            assertTrue(rejets.startsWith("ligne,erreurs,contenu\r\n3,\"montant : "), rejets);
+
+            objectifsCampagnes.fusionner();
+            assertEquals(Montant.parse("120.50"), campagneRepository.findById(campagne.getId()).orElseThrow().getMontantCollecte());
+        }
+
+        /**
+         * Vérifie les refus avant l'import : type ou format inconnu, en-tête incomplet.
+         */
+        @Test
+        void testImportInvalide() throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/import").param("format", "xml").content("<dons/>"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/import").param("type", "donateurs").content("nom\n"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(MockMvcRequestBuilders.post("/api/import").contentType("text/csv").content("campagneId,montant\n1,10\n"))
+                    .andExpect(status().isBadRequest());
+        }
+
+        private JsonNode attendreFin() throws Exception {
+            long limite = System.currentTimeMillis() + 10_000;
+            while (true) {
+                String corps = mockMvc.perform(MockMvcRequestBuilders.get("/api/import"))
+                        .andExpect(status().isOk())
+                        .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+                JsonNode progression = objectMapper.readTree(corps);
+                if (!"EN_COURS".equals(progression.get("statut").asText()) || System.currentTimeMillis() > limite) {
+                    return progression;
+                }
+                Thread.sleep(50);
+            }
+        }
+
+        private static byte[] gzip(String texte) throws Exception {
+            ByteArrayOutputStream octets = new ByteArrayOutputStream();
+            try (GZIPOutputStream sortie = new GZIPOutputStream(octets)) {
+                sortie.write(texte.getBytes(StandardCharsets.UTF_8));
+            }
+            return octets.toByteArray();
+        }
+}
@@ -0,0 +1,240 @@
+package ma.emsi.controle.repository;
+import ma.emsi.controle.entities.Granularite;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Vérifie le plan d'exécution H2 (EXPLAIN) du SQL généré pour chaque requête des repositories :
+ * aucune ne doit parcourir toute une table, hormis les chargements complets faits au démarrage.
+ */
+@SpringBootTest
+public class PlansRequetesIntegrationTest {
+
+        /**
+         * Requêtes qui lisent volontairement toute la table : reconstruction des index et totaux en mémoire
+         * et initialisation du suivi des objectifs, au démarrage seulement ; lecture des incréments en attente
+         * par le contrôle des montants collectés, la table des incréments étant vidée à chaque fusion
+         */
+        private static final Set<String> PARCOURS_COMPLETS = Set.of(
+                "findAllInfos", "findAllRecherche", "calculerTotauxParCampagne",
+                "initialiserSuiviObjectifs", "cloreCampagnesFinancees", "trouverCollectes");
+
+        /**
+         * Accès à une table sans condition dans un plan H2 : parcours de la table ({@code PUBLIC.CAMPAGNE.tableScan})
+         * ou d'un index entier ({@code PUBLIC.IDX_...}, sans condition après le nom)
+         */
+        private static final Pattern ACCES_SANS_CONDITION = Pattern.compile("/\\* PUBLIC\\.[A-Za-z0-9_.]+ \\*/");
+
+        /**
+         * SQL préparé par le thread du test pendant l'appel mesuré, null en dehors d'un appel mesuré
+         */
+        private static final ThreadLocal<List<String>> REQUETES = new ThreadLocal<>();
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private DonRepository donRepository;
+
+        @Autowired
+        private StatDonRepository statDonRepository;
+
+        @Autowired
+        private IncrementCampagneRepository incrementCampagneRepository;
+
+        @Autowired
+        private CleIdempotenceRepository cleIdempotenceRepository;
+
+        @Autowired
+        private ReconciliationRepository reconciliationRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @Autowired
+        private TransactionTemplate transactionTemplate;
+
+        /**
+         * Enveloppe la source de données pour relever le SQL préparé par le thread du test,
+         * sans celui des tâches planifiées qui s'exécutent en parallèle.
+         */
+        @TestConfiguration
+        static class CaptureRequetes {
+
+            @Bean
+            static BeanPostProcessor captureRequetesSql() {
+                return new BeanPostProcessor() {
+                    @Override
+                    public Object postProcessAfterInitialization(Object bean, String nom) {
+                        if (!(bean instanceof DataSource source)) {
+                            return bean;
+                        }
+                        return new DelegatingDataSource(source) {
+                            @Override
+                            public Connection getConnection() throws SQLException {
+                                return capturer(super.getConnection());
+                            }
+                        };
+                    }
+                };
+            }
+
+            private static Connection capturer(Connection connexion) {
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                        (proxy, methode, arguments) -> {
+                            List<String> requetes = REQUETES.get();
+                            if (requetes != null && methode.getName().equals("prepareStatement")) {
+                                requetes.add((String) arguments[0]);
+                            }
+                            try {
+                                return methode.invoke(connexion, arguments);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                        });
+            }
+        }
+
+        /**
+         * Vérifie les requêtes de CampagneRepository.
+         */
+        @Test
+        void testPlansCampagnes() {
+            LocalDate aujourdhui = LocalDate.now();
+            verifierPlan("findActiveCampagnesAsResume", () -> campagneRepository.findActiveCampagnesAsResume(aujourdhui));
+            verifierPlan("findProchaineFinActive", () -> campagneRepository.findProchaineFinActive(aujourdhui));
+            verifierPlan("findProchainDebut", () -> campagneRepository.findProchainDebut(aujourdhui));
+            verifierPlan("findAllInfos", campagneRepository::findAllInfos);
+            verifierPlan("findInfoById", () -> campagneRepository.findInfoById(1L));
+            verifierPlan("findAllRecherche", campagneRepository::findAllRecherche);
+            verifierPlan("initialiserSuiviObjectifs", campagneRepository::initialiserSuiviObjectifs);
+            verifierPlan("cloreCampagnesFinancees", campagneRepository::cloreCampagnesFinancees);
+            verifierPlan("trouverDernierId", campagneRepository::trouverDernierId);
+            verifierPlan("trouverCollectes", () -> campagneRepository.trouverCollectes(1L, 1001L));
+        }
+
+        /**
+         * Vérifie les requêtes de DonRepository.
+         */
+        @Test
+        void testPlansDons() {
+            LocalDateTime maintenant = LocalDateTime.now();
+            verifierPlan("trouverDon", () -> donRepository.trouverDon(1L));
+            verifierPlan("calculerTotauxParCampagne", donRepository::calculerTotauxParCampagne);
+            verifierPlan("calculerTotauxParDonateur", () -> donRepository.calculerTotauxParDonateur(1L));
+            verifierPlan("trouverMeilleursDonateurs", () -> donRepository.trouverMeilleursDonateurs(1L, Limit.of(10)));
+            verifierPlan("trouverPremiersDons", () -> donRepository.trouverPremiersDons(1L, Limit.of(10)));
+            verifierPlan("trouverDonsApres", () -> donRepository.trouverDonsApres(1L, maintenant, 1L, Limit.of(10)));
+            verifierPlan("parcourirDons", () -> transactionTemplate.execute(statut -> {
+                try (var dons = donRepository.parcourirDons(1L)) {
+                    return dons.count();
+                }
+            }));
+            verifierPlan("trouverDernierId", donRepository::trouverDernierId);
+            verifierPlan("trouverIdentifiants", () -> donRepository.trouverIdentifiants(List.of(1L, 2L)));
+            verifierPlan("trouverSuivis", () -> donRepository.trouverSuivis(List.of("a", "b")));
+            verifierPlan("trouverDonSuivi", () -> donRepository.trouverDonSuivi("a"));
+            verifierPlan("parcourirDonsApres", () -> transactionTemplate.execute(statut -> {
+                try (var dons = donRepository.parcourirDonsApres(Long.MAX_VALUE - 1)) {
+                    return dons.count();
+                }
+            }));
+            verifierPlan("parcourirIdentifiants", () -> transactionTemplate.execute(statut -> {
+                try (var ids = donRepository.parcourirIdentifiants(1L)) {
+                    return ids.count();
+                }
+            }));
+            verifierPlan("trouverDonsAnalyse", () -> donRepository.trouverDonsAnalyse(List.of(1L, 2L)));
+            verifierPlan("parcourirDonsCampagnes", () -> transactionTemplate.execute(statut -> {
+                try (var dons = donRepository.parcourirDonsCampagnes(1L, 1001L)) {
+                    return dons.count();
+                }
+            }));
+            verifierPlan("parcourirDonsPeriode", () -> transactionTemplate.execute(statut -> {
+                try (var dons = donRepository.parcourirDonsPeriode(1L, maintenant.minusDays(1), maintenant)) {
+                    return dons.count();
+                }
+            }));
+        }
+
+        /**
+         * Vérifie les requêtes des repositories des statistiques, des incréments, des clés d'idempotence
+         * et du contrôle des montants collectés.
+         */
+        @Test
+        void testPlansAutresRepositories() {
+            LocalDateTime maintenant = LocalDateTime.now();
+            verifierPlan("trouverIntervalles", () -> statDonRepository.trouverIntervalles(
+                    1L, Granularite.MINUTE, maintenant.minusHours(1), maintenant));
+            verifierPlan("supprimerEntre", () -> statDonRepository.supprimerEntre(1L, Granularite.MINUTE,
+                    maintenant.minusDays(1), maintenant));
+            verifierPlan("trouverPremiers", () -> incrementCampagneRepository.trouverPremiers(Limit.of(10)));
+            verifierPlan("supprimer", () -> transactionTemplate.execute(statut ->
+                    incrementCampagneRepository.supprimer(List.of(-1L, -2L))));
+            verifierPlan("supprimerAvant", () -> cleIdempotenceRepository.supprimerAvant(maintenant.minusDays(1)));
+            verifierPlan("trouverDernieres", () -> reconciliationRepository.trouverDernieres(Limit.of(1)));
+            verifierPlan("trouverPartitions", () -> reconciliationRepository.trouverPartitions(1L));
+        }
+
+        /**
+         * Exécute une requête de repository, puis le plan H2 de chaque instruction SQL qu'elle a émise.
+         *
+         * @param requete Nom de la méthode du repository
+         * @param appel Appel de la méthode
+         */
+        private void verifierPlan(String requete, Runnable appel) {
+            List<String> requetes = new ArrayList<>();
+            REQUETES.set(requetes);
+            try {
+                appel.run();
+            } finally {
+                REQUETES.remove();
+            }
+            assertFalse(requetes.isEmpty(), requete + " n'a émis aucune requête SQL");
+            for (String sql : requetes) {
+                String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class);
+                if (PARCOURS_COMPLETS.contains(requete)) {
+                    assertTrue(parcoursComplet(plan), requete + " n'est plus un parcours complet, le retirer de PARCOURS_COMPLETS");
+                } else if (parcoursComplet(plan)) {
+                    fail(requete + " parcourt toute une table :\n" + plan);
+                }
+            }
+        }
+
+        /**
+         * Un index lu dans l'ordre pour les premières lignes seulement (ORDER BY ... FETCH FIRST) n'est pas un parcours complet,
+         * pas plus qu'un MIN ou MAX lu à une extrémité d'un index (direct lookup).
+         *
+         * @param plan Plan H2 d'une instruction
+         * @return true si l'instruction lit toute une table ou tout un index
+         */
+        private static boolean parcoursComplet(String plan) {
+            return ACCES_SANS_CONDITION.matcher(plan).find()
+                    && !(plan.contains("/* index sorted */") && plan.contains("FETCH FIRST"))
+                    && !plan.contains("/* direct lookup */");
+        }
+}
@@ -0,0 +1,181 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.DonateurClassementDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.projection.TotalDonateur;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour ClassementsDonateurs.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ClassementsDonateursTest {
+
+        @Mock
+        private DonRepository donRepository;
+
+        @Mock
+        private IndexCampagnes indexCampagnes;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        @InjectMocks
+        private ClassementsDonateurs classementsDonateurs;
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(classementsDonateurs, "taille", 3);
+            ReflectionTestUtils.setField(classementsDonateurs, "campagnesMax", 2);
+            ReflectionTestUtils.setField(classementsDonateurs, "donateursMax", 10);
+            LocalDate aujourdhui = LocalDate.now();
+            lenient().when(indexCampagnes.trouver(anyLong())).thenAnswer(invocation -> Optional.of(new CampagneInfo(
+                    invocation.getArgument(0), "Campagne", aujourdhui, aujourdhui, StatutCampagne.OUVERTE)));
+        }
+
+        /**
+         * Vérifie le chargement depuis la base sans double compte : la notification tardive d'un don validé avant la
+         * lecture, encore en cours au chargement, est ignorée ; un don ancien notifié après le chargement est ajouté.
+         */
+        @Test
+        void testChargementSansDoubleCompte() {
+            DonEnregistreEvent enCours = don(7L, 1L, "Bob", "60.00", LocalDateTime.now());
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                classementsDonateurs.onDonPublie(enCours);
+                classementsDonateurs.onDonPublie(don(8L, 2L, "Autre", "5.00", LocalDateTime.now()));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            when(donRepository.calculerTotauxParDonateur(1L)).thenReturn(List.of(
+                    total("Alice", "100.00", 2), total("Bob", "110.00", 2)));
+            when(donRepository.trouverIdentifiants(List.of(7L))).thenReturn(List.of(7L));
+
+            List<DonateurClassementDTO> meilleurs = classementsDonateurs.getMeilleursDonateurs(1L, 3);
+            assertEquals(List.of("Bob", "Alice"), noms(meilleurs));
+            assertEquals(Montant.parse("110.00"), meilleurs.get(0).getMontantTotal());
+            assertEquals(2, meilleurs.get(0).getNombreDons());
+            assertEquals(1, meilleurs.get(0).getRang());
+
+            // Notification tardive du don déjà lu, puis don de l'historique validé après le chargement
+            classementsDonateurs.onDonEnregistre(enCours);
+            assertEquals(Montant.parse("110.00"), classementsDonateurs.getMeilleursDonateurs(1L, 3).get(0).getMontantTotal());
+            classementsDonateurs.onDonEnregistre(don(3L, 1L, "Alice", "30.00", LocalDateTime.now().minusYears(1)));
+            meilleurs = classementsDonateurs.getMeilleursDonateurs(1L, 3);
+            assertEquals(List.of("Alice", "Bob"), noms(meilleurs));
+            assertEquals(Montant.parse("130.00"), meilleurs.get(0).getMontantTotal());
+            verify(donRepository, times(1)).calculerTotauxParDonateur(1L);
+        }
+
+        /**
+         * Vérifie qu'un don notifié pendant le chargement n'est ajouté que s'il est absent de l'état lu.
+         */
+        @Test
+        void testDonsNotifiesPendantChargement() {
+            when(donRepository.calculerTotauxParDonateur(1L)).thenAnswer(invocation -> {
+                classementsDonateurs.onDonEnregistre(don(10L, 1L, "Alice", "40.00", LocalDateTime.now()));
+                classementsDonateurs.onDonEnregistre(don(11L, 1L, "Bob", "25.00", LocalDateTime.now().minusYears(2)));
+                return List.of(total("Alice", "40.00", 1));
+            });
+            when(donRepository.trouverIdentifiants(anyCollection())).thenReturn(List.of(10L));
+
+            List<DonateurClassementDTO> meilleurs = classementsDonateurs.getMeilleursDonateurs(1L, 3);
+            assertEquals(List.of("Alice", "Bob"), noms(meilleurs));
+            assertEquals(Montant.parse("40.00"), meilleurs.get(0).getMontantTotal());
+            assertEquals(Montant.parse("25.00"), meilleurs.get(1).getMontantTotal());
+        }
+
+        /**
+         * Vérifie la mise à jour incrémentale : un donateur hors du classement y entre en dépassant le dernier.
+         */
+        @Test
+        void testMiseAJourIncrementale() {
+            when(donRepository.calculerTotauxParDonateur(1L)).thenReturn(List.of(
+                    total("A", "40.00", 1), total("B", "30.00", 1), total("C", "20.00", 1), total("D", "10.00", 1)));
+            assertEquals(List.of("A", "B", "C"), noms(classementsDonateurs.getMeilleursDonateurs(1L, 3)));
+
+            classementsDonateurs.onDonEnregistre(don(20L, 1L, "D", "35.00", LocalDateTime.now()));
+            assertEquals(List.of("D", "A", "B"), noms(classementsDonateurs.getMeilleursDonateurs(1L, 3)));
+            classementsDonateurs.onDonEnregistre(don(21L, 1L, "C", "5.00", LocalDateTime.now()));
+            assertEquals(List.of("D", "A", "B"), noms(classementsDonateurs.getMeilleursDonateurs(1L, 3)));
+            classementsDonateurs.onDonEnregistre(don(22L, 1L, "C", "20.00", LocalDateTime.now()));
+            assertEquals(List.of("C", "D", "A"), noms(classementsDonateurs.getMeilleursDonateurs(1L, 3)));
+            assertEquals(List.of("C"), noms(classementsDonateurs.getMeilleursDonateurs(1L, 1)));
+            assertThrows(IllegalStateException.class, () -> classementsDonateurs.getMeilleursDonateurs(1L, 4));
+        }
+
+        /**
+         * Vérifie les bornes mémoire : éviction du classement le moins récemment consulté,
+         * et agrégation SQL pour une campagne comptant trop de donateurs.
+         */
+        @Test
+        void testBornesMemoire() {
+            when(donRepository.calculerTotauxParDonateur(anyLong())).thenReturn(List.of(total("A", "10.00", 1)));
+            classementsDonateurs.getMeilleursDonateurs(1L, 1);
+            classementsDonateurs.getMeilleursDonateurs(2L, 1);
+            classementsDonateurs.getMeilleursDonateurs(1L, 1);
+            classementsDonateurs.getMeilleursDonateurs(3L, 1);
+            assertEquals(2, classementsDonateurs.getNombreClassements());
+            classementsDonateurs.getMeilleursDonateurs(1L, 1);
+            verify(donRepository, times(1)).calculerTotauxParDonateur(1L);
+
+            // Campagne dont les donateurs distincts dépassent la borne : servie depuis la base
+            for (int i = 0; i < 11; i++) {
+                classementsDonateurs.onDonEnregistre(don(100L + i, 3L, "Donateur " + i, "1.00", LocalDateTime.now()));
+            }
+            when(donRepository.trouverMeilleursDonateurs(3L, Limit.of(1))).thenReturn(List.of(total("Donateur 0", "1.00", 1)));
+            assertEquals(List.of("Donateur 0"), noms(classementsDonateurs.getMeilleursDonateurs(3L, 1)));
+            verify(donRepository, times(1)).calculerTotauxParDonateur(3L);
+        }
+
+        /**
+         * Vérifie qu'une campagne inconnue est refusée sans requête.
+         */
+        @Test
+        void testCampagneInconnue() {
+            when(indexCampagnes.trouver(9L)).thenReturn(Optional.empty());
+            assertThrows(EntityNotFoundException.class, () -> classementsDonateurs.getMeilleursDonateurs(9L, 3));
+            verify(donRepository, never()).calculerTotauxParDonateur(9L);
+        }
+
+        private static DonEnregistreEvent don(Long donId, Long campagneId, String nom, String montant, LocalDateTime date) {
+            return new DonEnregistreEvent(donId, campagneId, nom, Montant.parse(montant), date);
+        }
+
+        private static TotalDonateur total(String nom, String montant, long nombreDons) {
+            return new TotalDonateur(nom, nombreDons, Montant.parse(montant));
+        }
+
+        private static List<String> noms(List<DonateurClassementDTO> donateurs) {
+            return donateurs.stream().map(DonateurClassementDTO::getNomDonateur).toList();
+        }
+}
@@ -0,0 +1,229 @@
+package ma.emsi.controle.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests unitaires pour ColonnesDons.
+ */
+public class ColonnesDonsTest {
+
+        private static final long JOUR_ORIGINE = LocalDate.of(2024, 1, 1).toEpochDay();
+        private static final long SECONDE_ORIGINE = JOUR_ORIGINE * 86_400;
+        private static final int CAMPAGNES = 5;
+        private static final int JOURS = 10;
+        private static final long[] BORNES = {1_000, 5_000, 10_000};
+
+        @TempDir
+        Path repertoire;
+
+        /**
+         * Vérifie les agrégats par campagne, par jour et par tranche, avec et sans filtre,
+         * sur des dons répartis dans plusieurs segments et des lots incomplets.
+         */
+        @Test
+        void testAgregationsSurPlusieursSegments() throws Exception {
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1000)) {
+                long[][] dons = ajouterDons(colonnes, 3_000);
+                assertEquals(3, colonnes.getNombreSegments());
+                assertEquals(3_000, colonnes.getNombreLignes());
+                assertEquals(3_000, colonnes.getDernierId());
+
+                verifierAgregats(colonnes, dons, new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE));
+                verifierAgregats(colonnes, dons, new ColonnesDons.Filtre(3L, Long.MIN_VALUE, Long.MAX_VALUE));
+                verifierAgregats(colonnes, dons, new ColonnesDons.Filtre(null, SECONDE_ORIGINE + 86_400 * 2 + 3_600,
+                        SECONDE_ORIGINE + 86_400 * 7));
+                verifierAgregats(colonnes, dons, new ColonnesDons.Filtre(2L, SECONDE_ORIGINE + 86_400 * 4,
+                        SECONDE_ORIGINE + 86_400 * 5));
+            }
+        }
+
+        /**
+         * Vérifie qu'une campagne inconnue ou une période sans don donnent des agrégats vides.
+         */
+        @Test
+        void testAgregatsVides() throws Exception {
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                assertEquals(0, colonnes.agregerParCampagne(new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE)).nombres().length);
+                assertEquals(0, colonnes.agregerParJour(new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE)).nombres().length);
+
+                ajouterDons(colonnes, 100);
+                assertEquals(0, somme(colonnes.agregerParCampagne(new ColonnesDons.Filtre(99L, Long.MIN_VALUE, Long.MAX_VALUE)).nombres()));
+                assertEquals(0, colonnes.agregerParJour(new ColonnesDons.Filtre(null, 0, SECONDE_ORIGINE)).nombres().length);
+            }
+        }
+
+        /**
+         * Vérifie que les dons, leurs identifiants et les campagnes supprimées sont relus après une réouverture,
+         * et que les ajouts reprennent dans le dernier segment.
+         */
+        @Test
+        void testReouverture() throws Exception {
+            ColonnesDons.Filtre tous = new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            long[] nombresAvant;
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                ajouterDons(colonnes, 1_500);
+                colonnes.supprimerCampagne(1);
+                nombresAvant = colonnes.agregerParCampagne(tous).nombres();
+            }
+
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                assertEquals(1_500, colonnes.getNombreLignes());
+                assertEquals(1_500, colonnes.getDernierId());
+                assertEquals(2, colonnes.getNombreSegments());
+                assertArrayEquals(nombresAvant, colonnes.agregerParCampagne(tous).nombres());
+                assertEquals(0, colonnes.agregerParCampagne(tous).nombres()[1]);
+                assertTrue(colonnes.contient(1) && colonnes.contient(1_024) && colonnes.contient(1_500));
+                assertFalse(colonnes.contient(1_501));
+
+                colonnes.ajouter(1_501, 4, 2_500, SECONDE_ORIGINE);
+                assertTrue(colonnes.contient(1_501));
+                assertEquals(2, colonnes.getNombreSegments());
+                assertEquals(nombresAvant[4] + 1, colonnes.agregerParCampagne(tous).nombres()[4]);
+            }
+        }
+
+        /**
+         * Vérifie que les dons d'une campagne supprimée sont écartés de tous les regroupements.
+         */
+        @Test
+        void testCampagneSupprimee() throws Exception {
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                colonnes.ajouter(1, 1, 1_000, SECONDE_ORIGINE);
+                colonnes.ajouter(2, 2, 2_000, SECONDE_ORIGINE);
+                colonnes.supprimerCampagne(2);
+
+                ColonnesDons.Filtre tous = new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE);
+                assertArrayEquals(new long[]{0, 1, 0}, colonnes.agregerParCampagne(tous).nombres());
+                assertArrayEquals(new long[]{1_000}, colonnes.agregerParJour(tous).centimes());
+                assertArrayEquals(new long[]{0, 1, 0, 0}, colonnes.agregerParTranche(tous, BORNES).nombres());
+            }
+        }
+
+        /**
+         * Vérifie que le stockage vidé ne contient plus ni don ni campagne supprimée, y compris après réouverture.
+         */
+        @Test
+        void testVider() throws Exception {
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                ajouterDons(colonnes, 2_000);
+                colonnes.supprimerCampagne(1);
+                colonnes.vider();
+                assertEquals(0, colonnes.getNombreLignes());
+                assertEquals(0, colonnes.getDernierId());
+                assertFalse(colonnes.contient(1));
+
+                colonnes.ajouter(1, 1, 700, SECONDE_ORIGINE);
+            }
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                assertEquals(1, colonnes.getNombreSegments());
+                assertArrayEquals(new long[]{0, 700},
+                        colonnes.agregerParCampagne(new ColonnesDons.Filtre(null, Long.MIN_VALUE, Long.MAX_VALUE)).centimes());
+            }
+        }
+
+        /**
+         * Vérifie qu'un fichier qui n'est pas un segment est refusé à l'ouverture.
+         */
+        @Test
+        void testSegmentInvalide() throws Exception {
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                colonnes.ajouter(1, 1, 700, SECONDE_ORIGINE);
+            }
+            try (FileChannel canal = FileChannel.open(repertoire.resolve("segment-000000.col"), StandardOpenOption.WRITE)) {
+                canal.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4}), 0);
+            }
+            assertThrows(IOException.class, () -> new ColonnesDons(repertoire, 1024));
+
+            ColonnesDons.supprimerFichiers(repertoire);
+            try (ColonnesDons colonnes = new ColonnesDons(repertoire, 1024)) {
+                assertEquals(0, colonnes.getNombreLignes());
+            }
+        }
+
+        /**
+         * Ajoute des dons pseudo-aléatoires d'identifiants 1 à n.
+         *
+         * @return Les dons ajoutés : campagne, centimes, seconde
+         */
+        private static long[][] ajouterDons(ColonnesDons colonnes, int n) {
+            Random aleatoire = new Random(42);
+            long[][] dons = new long[n][];
+            for (int i = 0; i < n; i++) {
+                long campagne = 1 + aleatoire.nextInt(CAMPAGNES);
+                long centimes = 1 + aleatoire.nextInt(20_000);
+                long seconde = SECONDE_ORIGINE + aleatoire.nextInt(JOURS * 86_400);
+                colonnes.ajouter(i + 1, campagne, centimes, seconde);
+                dons[i] = new long[]{campagne, centimes, seconde};
+            }
+            return dons;
+        }
+
+        /**
+         * Compare les trois regroupements à un calcul direct sur les dons ajoutés.
+         */
+        private static void verifierAgregats(ColonnesDons colonnes, long[][] dons, ColonnesDons.Filtre filtre) {
+            long[] nombresCampagne = new long[CAMPAGNES + 1];
+            long[] centimesCampagne = new long[CAMPAGNES + 1];
+            long[] nombresJour = new long[JOURS];
+            long[] centimesJour = new long[JOURS];
+            long[] nombresTranche = new long[BORNES.length + 1];
+            long[] centimesTranche = new long[BORNES.length + 1];
+            for (long[] don : dons) {
+                if ((filtre.campagneId() != null && don[0] != filtre.campagneId())
+                        || don[2] < filtre.debutSeconde() || don[2] >= filtre.finSeconde()) {
+                    continue;
+                }
+                int jour = (int) ((don[2] - SECONDE_ORIGINE) / 86_400);
+                int tranche = 0;
+                while (tranche < BORNES.length && don[1] >= BORNES[tranche]) {
+                    tranche++;
+                }
+                nombresCampagne[(int) don[0]]++;
+                centimesCampagne[(int) don[0]] += don[1];
+                nombresJour[jour]++;
+                centimesJour[jour] += don[1];
+                nombresTranche[tranche]++;
+                centimesTranche[tranche] += don[1];
+            }
+
+            ColonnesDons.Agregat parCampagne = colonnes.agregerParCampagne(filtre);
+            assertEquals(0, parCampagne.origine());
+            assertArrayEquals(nombresCampagne, parCampagne.nombres());
+            assertArrayEquals(centimesCampagne, parCampagne.centimes());
+
+            ColonnesDons.Agregat parJour = colonnes.agregerParJour(filtre);
+            for (int i = 0; i < parJour.nombres().length; i++) {
+                int jour = (int) (parJour.origine() + i - JOUR_ORIGINE);
+                assertEquals(nombresJour[jour], parJour.nombres()[i]);
+                assertEquals(centimesJour[jour], parJour.centimes()[i]);
+            }
+            assertEquals(somme(nombresJour), somme(parJour.nombres()));
+
+            ColonnesDons.Agregat parTranche = colonnes.agregerParTranche(filtre, BORNES);
+            assertArrayEquals(nombresTranche, parTranche.nombres());
+            assertArrayEquals(centimesTranche, parTranche.centimes());
+        }
+
+        private static long somme(long[] valeurs) {
+            long somme = 0;
+            for (long valeur : valeurs) {
+                somme += valeur;
+            }
+            return somme;
+        }
+}
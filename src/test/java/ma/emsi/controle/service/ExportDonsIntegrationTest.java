@@ -0,0 +1,117 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Test d'intégration de l'export d'une campagne volumineuse, lue en flux par le repository sur H2.
+ */
+@SpringBootTest
+public class ExportDonsIntegrationTest {
+
+        private static final int NOMBRE_DONS = 200_000;
+
+        /**
+         * Allocations tolérées par don : la projection d'une ligne (DonDTO, nom, date, montant) et les objets du pilote
+         * JDBC occupent quelques centaines d'octets ; une entité chargée et gardée dans le contexte de persistance
+         * dépasserait cette borne
+         */
+        private static final long OCTETS_PAR_DON_MAX = 2048;
+
+        @Autowired
+        private ExportDons exportDons;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        /**
+         * Exporte en CSV une campagne de 200 000 dons par la requête réelle : toutes les lignes sont écrites dans
+         * l'ordre chronologique, par écritures d'au plus un tampon, et la mémoire allouée par don reste de l'ordre
+         * de la projection d'une ligne.
+         */
+        @Test
+        void testExportCampagneVolumineuse() throws IOException {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne export volumineux");
+            campagne.setObjectifMontant(Montant.parse("1000000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            Long campagneId = campagneRepository.save(campagne).getId();
+            jdbcTemplate.update("INSERT INTO donation (id, campagne_id, nom_donateur, montant, date) "
+                    + "SELECT NEXT VALUE FOR donation_seq, ?, 'Donateur ' || X, 10.50, "
+                    + "DATEADD(SECOND, X, TIMESTAMP '2025-01-01 00:00:00') FROM SYSTEM_RANGE(1, ?)", campagneId, NOMBRE_DONS);
+            try {
+                ExportDons.Export export = exportDons.preparer(campagneId, null, null, ExportDons.Format.CSV);
+                Sortie sortie = new Sortie();
+                com.sun.management.ThreadMXBean threads =
+                        (com.sun.management.ThreadMXBean) java.lang.management.ManagementFactory.getThreadMXBean();
+
+                long octetsAvant = threads.getCurrentThreadAllocatedBytes();
+                assertEquals(NOMBRE_DONS, exportDons.exporter(export, false, sortie));
+                long alloues = threads.getCurrentThreadAllocatedBytes() - octetsAvant;
+
+                assertEquals(NOMBRE_DONS + 1, sortie.lignes);
+                assertTrue(sortie.ecritureMax <= 65536, "Écriture de " + sortie.ecritureMax + " octets");
+                String derniereLigne = sortie.derniereLigne();
+                assertTrue(derniereLigne.endsWith(",\"Donateur " + NOMBRE_DONS + "\",10.50,2025-01-03T07:33:20"), derniereLigne);
+                assertTrue(alloues / NOMBRE_DONS < OCTETS_PAR_DON_MAX, alloues / NOMBRE_DONS + " octets alloués par don");
+            } finally {
+                jdbcTemplate.update("DELETE FROM donation WHERE campagne_id = ?", campagneId);
+                campagneRepository.deleteById(campagneId);
+            }
+        }
+
+        /**
+         * Flux de sortie qui compte les lignes reçues et garde les derniers octets, sans allocation par écriture.
+         */
+        private static final class Sortie extends OutputStream {
+            private long lignes;
+            private int ecritureMax;
+            private final byte[] fin = new byte[256];
+            private long octets;
+
+            @Override
+            public void write(int octet) {
+                if (octet == '\n') {
+                    lignes++;
+                }
+                fin[(int) (octets++ % fin.length)] = (byte) octet;
+            }
+
+            @Override
+            public void write(byte[] source, int debut, int longueur) {
+                ecritureMax = Math.max(ecritureMax, longueur);
+                for (int i = debut; i < debut + longueur; i++) {
+                    write(source[i]);
+                }
+            }
+
+            /**
+             * @return La dernière ligne complète reçue, sans sa fin de ligne
+             */
+            private String derniereLigne() {
+                int taille = (int) Math.min(octets, fin.length);
+                byte[] derniers = new byte[taille];
+                for (int i = 0; i < taille; i++) {
+                    derniers[i] = fin[(int) ((octets - taille + i) % fin.length)];
+                }
+                String texte = new String(derniers, StandardCharsets.US_ASCII).stripTrailing();
+                return texte.substring(texte.lastIndexOf('\n') + 1);
+            }
+        }
+}
@@ -0,0 +1,215 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.config.JsonConfig;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.DonRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour ExportDons.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ExportDonsTest {
+
+        private static final int TAILLE_TAMPON = 4096;
+
+        private static final String NOM_CAMPAGNE = "Campagne \"Été\", 2025";
+
+        /**
+         * ObjectMapper configuré comme celui de l'application, pour comparer le NDJSON à la sérialisation de DonDTO
+         */
+        private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .modulesToInstall(JsonConfig.module(), JsonConfig.moduleMontant()).build();
+
+        @Mock
+        private DonRepository donRepository;
+
+        @Mock
+        private IndexCampagnes indexCampagnes;
+
+        private ExportDons exportDons;
+
+        @BeforeEach
+        void setUp() {
+            exportDons = new ExportDons(donRepository, indexCampagnes);
+            ReflectionTestUtils.setField(exportDons, "tailleTampon", TAILLE_TAMPON);
+        }
+
+        /**
+         * Vérifie que chaque ligne NDJSON est identique à la sérialisation JSON du DonDTO correspondant,
+         * y compris pour les caractères à échapper, hors ASCII ou hors du plan multilingue de base.
+         */
+        @Test
+        void testNdjsonIdentiqueAuJson() throws Exception {
+            List<DonDTO> dons = donsVaries();
+            ExportDons.Export export = preparer(ExportDons.Format.NDJSON, dons);
+
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+            assertEquals(dons.size(), exportDons.exporter(export, false, sortie));
+
+            String[] lignes = sortie.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals(dons.size(), lignes.length);
+            for (int i = 0; i < lignes.length; i++) {
+                DonDTO attendu = copie(dons.get(i));
+                attendu.setNomCampagne(NOM_CAMPAGNE);
+                assertEquals(objectMapper.writeValueAsString(attendu), lignes[i]);
+            }
+        }
+
+        /**
+         * Vérifie le CSV : en-tête, champs texte entre guillemets (guillemets doublés), date vide si absente.
+         */
+        @Test
+        void testCsv() throws Exception {
+            List<DonDTO> dons = List.of(
+                    new DonDTO(1L, "Marie \"Mimi\" Dupont", Montant.parse("500.00"), LocalDateTime.of(2025, 4, 1, 10, 30)),
+                    new DonDTO(2L, "Zoé, Paul", Montant.parse("0.5"), LocalDateTime.of(2025, 4, 1, 10, 30, 5, 120_000_000)),
+                    new DonDTO(3L, "Anonyme", Montant.parse("12"), null));
+            ExportDons.Export export = preparer(ExportDons.Format.CSV, dons);
+
+            ByteArrayOutputStream sortie = new ByteArrayOutputStream();
+            exportDons.exporter(export, false, sortie);
+
+            assertEquals("id,campagne,donateur,montant,date\r\n"
+                    + "1,\"Campagne \"\"Été\"\", 2025\",\"Marie \"\"Mimi\"\" Dupont\",500.00,2025-04-01T10:30:00\r\n"
+                    + "2,\"Campagne \"\"Été\"\", 2025\",\"Zoé, Paul\",0.50,2025-04-01T10:30:05.12\r\n"
+                    + "3,\"Campagne \"\"Été\"\", 2025\",\"Anonyme\",12.00,\r\n", sortie.toString(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Vérifie que la sortie compressée se décompresse en l'export non compressé.
+         */
+        @Test
+        void testGzip() throws Exception {
+            List<DonDTO> dons = donsVaries();
+            ExportDons.Export export = preparer(ExportDons.Format.NDJSON, dons);
+            ByteArrayOutputStream brut = new ByteArrayOutputStream();
+            exportDons.exporter(export, false, brut);
+
+            when(donRepository.parcourirDonsPeriode(eq(1L), any(), any())).thenReturn(dons.stream());
+            ByteArrayOutputStream compresse = new ByteArrayOutputStream();
+            exportDons.exporter(export, true, compresse);
+
+            try (GZIPInputStream entree = new GZIPInputStream(new ByteArrayInputStream(compresse.toByteArray()))) {
+                assertEquals(brut.toString(StandardCharsets.UTF_8), new String(entree.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        /**
+         * Vérifie les erreurs de préparation : campagne inconnue et période vide.
+         */
+        @Test
+        void testPreparationInvalide() {
+            when(indexCampagnes.trouver(1L)).thenReturn(Optional.of(campagne()));
+            when(indexCampagnes.trouver(2L)).thenReturn(Optional.empty());
+            LocalDateTime maintenant = LocalDateTime.now();
+
+            assertThrows(EntityNotFoundException.class, () -> exportDons.preparer(2L, null, null, ExportDons.Format.CSV));
+            assertThrows(IllegalStateException.class,
+                    () -> exportDons.preparer(1L, maintenant, maintenant, ExportDons.Format.CSV));
+        }
+
+        /**
+         * Exporte 5 millions de dons, en CSV puis en NDJSON compressé : le flux de sortie ne reçoit jamais plus
+         * d'un tampon à la fois, et l'encodage n'alloue qu'une quantité de mémoire fixe, indépendante du nombre de dons.
+         * Le repository est simulé ; la lecture réelle est vérifiée par ExportDonsIntegrationTest.
+         */
+        @Test
+        void testMemoireConstante() throws Exception {
+            int nombreDons = 5_000_000;
+            DonDTO don = new DonDTO(123_456_789L, "Donateur Éloïse", Montant.parse("42.50"), LocalDateTime.of(2025, 4, 1, 10, 30, 5));
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+            for (boolean gzip : new boolean[]{false, true}) {
+                ExportDons.Format format = gzip ? ExportDons.Format.NDJSON : ExportDons.Format.CSV;
+                // Le même DTO est renvoyé pour chaque ligne : seules les allocations de l'export sont mesurées
+                ExportDons.Export export = preparer(format, List.of());
+                when(donRepository.parcourirDonsPeriode(eq(1L), any(), any()))
+                        .thenReturn(Stream.generate(() -> don).limit(nombreDons));
+                Compteur sortie = new Compteur();
+
+                long octetsAvant = threads.getCurrentThreadAllocatedBytes();
+                assertEquals(nombreDons, exportDons.exporter(export, gzip, sortie));
+                long alloues = threads.getCurrentThreadAllocatedBytes() - octetsAvant;
+
+                assertTrue(sortie.ecritureMax <= TAILLE_TAMPON, "Écriture de " + sortie.ecritureMax + " octets");
+                assertTrue(gzip || sortie.octets > (long) nombreDons * 50, sortie.octets + " octets écrits");
+                assertTrue(alloues < 1_000_000, alloues + " octets alloués pour " + nombreDons + " dons");
+            }
+        }
+
+        private ExportDons.Export preparer(ExportDons.Format format, List<DonDTO> dons) {
+            when(indexCampagnes.trouver(1L)).thenReturn(Optional.of(campagne()));
+            if (!dons.isEmpty()) {
+                when(donRepository.parcourirDonsPeriode(eq(1L), any(), any())).thenReturn(dons.stream());
+            }
+            return exportDons.preparer(1L, null, null, format);
+        }
+
+        private static CampagneInfo campagne() {
+            return new CampagneInfo(1L, NOM_CAMPAGNE, LocalDate.now(), LocalDate.now(), StatutCampagne.OUVERTE);
+        }
+
+        private static List<DonDTO> donsVaries() {
+            return List.of(
+                    new DonDTO(1L, "Marie \"Mimi\" Dupont", Montant.parse("500.00"), LocalDateTime.of(2025, 4, 1, 10, 30)),
+                    new DonDTO(2L, "Back\\slash\tTab\nLigne\u0001", Montant.parse("0.05"), LocalDateTime.of(2025, 4, 1, 10, 30, 5, 120_000_000)),
+                    new DonDTO(3L, "Zoë Ñúñez 日本 😀", Montant.parse("-3"), LocalDateTime.of(12025, 1, 1, 0, 0, 0, 1)),
+                    new DonDTO(Long.MAX_VALUE, "Sans date", Montant.deCentimes(Long.MAX_VALUE), null));
+        }
+
+        private static DonDTO copie(DonDTO don) {
+            return new DonDTO(don.getId(), don.getNomDonateur(), don.getMontant(), don.getDate());
+        }
+
+        /**
+         * Flux de sortie qui compte les octets reçus sans les conserver.
+         */
+        private static final class Compteur extends OutputStream {
+            private long octets;
+            private int ecritureMax;
+
+            @Override
+            public void write(int octet) {
+                octets++;
+                ecritureMax = Math.max(ecritureMax, 1);
+            }
+
+            @Override
+            public void write(byte[] source, int debut, int longueur) {
+                octets += longueur;
+                ecritureMax = Math.max(ecritureMax, longueur);
+            }
+        }
+}
@@ -0,0 +1,315 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests d'intégration de l'import en masse.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ImportDonneesIntegrationTest {
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private ImportDonnees importDonnees;
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        @Autowired
+        private TotauxCampagnes totauxCampagnes;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private ServiceStatistiquesDons serviceStatistiquesDons;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @TempDir
+        private Path repertoire;
+
+        /**
+         * Petits morceaux et petites fenêtres : le fichier est réparti entre plusieurs threads,
+         * et des lignes sont coupées par la fin des fenêtres
+         */
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(importDonnees, "tailleLot", 3);
+            ReflectionTestUtils.setField(importDonnees, "tailleFenetre", 256L);
+        }
+
+        /**
+         * Importe un CSV de dons (BOM, fins de ligne CRLF, colonnes dans le désordre, colonne inconnue, champs entre
+         * guillemets) : les lignes valides sont en base avec les montants collectés et les totaux en mémoire,
+         * chaque ligne invalide est dans le fichier de rejets avec son numéro et le champ en cause.
+         */
+        @Test
+        void testImportDonsCsv() throws IOException {
+            Campagne a = creerCampagne("Import Dons A");
+            Campagne b = creerCampagne("Import Dons B");
+            StringBuilder csv = new StringBuilder("\uFEFFnomDonateur,montant,campagneId,date,commentaire\r\n")
+                    .append("\"Marie \"\"Mimi\"\" Dupont\",500.00,").append(a.getId()).append(",2025-04-01T10:30:00,x\r\n")
+                    .append("\"Zoé, Paul\",0.5,").append(b.getId()).append(",,\r\n")
+                    .append(",12,").append(a.getId()).append(",,\r\n")
+                    .append("Paul,10.005,").append(a.getId()).append(",,\r\n")
+                    .append("\r\n")
+                    .append("Jean,10,999999,,\r\n")
+                    .append("Jean,-3,").append(a.getId()).append(",,\r\n")
+                    .append("Jean,10,").append(a.getId()).append(",hier,\r\n")
+                    .append("\"Jean,10,").append(a.getId()).append(",,\r\n");
+            for (int i = 0; i < 200; i++) {
+                csv.append("Donateur ").append(i).append(",1.00,").append(a.getId()).append(",,\r\n");
+            }
+            csv.append("Luc,25,").append(b.getId()).append(",2025-04-02T08:00:00");
+            Path fichier = ecrire("dons.csv", csv.toString());
+
+            ImportDonnees.Progression progression = importDonnees.importer(fichier, ImportDonnees.Type.DONS,
+                    ImportDonnees.Format.CSV);
+
+            assertEquals(ImportDonnees.Statut.TERMINE, progression.statut());
+            assertEquals(209, progression.lignes());
+            assertEquals(203, progression.importees());
+            assertEquals(6, progression.rejetees());
+            assertEquals(progression.octets(), progression.octetsTraites());
+            assertEquals(201, compterDons(a));
+            assertEquals(2, compterDons(b));
+            assertEquals(List.of("Luc", "Zoé, Paul"), jdbcTemplate.queryForList(
+                    "SELECT nom_donateur FROM donation WHERE campagne_id = ? ORDER BY nom_donateur", String.class, b.getId()));
+            assertEquals("Marie \"Mimi\" Dupont", jdbcTemplate.queryForObject(
+                    "SELECT nom_donateur FROM donation WHERE campagne_id = ? AND montant = 500", String.class, a.getId()));
+
+            objectifsCampagnes.fusionner();
+            assertEquals(Montant.parse("700.00"), campagneRepository.findById(a.getId()).orElseThrow().getMontantCollecte());
+            assertEquals(Montant.parse("25.50"), campagneRepository.findById(b.getId()).orElseThrow().getMontantCollecte());
+            assertEquals(201, totauxCampagnes.getTotaux(a.getId()).nombreDons());
+            assertEquals(Montant.parse("25.50"), totauxCampagnes.getTotaux(b.getId()).montantCollecte());
+
+            Map<Long, String> rejets = lireRejets(importDonnees.getFichierRejets());
+            assertEquals(List.of(4L, 5L, 7L, 8L, 9L, 10L), List.copyOf(rejets.keySet()));
+            assertTrue(rejets.get(4L).startsWith("\"nomDonateur : "), rejets.get(4L));
+            assertTrue(rejets.get(5L).startsWith("\"montant : "), rejets.get(5L));
+            assertTrue(rejets.get(7L).startsWith("\"campagneId : Campagne non trouvée avec l'ID: 999999\""), rejets.get(7L));
+            assertTrue(rejets.get(8L).startsWith("\"montant : "), rejets.get(8L));
+            assertTrue(rejets.get(9L).startsWith("\"date : Date invalide : hier\""), rejets.get(9L));
+            assertTrue(rejets.get(10L).startsWith("\"ligne : Guillemet non fermé"), rejets.get(10L));
+            assertTrue(rejets.get(10L).endsWith(",\"\"\"Jean,10," + a.getId() + ",,\""), rejets.get(10L));
+
+            // Les identifiants pris dans la séquence ne gênent pas les dons enregistrés ensuite par Hibernate
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Après import");
+            don.setMontant(Montant.parse("5.00"));
+            assertNotNull(serviceDon.enregistrerDon(a.getId(), don).getId());
+            assertEquals(202, compterDons(a));
+        }
+
+        /**
+         * Importe des campagnes puis des dons en NDJSON ; les dons sans date prennent la date de début de l'import.
+         */
+        @Test
+        void testImportCampagnesPuisDonsNdjson() throws IOException {
+            Path campagnes = ecrire("campagnes.ndjson", """
+                    {"nom":"Import NDJSON","objectifMontant":"1000.00","dateDebut":"2025-01-01","dateFin":"2025-12-31"}
+                    {"nom":"","objectifMontant":100,"dateDebut":"2025-01-01","dateFin":"2025-12-31"}
+                    {"nom":"Montant invalide","objectifMontant":"abc","dateDebut":"2025-01-01","dateFin":"2025-12-31"}
+                    {"nom":"JSON invalide",
+                    {"nom":"Sans fin","objectifMontant":5,"dateDebut":"2025-01-01"}
+                    """);
+
+            ImportDonnees.Progression progression = importDonnees.importer(campagnes, ImportDonnees.Type.CAMPAGNES,
+                    ImportDonnees.Format.NDJSON);
+
+            assertEquals(ImportDonnees.Statut.TERMINE, progression.statut());
+            assertEquals(1, progression.importees());
+            assertEquals(4, progression.rejetees());
+            Map<Long, String> rejets = lireRejets(importDonnees.getFichierRejets());
+            assertTrue(rejets.get(2L).startsWith("\"nom : "), rejets.get(2L));
+            assertTrue(rejets.get(3L).startsWith("\"objectifMontant : "), rejets.get(3L));
+            assertTrue(rejets.get(4L).startsWith("\"ligne : "), rejets.get(4L));
+            assertTrue(rejets.get(5L).startsWith("\"dateFin : "), rejets.get(5L));
+            Campagne campagne = campagneRepository.findAll().stream()
+                    .filter(c -> c.getNom().equals("Import NDJSON")).findFirst().orElseThrow();
+            assertEquals(Montant.parse("1000.00"), campagne.getObjectifMontant());
+            assertEquals(LocalDate.of(2025, 12, 31), campagne.getDateFin());
+
+            Path dons = ecrire("dons.ndjson", "{\"campagneId\":" + campagne.getId() + ",\"nomDonateur\":\"Ana\",\"montant\":12.5}\n"
+                    + "{\"campagneId\":" + campagne.getId() + ",\"nomDonateur\":\"Bo\",\"montant\":\"7.50\",\"date\":\"2025-03-01T09:00:00\"}\n"
+                    + "{\"campagneId\":" + campagne.getId() + ",\"nomDonateur\":\"Cy\",\"montant\":1.001}\n");
+            LocalDateTime avant = LocalDateTime.now();
+
+            progression = importDonnees.importer(dons, ImportDonnees.Type.DONS, ImportDonnees.Format.NDJSON);
+
+            assertEquals(2, progression.importees());
+            assertEquals(1, progression.rejetees());
+            assertTrue(lireRejets(importDonnees.getFichierRejets()).get(3L).startsWith("\"montant : "));
+            objectifsCampagnes.fusionner();
+            assertEquals(Montant.parse("20.00"), campagneRepository.findById(campagne.getId()).orElseThrow().getMontantCollecte());
+            LocalDateTime date = jdbcTemplate.queryForObject(
+                    "SELECT date FROM donation WHERE campagne_id = ? AND nom_donateur = 'Ana'", LocalDateTime.class, campagne.getId());
+            assertTrue(!date.isBefore(avant.minusSeconds(1)) && !date.isAfter(LocalDateTime.now()), date.toString());
+        }
+
+        /**
+         * Importe des dons d'une année passée après une reconstruction des statistiques des jours révolus :
+         * ils figurent dans /api/rapports et dans les statistiques, et une nouvelle reconstruction ne les compte pas deux fois.
+         */
+        @Test
+        void testImportHistoriqueDansRapportsEtStatistiques() throws Exception {
+            Campagne campagne = creerCampagne("Import Historique");
+            serviceStatistiquesDons.reconstruire(LocalDate.now().atStartOfDay());
+            Path fichier = ecrire("historique.csv", "campagneId,nomDonateur,montant,date\n"
+                    + campagne.getId() + ",Ana,10.00,2024-05-10T09:15:00\n"
+                    + campagne.getId() + ",Bo,20.00,2024-05-10T18:40:00\n"
+                    + campagne.getId() + ",Cy,5.50,2024-05-11T12:00:00\n");
+
+            ImportDonnees.Progression progression = importDonnees.importer(fichier, ImportDonnees.Type.DONS,
+                    ImportDonnees.Format.CSV);
+            assertEquals(3, progression.importees());
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/rapports")
+                            .param("regroupement", "JOUR")
+                            .param("campagneId", campagne.getId().toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[0].cle").value("2024-05-10"))
+                    .andExpect(jsonPath("$[0].nombreDons").value(2))
+                    .andExpect(jsonPath("$[0].montantTotal").value(30.0))
+                    .andExpect(jsonPath("$[1].cle").value("2024-05-11"))
+                    .andExpect(jsonPath("$[1].nombreDons").value(1));
+            verifierStatistiquesHistorique(campagne);
+
+            serviceStatistiquesDons.reconstruire(LocalDate.now().atStartOfDay());
+            verifierStatistiquesHistorique(campagne);
+        }
+
+        /**
+         * Importe des dons d'une année passée dans une campagne dont le classement des donateurs est déjà chargé :
+         * /top-donateurs les compte sans attendre un rechargement du classement.
+         */
+        @Test
+        void testImportHistoriqueDansClassement() throws Exception {
+            Campagne campagne = creerCampagne("Import Classement");
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Zoé");
+            don.setMontant(Montant.parse("50.00"));
+            serviceDon.enregistrerDon(campagne.getId(), don);
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/top-donateurs", campagne.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].nomDonateur").value("Zoé"));
+            Path fichier = ecrire("classement.csv", "campagneId,nomDonateur,montant,date\n"
+                    + campagne.getId() + ",Ana,30.00,2023-02-01T10:00:00\n"
+                    + campagne.getId() + ",Ana,40.00,2023-03-01T10:00:00\n"
+                    + campagne.getId() + ",Bo,5.00,2023-03-02T10:00:00\n");
+
+            assertEquals(3, importDonnees.importer(fichier, ImportDonnees.Type.DONS, ImportDonnees.Format.CSV).importees());
+
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/top-donateurs", campagne.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(3)))
+                    .andExpect(jsonPath("$[0].nomDonateur").value("Ana"))
+                    .andExpect(jsonPath("$[0].montantTotal").value(70.0))
+                    .andExpect(jsonPath("$[0].nombreDons").value(2))
+                    .andExpect(jsonPath("$[1].nomDonateur").value("Zoé"))
+                    .andExpect(jsonPath("$[2].nomDonateur").value("Bo"));
+        }
+
+        /**
+         * Vérifie qu'un CSV sans colonne obligatoire est refusé avant l'import, sans bloquer les imports suivants.
+         */
+        @Test
+        void testEnteteIncomplete() throws IOException {
+            Path fichier = ecrire("incomplet.csv", "campagneId,nomDonateur,date\n1,Jean,\n");
+
+            IllegalStateException erreur = assertThrows(IllegalStateException.class,
+                    () -> importDonnees.importer(fichier, ImportDonnees.Type.DONS, ImportDonnees.Format.CSV));
+            assertTrue(erreur.getMessage().contains("montant"), erreur.getMessage());
+
+            Path vide = ecrire("vide.csv", "campagneId,nomDonateur,montant\n");
+            ImportDonnees.Progression progression = importDonnees.importer(vide, ImportDonnees.Type.DONS,
+                    ImportDonnees.Format.CSV);
+            assertEquals(ImportDonnees.Statut.TERMINE, progression.statut());
+            assertEquals(0, progression.lignes());
+        }
+
+        private void verifierStatistiquesHistorique(Campagne campagne) throws Exception {
+            mockMvc.perform(MockMvcRequestBuilders.get("/api/campagnes/{id}/stats", campagne.getId())
+                            .param("debut", "2024-05-01T00:00:00")
+                            .param("fin", "2024-06-01T00:00:00"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[0].nombreDons").value(2))
+                    .andExpect(jsonPath("$[0].montantTotal").value(30.0))
+                    .andExpect(jsonPath("$[1].nombreDons").value(1))
+                    .andExpect(jsonPath("$[1].montantTotal").value(5.5));
+        }
+
+        private Campagne creerCampagne(String nom) {
+            Campagne campagne = new Campagne();
+            campagne.setNom(nom);
+            campagne.setObjectifMontant(Montant.parse("10000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+
+        private long compterDons(Campagne campagne) {
+            return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM donation WHERE campagne_id = ?", Long.class,
+                    campagne.getId());
+        }
+
+        private Path ecrire(String nom, String contenu) throws IOException {
+            return Files.writeString(repertoire.resolve(nom), contenu, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return Les lignes du fichier de rejets par numéro de ligne, sans le numéro
+         */
+        private static Map<Long, String> lireRejets(Path fichier) throws IOException {
+            List<String> lignes = Files.readAllLines(fichier, StandardCharsets.UTF_8);
+            assertEquals("ligne,erreurs,contenu", lignes.get(0));
+            Map<Long, String> rejets = new TreeMap<>();
+            for (String ligne : lignes.subList(1, lignes.size())) {
+                int virgule = ligne.indexOf(',');
+                rejets.put(Long.parseLong(ligne.substring(0, virgule)), ligne.substring(virgule + 1));
+            }
+            return rejets;
+        }
+}
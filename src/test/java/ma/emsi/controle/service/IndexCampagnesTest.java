@@ -0,0 +1,109 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour IndexCampagnes.
+ */
+@ExtendWith(MockitoExtension.class)
+public class IndexCampagnesTest {
+
+        @Mock
+        private CampagneRepository campagneRepository;
+
+        @InjectMocks
+        private IndexCampagnes indexCampagnes;
+
+        /**
+         * Vérifie que les campagnes indexées sont servies sans requête.
+         */
+        @Test
+        void testReconstruireEtTrouver() {
+            LocalDate aujourdhui = LocalDate.now();
+            when(campagneRepository.findAllInfos()).thenReturn(List.of(
+                    new CampagneInfo(1L, "Campagne 1", aujourdhui.minusDays(1), aujourdhui.plusDays(1), StatutCampagne.OUVERTE)));
+
+            indexCampagnes.reconstruire();
+
+            assertEquals("Campagne 1", indexCampagnes.trouver(1L).orElseThrow().nom());
+            verify(campagneRepository, never()).findInfoById(1L);
+            assertEquals(1, indexCampagnes.getStatistiques().taille());
+        }
+
+        /**
+         * Vérifie que les modifications de campagne sont répercutées dans l'index.
+         */
+        @Test
+        void testModificationEtSuppression() {
+            LocalDate aujourdhui = LocalDate.now();
+            indexCampagnes.onCampagneModifiee(new CampagneModifieeEvent(2L, "Avant", Montant.parse("10"),
+                    aujourdhui, aujourdhui, StatutCampagne.OUVERTE, false));
+            indexCampagnes.onCampagneModifiee(new CampagneModifieeEvent(2L, "Après", Montant.parse("10"),
+                    aujourdhui.plusDays(3), aujourdhui.plusDays(5), StatutCampagne.OUVERTE, false));
+
+            CampagneInfo info = indexCampagnes.trouver(2L).orElseThrow();
+            assertEquals("Après", info.nom());
+            assertFalse(info.estActiveLe(aujourdhui));
+
+            indexCampagnes.onCampagneModifiee(new CampagneModifieeEvent(2L, "Après", Montant.parse("10"),
+                    aujourdhui.plusDays(3), aujourdhui.plusDays(5), StatutCampagne.OUVERTE, true));
+            when(campagneRepository.findInfoById(2L)).thenReturn(Optional.empty());
+            assertTrue(indexCampagnes.trouver(2L).isEmpty());
+        }
+
+        /**
+         * Vérifie qu'une campagne inconnue est chargée une seule fois puis servie par l'index.
+         */
+        @Test
+        void testChargementALaDemande() {
+            LocalDate aujourdhui = LocalDate.now();
+            when(campagneRepository.findInfoById(3L)).thenReturn(Optional.of(
+                    new CampagneInfo(3L, "Campagne 3", aujourdhui, aujourdhui, StatutCampagne.OUVERTE)));
+
+            indexCampagnes.trouver(3L);
+            indexCampagnes.trouver(3L);
+
+            verify(campagneRepository, times(1)).findInfoById(3L);
+            assertEquals(1, indexCampagnes.getStatistiques().chargements());
+        }
+
+        /**
+         * Vérifie qu'une campagne lue avant une suppression appliquée pendant son chargement n'est pas remise
+         * dans l'index.
+         */
+        @Test
+        void testSuppressionPendantChargement() {
+            LocalDate aujourdhui = LocalDate.now();
+            when(campagneRepository.findInfoById(4L)).thenAnswer(invocation -> {
+                indexCampagnes.onCampagneModifiee(new CampagneModifieeEvent(4L, "Campagne 4", Montant.parse("10"),
+                        aujourdhui, aujourdhui, StatutCampagne.OUVERTE, true));
+                return Optional.of(new CampagneInfo(4L, "Campagne 4", aujourdhui, aujourdhui, StatutCampagne.OUVERTE));
+            }).thenReturn(Optional.empty());
+
+            assertTrue(indexCampagnes.trouver(4L).isPresent());
+            assertEquals(0, indexCampagnes.getStatistiques().taille());
+            assertTrue(indexCampagnes.trouver(4L).isEmpty());
+            verify(campagneRepository, times(2)).findInfoById(4L);
+        }
+}
@@ -0,0 +1,142 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.entities.Montant;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests unitaires pour JournalDons.
+ */
+public class JournalDonsTest {
+
+        @TempDir
+        Path repertoire;
+
+        /**
+         * Vérifie que seuls les dons acceptés et non traités sont repris après une réouverture.
+         */
+        @Test
+        void testRepriseDesDonsNonTraites() throws Exception {
+            Path fichier = repertoire.resolve("journal.log");
+            try (JournalDons journal = new JournalDons(fichier)) {
+                journal.ajouter("s1", don(1L, "Marie|Dupont", "10.50"));
+                journal.ajouter("s2", don(2L, "Pierre Martin", "20.00"));
+                journal.marquerTraites(List.of("s1"));
+            }
+
+            try (JournalDons journal = new JournalDons(fichier)) {
+                Map<String, DonCampagneDTO> enAttente = journal.relireEnAttente();
+                assertEquals(1, enAttente.size());
+                DonCampagneDTO don = enAttente.get("s2");
+                assertEquals(2L, don.getCampagneId());
+                assertEquals("Pierre Martin", don.getNomDonateur());
+                assertEquals(Montant.parse("20.00"), don.getMontant());
+            }
+        }
+
+        /**
+         * Vérifie qu'une ligne interrompue par un arrêt brutal est ignorée et n'altère pas les ajouts suivants.
+         */
+        @Test
+        void testLigneIncompleteIgnoree() throws Exception {
+            Path fichier = repertoire.resolve("journal.log");
+            try (JournalDons journal = new JournalDons(fichier)) {
+                journal.ajouter("s1", don(1L, "Marie", "10.50"));
+            }
+            Files.writeString(fichier, "A|s2|1|TWFyaWU|99", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+            try (JournalDons journal = new JournalDons(fichier)) {
+                journal.ajouter("s3", don(1L, "Sophie", "5.00"));
+                Map<String, DonCampagneDTO> enAttente = journal.relireEnAttente();
+                assertEquals(List.of("s1", "s3"), List.copyOf(enAttente.keySet()));
+            }
+        }
+
+        /**
+         * Vérifie que la compaction ne retire que les dons marqués traités, et que le journal compacté
+         * reçoit les ajouts suivants et se relit après une réouverture.
+         */
+        @Test
+        void testCompaction() throws Exception {
+            Path fichier = repertoire.resolve("journal.log");
+            try (JournalDons journal = new JournalDons(fichier)) {
+                journal.ajouter("s1", don(1L, "Marie", "10.50"));
+                journal.ajouter("s2", don(2L, "Pierre", "20.00"));
+                journal.marquerTraites(List.of("s1"));
+                assertTrue(journal.compacter());
+                assertFalse(journal.compacter());
+                assertEquals(List.of("A"), Files.readAllLines(fichier).stream().map(l -> l.substring(0, 1)).toList());
+                journal.ajouter("s3", don(1L, "Sophie", "5.00"));
+            }
+
+            try (JournalDons journal = new JournalDons(fichier)) {
+                assertEquals(List.of("s2", "s3"), List.copyOf(journal.relireEnAttente().keySet()));
+                journal.marquerTraites(List.of("s2", "s3"));
+                assertTrue(journal.compacter());
+                assertEquals(0L, Files.size(fichier));
+            }
+        }
+
+        /**
+         * Vérifie que des soumissions simultanées partagent leurs fsync, et que tous les dons acquittés sont relus
+         * après une réouverture.
+         */
+        @Test
+        void testSynchronisationParGroupe() throws Exception {
+            Path fichier = repertoire.resolve("journal.log");
+            int threads = 16;
+            int donsParThread = 50;
+            try (JournalDons journal = new JournalDons(fichier)) {
+                ExecutorService executeur = Executors.newFixedThreadPool(threads);
+                CountDownLatch depart = new CountDownLatch(1);
+                List<Future<?>> soumissions = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    soumissions.add(executeur.submit(() -> {
+                        depart.await();
+                        for (int i = 0; i < donsParThread; i++) {
+                            journal.ajouter("s" + thread + "-" + i, don(1L, "Donateur", "1.00"));
+                        }
+                        return null;
+                    }));
+                }
+                depart.countDown();
+                for (Future<?> soumission : soumissions) {
+                    soumission.get(30, TimeUnit.SECONDS);
+                }
+                executeur.shutdown();
+                assertTrue(journal.synchronisations() < threads * donsParThread,
+                        journal.synchronisations() + " fsync pour " + threads * donsParThread + " dons");
+            }
+
+            try (JournalDons journal = new JournalDons(fichier)) {
+                assertEquals(threads * donsParThread, journal.relireEnAttente().size());
+            }
+        }
+
+        private static DonCampagneDTO don(Long campagneId, String nom, String montant) {
+            DonCampagneDTO don = new DonCampagneDTO();
+            don.setCampagneId(campagneId);
+            don.setNomDonateur(nom);
+            don.setMontant(Montant.parse(montant));
+            return don;
+        }
+}
@@ -0,0 +1,101 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests d'intégration du suivi du montant collecté et de la clôture des campagnes financées.
+ */
+@SpringBootTest
+public class ObjectifsCampagnesIntegrationTest {
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private ServiceLotDons serviceLotDons;
+
+        @Autowired
+        private IndexCampagnes indexCampagnes;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        /**
+         * Vérifie que les dons, unitaires et par lots, sont fusionnés dans le montant collecté,
+         * et que la campagne est close dès que l'objectif est atteint.
+         */
+        @Test
+        void testClotureQuandObjectifAtteint() {
+            Long campagneId = creerCampagne("100.00").getId();
+
+            serviceDon.enregistrerDon(campagneId, don("60.00"));
+            objectifsCampagnes.fusionner();
+
+            Campagne campagne = campagneRepository.findById(campagneId).orElseThrow();
+            assertEquals(0, Montant.parse("60.00").compareTo(campagne.getMontantCollecte()));
+            assertEquals(StatutCampagne.OUVERTE, campagne.getStatut());
+
+            serviceLotDons.enregistrerDons(campagneId, List.of(don("25.00"), don("25.00")));
+            objectifsCampagnes.fusionner();
+
+            campagne = campagneRepository.findById(campagneId).orElseThrow();
+            assertEquals(0, Montant.parse("110.00").compareTo(campagne.getMontantCollecte()));
+            assertEquals(StatutCampagne.FINANCEE, campagne.getStatut());
+            assertTrue(indexCampagnes.trouver(campagneId).orElseThrow().estFinancee());
+
+            IllegalStateException refus = assertThrows(IllegalStateException.class,
+                    () -> serviceDon.enregistrerDon(campagneId, don("10.00")));
+            assertEquals("Cette campagne a atteint son objectif et n'accepte plus de dons", refus.getMessage());
+        }
+
+        /**
+         * Vérifie qu'une modification faite à partir d'une version lue avant une fusion est refusée
+         * au lieu d'écraser le montant collecté.
+         */
+        @Test
+        void testModificationConcurrenteRefusee() {
+            Long campagneId = creerCampagne("1000.00").getId();
+            Campagne perimee = campagneRepository.findById(campagneId).orElseThrow();
+
+            serviceDon.enregistrerDon(campagneId, don("40.00"));
+            objectifsCampagnes.fusionner();
+
+            perimee.setNom("Nom modifié");
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> campagneRepository.save(perimee));
+            Campagne campagne = campagneRepository.findById(campagneId).orElseThrow();
+            assertEquals(0, Montant.parse("40.00").compareTo(campagne.getMontantCollecte()));
+        }
+
+        private Campagne creerCampagne(String objectif) {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne Objectif");
+            campagne.setObjectifMontant(Montant.parse(objectif));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+
+        private static DonDTO don(String montant) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur");
+            don.setMontant(Montant.parse(montant));
+            return don;
+        }
+}
@@ -0,0 +1,145 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.DonCampagneDTO;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.DTOs.ResultatDonDTO;
+import ma.emsi.controle.DTOs.SuiviDonDTO;
+import ma.emsi.controle.config.FabriqueThreads;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour PipelineDons : sort des dons dont l'écriture échoue.
+ */
+@ExtendWith(MockitoExtension.class)
+public class PipelineDonsTest {
+
+        @Mock
+        private ServiceLotDons serviceLotDons;
+
+        @Mock
+        private IndexCampagnes indexCampagnes;
+
+        @TempDir
+        Path repertoire;
+
+        private Path journal;
+
+        private PipelineDons pipeline;
+
+        @BeforeEach
+        void setUp() throws Exception {
+            CampagneInfo campagne = new CampagneInfo(1L, "Campagne", LocalDate.now().minusDays(1), LocalDate.now().plusDays(1), null);
+            when(indexCampagnes.trouver(1L)).thenReturn(Optional.of(campagne));
+            journal = repertoire.resolve("journal.log");
+            pipeline = new PipelineDons(serviceLotDons, indexCampagnes, new FabriqueThreads(new MockEnvironment()),
+                    100, 1, 10, journal, Duration.ofMinutes(10));
+            pipeline.demarrer();
+        }
+
+        @AfterEach
+        void tearDown() throws Exception {
+            pipeline.arreter();
+        }
+
+        /**
+         * Vérifie qu'un don dont l'écriture échoue faute de base (connexion impossible) n'est pas rejeté :
+         * il reste en attente puis est enregistré une fois la base revenue.
+         */
+        @Test
+        void testPanneBaseDonRepris() throws Exception {
+            DonDTO enregistre = new DonDTO(5L, "Campagne", "Jean", Montant.parse("10.00"), null);
+            when(serviceLotDons.enregistrerDonsSuivis(anyList(), anyList()))
+                    .thenThrow(new CannotCreateTransactionException("Base indisponible"))
+                    .thenThrow(new CannotCreateTransactionException("Base indisponible"))
+                    .thenReturn(List.of(ResultatDonDTO.enregistre(0, enregistre)));
+
+            String suivi = pipeline.soumettre(1L, don("Jean")).getSuivi();
+
+            assertEquals(SuiviDonDTO.Statut.ENREGISTRE, attendreFin(suivi).getStatut());
+            verify(serviceLotDons, atLeast(3)).enregistrerDonsSuivis(anyList(), anyList());
+        }
+
+        /**
+         * Vérifie qu'un don refusé par les contraintes de la base est rejeté et marqué traité.
+         */
+        @Test
+        void testDonRejeteParLaBase() throws Exception {
+            when(serviceLotDons.enregistrerDonsSuivis(anyList(), anyList()))
+                    .thenThrow(new DataIntegrityViolationException("Valeur trop longue"));
+
+            String suivi = pipeline.soumettre(1L, don("Jean")).getSuivi();
+
+            SuiviDonDTO etat = attendreFin(suivi);
+            assertEquals(SuiviDonDTO.Statut.REJETE, etat.getStatut());
+            assertTrue(etat.getErreurs().containsKey("don"));
+        }
+
+        /**
+         * Vérifie qu'un don jamais écrit faute de base reste dans le journal à l'arrêt, pour être repris
+         * au démarrage suivant, alors qu'un don rejeté du même lot a été marqué traité et le journal compacté.
+         */
+        @Test
+        void testPanneBaseDonGardeDansJournal() throws Exception {
+            when(serviceLotDons.enregistrerDonsSuivis(anyList(), anyList())).thenAnswer(invocation -> {
+                List<DonCampagneDTO> dons = invocation.getArgument(1);
+                if (dons.stream().anyMatch(don -> don.getNomDonateur().equals("Panne"))) {
+                    throw new CannotCreateTransactionException("Base indisponible");
+                }
+                throw new DataIntegrityViolationException("Valeur trop longue");
+            });
+            String rejete = pipeline.soumettre(1L, don("Rejeté")).getSuivi();
+            String enPanne = pipeline.soumettre(1L, don("Panne")).getSuivi();
+
+            assertEquals(SuiviDonDTO.Statut.REJETE, attendreFin(rejete).getStatut());
+            Thread.sleep(1500);
+            pipeline.arreter();
+
+            assertEquals(SuiviDonDTO.Statut.EN_ATTENTE, pipeline.getSuivi(enPanne).orElseThrow().getStatut());
+            try (JournalDons relu = new JournalDons(journal)) {
+                assertEquals(List.of(enPanne), List.copyOf(relu.relireEnAttente().keySet()));
+            }
+            assertTrue(Files.readAllLines(journal).stream().noneMatch(ligne -> ligne.contains(rejete)));
+        }
+
+        private SuiviDonDTO attendreFin(String suivi) throws InterruptedException {
+            long limite = System.currentTimeMillis() + 10_000;
+            SuiviDonDTO etat = pipeline.getSuivi(suivi).orElseThrow();
+            while (etat.getStatut() == SuiviDonDTO.Statut.EN_ATTENTE && System.currentTimeMillis() < limite) {
+                Thread.sleep(20);
+                etat = pipeline.getSuivi(suivi).orElseThrow();
+            }
+            return etat;
+        }
+
+        private static DonDTO don(String nomDonateur) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur(nomDonateur);
+            don.setMontant(Montant.parse("10.00"));
+            return don;
+        }
+}
@@ -0,0 +1,181 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.LigneRapportDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.CampagneInfo;
+import ma.emsi.controle.projection.DonAnalyse;
+import ma.emsi.controle.repository.DonRepository;
+import jakarta.persistence.EntityNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour RapportsDons.
+ */
+@ExtendWith(MockitoExtension.class)
+public class RapportsDonsTest {
+
+        private static final List<BigDecimal> TRANCHES = List.of(new BigDecimal("10"), new BigDecimal("100"));
+
+        @Mock
+        private DonRepository donRepository;
+
+        @Mock
+        private IndexCampagnes indexCampagnes;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        @TempDir
+        Path repertoire;
+
+        /**
+         * Vérifie le rattrapage au démarrage : les notifications reçues pendant la lecture sont appliquées,
+         * sauf celles des dons déjà lus, y compris lorsqu'elles arrivent après le rattrapage.
+         */
+        @Test
+        void testRattrapageSansDoubleCompte() throws Exception {
+            LocalDateTime maintenant = LocalDateTime.now();
+            when(donRepository.trouverDernierId()).thenReturn(2L);
+            when(donRepository.parcourirDonsApres(0L)).thenReturn(Stream.of(
+                    new DonAnalyse(1L, 1L, Montant.parse("5.00"), maintenant.minusDays(3)),
+                    new DonAnalyse(2L, 1L, Montant.parse("20.00"), maintenant)));
+
+            RapportsDons rapportsDons = creer();
+            rapportsDons.onDonEnregistre(don(2L, "20.00", maintenant));
+            rapportsDons.onDonEnregistre(don(3L, "150.00", maintenant));
+            rapportsDons.charger();
+            rapportsDons.onDonEnregistre(don(2L, "20.00", maintenant));
+
+            assertEquals(3, rapportsDons.getNombreDons());
+            List<LigneRapportDTO> tranches = rapportsDons.consulter(RapportsDons.Regroupement.TRANCHE, null, null, null);
+            assertEquals(List.of("0.00-10.00", "10.00-100.00", "100.00+"), tranches.stream().map(LigneRapportDTO::getCle).toList());
+            assertEquals(Montant.parse("175.00"), tranches.stream().map(LigneRapportDTO::getMontantTotal)
+                    .reduce(Montant.ZERO, Montant::plus));
+            rapportsDons.fermer();
+        }
+
+        /**
+         * Vérifie qu'au redémarrage les fichiers sont rouverts et que seuls les dons plus récents que le dernier
+         * don du stockage sont lus en base.
+         */
+        @Test
+        void testRedemarrageSansRelectureComplete() throws Exception {
+            LocalDateTime date = LocalDateTime.of(2024, 3, 1, 10, 0);
+            when(donRepository.trouverDernierId()).thenReturn(2L, 3L);
+            when(donRepository.parcourirDonsApres(0L)).thenReturn(Stream.of(
+                    new DonAnalyse(1L, 1L, Montant.parse("5.00"), date),
+                    new DonAnalyse(2L, 2L, Montant.parse("20.00"), date.plusDays(1))));
+            RapportsDons rapportsDons = creer();
+            rapportsDons.charger();
+            rapportsDons.fermer();
+
+            when(donRepository.parcourirDonsApres(2L)).thenReturn(Stream.of(
+                    new DonAnalyse(3L, 1L, Montant.parse("7.50"), date)));
+            rapportsDons = creer();
+            rapportsDons.charger();
+            verify(donRepository).parcourirDonsApres(2L);
+
+            List<LigneRapportDTO> jours = rapportsDons.consulter(RapportsDons.Regroupement.JOUR, null, null, null);
+            assertEquals(List.of("2024-03-01", "2024-03-02"), jours.stream().map(LigneRapportDTO::getCle).toList());
+            assertEquals(2, jours.get(0).getNombreDons());
+            assertEquals(Montant.parse("12.50"), jours.get(0).getMontantTotal());
+            rapportsDons.fermer();
+        }
+
+        /**
+         * Vérifie qu'un don validé après un don d'identifiant supérieur, et dont la notification a été perdue,
+         * est relu au rattrapage suivant, sans relire les dons déjà stockés.
+         */
+        @Test
+        void testDonValideApresUnDonPlusRecent() throws Exception {
+            LocalDateTime date = LocalDateTime.of(2024, 3, 1, 10, 0);
+            when(donRepository.trouverDernierId()).thenReturn(51L);
+            when(donRepository.parcourirDonsApres(0L)).thenReturn(Stream.of(
+                    new DonAnalyse(1L, 1L, Montant.parse("5.00"), date),
+                    new DonAnalyse(51L, 1L, Montant.parse("20.00"), date)));
+            RapportsDons rapportsDons = creer();
+            rapportsDons.charger();
+            rapportsDons.fermer();
+
+            when(donRepository.parcourirIdentifiants(51L)).thenReturn(Stream.of(1L, 2L, 51L));
+            when(donRepository.trouverDonsAnalyse(List.of(2L))).thenReturn(List.of(
+                    new DonAnalyse(2L, 1L, Montant.parse("7.50"), date)));
+            when(donRepository.parcourirDonsApres(51L)).thenReturn(Stream.empty());
+            rapportsDons = creer();
+            rapportsDons.charger();
+            rapportsDons.onDonEnregistre(don(2L, "7.50", date));
+
+            assertEquals(3, rapportsDons.getNombreDons());
+            assertEquals(Montant.parse("32.50"), rapportsDons.consulter(RapportsDons.Regroupement.CAMPAGNE, null, null, null)
+                    .get(0).getMontantTotal());
+            rapportsDons.fermer();
+        }
+
+        /**
+         * Vérifie qu'un stockage en avance sur la base (base recréée) est vidé puis relu en entier.
+         */
+        @Test
+        void testStockageEnAvanceSurLaBase() throws Exception {
+            LocalDateTime date = LocalDateTime.of(2024, 3, 1, 10, 0);
+            when(donRepository.trouverDernierId()).thenReturn(null, 1L);
+            when(donRepository.parcourirDonsApres(0L)).thenReturn(Stream.empty(),
+                    Stream.of(new DonAnalyse(1L, 4L, Montant.parse("5.00"), date)));
+            RapportsDons rapportsDons = creer();
+            rapportsDons.charger();
+            rapportsDons.onDonEnregistre(don(8L, "10.00", date));
+            rapportsDons.onDonEnregistre(don(9L, "10.00", date));
+            rapportsDons.fermer();
+
+            rapportsDons = creer();
+            rapportsDons.charger();
+            assertEquals(1, rapportsDons.getNombreDons());
+            rapportsDons.fermer();
+        }
+
+        /**
+         * Vérifie les erreurs de consultation : campagne inconnue et période vide.
+         */
+        @Test
+        void testConsultationInvalide() throws Exception {
+            RapportsDons rapportsDons = creer();
+            when(indexCampagnes.trouver(1L)).thenReturn(Optional.of(new CampagneInfo(
+                    1L, "Campagne", LocalDate.now(), LocalDate.now(), StatutCampagne.OUVERTE)));
+            when(indexCampagnes.trouver(2L)).thenReturn(Optional.empty());
+
+            assertEquals(List.of(), rapportsDons.consulter(RapportsDons.Regroupement.CAMPAGNE, 1L, null, null));
+            assertThrows(EntityNotFoundException.class,
+                    () -> rapportsDons.consulter(RapportsDons.Regroupement.CAMPAGNE, 2L, null, null));
+            LocalDateTime maintenant = LocalDateTime.now();
+            assertThrows(IllegalStateException.class,
+                    () -> rapportsDons.consulter(RapportsDons.Regroupement.JOUR, null, maintenant, maintenant));
+            rapportsDons.fermer();
+        }
+
+        private RapportsDons creer() throws Exception {
+            return new RapportsDons(donRepository, indexCampagnes, null, transactionManager, repertoire, 1024, TRANCHES);
+        }
+
+        private static DonEnregistreEvent don(Long donId, String montant, LocalDateTime date) {
+            return new DonEnregistreEvent(donId, 1L, "Donateur", Montant.parse(montant), date);
+        }
+}
@@ -0,0 +1,125 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.ResultatRechercheDTO;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.events.CampagneModifieeEvent;
+import ma.emsi.controle.projection.CampagneRecherche;
+import ma.emsi.controle.repository.CampagneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour RechercheCampagnes.
+ */
+@ExtendWith(MockitoExtension.class)
+public class RechercheCampagnesTest {
+
+        @Mock
+        private CampagneRepository campagneRepository;
+
+        @Mock
+        private TotauxCampagnes totauxCampagnes;
+
+        @InjectMocks
+        private RechercheCampagnes rechercheCampagnes;
+
+        private final LocalDate aujourdhui = LocalDate.now();
+
+        @BeforeEach
+        void setUp() {
+            ReflectionTestUtils.setField(rechercheCampagnes, "resultatsMax", 100);
+            when(campagneRepository.findAllRecherche()).thenReturn(List.of(
+                    campagne(1L, "Soutien aux étudiants en difficulté", aujourdhui.minusDays(1), aujourdhui.plusDays(1)),
+                    campagne(2L, "Campagne pour la recherche médicale", aujourdhui.minusDays(1), aujourdhui.plusDays(1)),
+                    campagne(3L, "Recherches médicales pédiatriques", aujourdhui.minusDays(10), aujourdhui.minusDays(5)),
+                    campagne(4L, "Bourse pour un étudiant", aujourdhui.minusDays(1), aujourdhui.plusDays(1))));
+            lenient().when(totauxCampagnes.getCentimes(2L)).thenReturn(10_000L);
+            lenient().when(totauxCampagnes.getCentimes(1L)).thenReturn(50_000L);
+            rechercheCampagnes.reconstruire();
+        }
+
+        /**
+         * Vérifie que la recherche ignore les accents, la casse, les pluriels et les mots vides.
+         */
+        @Test
+        void testRechercheSansAccentsNiPluriels() {
+            assertEquals(List.of(2L, 3L), ids(rechercheCampagnes.rechercher("RECHERCHE MEDICALE ", 20)));
+            assertEquals(List.of(1L, 4L), ids(rechercheCampagnes.rechercher("les étudiants ", 20)));
+            assertTrue(rechercheCampagnes.rechercher("la ", 20).isEmpty());
+            assertTrue(rechercheCampagnes.rechercher("recherche vétérinaire ", 20).isEmpty());
+            assertEquals(4, rechercheCampagnes.getTaille());
+        }
+
+        /**
+         * Vérifie que le dernier mot saisi est complété et que le mot complet est classé avant les préfixes.
+         */
+        @Test
+        void testRechercheParPrefixe() {
+            assertEquals(List.of(2L, 3L), ids(rechercheCampagnes.rechercher("méd", 20)));
+            assertEquals(List.of(3L), ids(rechercheCampagnes.rechercher("recherche pédia", 20)));
+            assertEquals(List.of(1L), ids(rechercheCampagnes.rechercher("diff", 20)));
+            assertTrue(rechercheCampagnes.rechercher("diff ", 20).isEmpty());
+        }
+
+        /**
+         * Vérifie le classement : campagnes actives d'abord, puis par progression de la collecte.
+         */
+        @Test
+        void testClassementParActiviteEtProgression() {
+            when(totauxCampagnes.getCentimes(4L)).thenReturn(450_000L);
+            List<ResultatRechercheDTO> resultats = rechercheCampagnes.rechercher("etudiant ", 20);
+
+            assertEquals(List.of(4L, 1L), ids(resultats));
+            assertEquals(Montant.parse("4500.00"), resultats.get(0).getMontantCollecte());
+            assertEquals(0.45, resultats.get(0).getProgression(), 1e-9);
+            assertTrue(resultats.get(0).isActive());
+            assertEquals(List.of(4L), ids(rechercheCampagnes.rechercher("etudiant ", 1)));
+
+            List<ResultatRechercheDTO> medicales = rechercheCampagnes.rechercher("medicales ", 20);
+            assertEquals(List.of(2L, 3L), ids(medicales));
+            assertFalse(medicales.get(1).isActive());
+            assertThrows(IllegalStateException.class, () -> rechercheCampagnes.rechercher("etudiant", 101));
+        }
+
+        /**
+         * Vérifie que les modifications et suppressions de campagnes sont répercutées dans l'index.
+         */
+        @Test
+        void testModificationEtSuppression() {
+            rechercheCampagnes.onCampagneModifiee(new CampagneModifieeEvent(4L, "Bourse d'excellence", Montant.parse("10000.00"),
+                    aujourdhui, aujourdhui, StatutCampagne.FINANCEE, false));
+            assertEquals(List.of(1L), ids(rechercheCampagnes.rechercher("etudiant ", 20)));
+            ResultatRechercheDTO bourse = rechercheCampagnes.rechercher("excel", 20).get(0);
+            assertEquals(StatutCampagne.FINANCEE, bourse.getStatut());
+            assertFalse(bourse.isActive());
+
+            rechercheCampagnes.onCampagneModifiee(new CampagneModifieeEvent(4L, "Bourse d'excellence", Montant.parse("10000.00"),
+                    aujourdhui, aujourdhui, StatutCampagne.FINANCEE, true));
+            assertTrue(rechercheCampagnes.rechercher("bourse", 20).isEmpty());
+            assertEquals(3, rechercheCampagnes.getTaille());
+        }
+
+        private CampagneRecherche campagne(Long id, String nom, LocalDate debut, LocalDate fin) {
+            return new CampagneRecherche(id, nom, Montant.parse("10000.00"), debut, fin, StatutCampagne.OUVERTE);
+        }
+
+        private List<Long> ids(List<ResultatRechercheDTO> resultats) {
+            return resultats.stream().map(ResultatRechercheDTO::getId).toList();
+        }
+}
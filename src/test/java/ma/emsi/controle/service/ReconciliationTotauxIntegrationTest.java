@@ -0,0 +1,156 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.entities.Reconciliation;
+import ma.emsi.controle.entities.StatutCampagne;
+import ma.emsi.controle.entities.StatutReconciliation;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.DonRepository;
+import ma.emsi.controle.repository.ReconciliationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests d'intégration du contrôle des montants collectés.
+ */
+@SpringBootTest
+public class ReconciliationTotauxIntegrationTest {
+
+        @Autowired
+        private ReconciliationTotaux reconciliationTotaux;
+
+        @Autowired
+        private ObjectifsCampagnes objectifsCampagnes;
+
+        @Autowired
+        private TotauxCampagnes totauxCampagnes;
+
+        @Autowired
+        private ServiceDon serviceDon;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private DonRepository donRepository;
+
+        @Autowired
+        private ReconciliationRepository reconciliationRepository;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        /**
+         * Vérifie la correction d'un don enregistré sans incrément ni notification, et d'un montant collecté
+         * modifié en base à l'insu du cache de second niveau : après la fusion, les montants collectés, le statut
+         * et les totaux en mémoire correspondent aux dons.
+         */
+        @Test
+        void testCorrectionDesEcarts() {
+            LocalDateTime anterieur = LocalDateTime.now().minusHours(2).truncatedTo(ChronoUnit.SECONDS);
+            Campagne coherente = creerCampagne("1000.00");
+            serviceDon.enregistrerDon(coherente.getId(), don("60.00"));
+            objectifsCampagnes.fusionner();
+
+            // Don écrit directement : ni incrément, ni totaux en mémoire
+            Campagne sansIncrement = creerCampagne("20.00");
+            enregistrerDirectement(sansIncrement, "25.00", anterieur);
+
+            // Montant collecté modifié en SQL, totaux en mémoire comptant un don de trop
+            Campagne modifiee = creerCampagne("100.00");
+            modifiee.setMontantCollecte(Montant.parse("40.00"));
+            modifiee = campagneRepository.save(modifiee);
+            enregistrerDirectement(modifiee, "40.00", anterieur);
+            totauxCampagnes.ajouterDon(modifiee.getId(), Montant.parse("40.00"), anterieur);
+            totauxCampagnes.ajouterDon(modifiee.getId(), Montant.parse("5.00"), anterieur.minusDays(1));
+            jdbcTemplate.update("UPDATE campagne SET montant_collecte = 150.00 WHERE id = ?", modifiee.getId());
+
+            reconciliationTotaux.executer();
+            objectifsCampagnes.fusionner();
+
+            Campagne campagne = campagneRepository.findById(coherente.getId()).orElseThrow();
+            assertEquals(Montant.parse("60.00"), campagne.getMontantCollecte());
+            campagne = campagneRepository.findById(sansIncrement.getId()).orElseThrow();
+            assertEquals(Montant.parse("25.00"), campagne.getMontantCollecte());
+            assertEquals(StatutCampagne.FINANCEE, campagne.getStatut());
+            campagne = campagneRepository.findById(modifiee.getId()).orElseThrow();
+            assertEquals(Montant.parse("40.00"), campagne.getMontantCollecte());
+            assertEquals(StatutCampagne.OUVERTE, campagne.getStatut());
+            assertEquals(new TotauxCampagnes.Totaux(1, Montant.parse("25.00"), anterieur),
+                    totauxCampagnes.getTotaux(sansIncrement.getId()));
+            assertEquals(new TotauxCampagnes.Totaux(1, Montant.parse("40.00"), anterieur),
+                    totauxCampagnes.getTotaux(modifiee.getId()));
+
+            ReconciliationTotaux.Rapport rapport = reconciliationTotaux.getRapport();
+            assertEquals(StatutReconciliation.TERMINEE, rapport.statut());
+            assertTrue(rapport.ecartsCollecte() >= 2);
+            assertTrue(rapport.ecartsMemoire() >= 2);
+            assertTrue(rapport.dons() >= 3);
+            assertTrue(rapport.partitions().stream().allMatch(ReconciliationTotaux.RapportPartition::terminee));
+        }
+
+        /**
+         * Vérifie qu'une exécution interrompue reprend à ses partitions restantes, sans recontrôler les terminées.
+         */
+        @Test
+        void testRepriseApresInterruption() {
+            Campagne campagne = creerCampagne("1000.00");
+            enregistrerDirectement(campagne, "12.50", LocalDateTime.now().minusHours(2));
+            Reconciliation interrompue = reconciliationRepository.save(new Reconciliation(LocalDateTime.now(), 1));
+            String partition = "INSERT INTO partition_reconciliation (reconciliation_id, numero, campagne_debut, campagne_fin, " +
+                    "terminee, campagnes, dons, ecarts_collecte, ecarts_memoire, reportees, duree_ms, attente_ms) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, 0, 0, 0, 5, 0)";
+            jdbcTemplate.update(partition, interrompue.getId(), 0, 1, 2, true, 1, 99);
+            jdbcTemplate.update(partition, interrompue.getId(), 1, 2, campagne.getId() + 1, false, 0, 0);
+
+            reconciliationTotaux.executer();
+            objectifsCampagnes.fusionner();
+
+            ReconciliationTotaux.Rapport rapport = reconciliationTotaux.getRapport();
+            assertEquals(interrompue.getId(), rapport.id());
+            assertEquals(StatutReconciliation.TERMINEE, rapport.statut());
+            List<ReconciliationTotaux.RapportPartition> partitions = rapport.partitions();
+            assertEquals(2, partitions.size());
+            assertEquals(99, partitions.get(0).dons());
+            assertTrue(partitions.get(1).terminee());
+            assertTrue(partitions.get(1).ecartsCollecte() >= 1);
+            assertEquals(Montant.parse("12.50"), campagneRepository.findById(campagne.getId()).orElseThrow().getMontantCollecte());
+        }
+
+        private Campagne creerCampagne(String objectif) {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne Contrôlée");
+            campagne.setObjectifMontant(Montant.parse(objectif));
+            campagne.setDateDebut(LocalDate.now().minusDays(1));
+            campagne.setDateFin(LocalDate.now().plusDays(1));
+            return campagneRepository.save(campagne);
+        }
+
+        private void enregistrerDirectement(Campagne campagne, String montant, LocalDateTime date) {
+            Donation donation = new Donation();
+            donation.setCampagne(campagne);
+            donation.setNomDonateur("Donateur");
+            donation.setMontant(Montant.parse(montant));
+            donation.setDate(date);
+            donRepository.save(donation);
+        }
+
+        private static DonDTO don(String montant) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur("Donateur");
+            don.setMontant(Montant.parse(montant));
+            return don;
+        }
+}
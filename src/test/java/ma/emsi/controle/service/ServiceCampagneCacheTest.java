@@ -0,0 +1,137 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.config.JsonConfig;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.projection.CampagneResume;
+import ma.emsi.controle.repository.CampagneRepository;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires de l'instantané des campagnes actives de ServiceCampagne.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ServiceCampagneCacheTest {
+
+        private static final ZoneId ZONE = ZoneOffset.UTC;
+
+        private static final LocalDate AUJOURDHUI = LocalDate.of(2025, 3, 10);
+
+        @Mock
+        private CampagneRepository campagneRepository;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        private final CampagneResume campagneResume = new CampagneResume(7L, "Campagne", Montant.parse("100.00"));
+
+        @InjectMocks
+        private ServiceCampagne serviceCampagne;
+
+        @BeforeEach
+        void setUp() {
+            serviceCampagne.setHorloge(horlogeA(AUJOURDHUI.atStartOfDay(ZONE).plusHours(12).toInstant()));
+            when(campagneRepository.findActiveCampagnesAsResume(any(LocalDate.class))).thenReturn(List.of(campagneResume));
+        }
+
+        /**
+         * Vérifie que les lectures successives sont servies sans requête tant que l'instantané est valide.
+         */
+        @Test
+        void testLecturesServiesDepuisInstantane() {
+            List<CampagneResume> premiere = serviceCampagne.getCampagnesActives();
+            List<CampagneResume> seconde = serviceCampagne.getCampagnesActives();
+
+            assertSame(premiere, seconde);
+            verify(campagneRepository, times(1)).findActiveCampagnesAsResume(AUJOURDHUI);
+            ServiceCampagne.StatistiquesCache stats = serviceCampagne.getStatistiquesCache();
+            assertEquals(1, stats.succes());
+            assertEquals(1, stats.echecs());
+            assertEquals(1, stats.rechargements());
+        }
+
+        /**
+         * Vérifie qu'une écriture sur une campagne force le rechargement.
+         */
+        @Test
+        void testInvalidation() {
+            serviceCampagne.getCampagnesActives();
+            serviceCampagne.invalider();
+            serviceCampagne.getCampagnesActives();
+
+            verify(campagneRepository, times(2)).findActiveCampagnesAsResume(AUJOURDHUI);
+            assertEquals(1, serviceCampagne.getStatistiquesCache().invalidations());
+        }
+
+        /**
+         * Vérifie que l'instantané expire au lendemain de la plus proche date de fin active,
+         * et pas avant.
+         */
+        @Test
+        void testExpirationALaProchaineTransition() {
+            when(campagneRepository.findProchaineFinActive(any(LocalDate.class))).thenReturn(AUJOURDHUI.plusDays(2));
+            when(campagneRepository.findProchainDebut(any(LocalDate.class))).thenReturn(AUJOURDHUI.plusDays(5));
+            serviceCampagne.getCampagnesActives();
+            assertEquals(AUJOURDHUI.plusDays(3).atStartOfDay(ZONE).toInstant(),
+                    serviceCampagne.getStatistiquesCache().prochaineTransition());
+
+            // Le lendemain, aucune campagne n'a changé d'état : l'instantané reste valide
+            serviceCampagne.setHorloge(horlogeA(AUJOURDHUI.plusDays(1).atStartOfDay(ZONE).toInstant()));
+            serviceCampagne.getCampagnesActives();
+            verify(campagneRepository, times(1)).findActiveCampagnesAsResume(any(LocalDate.class));
+
+            // Le jour de la transition, l'instantané est rechargé pour la nouvelle date
+            serviceCampagne.setHorloge(horlogeA(AUJOURDHUI.plusDays(3).atStartOfDay(ZONE).toInstant()));
+            serviceCampagne.getCampagnesActives();
+            verify(campagneRepository).findActiveCampagnesAsResume(AUJOURDHUI.plusDays(3));
+        }
+
+        /**
+         * Vérifie que la réponse JSON est réutilisée tant qu'aucun don n'arrive, puis recalculée avec les nouveaux totaux.
+         */
+        @Test
+        void testReponseJsonReutilisee() {
+            TotauxCampagnes totauxCampagnes = new TotauxCampagnes(null);
+            ServiceCampagne service = new ServiceCampagne(campagneRepository, totauxCampagnes,
+                    Jackson2ObjectMapperBuilder.json()
+                    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).modulesToInstall(JsonConfig.module()).build(),
+                    transactionManager);
+            service.setHorloge(horlogeA(AUJOURDHUI.atStartOfDay(ZONE).plusHours(12).toInstant()));
+
+            byte[] premiere = service.getCampagnesActivesJson();
+            assertSame(premiere, service.getCampagnesActivesJson());
+
+            totauxCampagnes.ajouterDon(7L, Montant.parse("25.00"), LocalDateTime.of(2025, 3, 10, 9, 0));
+            String seconde = new String(service.getCampagnesActivesJson(), StandardCharsets.UTF_8);
+            assertEquals("[{\"id\":7,\"nom\":\"Campagne\",\"objectifMontant\":100.00,\"montantCollecte\":25.00,"
+                    + "\"nombreDons\":1,\"dernierDon\":\"2025-03-10T09:00:00\"}]", seconde);
+            verify(campagneRepository, times(1)).findActiveCampagnesAsResume(AUJOURDHUI);
+        }
+
+        private static Clock horlogeA(Instant instant) {
+            return Clock.fixed(instant, ZONE);
+        }
+}
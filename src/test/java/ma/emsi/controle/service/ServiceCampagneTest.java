@@ -1,22 +1,21 @@
 package ma.emsi.controle.service;
 
+import ma.emsi.controle.entities.Montant;
 import ma.emsi.controle.projection.CampagneResume;
 import ma.emsi.controle.repository.CampagneRepository;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
 import ma.emsi.controle.projection.CampagneResume;
 import ma.emsi.controle.repository.CampagneRepository;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.List;
@@ -38,6 +37,12 @@ public class ServiceCampagneTest {
         @Mock
         private CampagneRepository campagneRepository;
 
+        /**
+         * Mock du gestionnaire de transactions
+         */
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
         /**
          * Injection du mock dans le service à tester
          */
@@ -45,29 +50,11 @@ public class ServiceCampagneTest {
         private ServiceCampagne serviceCampagne;
 
         /**
-         * Mocks des projections de campagnes pour les tests
+         * Projections de campagnes pour les tests
          */
-        @Mock
-        private CampagneResume campagneResume1;
+        private final CampagneResume campagneResume1 = new CampagneResume(1L, "Campagne 1", Montant.parse("1000.00"));
 
-        @Mock
-        private CampagneResume campagneResume2;
-
-        /**
-         * Configuration des mocks avant chaque test
-         */
-        @BeforeEach
-        void setUp() {
-            // Configuration des comportements attendus pour le premier mock de CampagneResume
-            when(campagneResume1.getId()).thenReturn(1L);
-            when(campagneResume1.getNom()).thenReturn("Campagne 1");
-            when(campagneResume1.getObjectifMontant()).thenReturn(new BigDecimal("1000.00"));
-
-            // Configuration des comportements attendus pour le second mock de CampagneResume
-            when(campagneResume2.getId()).thenReturn(2L);
-            when(campagneResume2.getNom()).thenReturn("Campagne 2");
-            when(campagneResume2.getObjectifMontant()).thenReturn(new BigDecimal("2000.00"));
-        }
+        private final CampagneResume campagneResume2 = new CampagneResume(2L, "Campagne 2", Montant.parse("2000.00"));
 
         /**
          * Test de la méthode getCampagnesActives.
@@ -87,13 +74,13 @@ public class ServiceCampagneTest {
 
             // Vérification des résultats
             assertEquals(2, result.size());
-            assertEquals(1L, result.get(0).getId());
-            assertEquals("Campagne 1", result.get(0).getNom());
-            assertEquals(new BigDecimal("1000.00"), result.get(0).getObjectifMontant());
+            assertEquals(1L, result.get(0).id());
+            assertEquals("Campagne 1", result.get(0).nom());
+            assertEquals(Montant.parse("1000.00"), result.get(0).objectifMontant());
 
-            assertEquals(2L, result.get(1).getId());
-            assertEquals("Campagne 2", result.get(1).getNom());
-            assertEquals(new BigDecimal("2000.00"), result.get(1).getObjectifMontant());
+            assertEquals(2L, result.get(1).id());
+            assertEquals("Campagne 2", result.get(1).nom());
+            assertEquals(Montant.parse("2000.00"), result.get(1).objectifMontant());
         }
 
 }
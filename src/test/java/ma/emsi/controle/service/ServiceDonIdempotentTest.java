@@ -0,0 +1,156 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.DTOs.DonDTO;
+import ma.emsi.controle.entities.CleIdempotence;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.exception.CleIdempotenceReutiliseeException;
+import ma.emsi.controle.repository.CleIdempotenceRepository;
+import ma.emsi.controle.repository.DonRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour ServiceDonIdempotent.
+ */
+@ExtendWith(MockitoExtension.class)
+public class ServiceDonIdempotentTest {
+
+        @Mock
+        private ServiceDon serviceDon;
+
+        @Mock
+        private DonRepository donRepository;
+
+        @Mock
+        private CleIdempotenceRepository cleIdempotenceRepository;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        private ServiceDonIdempotent serviceDonIdempotent;
+
+        @BeforeEach
+        void setUp() {
+            serviceDonIdempotent = new ServiceDonIdempotent(serviceDon, donRepository, cleIdempotenceRepository, transactionManager);
+            ReflectionTestUtils.setField(serviceDonIdempotent, "retention", Duration.ofHours(24));
+            ReflectionTestUtils.setField(serviceDonIdempotent, "capacite", 100);
+            lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        }
+
+        /**
+         * Vérifie qu'une requête rejouée renvoie le don d'origine sans nouvel enregistrement.
+         */
+        @Test
+        void testRejeuDepuisLaMemoire() {
+            DonDTO don = don("Jean", "100.00");
+            DonDTO enregistre = enregistre(1L);
+            when(cleIdempotenceRepository.findById("cle-1")).thenReturn(Optional.empty());
+            when(serviceDon.enregistrerDon(1L, don)).thenReturn(enregistre);
+
+            assertSame(enregistre, serviceDonIdempotent.enregistrerDon("cle-1", 1L, don));
+            assertSame(enregistre, serviceDonIdempotent.enregistrerDon("cle-1", 1L, don("Jean", "100")));
+
+            verify(serviceDon, times(1)).enregistrerDon(any(), any());
+            verify(cleIdempotenceRepository, times(1)).save(any(CleIdempotence.class));
+        }
+
+        /**
+         * Vérifie qu'une clé réutilisée pour un autre don est refusée.
+         */
+        @Test
+        void testCleReutiliseePourUnAutreDon() {
+            DonDTO don = don("Jean", "100.00");
+            when(cleIdempotenceRepository.findById("cle-1")).thenReturn(Optional.empty());
+            when(serviceDon.enregistrerDon(1L, don)).thenReturn(enregistre(1L));
+            serviceDonIdempotent.enregistrerDon("cle-1", 1L, don);
+
+            assertThrows(CleIdempotenceReutiliseeException.class,
+                    () -> serviceDonIdempotent.enregistrerDon("cle-1", 1L, don("Jean", "200.00")));
+        }
+
+        /**
+         * Vérifie qu'une clé absente de la mémoire mais enregistrée en base renvoie le don d'origine.
+         */
+        @Test
+        void testRejeuDepuisLaBase() {
+            DonDTO don = don("Jean", "100.00");
+            CleIdempotence cle = new CleIdempotence("cle-1", ServiceDonIdempotent.empreinte(1L, don), 42L, LocalDateTime.now());
+            DonDTO enregistre = enregistre(42L);
+            when(cleIdempotenceRepository.findById("cle-1")).thenReturn(Optional.of(cle));
+            when(donRepository.trouverDon(42L)).thenReturn(Optional.of(enregistre));
+
+            assertSame(enregistre, serviceDonIdempotent.enregistrerDon("cle-1", 1L, don));
+            verify(serviceDon, never()).enregistrerDon(any(), any());
+        }
+
+        /**
+         * Vérifie que des soumissions simultanées d'une même clé sont regroupées sur une seule exécution.
+         */
+        @Test
+        void testSoumissionsSimultaneesRegroupees() throws Exception {
+            CountDownLatch executionCommencee = new CountDownLatch(1);
+            CountDownLatch finExecution = new CountDownLatch(1);
+            DonDTO enregistre = enregistre(7L);
+            when(cleIdempotenceRepository.findById(anyString())).thenReturn(Optional.empty());
+            when(serviceDon.enregistrerDon(any(), any())).thenAnswer(invocation -> {
+                executionCommencee.countDown();
+                finExecution.await(5, TimeUnit.SECONDS);
+                return enregistre;
+            });
+
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                Future<DonDTO> premiere = executor.submit(() -> serviceDonIdempotent.enregistrerDon("cle-1", 1L, don("Jean", "100.00")));
+                executionCommencee.await(5, TimeUnit.SECONDS);
+                Future<DonDTO> deuxieme = executor.submit(() -> serviceDonIdempotent.enregistrerDon("cle-1", 1L, don("Jean", "100.00")));
+                Future<DonDTO> troisieme = executor.submit(() -> serviceDonIdempotent.enregistrerDon("cle-1", 1L, don("Jean", "100.00")));
+                finExecution.countDown();
+
+                assertEquals(7L, premiere.get(5, TimeUnit.SECONDS).getId());
+                assertEquals(7L, deuxieme.get(5, TimeUnit.SECONDS).getId());
+                assertEquals(7L, troisieme.get(5, TimeUnit.SECONDS).getId());
+            } finally {
+                executor.shutdownNow();
+            }
+            verify(serviceDon, times(1)).enregistrerDon(any(), any());
+        }
+
+        private static DonDTO don(String nomDonateur, String montant) {
+            DonDTO don = new DonDTO();
+            don.setNomDonateur(nomDonateur);
+            don.setMontant(Montant.parse(montant));
+            return don;
+        }
+
+        private static DonDTO enregistre(Long id) {
+            DonDTO don = new DonDTO(id, "Jean", Montant.parse("100.00"), LocalDateTime.now());
+            don.setNomCampagne("Campagne");
+            return don;
+        }
+}
@@ -0,0 +1,126 @@
+package ma.emsi.controle.service;
+import ma.emsi.controle.DTOs.StatDonDTO;
+import ma.emsi.controle.entities.Campagne;
+import ma.emsi.controle.entities.Donation;
+import ma.emsi.controle.entities.Granularite;
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.repository.CampagneRepository;
+import ma.emsi.controle.repository.DonRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests d'intégration de la reconstruction des statistiques de dons à partir de la table des dons.
+ */
+@SpringBootTest
+public class ServiceStatistiquesDonsIntegrationTest {
+
+        @Autowired
+        private ServiceStatistiquesDons serviceStatistiquesDons;
+
+        @Autowired
+        private CampagneRepository campagneRepository;
+
+        @Autowired
+        private DonRepository donRepository;
+
+        /**
+         * Vérifie que la reconstruction agrège les dons existants par heure et par jour,
+         * et qu'une seconde reconstruction remplace les intervalles au lieu de les cumuler.
+         */
+        @Test
+        void testReconstruction() {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne Statistiques");
+            campagne.setObjectifMontant(Montant.parse("1000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(10));
+            campagne.setDateFin(LocalDate.now().plusDays(10));
+            campagneRepository.save(campagne);
+
+            LocalDateTime jour = LocalDate.now().minusDays(2).atStartOfDay();
+            enregistrer(campagne, "10.00", jour.plusHours(10).plusMinutes(15));
+            enregistrer(campagne, "20.00", jour.plusHours(10).plusMinutes(45));
+            enregistrer(campagne, "30.50", jour.plusHours(11).plusMinutes(5));
+
+            serviceStatistiquesDons.reconstruire(LocalDate.now().atStartOfDay());
+            serviceStatistiquesDons.reconstruire(LocalDate.now().atStartOfDay());
+
+            List<StatDonDTO> heures = serviceStatistiquesDons.consulter(campagne.getId(), Granularite.HEURE, jour, jour.plusDays(1));
+            assertEquals(2, heures.size());
+            assertEquals(jour.plusHours(10), heures.get(0).getDebut());
+            assertEquals(2, heures.get(0).getNombreDons());
+            assertEquals(Montant.parse("30.00"), heures.get(0).getMontantTotal());
+            assertEquals(1, heures.get(1).getNombreDons());
+
+            List<StatDonDTO> jours = serviceStatistiquesDons.consulter(campagne.getId(), Granularite.JOUR, jour, jour.plusDays(1));
+            assertEquals(1, jours.size());
+            assertEquals(3, jours.get(0).getNombreDons());
+            assertEquals(Montant.parse("60.50"), jours.get(0).getMontantTotal());
+        }
+
+        /**
+         * Vérifie qu'une reconstruction écrite par lots d'un intervalle remplace chaque plage de dates une seule fois :
+         * les intervalles obsolètes situés entre deux lots sont supprimés et aucun intervalle n'est compté deux fois.
+         */
+        @Test
+        void testReconstructionParLots() {
+            Campagne campagne = new Campagne();
+            campagne.setNom("Campagne Statistiques par lots");
+            campagne.setObjectifMontant(Montant.parse("1000.00"));
+            campagne.setDateDebut(LocalDate.now().minusDays(10));
+            campagne.setDateFin(LocalDate.now().plusDays(10));
+            campagneRepository.save(campagne);
+
+            LocalDateTime jour = LocalDate.now().minusDays(3).atStartOfDay();
+            for (int i = 0; i < 6; i++) {
+                enregistrer(campagne, "10.00", jour.plusHours(3L * i).plusMinutes(i));
+                enregistrer(campagne, "5.00", jour.plusHours(3L * i).plusMinutes(i + 30));
+            }
+            enregistrer(campagne, "7.00", jour.plusDays(1).plusHours(2));
+            // Intervalles obsolètes, sans don en base, entre les intervalles reconstruits
+            serviceStatistiquesDons.ajouterDon(campagne.getId(), Montant.parse("99.00"), jour.plusHours(4));
+            serviceStatistiquesDons.ajouterDon(campagne.getId(), Montant.parse("99.00"), jour.plusHours(22));
+            serviceStatistiquesDons.ecrireCumuls();
+
+            Object intervallesParLot = ReflectionTestUtils.getField(serviceStatistiquesDons, "intervallesParLot");
+            ReflectionTestUtils.setField(serviceStatistiquesDons, "intervallesParLot", 1);
+            try {
+                serviceStatistiquesDons.reconstruire(LocalDate.now().atStartOfDay());
+            } finally {
+                ReflectionTestUtils.setField(serviceStatistiquesDons, "intervallesParLot", intervallesParLot);
+            }
+
+            List<StatDonDTO> minutes = serviceStatistiquesDons.consulter(campagne.getId(), Granularite.MINUTE, jour, jour.plusDays(2));
+            assertEquals(13, minutes.size());
+            List<StatDonDTO> heures = serviceStatistiquesDons.consulter(campagne.getId(), Granularite.HEURE, jour, jour.plusDays(2));
+            assertEquals(7, heures.size());
+            for (int i = 0; i < 6; i++) {
+                assertEquals(jour.plusHours(3L * i), heures.get(i).getDebut());
+                assertEquals(2, heures.get(i).getNombreDons());
+                assertEquals(Montant.parse("15.00"), heures.get(i).getMontantTotal());
+            }
+            List<StatDonDTO> jours = serviceStatistiquesDons.consulter(campagne.getId(), Granularite.JOUR, jour, jour.plusDays(2));
+            assertEquals(2, jours.size());
+            assertEquals(12, jours.get(0).getNombreDons());
+            assertEquals(Montant.parse("90.00"), jours.get(0).getMontantTotal());
+            assertEquals(1, jours.get(1).getNombreDons());
+            assertEquals(Montant.parse("7.00"), jours.get(1).getMontantTotal());
+        }
+
+        private void enregistrer(Campagne campagne, String montant, LocalDateTime date) {
+            Donation donation = new Donation();
+            donation.setCampagne(campagne);
+            donation.setNomDonateur("Donateur");
+            donation.setMontant(Montant.parse(montant));
+            donation.setDate(date);
+            donRepository.save(donation);
+        }
+}
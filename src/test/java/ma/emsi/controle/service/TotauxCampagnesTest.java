@@ -0,0 +1,166 @@
+package ma.emsi.controle.service;
+
+import ma.emsi.controle.entities.Montant;
+import ma.emsi.controle.events.DonEnregistreEvent;
+import ma.emsi.controle.projection.TotalDonsCampagne;
+import ma.emsi.controle.repository.DonRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests unitaires pour TotauxCampagnes.
+ */
+@ExtendWith(MockitoExtension.class)
+public class TotauxCampagnesTest {
+
+        /**
+         * Mock du repository des dons
+         */
+        @Mock
+        private DonRepository donRepository;
+
+        /**
+         * Injection du mock dans le composant à tester
+         */
+        @InjectMocks
+        private TotauxCampagnes totauxCampagnes;
+
+        /**
+         * Vérifie que la reconstruction reprend les totaux de la base
+         * et que les dons suivants s'y ajoutent.
+         */
+        @Test
+        void testReconstruirePuisAjouterDon() {
+            LocalDateTime dernierDon = LocalDateTime.now().minusDays(1);
+            TotalDonsCampagne totalCampagne1 = new TotalDonsCampagne(1L, 2L, Montant.parse("1500.00"), dernierDon);
+            when(donRepository.calculerTotauxParCampagne()).thenReturn(List.of(totalCampagne1));
+
+            totauxCampagnes.reconstruire();
+            LocalDateTime maintenant = LocalDateTime.now();
+            totauxCampagnes.ajouterDon(1L, Montant.parse("49.99"), maintenant);
+
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(1L);
+            assertEquals(3L, totaux.nombreDons());
+            assertEquals(Montant.parse("1549.99"), totaux.montantCollecte());
+            assertEquals(maintenant, totaux.dernierDon());
+        }
+
+        /**
+         * Vérifie qu'une campagne sans don renvoie des totaux nuls.
+         */
+        @Test
+        void testCampagneSansDon() {
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(42L);
+            assertEquals(0L, totaux.nombreDons());
+            assertEquals(Montant.parse("0.00"), totaux.montantCollecte());
+            assertNull(totaux.dernierDon());
+        }
+
+        /**
+         * Vérifie qu'une correction ajoute ses écarts sans reculer la date du dernier don,
+         * notifié pendant le recomptage.
+         */
+        @Test
+        void testCorrectionGardeLeDernierDon() {
+            LocalDateTime recompte = LocalDateTime.now().minusMinutes(1);
+            LocalDateTime notifie = LocalDateTime.now();
+            totauxCampagnes.ajouterDon(1L, Montant.parse("10.00"), notifie);
+
+            totauxCampagnes.corriger(1L, 2, 500, recompte);
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(1L);
+            assertEquals(3L, totaux.nombreDons());
+            assertEquals(Montant.parse("15.00"), totaux.montantCollecte());
+            assertEquals(notifie, totaux.dernierDon());
+
+            LocalDateTime plusRecent = notifie.plusSeconds(1);
+            totauxCampagnes.corriger(1L, 0, 0, plusRecent);
+            assertEquals(plusRecent, totauxCampagnes.getTotaux(1L).dernierDon());
+            totauxCampagnes.corriger(1L, 0, 0, null);
+            assertEquals(plusRecent, totauxCampagnes.getTotaux(1L).dernierDon());
+        }
+
+        /**
+         * Vérifie qu'aucune mise à jour n'est perdue lorsque plusieurs threads donnent en parallèle.
+         */
+        @Test
+        void testAjoutsConcurrents() throws InterruptedException {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int i = 0; i < 10_000; i++) {
+                executor.submit(() -> totauxCampagnes.ajouterDon(7L, Montant.parse("1.25"), LocalDateTime.now()));
+            }
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(7L);
+            assertEquals(10_000L, totaux.nombreDons());
+            assertEquals(Montant.parse("12500.00"), totaux.montantCollecte());
+        }
+
+        /**
+         * Vérifie qu'un don notifié pendant la reconstruction est compté une seule fois :
+         * ignoré s'il figure dans les totaux relus, rejoué sur les nouveaux compteurs sinon.
+         */
+        @Test
+        void testDonsNotifiesPendantReconstruction() {
+            LocalDateTime date = LocalDateTime.now();
+            DonEnregistreEvent lu = new DonEnregistreEvent(10L, 1L, "Lu", Montant.parse("50.00"), date);
+            DonEnregistreEvent nonLu = new DonEnregistreEvent(11L, 1L, "Non lu", Montant.parse("20.00"), date);
+            when(donRepository.calculerTotauxParCampagne()).thenAnswer(invocation -> {
+                totauxCampagnes.onDonEnregistre(lu);
+                totauxCampagnes.onDonEnregistre(nonLu);
+                // Les anciens totaux restent servis, avec les dons notifiés
+                assertEquals(2L, totauxCampagnes.getTotaux(1L).nombreDons());
+                return List.of(new TotalDonsCampagne(1L, 2L, Montant.parse("150.00"), date));
+            });
+            when(donRepository.trouverIdentifiants(anyCollection())).thenReturn(List.of(10L));
+
+            totauxCampagnes.reconstruire();
+
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(1L);
+            assertEquals(3L, totaux.nombreDons());
+            assertEquals(Montant.parse("170.00"), totaux.montantCollecte());
+        }
+
+        /**
+         * Vérifie qu'un don validé avant la requête de reconstruction mais notifié après celle-ci n'est pas compté
+         * deux fois, et que les dons suivants sont de nouveau comptés.
+         */
+        @Test
+        void testDonValideNotifieApresReconstruction() {
+            LocalDateTime date = LocalDateTime.now();
+            DonEnregistreEvent enCours = new DonEnregistreEvent(20L, 1L, "En cours", Montant.parse("30.00"), date);
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                totauxCampagnes.onDonPublie(enCours);
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            when(donRepository.calculerTotauxParCampagne())
+                    .thenReturn(List.of(new TotalDonsCampagne(1L, 1L, Montant.parse("30.00"), date)));
+            when(donRepository.trouverIdentifiants(anyCollection())).thenReturn(List.of(20L));
+
+            totauxCampagnes.reconstruire();
+            totauxCampagnes.onDonEnregistre(enCours);
+            assertEquals(1L, totauxCampagnes.getTotaux(1L).nombreDons());
+
+            totauxCampagnes.onDonEnregistre(new DonEnregistreEvent(21L, 1L, "Suivant", Montant.parse("5.00"), date));
+            TotauxCampagnes.Totaux totaux = totauxCampagnes.getTotaux(1L);
+            assertEquals(2L, totaux.nombreDons());
+            assertEquals(Montant.parse("35.00"), totaux.montantCollecte());
+        }
+}